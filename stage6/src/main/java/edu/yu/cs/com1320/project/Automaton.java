@@ -0,0 +1,19 @@
+package edu.yu.cs.com1320.project;
+
+/**
+ * A deterministic automaton over the characters (code points) of a key, for a trie to run along its edges: a
+ * subtree is skipped as soon as the automaton has no state for the characters on the way to it, so only the keys
+ * that could still be accepted are walked. States must not be changed by step, since a trie steps the same state
+ * once for each child of a node.
+ * @param <S> the automaton's states
+ */
+public interface Automaton<S> {
+    S start();
+
+    /**
+     * @return the state after the code point, or null if no key that goes on this way is accepted
+     */
+    S step(S state, int codePoint);
+
+    boolean isAccepting(S state);
+}
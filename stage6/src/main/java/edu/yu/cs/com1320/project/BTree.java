@@ -3,10 +3,44 @@ package edu.yu.cs.com1320.project;
 import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
 
 public interface BTree<Key extends Comparable<Key>, Value> {
     Value get(Key k);
     Value put(Key k, Value v);
     void moveToDisk(Key k) throws IOException;
+
+    /**
+     * Move the values of all the given keys to disk with a single PersistenceManager.serializeAll call.
+     * Keys that aren't in the tree or are already on disk are skipped.
+     */
+    void moveAllToDisk(Collection<Key> keys) throws IOException;
+
+    /**
+     * Make v, which the caller already read from the PersistenceManager, e.g. with deserializeAll, the resident
+     * value of k again, and delete it from the PersistenceManager, without reading it a second time.
+     * @return false, changing nothing, if k isn't in the tree with its value on disk
+     */
+    boolean moveToMemory(Key k, Value v) throws IOException;
     void setPersistenceManager(PersistenceManager<Key,Value> pm);
+
+    /**
+     * Lazily iterate over the keys in the given range, whether their values are in memory or on disk.
+     * No values are loaded from disk by the iteration.
+     * @param from lowest key to return (inclusive), or null for no lower bound
+     * @param to highest key to return (inclusive), or null for no upper bound
+     * @param descending true to iterate from the high end of the range to the low end
+     * @return an iterator over the keys in the range, in key order
+     */
+    Iterator<Key> keys(Key from, Key to, boolean descending);
+
+    /**
+     * Build the tree bottom-up from keys whose values are already on disk. Pages are packed full and
+     * no key is looked up in the PersistenceManager, so this is much cheaper than one put per key.
+     * @param sortedKeys keys in strictly ascending order
+     * @throws IllegalStateException if the tree is not empty
+     * @throws IllegalArgumentException if the keys are not in strictly ascending order
+     */
+    void bulkLoad(Iterator<Key> sortedKeys) throws IOException;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package edu.yu.cs.com1320.project;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
@@ -46,6 +47,39 @@ public interface Trie<Value>
      */
     List<Value> getAllWithPrefixSorted(String prefix, Comparator<Value> comparator);
 
+    /**
+     * Get the k greatest exact matches for the given key, in descending order, where "descending" is defined by the
+     * comparator. Implementations should not need to sort every match to find them.
+     * @param key
+     * @param comparator used to rank values
+     * @param k how many values to return at most
+     * @return a List of at most k matching Values, in descending order. Empty List if no matches.
+     */
+    default List<Value> getTopK(String key, Comparator<Value> comparator, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        List<Value> matches = getSorted(key, comparator);
+        return new ArrayList<>(matches.subList(0, Math.min(k, matches.size())));
+    }
+
+    /**
+     * Get the k greatest matches which contain a String with the given prefix, in descending order, where
+     * "descending" is defined by the comparator. Implementations should not need to sort every match to find them.
+     * @param prefix
+     * @param comparator used to rank values
+     * @param k how many values to return at most
+     * @return a List of at most k Values containing the given prefix, in descending order. Empty List if no matches.
+     */
+    default List<Value> getAllWithPrefixTopK(String prefix, Comparator<Value> comparator, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        List<Value> matches = new ArrayList<>(getAllWithPrefixSorted(prefix, comparator));
+        matches.sort(comparator.reversed());
+        return new ArrayList<>(matches.subList(0, Math.min(k, matches.size())));
+    }
+
     /**
      * Delete the subtree rooted at the last character of the prefix.
      * Search is CASE SENSITIVE.
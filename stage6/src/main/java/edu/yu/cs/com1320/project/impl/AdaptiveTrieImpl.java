@@ -0,0 +1,841 @@
+package edu.yu.cs.com1320.project.impl;
+
+import edu.yu.cs.com1320.project.Automaton;
+import edu.yu.cs.com1320.project.Trie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive radix trie over the UTF-8 bytes of the keys. A node holds 4, 16, 48 or 256 children and grows or
+ * shrinks between those sizes as children are added and removed, instead of every node having a 256-slot array.
+ * A chain of nodes with one child and no values is collapsed into its last node, which keeps the bytes of the
+ * chain as its prefix, and nodes left with no values and no children are removed. A node's values are allocated
+ * only when it gets one: a single value is held as it is, and only two or more get a set.
+ * <p>
+ * Searches behave as in TrieImpl, except that keys may hold any characters, not only the first 256.
+ */
+public class AdaptiveTrieImpl<Value> implements Trie<Value> {
+    private static final byte[] EMPTY = new byte[0];
+
+    private Node<Value> root = new Node4<>(EMPTY);
+
+    // set of two or more values at a node, told apart from a single value that happens to be a set
+    private static final class ValueSet<Value> extends HashSet<Value> {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private abstract static class Node<Value> {
+        byte[] prefix; // bytes consumed by this node after the edge from its parent
+        Object values; // null, a single Value, or a ValueSet
+
+        private Node(byte[] prefix) {
+            this.prefix = prefix;
+        }
+
+        abstract Node<Value> child(int b);
+
+        /**
+         * add or replace the child at b
+         * @return this node, or a bigger one that replaces it if this one was full
+         */
+        abstract Node<Value> putChild(int b, Node<Value> child);
+
+        /**
+         * @return this node, or a smaller one that replaces it
+         */
+        abstract Node<Value> removeChild(int b);
+
+        abstract int childCount();
+
+        /**
+         * @return the edge byte of the first child at or after b, or -1
+         */
+        abstract int nextChild(int b);
+
+        // moves the prefix and values to a node of another size
+        <N extends Node<Value>> N copyHeaderTo(N node) {
+            node.values = this.values;
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean addValue(Value val) {
+            if (this.values == null) {
+                this.values = val;
+                return true;
+            }
+            if (this.values instanceof ValueSet) {
+                return ((ValueSet<Value>) this.values).add(val);
+            }
+            if (this.values.equals(val)) {
+                return false;
+            }
+            ValueSet<Value> set = new ValueSet<>();
+            set.add((Value) this.values);
+            set.add(val);
+            this.values = set;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean removeValue(Value val) {
+            if (this.values instanceof ValueSet) {
+                ValueSet<Value> set = (ValueSet<Value>) this.values;
+                if (!set.remove(val)) {
+                    return false;
+                }
+                if (set.size() == 1) {
+                    this.values = set.iterator().next();
+                }
+                return true;
+            }
+            if (this.values != null && this.values.equals(val)) {
+                this.values = null;
+                return true;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void addValuesTo(Collection<Value> out) {
+            if (this.values instanceof ValueSet) {
+                out.addAll((ValueSet<Value>) this.values);
+            } else if (this.values != null) {
+                out.add((Value) this.values);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEachValue(Consumer<? super Value> action) {
+            if (this.values instanceof ValueSet) {
+                ((ValueSet<Value>) this.values).forEach(action);
+            } else if (this.values != null) {
+                action.accept((Value) this.values);
+            }
+        }
+    }
+
+    private static final class Node4<Value> extends Node<Value> {
+        private byte[] keys; // sorted; allocated with the first child
+        private Node<Value>[] children;
+        private int count;
+
+        private Node4(byte[] prefix) {
+            super(prefix);
+        }
+
+        @Override
+        Node<Value> child(int b) {
+            for (int i = 0; i < this.count; i++) {
+                if ((this.keys[i] & 0xFF) == b) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<Value> putChild(int b, Node<Value> child) {
+            int i = 0;
+            while (i < this.count && (this.keys[i] & 0xFF) < b) {
+                i++;
+            }
+            if (i < this.count && (this.keys[i] & 0xFF) == b) {
+                this.children[i] = child;
+                return this;
+            }
+            if (this.count == 4) {
+                return copyHeaderTo(new Node16<Value>(super.prefix, this.keys, this.children, this.count)).putChild(b, child);
+            }
+            if (this.keys == null) {
+                this.keys = new byte[4];
+                this.children = (Node<Value>[]) new Node<?>[4];
+            }
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.count - i);
+            System.arraycopy(this.children, i, this.children, i + 1, this.count - i);
+            this.keys[i] = (byte) b;
+            this.children[i] = child;
+            this.count++;
+            return this;
+        }
+
+        @Override
+        Node<Value> removeChild(int b) {
+            for (int i = 0; i < this.count; i++) {
+                if ((this.keys[i] & 0xFF) == b) {
+                    System.arraycopy(this.keys, i + 1, this.keys, i, this.count - i - 1);
+                    System.arraycopy(this.children, i + 1, this.children, i, this.count - i - 1);
+                    this.children[--this.count] = null;
+                    break;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int childCount() {
+            return this.count;
+        }
+
+        @Override
+        int nextChild(int b) {
+            for (int i = 0; i < this.count; i++) {
+                if ((this.keys[i] & 0xFF) >= b) {
+                    return this.keys[i] & 0xFF;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Node16<Value> extends Node<Value> {
+        private final byte[] keys = new byte[16]; // sorted
+        @SuppressWarnings("unchecked")
+        private final Node<Value>[] children = (Node<Value>[]) new Node<?>[16];
+        private int count;
+
+        private Node16(byte[] prefix, byte[] keys, Node<Value>[] children, int count) {
+            super(prefix);
+            System.arraycopy(keys, 0, this.keys, 0, count);
+            System.arraycopy(children, 0, this.children, 0, count);
+            this.count = count;
+        }
+
+        private int find(int b) {
+            int low = 0;
+            int high = this.count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int key = this.keys[mid] & 0xFF;
+                if (key < b) {
+                    low = mid + 1;
+                } else if (key > b) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        @Override
+        Node<Value> child(int b) {
+            int i = find(b);
+            return i >= 0 ? this.children[i] : null;
+        }
+
+        @Override
+        Node<Value> putChild(int b, Node<Value> child) {
+            int i = find(b);
+            if (i >= 0) {
+                this.children[i] = child;
+                return this;
+            }
+            if (this.count == 16) {
+                return copyHeaderTo(new Node48<Value>(super.prefix, this.keys, this.children, this.count)).putChild(b, child);
+            }
+            i = -i - 1;
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.count - i);
+            System.arraycopy(this.children, i, this.children, i + 1, this.count - i);
+            this.keys[i] = (byte) b;
+            this.children[i] = child;
+            this.count++;
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<Value> removeChild(int b) {
+            int i = find(b);
+            if (i < 0) {
+                return this;
+            }
+            System.arraycopy(this.keys, i + 1, this.keys, i, this.count - i - 1);
+            System.arraycopy(this.children, i + 1, this.children, i, this.count - i - 1);
+            this.children[--this.count] = null;
+            if (this.count > 3) {
+                return this;
+            }
+            Node4<Value> smaller = copyHeaderTo(new Node4<>(super.prefix));
+            smaller.keys = Arrays.copyOf(this.keys, 4);
+            smaller.children = Arrays.copyOf(this.children, 4);
+            smaller.count = this.count;
+            return smaller;
+        }
+
+        @Override
+        int childCount() {
+            return this.count;
+        }
+
+        @Override
+        int nextChild(int b) {
+            int i = find(b);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < this.count ? this.keys[i] & 0xFF : -1;
+        }
+    }
+
+    private static final class Node48<Value> extends Node<Value> {
+        private final byte[] index = new byte[256]; // slot + 1 of each byte's child, 0 for none
+        @SuppressWarnings("unchecked")
+        private final Node<Value>[] children = (Node<Value>[]) new Node<?>[48];
+        private int count;
+
+        private Node48(byte[] prefix, byte[] keys, Node<Value>[] children, int count) {
+            super(prefix);
+            for (int i = 0; i < count; i++) {
+                this.index[keys[i] & 0xFF] = (byte) (i + 1);
+                this.children[i] = children[i];
+            }
+            this.count = count;
+        }
+
+        private Node48(byte[] prefix, Node<Value>[] children) {
+            super(prefix);
+            for (int b = 0; b < 256; b++) {
+                if (children[b] != null) {
+                    this.children[this.count] = children[b];
+                    this.index[b] = (byte) ++this.count;
+                }
+            }
+        }
+
+        @Override
+        Node<Value> child(int b) {
+            int slot = this.index[b];
+            return slot == 0 ? null : this.children[slot - 1];
+        }
+
+        @Override
+        Node<Value> putChild(int b, Node<Value> child) {
+            int slot = this.index[b];
+            if (slot != 0) {
+                this.children[slot - 1] = child;
+                return this;
+            }
+            if (this.count == 48) {
+                return copyHeaderTo(new Node256<Value>(super.prefix, this)).putChild(b, child);
+            }
+            // removals leave the slots packed, so the next free one is at count
+            this.children[this.count] = child;
+            this.index[b] = (byte) ++this.count;
+            return this;
+        }
+
+        @Override
+        Node<Value> removeChild(int b) {
+            int slot = this.index[b];
+            if (slot == 0) {
+                return this;
+            }
+            this.index[b] = 0;
+            int last = --this.count;
+            if (slot - 1 != last) {
+                // move the last slot into the gap
+                this.children[slot - 1] = this.children[last];
+                for (int other = 0; other < 256; other++) {
+                    if (this.index[other] == last + 1) {
+                        this.index[other] = (byte) slot;
+                        break;
+                    }
+                }
+            }
+            this.children[last] = null;
+            if (this.count > 12) {
+                return this;
+            }
+            byte[] keys = new byte[this.count];
+            @SuppressWarnings("unchecked")
+            Node<Value>[] children = (Node<Value>[]) new Node<?>[this.count];
+            int n = 0;
+            for (int other = 0; other < 256; other++) {
+                if (this.index[other] != 0) {
+                    keys[n] = (byte) other;
+                    children[n++] = this.children[this.index[other] - 1];
+                }
+            }
+            return copyHeaderTo(new Node16<>(super.prefix, keys, children, n));
+        }
+
+        @Override
+        int childCount() {
+            return this.count;
+        }
+
+        @Override
+        int nextChild(int b) {
+            for (int i = b; i < 256; i++) {
+                if (this.index[i] != 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Node256<Value> extends Node<Value> {
+        @SuppressWarnings("unchecked")
+        private final Node<Value>[] children = (Node<Value>[]) new Node<?>[256];
+        private int count;
+
+        private Node256(byte[] prefix, Node48<Value> from) {
+            super(prefix);
+            for (int b = 0; b < 256; b++) {
+                if (from.index[b] != 0) {
+                    this.children[b] = from.children[from.index[b] - 1];
+                }
+            }
+            this.count = from.count;
+        }
+
+        @Override
+        Node<Value> child(int b) {
+            return this.children[b];
+        }
+
+        @Override
+        Node<Value> putChild(int b, Node<Value> child) {
+            if (this.children[b] == null) {
+                this.count++;
+            }
+            this.children[b] = child;
+            return this;
+        }
+
+        @Override
+        Node<Value> removeChild(int b) {
+            if (this.children[b] == null) {
+                return this;
+            }
+            this.children[b] = null;
+            this.count--;
+            return this.count > 36 ? this : copyHeaderTo(new Node48<>(super.prefix, this.children));
+        }
+
+        @Override
+        int childCount() {
+            return this.count;
+        }
+
+        @Override
+        int nextChild(int b) {
+            for (int i = b; i < 256; i++) {
+                if (this.children[i] != null) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public void put(String key, Value val) {
+        if (key == null || val == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        nodeFor(bytes(key)).addValue(val);
+    }
+
+    @Override
+    public List<Value> getSorted(String key, Comparator<Value> comparator) {
+        if (key == null || comparator == null) {
+            throw new IllegalArgumentException("Key and comparator cannot be null");
+        }
+        Node<Value> x = find(bytes(key));
+        if (x == null) {
+            return List.of();
+        }
+        List<Value> matches = new ArrayList<>();
+        x.addValuesTo(matches);
+        matches.sort(comparator.reversed());
+        return matches;
+    }
+
+    @Override
+    public Set<Value> get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Value> x = find(bytes(key));
+        if (x == null || x.values == null) {
+            return Set.of();
+        }
+        Set<Value> matches = new HashSet<>();
+        x.addValuesTo(matches);
+        return matches;
+    }
+
+    @Override
+    public List<Value> getAllWithPrefixSorted(String prefix, Comparator<Value> comparator) {
+        if (prefix == null || comparator == null) {
+            throw new IllegalArgumentException("Prefix and comparator cannot be null");
+        }
+        List<Value> matches = new ArrayList<>();
+        Node<Value> x = findPrefix(bytes(prefix));
+        if (x != null) {
+            collect(x, matches);
+        }
+        matches.sort(comparator);
+        return matches;
+    }
+
+    /**
+     * For a trie used as a map, with one value per key: the value at the key, or else the one the supplier gives,
+     * which is put there
+     */
+    public Value computeIfAbsent(String key, Supplier<? extends Value> supplier) {
+        if (key == null || supplier == null) {
+            throw new IllegalArgumentException("Key and supplier cannot be null");
+        }
+        Node<Value> x = nodeFor(bytes(key));
+        Value val = firstValue(x);
+        if (val == null) {
+            val = supplier.get();
+            if (val == null) {
+                throw new IllegalArgumentException("Value cannot be null");
+            }
+            x.addValue(val);
+        }
+        return val;
+    }
+
+    /**
+     * For a trie used as a map, with one value per key: the value at the key, or null. If the key has several, any
+     * one of them.
+     */
+    public Value getValue(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Value> x = find(bytes(key));
+        return x != null ? firstValue(x) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value firstValue(Node<Value> x) {
+        if (x.values instanceof ValueSet) {
+            return ((ValueSet<Value>) x.values).iterator().next();
+        }
+        return (Value) x.values;
+    }
+
+    /**
+     * Picks the top k with a heap of k values as it goes through the matches, without copying or sorting them all
+     */
+    @Override
+    public List<Value> getTopK(String key, Comparator<Value> comparator, int k) {
+        if (key == null || comparator == null || k < 0) {
+            throw new IllegalArgumentException("Key and comparator cannot be null, and k cannot be negative");
+        }
+        Node<Value> x = find(bytes(key));
+        if (x == null) {
+            return List.of();
+        }
+        BoundedHeap<Value> top = new BoundedHeap<>(k, comparator);
+        x.forEachValue(top::offer);
+        return top.toSortedList();
+    }
+
+    /**
+     * Picks the top k with a heap of k values as it goes through the matches, without copying or sorting them all
+     */
+    @Override
+    public List<Value> getAllWithPrefixTopK(String prefix, Comparator<Value> comparator, int k) {
+        if (prefix == null || comparator == null || k < 0) {
+            throw new IllegalArgumentException("Prefix and comparator cannot be null, and k cannot be negative");
+        }
+        BoundedHeap<Value> top = new BoundedHeap<>(k, comparator);
+        forEachWithPrefix(prefix, top::offer);
+        return top.toSortedList();
+    }
+
+    /**
+     * Give the action every value of every key with the given prefix, in key order, as getAllWithPrefixSorted would
+     * list them but without building the list
+     */
+    public void forEachWithPrefix(String prefix, Consumer<? super Value> action) {
+        if (prefix == null || action == null) {
+            throw new IllegalArgumentException("Prefix and action cannot be null");
+        }
+        Node<Value> x = findPrefix(bytes(prefix));
+        if (x != null) {
+            visit(x, action);
+        }
+    }
+
+    /**
+     * Give the action every value of every key the automaton accepts, in key order, with the state the key left the
+     * automaton in. The trie is walked once, and no further down any path than the automaton has a state for.
+     */
+    public <S> void forEachAccepted(Automaton<S> automaton, BiConsumer<? super S, ? super Value> action) {
+        if (automaton == null || action == null) {
+            throw new IllegalArgumentException("Automaton and action cannot be null");
+        }
+        walk(this.root, -1, automaton.start(), 0, 0, automaton, action);
+    }
+
+    // runs the automaton over the edge byte into x, if any, and x's prefix, then on into x's children. Keys are
+    // UTF-8, so a code point may be split across edges; codePoint holds the bits read of one not yet complete, and
+    // remaining how many of its bytes are still to come.
+    private <S> void walk(Node<Value> x, int edge, S state, int codePoint, int remaining, Automaton<S> automaton, BiConsumer<? super S, ? super Value> action) {
+        for (int i = edge >= 0 ? -1 : 0; i < x.prefix.length; i++) {
+            int b = (i < 0 ? edge : x.prefix[i]) & 0xFF;
+            if (remaining > 0) {
+                codePoint = (codePoint << 6) | (b & 0x3F);
+                remaining--;
+            } else if (b < 0x80) {
+                codePoint = b;
+            } else if (b < 0xE0) {
+                codePoint = b & 0x1F;
+                remaining = 1;
+            } else if (b < 0xF0) {
+                codePoint = b & 0x0F;
+                remaining = 2;
+            } else {
+                codePoint = b & 0x07;
+                remaining = 3;
+            }
+            if (remaining == 0) {
+                state = automaton.step(state, codePoint);
+                if (state == null) {
+                    return;
+                }
+            }
+        }
+        if (remaining == 0 && x.values != null && automaton.isAccepting(state)) {
+            S accepted = state;
+            x.forEachValue(value -> action.accept(accepted, value));
+        }
+        for (int b = x.nextChild(0); b >= 0; b = b < 255 ? x.nextChild(b + 1) : -1) {
+            walk(x.child(b), b, state, codePoint, remaining, automaton, action);
+        }
+    }
+
+    @Override
+    public Set<Value> deleteAllWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        Set<Value> deletedValues = new HashSet<>();
+        Node<Value> x = deleteSubtree(this.root, bytes(prefix), 0, deletedValues, true);
+        this.root = x != null ? x : new Node4<>(EMPTY);
+        return deletedValues;
+    }
+
+    @Override
+    public Set<Value> deleteAll(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Set<Value> deletedValues = new HashSet<>();
+        this.root = delete(this.root, bytes(key), 0, x -> {
+            x.addValuesTo(deletedValues);
+            x.values = null;
+            return true;
+        }, true);
+        return deletedValues;
+    }
+
+    @Override
+    public Value delete(String key, Value val) {
+        if (key == null || val == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        boolean[] removed = new boolean[1];
+        this.root = delete(this.root, bytes(key), 0, x -> removed[0] = x.removeValue(val), true);
+        return removed[0] ? val : null;
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // length of the common start of the node's prefix and the key from d
+    private static int matchPrefix(Node<?> x, byte[] key, int d) {
+        byte[] prefix = x.prefix;
+        int max = Math.min(prefix.length, key.length - d);
+        int i = 0;
+        while (i < max && prefix[i] == key[d + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private Node<Value> find(byte[] key) {
+        Node<Value> x = this.root;
+        int d = 0;
+        while (x != null) {
+            if (matchPrefix(x, key, d) != x.prefix.length) {
+                return null;
+            }
+            d += x.prefix.length;
+            if (d == key.length) {
+                return x;
+            }
+            x = x.child(key[d++] & 0xFF);
+        }
+        return null;
+    }
+
+    // the node under which every key starting with the prefix is found
+    private Node<Value> findPrefix(byte[] prefix) {
+        Node<Value> x = this.root;
+        int d = 0;
+        while (x != null) {
+            int matched = matchPrefix(x, prefix, d);
+            if (d + matched == prefix.length) {
+                return x;
+            }
+            if (matched != x.prefix.length) {
+                return null;
+            }
+            d += matched;
+            x = x.child(prefix[d++] & 0xFF);
+        }
+        return null;
+    }
+
+    // the node for the key, created along with any nodes it needs
+    private Node<Value> nodeFor(byte[] key) {
+        Node<Value> parent = null;
+        int edge = 0;
+        Node<Value> x = this.root;
+        int d = 0;
+        while (true) {
+            int matched = matchPrefix(x, key, d);
+            if (matched < x.prefix.length) {
+                // the key leaves the node's prefix part-way: split it
+                Node<Value> split = new Node4<>(Arrays.copyOfRange(x.prefix, 0, matched));
+                int splitEdge = x.prefix[matched] & 0xFF;
+                x.prefix = Arrays.copyOfRange(x.prefix, matched + 1, x.prefix.length);
+                split.putChild(splitEdge, x);
+                replace(parent, edge, split);
+                if (d + matched == key.length) {
+                    return split;
+                }
+                Node<Value> leaf = leaf(key, d + matched + 1);
+                split.putChild(key[d + matched] & 0xFF, leaf);
+                return leaf;
+            }
+            d += matched;
+            if (d == key.length) {
+                return x;
+            }
+            int b = key[d] & 0xFF;
+            Node<Value> child = x.child(b);
+            if (child == null) {
+                Node<Value> leaf = leaf(key, d + 1);
+                Node<Value> grown = x.putChild(b, leaf);
+                if (grown != x) {
+                    replace(parent, edge, grown);
+                }
+                return leaf;
+            }
+            parent = x;
+            edge = b;
+            x = child;
+            d++;
+        }
+    }
+
+    private static <Value> Node<Value> leaf(byte[] key, int from) {
+        return new Node4<>(from == key.length ? EMPTY : Arrays.copyOfRange(key, from, key.length));
+    }
+
+    private void replace(Node<Value> parent, int edge, Node<Value> x) {
+        if (parent == null) {
+            this.root = x;
+        } else {
+            parent.putChild(edge, x);
+        }
+    }
+
+    private interface NodeOperation<Value> {
+        boolean apply(Node<Value> x);
+    }
+
+    // applies the operation to the key's node, then removes or merges the nodes it leaves empty or with one child
+    private Node<Value> delete(Node<Value> x, byte[] key, int d, NodeOperation<Value> operation, boolean isRoot) {
+        if (matchPrefix(x, key, d) != x.prefix.length) {
+            return x;
+        }
+        d += x.prefix.length;
+        if (d == key.length) {
+            operation.apply(x);
+            return isRoot ? x : compact(x);
+        }
+        int b = key[d] & 0xFF;
+        Node<Value> child = x.child(b);
+        if (child == null) {
+            return x;
+        }
+        Node<Value> replacement = delete(child, key, d + 1, operation, false);
+        if (replacement == child) {
+            return x;
+        }
+        x = replacement == null ? x.removeChild(b) : x.putChild(b, replacement);
+        return isRoot ? x : compact(x);
+    }
+
+    private Node<Value> deleteSubtree(Node<Value> x, byte[] prefix, int d, Set<Value> deletedValues, boolean isRoot) {
+        int matched = matchPrefix(x, prefix, d);
+        if (d + matched == prefix.length) {
+            collect(x, deletedValues);
+            return null;
+        }
+        if (matched != x.prefix.length) {
+            return x;
+        }
+        d += matched;
+        int b = prefix[d] & 0xFF;
+        Node<Value> child = x.child(b);
+        if (child == null) {
+            return x;
+        }
+        Node<Value> replacement = deleteSubtree(child, prefix, d + 1, deletedValues, false);
+        if (replacement == child) {
+            return x;
+        }
+        x = replacement == null ? x.removeChild(b) : x.putChild(b, replacement);
+        return isRoot ? x : compact(x);
+    }
+
+    // null for a node with no values and no children; its only child, taking over its prefix, for a node with no
+    // values and one child
+    private Node<Value> compact(Node<Value> x) {
+        if (x.values != null || x.childCount() > 1) {
+            return x;
+        }
+        if (x.childCount() == 0) {
+            return null;
+        }
+        int b = x.nextChild(0);
+        Node<Value> child = x.child(b);
+        byte[] merged = new byte[x.prefix.length + 1 + child.prefix.length];
+        System.arraycopy(x.prefix, 0, merged, 0, x.prefix.length);
+        merged[x.prefix.length] = (byte) b;
+        System.arraycopy(child.prefix, 0, merged, x.prefix.length + 1, child.prefix.length);
+        child.prefix = merged;
+        return child;
+    }
+
+    // values of the subtree, in key order
+    private void collect(Node<Value> x, Collection<Value> out) {
+        visit(x, out::add);
+    }
+
+    private void visit(Node<Value> x, Consumer<? super Value> action) {
+        x.forEachValue(action);
+        for (int b = x.nextChild(0); b >= 0; b = b < 255 ? x.nextChild(b + 1) : -1) {
+            visit(x.child(b), action);
+        }
+    }
+}
@@ -3,73 +3,709 @@ package edu.yu.cs.com1320.project.impl;
 import edu.yu.cs.com1320.project.BTree;
 import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 
-import java.io.IOException;
-import java.util.TreeMap;
+import java.io.*;
+import java.util.*;
 
-public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key, Value> {
-    private final TreeMap<Key, Value> map = new TreeMap<>();
+/**
+ * B+Tree with fixed-size pages. Values only live in the leaves, and the leaves are linked to each other.
+ * An entry whose value was moved to disk keeps only its key. Once every entry in a leaf is on disk,
+ * the leaf's keys are written to a page file and the leaf is replaced by a stub, so that cold parts
+ * of the tree cost one stub per page instead of one entry per key. Internal nodes stay on the heap.
+ * A leaf read back in keeps its page file until its keys change, and turns back into a stub, without another
+ * write if the page is still current, as soon as an operation leaves none of its values on the heap. Key scans
+ * read the pages they pass without bringing the leaves back in.
+ */
+public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key, Value>, Closeable {
+    private static final int DEFAULT_FAN_OUT = 64;
+    private final int fanOut; // max entries per page, must be even and >= 4
+    private final ScratchDirectory pageDir; // null if leaf paging is disabled
+    private Node<Key, Value> root;
+    private Node<Key, Value> leftMostLeaf;
+    private int height;
+    private int n;
+    private long nextPageId;
+    private long modCount; // bumped whenever entries move between slots
     private PersistenceManager<Key, Value> pm;
 
+    private static final class Node<K, V> {
+        private int entryCount;
+        private Entry<K, V>[] entries; // null while the node is paged out
+        private Node<K, V> next;
+        private Node<K, V> previous;
+        private int residentCount; // leaf entries whose value is on the heap
+        private long pageId = -1; // page file holding the leaf's current keys, or -1 if there is none
+
+        private Node(int k, int fanOut) {
+            this.entryCount = k;
+            this.entries = newEntries(fanOut);
+        }
+
+        private boolean isPagedOut() {
+            return this.entries == null;
+        }
+    }
+
+    // internal nodes: only use key and child
+    // external nodes: only use key, val and onDisk
+    private static final class Entry<K, V> {
+        private K key;
+        private V val;
+        private boolean onDisk;
+        private Node<K, V> child;
+
+        private Entry(K key, V val, Node<K, V> child) {
+            this.key = key;
+            this.val = val;
+            this.child = child;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V>[] newEntries(int length) {
+        return (Entry<K, V>[]) new Entry<?, ?>[length];
+    }
+
+    public BTreeImpl() {
+        this(DEFAULT_FAN_OUT, null);
+    }
+
+    public BTreeImpl(int fanOut) {
+        this(fanOut, null);
+    }
+
+    /**
+     * @param fanOut max number of entries per page; must be even and at least 4
+     * @param pageDir directory in which the tree makes a directory of its own to page cold leaves out to, or null
+     *                to keep every leaf on the heap. Other trees may share it.
+     */
+    public BTreeImpl(int fanOut, File pageDir) {
+        if (fanOut < 4 || fanOut % 2 != 0) {
+            throw new IllegalArgumentException("Fan-out must be an even number >= 4");
+        }
+        this.fanOut = fanOut;
+        try {
+            this.pageDir = pageDir != null ? new ScratchDirectory(pageDir, "btree") : null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to create page directory in: " + pageDir.getAbsolutePath(), e);
+        }
+        this.root = new Node<>(0, fanOut);
+        this.leftMostLeaf = this.root;
+    }
+
     @Override
     public Value get(Key k) {
-        Value val = this.map.get(k);
-        if (val == null) {
-            try {
-                val = this.pm.deserialize(k);
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Key, Value> leaf = findLeaf(k);
+        int i = indexOf(leaf, k);
+        try {
+            Value val;
+            if (i >= 0) {
+                Entry<Key, Value> e = leaf.entries[i];
+                if (e.val == null && e.onDisk) {
+                    loadFromDisk(leaf, e, k);
+                }
+                val = e.val;
+            } else {
+                // not in the tree, but may have been written to disk by an earlier run
+                val = this.pm != null ? this.pm.deserialize(k) : null;
                 if (val != null) {
-                    this.map.put(k, val);
+                    this.pm.delete(k);
+                    insert(k, val);
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
+            releaseIfCold(leaf);
+            return val;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return val;
     }
 
     @Override
     public Value put(Key k, Value v) {
-        Value existingVal = this.map.get(k);
-        if (existingVal == null) {
-            try {
-                existingVal = this.pm.deserialize(k);
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Key, Value> leaf = findLeaf(k);
+        int i = indexOf(leaf, k);
+        Value existingVal;
+        try {
+            if (i >= 0) {
+                Entry<Key, Value> e = leaf.entries[i];
+                existingVal = e.val;
+                if (existingVal == null && e.onDisk) {
+                    existingVal = this.pm.deserialize(k);
+                    this.pm.delete(k);
+                }
+            } else {
+                existingVal = this.pm != null ? this.pm.deserialize(k) : null;
                 if (existingVal != null) {
-                    this.map.put(k, existingVal);
+                    this.pm.delete(k);
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
 
-        if (v == null && existingVal != null) {
-            try {
-                this.pm.delete(k);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        if (v == null) {
+            if (i >= 0) {
+                removeFromLeaf(leaf, i);
+            }
+        } else if (i >= 0) {
+            Entry<Key, Value> e = leaf.entries[i];
+            if (e.val == null) {
+                leaf.residentCount++;
             }
+            e.val = v;
+            e.onDisk = false;
+        } else {
+            insert(k, v);
         }
+        try {
+            releaseIfCold(leaf);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return existingVal;
+    }
 
-        if (existingVal != null && v != null) {
-            try {
-                this.pm.delete(k);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    @Override
+    public void moveToDisk(Key k) throws IOException {
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Key, Value> leaf = findLeaf(k);
+        int i = indexOf(leaf, k);
+        if (i >= 0 && leaf.entries[i].val != null) {
+            Entry<Key, Value> e = leaf.entries[i];
+            this.pm.serialize(k, e.val);
+            e.val = null;
+            e.onDisk = true;
+            leaf.residentCount--;
         }
+        releaseIfCold(leaf);
+    }
 
-        return this.map.put(k, v);
+    @Override
+    public void moveAllToDisk(Collection<Key> keys) throws IOException {
+        Map<Key, Value> batch = new LinkedHashMap<>();
+        Set<Node<Key, Value>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Key k : keys) {
+            if (k == null) {
+                throw new IllegalArgumentException("Key cannot be null");
+            }
+            Node<Key, Value> leaf = findLeaf(k);
+            visited.add(leaf);
+            int i = indexOf(leaf, k);
+            if (i >= 0 && leaf.entries[i].val != null) {
+                batch.put(k, leaf.entries[i].val);
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.pm.serializeAll(batch);
+        }
+        // page out only once the whole batch is marked, so a later key doesn't page a leaf straight back in
+        for (Key k : batch.keySet()) {
+            Node<Key, Value> leaf = findLeaf(k);
+            Entry<Key, Value> e = leaf.entries[indexOf(leaf, k)];
+            e.val = null;
+            e.onDisk = true;
+            leaf.residentCount--;
+        }
+        for (Node<Key, Value> leaf : visited) {
+            releaseIfCold(leaf);
+        }
     }
 
     @Override
-    public void moveToDisk(Key k) throws IOException {
-        Value val = this.map.get(k);
-        if (val != null) {
-            this.pm.serialize(k, val);
-            this.map.put(k, null); // Set the value to null to indicate it's on disk
+    public boolean moveToMemory(Key k, Value v) throws IOException {
+        if (k == null || v == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        Node<Key, Value> leaf = findLeaf(k);
+        int i = indexOf(leaf, k);
+        if (i < 0 || !leaf.entries[i].onDisk) {
+            releaseIfCold(leaf);
+            return false;
         }
+        Entry<Key, Value> e = leaf.entries[i];
+        this.pm.delete(k);
+        e.val = v;
+        e.onDisk = false;
+        leaf.residentCount++;
+        return true;
     }
 
     @Override
     public void setPersistenceManager(PersistenceManager<Key, Value> pm) {
         this.pm = pm;
     }
+
+    @Override
+    public Iterator<Key> keys(Key from, Key to, boolean descending) {
+        if (from != null && to != null && less(to, from)) {
+            throw new IllegalArgumentException("Range start must not be greater than range end");
+        }
+        return new KeyCursor(from, to, descending);
+    }
+
+    @Override
+    public void bulkLoad(Iterator<Key> sortedKeys) throws IOException {
+        if (this.n != 0) {
+            throw new IllegalStateException("Bulk load requires an empty tree");
+        }
+        // a page holds at most fanOut - 1 entries, since reaching fanOut triggers a split
+        int fill = this.fanOut - 1;
+        List<Entry<Key, Value>> level = new ArrayList<>();
+        Node<Key, Value> leaf = null;
+        Key previousKey = null;
+        while (sortedKeys.hasNext()) {
+            Key k = sortedKeys.next();
+            if (k == null || (previousKey != null && !less(previousKey, k))) {
+                throw new IllegalArgumentException("Bulk load keys must be non-null and strictly ascending");
+            }
+            if (leaf == null || leaf.entryCount == fill) {
+                Node<Key, Value> newLeaf = new Node<>(0, this.fanOut);
+                if (leaf == null) {
+                    this.leftMostLeaf = newLeaf;
+                } else {
+                    leaf.next = newLeaf;
+                    newLeaf.previous = leaf;
+                    pageOut(leaf);
+                }
+                leaf = newLeaf;
+                level.add(new Entry<>(k, null, leaf));
+            }
+            Entry<Key, Value> e = new Entry<>(k, null, null);
+            e.onDisk = true;
+            leaf.entries[leaf.entryCount++] = e;
+            this.n++;
+            previousKey = k;
+        }
+        if (leaf == null) {
+            return;
+        }
+        pageOut(leaf);
+
+        // build each internal level from the first keys of the level below it
+        int h = 0;
+        while (level.size() > 1) {
+            List<Entry<Key, Value>> parents = new ArrayList<>();
+            Node<Key, Value> parent = null;
+            for (Entry<Key, Value> child : level) {
+                if (parent == null || parent.entryCount == fill) {
+                    parent = new Node<>(0, this.fanOut);
+                    parents.add(new Entry<>(child.key, null, parent));
+                }
+                parent.entries[parent.entryCount++] = child;
+            }
+            level = parents;
+            h++;
+        }
+        this.root = level.get(0).child;
+        this.height = h;
+        this.modCount++;
+    }
+
+    /**
+     * @return the number of keys in the tree, whether their values are in memory or on disk
+     */
+    public int size() {
+        return this.n;
+    }
+
+    /**
+     * @return the height of the tree; a tree with a single leaf has height 0
+     */
+    public int height() {
+        return this.height;
+    }
+
+    /**
+     * @return the directory of this tree's pages, or null if leaf paging is disabled
+     */
+    public File getPageDir() {
+        return this.pageDir != null ? this.pageDir.getDir() : null;
+    }
+
+    /**
+     * Delete the directory of this tree's pages. The tree must not be used after.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.pageDir != null) {
+            this.pageDir.close();
+        }
+    }
+
+    /**
+     * @return how many leaves are on the heap rather than paged out
+     */
+    public int residentLeafCount() {
+        int count = 0;
+        for (Node<Key, Value> leaf = this.leftMostLeaf; leaf != null; leaf = leaf.next) {
+            if (!leaf.isPagedOut()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void loadFromDisk(Node<Key, Value> leaf, Entry<Key, Value> e, Key k) throws IOException {
+        Value val = this.pm.deserialize(k);
+        this.pm.delete(k);
+        e.val = val;
+        e.onDisk = false;
+        if (val != null) {
+            leaf.residentCount++;
+        }
+    }
+
+    private Node<Key, Value> findLeaf(Key k) {
+        return pageIn(leafFor(k));
+    }
+
+    // the leaf whose range k falls in, paged out or not; internal nodes are never paged out
+    private Node<Key, Value> leafFor(Key k) {
+        Node<Key, Value> current = this.root;
+        for (int h = this.height; h > 0; h--) {
+            current = current.entries[childIndex(current, k)].child;
+        }
+        return current;
+    }
+
+    // index of the child whose subtree may contain k: the last entry whose key is <= k, or 0
+    private int childIndex(Node<Key, Value> node, Key k) {
+        int lo = 1;
+        int hi = node.entryCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (less(k, node.entries[mid].key)) {
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo - 1;
+    }
+
+    // index of k in the leaf, or -(insertion point) - 1 if it isn't there
+    private int indexOf(Node<Key, Value> leaf, Key k) {
+        int lo = 0;
+        int hi = leaf.entryCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = k.compareTo(leaf.entries[mid].key);
+            if (cmp < 0) {
+                hi = mid - 1;
+            } else if (cmp > 0) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private void insert(Key k, Value v) {
+        Node<Key, Value> newNode = insert(this.root, k, v, this.height);
+        this.n++;
+        if (newNode == null) {
+            return;
+        }
+        // split the root: the old root and the new node become the two children of a new root
+        Node<Key, Value> newRoot = new Node<>(2, this.fanOut);
+        newRoot.entries[0] = new Entry<>(firstKey(this.root), null, this.root);
+        newRoot.entries[1] = new Entry<>(firstKey(newNode), null, newNode);
+        this.root = newRoot;
+        this.height++;
+    }
+
+    /**
+     * @return null if no split happened, otherwise the new right-hand node created by the split
+     */
+    private Node<Key, Value> insert(Node<Key, Value> currentNode, Key k, Value v, int height) {
+        pageIn(currentNode);
+        Entry<Key, Value> newEntry;
+        int j;
+        if (height == 0) {
+            j = -(indexOf(currentNode, k) + 1);
+            newEntry = new Entry<>(k, v, null);
+            currentNode.residentCount++;
+            discardPage(currentNode);
+        } else {
+            j = childIndex(currentNode, k);
+            Node<Key, Value> newNode = insert(currentNode.entries[j].child, k, v, height - 1);
+            if (less(k, currentNode.entries[j].key)) {
+                // k is the new minimum of the leftmost subtree
+                currentNode.entries[j].key = k;
+            }
+            if (newNode == null) {
+                return null;
+            }
+            j++;
+            newEntry = new Entry<>(firstKey(newNode), null, newNode);
+        }
+        System.arraycopy(currentNode.entries, j, currentNode.entries, j + 1, currentNode.entryCount - j);
+        this.modCount++;
+        currentNode.entries[j] = newEntry;
+        currentNode.entryCount++;
+        if (currentNode.entryCount < this.fanOut) {
+            return null;
+        }
+        return split(currentNode, height);
+    }
+
+    private Node<Key, Value> split(Node<Key, Value> currentNode, int height) {
+        int half = this.fanOut / 2;
+        Node<Key, Value> newNode = new Node<>(half, this.fanOut);
+        currentNode.entryCount = half;
+        for (int j = 0; j < half; j++) {
+            newNode.entries[j] = currentNode.entries[half + j];
+            currentNode.entries[half + j] = null;
+        }
+        if (height == 0) {
+            int moved = 0;
+            for (int j = 0; j < half; j++) {
+                if (newNode.entries[j].val != null) {
+                    moved++;
+                }
+            }
+            newNode.residentCount = moved;
+            currentNode.residentCount -= moved;
+            newNode.next = currentNode.next;
+            if (newNode.next != null) {
+                newNode.next.previous = newNode;
+            }
+            newNode.previous = currentNode;
+            currentNode.next = newNode;
+        }
+        return newNode;
+    }
+
+    // leaves are never merged; an emptied leaf stays linked and is skipped by scans
+    private void removeFromLeaf(Node<Key, Value> leaf, int i) {
+        if (leaf.entries[i].val != null) {
+            leaf.residentCount--;
+        }
+        discardPage(leaf);
+        System.arraycopy(leaf.entries, i + 1, leaf.entries, i, leaf.entryCount - i - 1);
+        leaf.entries[--leaf.entryCount] = null;
+        this.n--;
+        this.modCount++;
+    }
+
+    // paged out or not, like leafFor
+    private Node<Key, Value> rightMostLeaf() {
+        Node<Key, Value> current = this.root;
+        for (int h = this.height; h > 0; h--) {
+            current = current.entries[current.entryCount - 1].child;
+        }
+        return current;
+    }
+
+    private Key firstKey(Node<Key, Value> node) {
+        return pageIn(node).entries[0].key;
+    }
+
+    private boolean less(Key k1, Key k2) {
+        return k1.compareTo(k2) < 0;
+    }
+
+    /**
+     * Walks the linked leaves one entry at a time, over a copy of the current leaf's keys, which for a paged out
+     * leaf are read from its page without paging it in. If the tree is modified while the cursor is open,
+     * the cursor finds its place again from the last key it returned.
+     */
+    private final class KeyCursor implements Iterator<Key> {
+        private final Key from;
+        private final Key to;
+        private final boolean descending;
+        private Node<Key, Value> leaf;
+        private Key[] keys; // of the current leaf
+        private int index;
+        private Key lastKey;
+        private Key nextKey;
+        private long expectedModCount;
+
+        private KeyCursor(Key from, Key to, boolean descending) {
+            this.from = from;
+            this.to = to;
+            this.descending = descending;
+            position();
+        }
+
+        @Override
+        public boolean hasNext() {
+            revalidate();
+            return this.nextKey != null;
+        }
+
+        @Override
+        public Key next() {
+            revalidate();
+            if (this.nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            this.lastKey = this.nextKey;
+            advance();
+            return this.lastKey;
+        }
+
+        private void position() {
+            Key start = this.descending ? this.to : this.from;
+            if (this.lastKey != null) {
+                seek(this.lastKey, false);
+            } else if (start != null) {
+                seek(start, true);
+            } else {
+                load(this.descending ? rightMostLeaf() : leftMostLeaf);
+                this.index = this.descending ? this.keys.length - 1 : 0;
+            }
+            this.expectedModCount = modCount;
+            advance();
+        }
+
+        private void revalidate() {
+            if (this.expectedModCount != modCount) {
+                position();
+            }
+        }
+
+        // position on the first entry at (or past, if not inclusive) k in the direction of travel
+        private void seek(Key k, boolean inclusive) {
+            load(leafFor(k));
+            int i = Arrays.binarySearch(this.keys, k);
+            if (this.descending) {
+                this.index = i >= 0 ? (inclusive ? i : i - 1) : -(i + 1) - 1;
+            } else {
+                this.index = i >= 0 ? (inclusive ? i : i + 1) : -(i + 1);
+            }
+        }
+
+        private void load(Node<Key, Value> leaf) {
+            this.leaf = leaf;
+            this.keys = keysOf(leaf);
+        }
+
+        private void advance() {
+            this.nextKey = null;
+            while (this.leaf != null) {
+                if (!this.descending && this.index < this.keys.length) {
+                    Key k = this.keys[this.index++];
+                    if (this.to == null || !less(this.to, k)) {
+                        this.nextKey = k;
+                    }
+                    return;
+                }
+                if (this.descending && this.index >= 0 && this.index < this.keys.length) {
+                    Key k = this.keys[this.index--];
+                    if (this.from == null || !less(k, this.from)) {
+                        this.nextKey = k;
+                    }
+                    return;
+                }
+                Node<Key, Value> following = this.descending ? this.leaf.previous : this.leaf.next;
+                this.leaf = null;
+                if (following != null) {
+                    load(following);
+                    this.index = this.descending ? this.keys.length - 1 : 0;
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- leaf paging
+
+    // a leaf whose values are all on disk is only worth its stub
+    private void releaseIfCold(Node<Key, Value> leaf) throws IOException {
+        if (!leaf.isPagedOut() && leaf.residentCount == 0) {
+            pageOut(leaf);
+        }
+    }
+
+    private void pageOut(Node<Key, Value> leaf) throws IOException {
+        if (this.pageDir == null || leaf.entryCount == 0) {
+            return;
+        }
+        if (leaf.pageId >= 0) {
+            leaf.entries = null; // its page is still current
+            return;
+        }
+        for (int i = 0; i < leaf.entryCount; i++) {
+            if (!(leaf.entries[i].key instanceof Serializable)) {
+                return; // keys can't be written to a page, so the leaf stays on the heap
+            }
+        }
+        long pageId = this.nextPageId++;
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(pageFile(pageId))))) {
+            out.writeInt(leaf.entryCount);
+            for (int i = 0; i < leaf.entryCount; i++) {
+                out.writeObject(leaf.entries[i].key);
+            }
+        }
+        leaf.pageId = pageId;
+        leaf.entries = null;
+    }
+
+    // the page file is kept, so the leaf can be paged out again for free until its keys change
+    private Node<Key, Value> pageIn(Node<Key, Value> node) {
+        if (!node.isPagedOut()) {
+            return node;
+        }
+        Key[] keys = readPage(node);
+        Entry<Key, Value>[] entries = newEntries(this.fanOut);
+        for (int i = 0; i < keys.length; i++) {
+            entries[i] = new Entry<>(keys[i], null, null);
+            entries[i].onDisk = true;
+        }
+        node.entries = entries;
+        node.entryCount = keys.length;
+        node.residentCount = 0;
+        return node;
+    }
+
+    private Key[] keysOf(Node<Key, Value> leaf) {
+        if (leaf.isPagedOut()) {
+            return readPage(leaf);
+        }
+        Key[] keys = newKeys(leaf.entryCount);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = leaf.entries[i].key;
+        }
+        return keys;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key[] readPage(Node<Key, Value> leaf) {
+        File file = pageFile(leaf.pageId);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Key[] keys = newKeys(in.readInt());
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = (Key) in.readObject();
+            }
+            return keys;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Failed to read B-tree page " + file.getAbsolutePath(), e);
+        }
+    }
+
+    // called before a resident leaf's keys change
+    private void discardPage(Node<Key, Value> leaf) {
+        if (leaf.pageId >= 0) {
+            pageFile(leaf.pageId).delete();
+            leaf.pageId = -1;
+        }
+    }
+
+    // Key's erasure is Comparable, so an array of those can stand in for a Key[]
+    @SuppressWarnings("unchecked")
+    private Key[] newKeys(int length) {
+        return (Key[]) new Comparable<?>[length];
+    }
+
+    private File pageFile(long pageId) {
+        return new File(this.pageDir.getDir(), pageId + ".page");
+    }
 }
@@ -0,0 +1,79 @@
+package edu.yu.cs.com1320.project.impl;
+
+/**
+ * Fixed-size Bloom filter over 64-bit key hashes. mightContain never returns false for a hash that was added,
+ * and returns true for a hash that wasn't added with roughly the false positive rate given at construction,
+ * as long as no more than the expected number of hashes were added.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private final int capacity;
+    private int count;
+
+    /**
+     * @param expectedInsertions number of hashes the filter is sized for
+     * @param falsePositiveRate target false positive rate once expectedInsertions hashes have been added
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Need at least one expected insertion and a rate between 0 and 1");
+        }
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = Math.max(64, m);
+        this.bits = new long[(int) ((this.numBits + 63) / 64)];
+        this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / expectedInsertions * Math.log(2)));
+        this.capacity = expectedInsertions;
+    }
+
+    public void add(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, this.numBits);
+            this.bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        this.count++;
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, this.numBits);
+            if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true once more hashes were added than the filter was sized for, i.e. it's time to build a bigger one
+     */
+    public boolean isOverCapacity() {
+        return this.count > this.capacity;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 64-bit FNV-1a with a final avalanche step, so the same string hashes the same way in every run
+     */
+    public static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
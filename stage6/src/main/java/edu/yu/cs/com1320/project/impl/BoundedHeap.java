@@ -0,0 +1,53 @@
+package edu.yu.cs.com1320.project.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the greatest elements offered to it, up to a capacity, in a min-heap: an element only gets in by
+ * displacing the smallest one kept. Picking the top k of m elements this way takes O(m log k) time and O(k)
+ * space, instead of sorting all m.
+ */
+public class BoundedHeap<E> {
+    private final int capacity;
+    private final Comparator<? super E> comparator;
+    private final PriorityQueue<E> heap; // smallest kept element at the head
+
+    public BoundedHeap(int capacity, Comparator<? super E> comparator) {
+        if (capacity < 0 || comparator == null) {
+            throw new IllegalArgumentException("Capacity must not be negative, and comparator must not be null");
+        }
+        this.capacity = capacity;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), comparator);
+    }
+
+    /**
+     * @return whether the element was kept
+     */
+    public boolean offer(E element) {
+        if (this.heap.size() < this.capacity) {
+            return this.heap.add(element);
+        }
+        if (this.capacity == 0 || this.comparator.compare(element, this.heap.peek()) <= 0) {
+            return false;
+        }
+        this.heap.poll();
+        return this.heap.add(element);
+    }
+
+    public int size() {
+        return this.heap.size();
+    }
+
+    /**
+     * @return the kept elements, greatest first
+     */
+    public List<E> toSortedList() {
+        List<E> sorted = new ArrayList<>(this.heap);
+        sorted.sort(this.comparator.reversed());
+        return sorted;
+    }
+}
@@ -0,0 +1,705 @@
+package edu.yu.cs.com1320.project.impl;
+
+import edu.yu.cs.com1320.project.BTree;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * B-link tree (Lehman and Yao) that is safe to use from many threads at once.
+ * <p>
+ * Every node covers the key range [lowKey, highKey) and links to its right sibling. A node's contents are an
+ * immutable snapshot that writers replace in a single volatile write, so readers never take a latch: a get that
+ * lands on a node which has split since the reader left its parent just follows the right link.
+ * Writers latch one node at a time: the leaf they change, and after a split the parent they add the new
+ * separator to. Values that were moved to disk are brought back under the leaf's latch, so two threads never
+ * load the same value twice.
+ * <p>
+ * Leaves are never paged out and are never merged.
+ */
+public class ConcurrentBTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key, Value> {
+    private static final int DEFAULT_FAN_OUT = 64;
+    private final int fanOut;
+    private final ReentrantLock rootLatch = new ReentrantLock();
+    private final AtomicInteger n = new AtomicInteger();
+    private volatile Node<Key, Value> root;
+    private volatile PersistenceManager<Key, Value> pm;
+
+    private static final class Node<K extends Comparable<K>, V> {
+        private final int level; // 0 for leaves
+        private final ReentrantLock latch = new ReentrantLock();
+        private volatile Contents<K, V> contents;
+
+        private Node(int level, Contents<K, V> contents) {
+            this.level = level;
+            this.contents = contents;
+        }
+    }
+
+    // immutable once published. leaves use values and onDisk; internal nodes use children, where
+    // children[i] covers [keys[i], keys[i + 1]) and keys[0] is the node's lowKey
+    private static final class Contents<K extends Comparable<K>, V> {
+        private final K[] keys;
+        private final V[] values;
+        private final boolean[] onDisk;
+        private final Node<K, V>[] children;
+        private final K lowKey; // inclusive, null for no lower bound
+        private final K highKey; // exclusive, null for no upper bound
+        private final Node<K, V> right;
+
+        private Contents(K[] keys, V[] values, boolean[] onDisk, Node<K, V>[] children,
+                         K lowKey, K highKey, Node<K, V> right) {
+            this.keys = keys;
+            this.values = values;
+            this.onDisk = onDisk;
+            this.children = children;
+            this.lowKey = lowKey;
+            this.highKey = highKey;
+            this.right = right;
+        }
+
+        private boolean covers(K k) {
+            return this.highKey == null || k.compareTo(this.highKey) < 0;
+        }
+    }
+
+    public ConcurrentBTreeImpl() {
+        this(DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * @param fanOut max number of entries per node; must be at least 4
+     */
+    public ConcurrentBTreeImpl(int fanOut) {
+        if (fanOut < 4) {
+            throw new IllegalArgumentException("Fan-out must be >= 4");
+        }
+        this.fanOut = fanOut;
+        this.root = new Node<>(0, new Contents<>(newKeys(0), newValues(0), new boolean[0], null, null, null, null));
+    }
+
+    @Override
+    public Value get(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Key, Value> leaf = findLeaf(k, null);
+        Contents<Key, Value> c = leaf.contents;
+        int i = Arrays.binarySearch(c.keys, k);
+        if (i >= 0 && c.values[i] != null) {
+            return c.values[i];
+        }
+        if (i >= 0) {
+            return loadFromDisk(leaf, k);
+        }
+        // not in the tree, but may have been written to disk by an earlier run
+        try {
+            Value val = this.pm != null ? this.pm.deserialize(k) : null;
+            if (val == null) {
+                return null;
+            }
+            Value winner = insertIfAbsent(k, val);
+            if (winner == val) {
+                this.pm.delete(k);
+            }
+            return winner;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Value put(Key k, Value v) {
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Deque<Node<Key, Value>> path = new ArrayDeque<>();
+        Node<Key, Value> leaf = findLeaf(k, path);
+        Value probed = null;
+        if (Arrays.binarySearch(leaf.contents.keys, k) < 0 && this.pm != null) {
+            // probe for a value left on disk by an earlier run before taking the latch
+            try {
+                probed = this.pm.deserialize(k);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        leaf = latchCovering(leaf, k);
+        Node<Key, Value> split = null;
+        Value existingVal;
+        try {
+            Contents<Key, Value> c = leaf.contents;
+            int i = Arrays.binarySearch(c.keys, k);
+            if (i >= 0) {
+                existingVal = c.values[i];
+                if (existingVal == null && c.onDisk[i]) {
+                    existingVal = this.pm.deserialize(k);
+                    this.pm.delete(k);
+                }
+                if (v == null) {
+                    leaf.contents = removeAt(c, i);
+                    this.n.decrementAndGet();
+                } else {
+                    leaf.contents = withValue(c, i, v, false);
+                }
+            } else {
+                existingVal = probed;
+                if (probed != null) {
+                    this.pm.delete(k);
+                }
+                if (v != null) {
+                    split = insertIntoLeaf(leaf, -(i + 1), k, v);
+                    this.n.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            leaf.latch.unlock();
+        }
+        if (split != null) {
+            insertIntoParent(leaf, split, path);
+        }
+        return existingVal;
+    }
+
+    @Override
+    public void moveToDisk(Key k) throws IOException {
+        if (k == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Node<Key, Value> leaf = latchCovering(findLeaf(k, null), k);
+        try {
+            Contents<Key, Value> c = leaf.contents;
+            int i = Arrays.binarySearch(c.keys, k);
+            if (i < 0 || c.values[i] == null) {
+                return;
+            }
+            this.pm.serialize(k, c.values[i]);
+            leaf.contents = withValue(c, i, null, true);
+        } finally {
+            leaf.latch.unlock();
+        }
+    }
+
+    // the leaves stay latched for the whole batch, so no value can change between being written and being dropped.
+    // They are latched left to right, one key at a time, which can't deadlock with a writer latching one node.
+    @Override
+    public void moveAllToDisk(Collection<Key> keys) throws IOException {
+        List<Key> sorted = new ArrayList<>(keys);
+        for (Key k : sorted) {
+            if (k == null) {
+                throw new IllegalArgumentException("Key cannot be null");
+            }
+        }
+        Collections.sort(sorted);
+        List<Node<Key, Value>> latched = new ArrayList<>();
+        try {
+            Map<Key, Value> batch = new LinkedHashMap<>();
+            List<Node<Key, Value>> leaves = new ArrayList<>();
+            for (Key k : sorted) {
+                Node<Key, Value> leaf = latchCovering(findLeaf(k, null), k);
+                latched.add(leaf);
+                Contents<Key, Value> c = leaf.contents;
+                int i = Arrays.binarySearch(c.keys, k);
+                if (i >= 0 && c.values[i] != null && batch.put(k, c.values[i]) == null) {
+                    leaves.add(leaf);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            this.pm.serializeAll(batch);
+            Iterator<Node<Key, Value>> leaf = leaves.iterator();
+            for (Key k : batch.keySet()) {
+                Node<Key, Value> node = leaf.next();
+                Contents<Key, Value> c = node.contents;
+                node.contents = withValue(c, Arrays.binarySearch(c.keys, k), null, true);
+            }
+        } finally {
+            for (Node<Key, Value> leaf : latched) {
+                leaf.latch.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean moveToMemory(Key k, Value v) throws IOException {
+        if (k == null || v == null) {
+            throw new IllegalArgumentException("Key and value cannot be null");
+        }
+        Node<Key, Value> leaf = latchCovering(findLeaf(k, null), k);
+        try {
+            Contents<Key, Value> c = leaf.contents;
+            int i = Arrays.binarySearch(c.keys, k);
+            if (i < 0 || c.values[i] != null || !c.onDisk[i]) {
+                return false;
+            }
+            this.pm.delete(k);
+            leaf.contents = withValue(c, i, v, false);
+            return true;
+        } finally {
+            leaf.latch.unlock();
+        }
+    }
+
+    @Override
+    public void setPersistenceManager(PersistenceManager<Key, Value> pm) {
+        this.pm = pm;
+    }
+
+    @Override
+    public Iterator<Key> keys(Key from, Key to, boolean descending) {
+        if (from != null && to != null && to.compareTo(from) < 0) {
+            throw new IllegalArgumentException("Range start must not be greater than range end");
+        }
+        return new KeyCursor(from, to, descending);
+    }
+
+    @Override
+    public void bulkLoad(Iterator<Key> sortedKeys) {
+        this.rootLatch.lock();
+        try {
+            if (this.n.get() != 0) {
+                throw new IllegalStateException("Bulk load requires an empty tree");
+            }
+            int fill = this.fanOut - 1;
+            List<Key> allKeys = new ArrayList<>();
+            Key previousKey = null;
+            while (sortedKeys.hasNext()) {
+                Key k = sortedKeys.next();
+                if (k == null || (previousKey != null && previousKey.compareTo(k) >= 0)) {
+                    throw new IllegalArgumentException("Bulk load keys must be non-null and strictly ascending");
+                }
+                allKeys.add(k);
+                previousKey = k;
+            }
+            if (allKeys.isEmpty()) {
+                return;
+            }
+            // leaves, built right to left so each one can link to the node after it
+            List<Node<Key, Value>> level = new ArrayList<>();
+            List<Key> lowKeys = new ArrayList<>();
+            int leafCount = (allKeys.size() + fill - 1) / fill;
+            Node<Key, Value>[] leaves = newNodes(leafCount);
+            Node<Key, Value> right = null;
+            for (int l = leafCount - 1; l >= 0; l--) {
+                int start = l * fill;
+                int end = Math.min(start + fill, allKeys.size());
+                Key[] keys = allKeys.subList(start, end).toArray(newKeys(0));
+                boolean[] onDisk = new boolean[keys.length];
+                Arrays.fill(onDisk, true);
+                Key low = l == 0 ? null : keys[0];
+                Key high = right == null ? null : right.contents.lowKey;
+                leaves[l] = new Node<>(0, new Contents<>(keys, newValues(keys.length), onDisk, null, low, high, right));
+                right = leaves[l];
+            }
+            for (Node<Key, Value> leaf : leaves) {
+                level.add(leaf);
+                lowKeys.add(leaf.contents.lowKey);
+            }
+            int height = 0;
+            while (level.size() > 1) {
+                height++;
+                int parentCount = (level.size() + fill - 1) / fill;
+                Node<Key, Value>[] parents = newNodes(parentCount);
+                right = null;
+                for (int p = parentCount - 1; p >= 0; p--) {
+                    int start = p * fill;
+                    int end = Math.min(start + fill, level.size());
+                    Key[] keys = lowKeys.subList(start, end).toArray(newKeys(0));
+                    Node<Key, Value>[] children = level.subList(start, end).toArray(newNodes(0));
+                    Key high = right == null ? null : right.contents.lowKey;
+                    parents[p] = new Node<>(height, new Contents<>(keys, null, null, children, keys[0], high, right));
+                    right = parents[p];
+                }
+                level = Arrays.asList(parents);
+                List<Key> parentLowKeys = new ArrayList<>();
+                for (Node<Key, Value> parent : parents) {
+                    parentLowKeys.add(parent.contents.lowKey);
+                }
+                lowKeys = parentLowKeys;
+            }
+            this.n.set(allKeys.size());
+            this.root = level.get(0);
+        } finally {
+            this.rootLatch.unlock();
+        }
+    }
+
+    /**
+     * @return the number of keys in the tree, whether their values are in memory or on disk
+     */
+    public int size() {
+        return this.n.get();
+    }
+
+    /**
+     * @return the height of the tree; a tree with a single leaf has height 0
+     */
+    public int height() {
+        return this.root.level;
+    }
+
+    private Value loadFromDisk(Node<Key, Value> leaf, Key k) {
+        leaf = latchCovering(leaf, k);
+        try {
+            Contents<Key, Value> c = leaf.contents;
+            int i = Arrays.binarySearch(c.keys, k);
+            if (i < 0) {
+                return null; // deleted while we waited for the latch
+            }
+            if (c.values[i] != null || !c.onDisk[i]) {
+                return c.values[i]; // another thread already loaded it
+            }
+            Value val = this.pm.deserialize(k);
+            this.pm.delete(k);
+            leaf.contents = withValue(c, i, val, false);
+            return val;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            leaf.latch.unlock();
+        }
+    }
+
+    /**
+     * @return the value in the tree once this call returns: v if k was absent, otherwise whatever was already there
+     */
+    private Value insertIfAbsent(Key k, Value v) {
+        Deque<Node<Key, Value>> path = new ArrayDeque<>();
+        Node<Key, Value> leaf = latchCovering(findLeaf(k, path), k);
+        Node<Key, Value> split;
+        try {
+            Contents<Key, Value> c = leaf.contents;
+            int i = Arrays.binarySearch(c.keys, k);
+            if (i >= 0) {
+                return c.values[i];
+            }
+            split = insertIntoLeaf(leaf, -(i + 1), k, v);
+            this.n.incrementAndGet();
+        } finally {
+            leaf.latch.unlock();
+        }
+        if (split != null) {
+            insertIntoParent(leaf, split, path);
+        }
+        return v;
+    }
+
+    // latch-free descent; if path is not null, the internal nodes visited are pushed onto it
+    private Node<Key, Value> findLeaf(Key k, Deque<Node<Key, Value>> path) {
+        Node<Key, Value> current = this.root;
+        while (true) {
+            Contents<Key, Value> c = current.contents;
+            if (!c.covers(k)) {
+                current = c.right;
+                continue;
+            }
+            if (current.level == 0) {
+                return current;
+            }
+            if (path != null) {
+                path.push(current);
+            }
+            current = c.children[route(c, k)];
+        }
+    }
+
+    // last child whose low key is <= k
+    private int route(Contents<Key, Value> c, Key k) {
+        int lo = 1;
+        int hi = c.keys.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (k.compareTo(c.keys[mid]) < 0) {
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo - 1;
+    }
+
+    // latch the node covering k, starting at the given node and moving right past any splits
+    private Node<Key, Value> latchCovering(Node<Key, Value> node, Key k) {
+        node.latch.lock();
+        while (!node.contents.covers(k)) {
+            Node<Key, Value> right = node.contents.right;
+            node.latch.unlock();
+            node = right;
+            node.latch.lock();
+        }
+        return node;
+    }
+
+    /**
+     * must hold the leaf's latch
+     * @return the new right sibling if the leaf split, otherwise null
+     */
+    private Node<Key, Value> insertIntoLeaf(Node<Key, Value> leaf, int at, Key k, Value v) {
+        Contents<Key, Value> c = leaf.contents;
+        int size = c.keys.length + 1;
+        Key[] keys = insert(c.keys, at, k, newKeys(size));
+        Value[] values = insert(c.values, at, v, newValues(size));
+        boolean[] onDisk = new boolean[size];
+        System.arraycopy(c.onDisk, 0, onDisk, 0, at);
+        System.arraycopy(c.onDisk, at, onDisk, at + 1, c.onDisk.length - at);
+        if (size < this.fanOut) {
+            leaf.contents = new Contents<>(keys, values, onDisk, null, c.lowKey, c.highKey, c.right);
+            return null;
+        }
+        int half = size / 2;
+        Key separator = keys[half];
+        Node<Key, Value> right = new Node<>(0, new Contents<>(Arrays.copyOfRange(keys, half, size), Arrays.copyOfRange(values, half, size),
+                Arrays.copyOfRange(onDisk, half, size), null, separator, c.highKey, c.right));
+        leaf.contents = new Contents<>(Arrays.copyOf(keys, half), Arrays.copyOf(values, half), Arrays.copyOf(onDisk, half),
+                null, c.lowKey, separator, right);
+        return right;
+    }
+
+    /**
+     * Add the separator for a node created by a split to the parent of the node that split.
+     * No latch may be held by the caller.
+     */
+    private void insertIntoParent(Node<Key, Value> left, Node<Key, Value> right, Deque<Node<Key, Value>> path) {
+        while (right != null) {
+            Key separator = right.contents.lowKey;
+            Node<Key, Value> parent = path.isEmpty() ? null : path.pop();
+            if (parent == null) {
+                parent = parentLevel(left, right);
+                if (parent == null) {
+                    return; // the tree grew a new root above left and right
+                }
+            }
+            parent = latchCovering(parent, separator);
+            Node<Key, Value> split;
+            try {
+                Contents<Key, Value> c = parent.contents;
+                int at = route(c, separator) + 1;
+                int size = c.keys.length + 1;
+                Key[] keys = insert(c.keys, at, separator, newKeys(size));
+                Node<Key, Value>[] children = insert(c.children, at, right, newNodes(size));
+                if (size < this.fanOut) {
+                    parent.contents = new Contents<>(keys, null, null, children, c.lowKey, c.highKey, c.right);
+                    split = null;
+                } else {
+                    int half = size / 2;
+                    split = new Node<>(parent.level, new Contents<>(Arrays.copyOfRange(keys, half, size), null, null,
+                            Arrays.copyOfRange(children, half, size), keys[half], c.highKey, c.right));
+                    parent.contents = new Contents<>(Arrays.copyOf(keys, half), null, null, Arrays.copyOf(children, half),
+                            c.lowKey, keys[half], split);
+                }
+            } finally {
+                parent.latch.unlock();
+            }
+            left = parent;
+            right = split;
+        }
+    }
+
+    /**
+     * The path recorded on the way down ran out, so left was the root when we started.
+     * Either make a new root over left and right, or find the level above left in the current tree.
+     * @return null if a new root was made, otherwise a node on the level above left
+     */
+    private Node<Key, Value> parentLevel(Node<Key, Value> left, Node<Key, Value> right) {
+        this.rootLatch.lock();
+        try {
+            if (this.root == left) {
+                Key[] keys = newKeys(2);
+                keys[0] = left.contents.lowKey;
+                keys[1] = right.contents.lowKey;
+                Node<Key, Value>[] children = newNodes(2);
+                children[0] = left;
+                children[1] = right;
+                this.root = new Node<>(left.level + 1, new Contents<>(keys, null, null, children, null, null, null));
+                return null;
+            }
+        } finally {
+            this.rootLatch.unlock();
+        }
+        Node<Key, Value> current = this.root;
+        Key separator = right.contents.lowKey;
+        while (current.level > left.level + 1) {
+            Contents<Key, Value> c = current.contents;
+            current = c.covers(separator) ? c.children[route(c, separator)] : c.right;
+        }
+        return current;
+    }
+
+    private Contents<Key, Value> withValue(Contents<Key, Value> c, int i, Value v, boolean onDisk) {
+        Value[] values = c.values.clone();
+        boolean[] flags = c.onDisk.clone();
+        values[i] = v;
+        flags[i] = onDisk;
+        return new Contents<>(c.keys, values, flags, null, c.lowKey, c.highKey, c.right);
+    }
+
+    private Contents<Key, Value> removeAt(Contents<Key, Value> c, int i) {
+        int size = c.keys.length - 1;
+        Key[] keys = newKeys(size);
+        Value[] values = newValues(size);
+        boolean[] onDisk = new boolean[size];
+        System.arraycopy(c.keys, 0, keys, 0, i);
+        System.arraycopy(c.keys, i + 1, keys, i, size - i);
+        System.arraycopy(c.values, 0, values, 0, i);
+        System.arraycopy(c.values, i + 1, values, i, size - i);
+        System.arraycopy(c.onDisk, 0, onDisk, 0, i);
+        System.arraycopy(c.onDisk, i + 1, onDisk, i, size - i);
+        return new Contents<>(keys, values, onDisk, null, c.lowKey, c.highKey, c.right);
+    }
+
+    // Key's erasure is Comparable, so an array of those can stand in for a Key[]
+    @SuppressWarnings("unchecked")
+    private Key[] newKeys(int length) {
+        return (Key[]) new Comparable<?>[length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Value[] newValues(int length) {
+        return (Value[]) new Object[length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<Key, Value>[] newNodes(int length) {
+        return (Node<Key, Value>[]) new Node<?, ?>[length];
+    }
+
+    private static <T> T[] insert(T[] source, int at, T element, T[] target) {
+        System.arraycopy(source, 0, target, 0, at);
+        target[at] = element;
+        System.arraycopy(source, at, target, at + 1, source.length - at);
+        return target;
+    }
+
+    /**
+     * Weakly consistent cursor: it reads one leaf snapshot at a time, so it never returns a key twice or out of
+     * order, but may miss keys inserted after it has passed their leaf.
+     */
+    private final class KeyCursor implements Iterator<Key> {
+        private final Key from;
+        private final Key to;
+        private final boolean descending;
+        private Contents<Key, Value> leaf;
+        private int index;
+        private Key nextKey;
+
+        private KeyCursor(Key from, Key to, boolean descending) {
+            this.from = from;
+            this.to = to;
+            this.descending = descending;
+            if (descending) {
+                this.leaf = this.to == null ? rightMostLeaf() : findLeaf(this.to, null).contents;
+                int i = this.to == null ? -(this.leaf.keys.length + 1) : Arrays.binarySearch(this.leaf.keys, this.to);
+                this.index = i >= 0 ? i : -(i + 1) - 1;
+            } else {
+                this.leaf = this.from == null ? leftMostLeaf() : findLeaf(this.from, null).contents;
+                int i = this.from == null ? -1 : Arrays.binarySearch(this.leaf.keys, this.from);
+                this.index = i >= 0 ? i : -(i + 1);
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextKey != null;
+        }
+
+        @Override
+        public Key next() {
+            if (this.nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            Key k = this.nextKey;
+            advance();
+            return k;
+        }
+
+        private void advance() {
+            this.nextKey = null;
+            while (this.leaf != null) {
+                if (!this.descending && this.index < this.leaf.keys.length) {
+                    Key k = this.leaf.keys[this.index++];
+                    if (this.to == null || k.compareTo(this.to) <= 0) {
+                        this.nextKey = k;
+                    }
+                    return;
+                }
+                if (this.descending && this.index >= 0) {
+                    Key k = this.leaf.keys[this.index--];
+                    if (this.from == null || k.compareTo(this.from) >= 0) {
+                        this.nextKey = k;
+                    }
+                    return;
+                }
+                if (!this.descending) {
+                    this.leaf = this.leaf.right == null ? null : this.leaf.right.contents;
+                    this.index = 0;
+                } else if (this.leaf.lowKey == null) {
+                    this.leaf = null;
+                } else {
+                    Key bound = this.leaf.lowKey;
+                    this.leaf = leafBelow(bound);
+                    int i = Arrays.binarySearch(this.leaf.keys, bound);
+                    this.index = (i >= 0 ? i : -(i + 1)) - 1;
+                }
+            }
+        }
+    }
+
+    // the leaf holding the greatest key strictly less than k
+    private Contents<Key, Value> leafBelow(Key k) {
+        Node<Key, Value> current = this.root;
+        while (true) {
+            Contents<Key, Value> c = current.contents;
+            if (c.highKey != null && c.highKey.compareTo(k) < 0) {
+                current = c.right;
+                continue;
+            }
+            if (current.level == 0) {
+                return c;
+            }
+            int i = route(c, k);
+            if (i > 0 && c.keys[i].compareTo(k) == 0) {
+                i--;
+            }
+            current = c.children[i];
+        }
+    }
+
+    private Contents<Key, Value> leftMostLeaf() {
+        Node<Key, Value> current = this.root;
+        while (current.level > 0) {
+            current = current.contents.children[0];
+        }
+        return current.contents;
+    }
+
+    private Contents<Key, Value> rightMostLeaf() {
+        Node<Key, Value> current = this.root;
+        while (true) {
+            Contents<Key, Value> c = current.contents;
+            if (c.right != null) {
+                current = c.right;
+            } else if (current.level > 0) {
+                current = c.children[c.children.length - 1];
+            } else {
+                return c;
+            }
+        }
+    }
+}
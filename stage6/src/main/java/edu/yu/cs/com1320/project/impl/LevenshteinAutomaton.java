@@ -0,0 +1,61 @@
+package edu.yu.cs.com1320.project.impl;
+
+import edu.yu.cs.com1320.project.Automaton;
+
+/**
+ * Accepts the keys within a few edits (inserted, deleted or replaced characters) of a word. A state is the row of
+ * the edit distance table for the characters read so far: how many edits turn them into each prefix of the word.
+ * Once every entry of the row is over the limit no key going on that way can be accepted, so a trie prunes there;
+ * a walk for a short word within two edits visits only a small part of a large vocabulary.
+ */
+public class LevenshteinAutomaton implements Automaton<int[]> {
+    public static final int MAX_EDITS = 2;
+
+    private final int[] word; // code points
+    private final int maxEdits;
+
+    /**
+     * @throws IllegalArgumentException if the word is null, or maxEdits is negative or over MAX_EDITS
+     */
+    public LevenshteinAutomaton(String word, int maxEdits) {
+        if (word == null || maxEdits < 0 || maxEdits > MAX_EDITS) {
+            throw new IllegalArgumentException("Word must not be null, and edits must be from 0 to " + MAX_EDITS);
+        }
+        this.word = word.codePoints().toArray();
+        this.maxEdits = maxEdits;
+    }
+
+    @Override
+    public int[] start() {
+        int[] row = new int[this.word.length + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        return row;
+    }
+
+    @Override
+    public int[] step(int[] row, int codePoint) {
+        int[] next = new int[row.length];
+        next[0] = row[0] + 1;
+        int best = next[0];
+        for (int i = 1; i < row.length; i++) {
+            int replace = row[i - 1] + (this.word[i - 1] == codePoint ? 0 : 1);
+            next[i] = Math.min(replace, Math.min(row[i], next[i - 1]) + 1);
+            best = Math.min(best, next[i]);
+        }
+        return best <= this.maxEdits ? next : null;
+    }
+
+    @Override
+    public boolean isAccepting(int[] row) {
+        return distance(row) <= this.maxEdits;
+    }
+
+    /**
+     * @return how many edits the characters read to reach the state are from the word
+     */
+    public int distance(int[] row) {
+        return row[row.length - 1];
+    }
+}
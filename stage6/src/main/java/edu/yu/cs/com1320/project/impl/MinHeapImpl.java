@@ -2,8 +2,18 @@ package edu.yu.cs.com1320.project.impl;
 
 import edu.yu.cs.com1320.project.MinHeap;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 
 public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
+    // where each element is in the array, kept up to date by every swap, so finding an element to reheapify or
+    // remove takes constant time instead of a scan of the heap. Elements are told apart by identity: a document's
+    // hashCode hashes its whole body, which every swap would otherwise pay for twice, so the element passed to
+    // reHeapify, remove or contains must be the one that was inserted.
+    private final Map<E, Integer> indexes = new IdentityHashMap<>();
 
     public MinHeapImpl() {
         // Initial size of the heap can be set based on expected usage
@@ -22,12 +32,28 @@ public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
 
     @Override
     protected int getArrayIndex(E element) {
-        for (int i = 1; i <= this.count; i++) {
-            if (this.elements[i].equals(element)) {
-                return i;
-            }
-        }
-        return -1; // Element not found
+        Integer index = element == null ? null : this.indexes.get(element);
+        return index == null ? -1 : index; // -1 if not found
+    }
+
+    @Override
+    protected void swap(int i, int j) {
+        super.swap(i, j);
+        this.indexes.put(this.elements[i], i);
+        this.indexes.put(this.elements[j], j);
+    }
+
+    @Override
+    public void insert(E x) {
+        this.indexes.put(x, this.count + 1);
+        super.insert(x);
+    }
+
+    @Override
+    public E remove() {
+        E min = super.remove();
+        this.indexes.remove(min);
+        return min;
     }
 
     @Override
@@ -45,6 +71,7 @@ public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
 
         // Swap the element with the last one and remove it
         swap(index, this.count);
+        this.indexes.remove(this.elements[this.count]);
         this.elements[this.count] = null;
         this.count--;
 
@@ -52,7 +79,22 @@ public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
         reHeapify(this.elements[index]);
     }
 
+    public boolean contains(E element) {
+        return getArrayIndex(element) != -1;
+    }
+
     public int size() {
         return this.count;
     }
+
+    /**
+     * @return a copy of the elements, in no particular order
+     */
+    public List<E> toList() {
+        List<E> list = new ArrayList<>(this.count);
+        for (int i = 1; i <= this.count; i++) {
+            list.add(this.elements[i]);
+        }
+        return list;
+    }
 }
@@ -0,0 +1,112 @@
+package edu.yu.cs.com1320.project.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A directory of one object's own for files that mean nothing to anyone else, e.g. a B-tree's paged-out leaves,
+ * made inside a parent directory that other instances, in this process or another, may be using at the same time.
+ * It holds a lock on a file inside it until it is closed, and only a directory whose lock can be taken, i.e. one
+ * left behind by an instance that is gone, is ever deleted by another.
+ */
+public class ScratchDirectory implements Closeable {
+    private static final String LOCK_FILE = ".lock";
+    private final File dir;
+    private final FileChannel lockChannel;
+
+    /**
+     * Delete the directories under parent that instances which are gone left behind, and make a new one
+     * @param prefix what the names of this kind of directory start with
+     */
+    public ScratchDirectory(File parent, String prefix) throws IOException {
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directories for path: " + parent.getAbsolutePath());
+        }
+        deleteAbandoned(parent, prefix);
+        File dir;
+        FileChannel channel;
+        do {
+            dir = Files.createTempDirectory(parent.toPath(), prefix).toFile();
+            channel = lock(dir);
+        } while (channel == null);
+        this.dir = dir;
+        this.lockChannel = channel;
+    }
+
+    // @return the channel holding the lock on the new directory, or null if another instance deleted it first
+    private static FileChannel lock(File dir) throws IOException {
+        Path lockFile = new File(dir, LOCK_FILE).toPath();
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+            // another instance may have taken the lock first, and deleted the directory as abandoned
+            if (Files.exists(lockFile)) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // one in this process has it, and is deleting the directory
+        }
+        channel.close();
+        return null;
+    }
+
+    public File getDir() {
+        return this.dir;
+    }
+
+    /**
+     * Release the lock and delete the directory with everything in it
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.lockChannel.isOpen()) {
+            this.lockChannel.close();
+            deleteTree(this.dir.toPath());
+        }
+    }
+
+    private static void deleteAbandoned(File parent, String prefix) throws IOException {
+        File[] dirs = parent.listFiles(f -> f.isDirectory() && f.getName().startsWith(prefix));
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            Path lockFile = new File(dir, LOCK_FILE).toPath();
+            // one without a lock file may be being made right now
+            if (!Files.exists(lockFile)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                if (lock != null) {
+                    deleteTree(dir.toPath());
+                }
+            } catch (NoSuchFileException | OverlappingFileLockException e) {
+                // deleted meanwhile, or in use by this process
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.yu.cs.com1320.project.impl;
+
+import edu.yu.cs.com1320.project.Automaton;
+
+import java.util.BitSet;
+
+/**
+ * Accepts the keys that match a pattern in which '?' stands for any one character and '*' for any run of
+ * characters, possibly empty. A state is the set of places in the pattern the characters read so far can have
+ * reached; a trie prunes where the set is empty, so a pattern that starts with a literal only walks the keys
+ * starting with it.
+ */
+public class WildcardAutomaton implements Automaton<BitSet> {
+    private final int[] pattern; // code points
+
+    /**
+     * @throws IllegalArgumentException if the pattern is null
+     */
+    public WildcardAutomaton(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Pattern must not be null");
+        }
+        this.pattern = pattern.codePoints().toArray();
+    }
+
+    @Override
+    public BitSet start() {
+        BitSet start = new BitSet(this.pattern.length + 1);
+        start.set(0);
+        return closure(start);
+    }
+
+    @Override
+    public BitSet step(BitSet state, int codePoint) {
+        BitSet next = new BitSet(this.pattern.length + 1);
+        for (int i = state.nextSetBit(0); i >= 0 && i < this.pattern.length; i = state.nextSetBit(i + 1)) {
+            int p = this.pattern[i];
+            if (p == '*') {
+                next.set(i);
+            } else if (p == '?' || p == codePoint) {
+                next.set(i + 1);
+            }
+        }
+        return next.isEmpty() ? null : closure(next);
+    }
+
+    @Override
+    public boolean isAccepting(BitSet state) {
+        return state.get(this.pattern.length);
+    }
+
+    // a '*' may match nothing, so being before it is also being past it
+    private BitSet closure(BitSet state) {
+        for (int i = state.nextSetBit(0); i >= 0 && i < this.pattern.length; i = state.nextSetBit(i + 1)) {
+            if (this.pattern[i] == '*') {
+                state.set(i + 1);
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,39 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A PersistenceManager whose operations run on an I/O executor instead of on the caller's thread. Every future
+ * completes once its operation has reached the underlying storage, or completes exceptionally with the
+ * IOException it failed with.
+ */
+public interface AsyncPersistenceManager<Key, Value> extends PersistenceManager<Key, Value> {
+    CompletableFuture<Void> serializeAsync(Key key, Value val);
+
+    /**
+     * serialize a batch of values as a single serializeAll on the I/O executor
+     */
+    CompletableFuture<Void> serializeAllAsync(Map<Key, Value> values);
+
+    /**
+     * @return the value, or null if nothing is stored at the key
+     */
+    CompletableFuture<Value> deserializeAsync(Key key);
+
+    /**
+     * @return the values that were found, by key
+     */
+    CompletableFuture<Map<Key, Value>> deserializeAllAsync(Collection<Key> keys);
+
+    /**
+     * @return whether anything was stored at the key
+     */
+    CompletableFuture<Boolean> deleteAsync(Key key);
+
+    /**
+     * @return completes once every operation submitted before it has run
+     */
+    CompletableFuture<Void> flush();
+}
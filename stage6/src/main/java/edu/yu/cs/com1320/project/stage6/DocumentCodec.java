@@ -0,0 +1,44 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * On-disk format for a Document, used by the persistence managers
+ */
+public interface DocumentCodec {
+    /**
+     * @return extension, including the leading dot, of files written in this format
+     */
+    String getFileExtension();
+
+    /**
+     * write the document to the stream; the stream is not closed
+     */
+    void encode(Document document, OutputStream out) throws IOException;
+
+    /**
+     * read one document from the stream; the stream is not closed
+     */
+    Document decode(InputStream in) throws IOException;
+
+    /**
+     * read one document from the buffer, starting at its position, e.g. a slice of a memory-mapped file.
+     * Codecs that can parse a buffer in place should override this; by default the bytes are copied to a stream.
+     */
+    default Document decode(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return decode(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * read only as much of an encoded document as is needed to find its URI
+     * @return the URI, or null if the stream doesn't hold a document in this format
+     */
+    URI decodeKey(InputStream in) throws IOException;
+}
@@ -3,6 +3,7 @@ package edu.yu.cs.com1320.project.stage6;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -92,6 +93,87 @@ public interface DocumentStore
      */
     List<Document> searchByPrefix(String keywordPrefix) throws IOException;
 
+    /**
+     * Retrieve the k documents in which the given keyword appears most, in the same order as search(keyword).
+     * Only the returned documents have their last use time updated, and only they are read back in from disk.
+     * @param keyword
+     * @param k how many documents to return at most
+     * @return a List of at most k of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if the keyword is null or blank, or k is negative
+     */
+    List<Document> search(String keyword, int k) throws IOException;
+
+    /**
+     * Retrieve the k documents in which words that start with the given prefix appear most, in the same order as
+     * searchByPrefix(keywordPrefix). Only the returned documents have their last use time updated, and only they
+     * are read back in from disk.
+     * @param keywordPrefix
+     * @param k how many documents to return at most
+     * @return a List of at most k of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if the prefix is null or blank, or k is negative
+     */
+    List<Document> searchByPrefix(String keywordPrefix, int k) throws IOException;
+
+    /**
+     * Retrieve all documents containing a word within maxEdits inserted, deleted or replaced characters of the
+     * keyword, ignoring case. Documents are returned with those whose closest word takes the fewest edits first,
+     * and among those, in descending order of how many times words that close appear in them.
+     * @param keyword
+     * @param maxEdits 0, 1 or 2
+     * @return a List of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if the keyword is null or blank, or maxEdits is not 0, 1 or 2
+     */
+    List<Document> searchFuzzy(String keyword, int maxEdits) throws IOException;
+
+    /**
+     * Retrieve the k best matches of searchFuzzy(keyword, maxEdits), in the same order. Only the returned documents
+     * have their last use time updated, and only they are read back in from disk.
+     * @throws IllegalArgumentException as searchFuzzy(keyword, maxEdits) does, or if k is negative
+     */
+    List<Document> searchFuzzy(String keyword, int maxEdits, int k) throws IOException;
+
+    /**
+     * Retrieve all documents containing a word that matches the pattern, ignoring case, where '?' stands for any
+     * one character and '*' for any run of characters. Documents are returned in descending order of how many
+     * times matching words appear in them.
+     * @param pattern
+     * @return a List of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if the pattern is null or blank
+     */
+    List<Document> searchWildcard(String pattern) throws IOException;
+
+    /**
+     * Retrieve the k best matches of searchWildcard(pattern), in the same order. Only the returned documents have
+     * their last use time updated, and only they are read back in from disk.
+     * @throws IllegalArgumentException as searchWildcard(pattern) does, or if k is negative
+     */
+    List<Document> searchWildcard(String pattern, int k) throws IOException;
+
+    /**
+     * Retrieve all documents that match a boolean query of keywords, prefixes, phrases and proximity groups, e.g.
+     * and(term("apple"), or(term("pear"), prefix("plu")), not(term("banana"))). Matching ignores case.
+     * Documents are returned in descending order of how many times the terms they matched by appear in them, a
+     * phrase or proximity group counting once for each time it is found. Only the matching documents are read
+     * back in from disk.
+     * @param query
+     * @return a List of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if the query is null, or has a NOT that is not a clause of an AND with a
+     * clause that is not a NOT
+     * @throws IllegalStateException if the query has a phrase or proximity group, and the store does not index
+     * the positions of words
+     */
+    List<Document> search(Query query) throws IOException;
+
+    /**
+     * Retrieve the k best matches of search(query), in the same order. Only the returned documents have their last
+     * use time updated, and only they are read back in from disk.
+     * @param query
+     * @param k how many documents to return at most
+     * @return a List of at most k of the matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException as search(query) does, or if k is negative
+     */
+    List<Document> search(Query query, int k) throws IOException;
+
     /**
      * Completely remove any trace of any document which contains the given keyword
      * Search is CASE SENSITIVE.
@@ -170,4 +252,14 @@ public interface DocumentStore
      * @throws IllegalArgumentException if limit < 1
      */
     void setMaxDocumentBytes(int limit);
+
+    /**
+     * Lazily list the URIs of all documents, in memory or on disk, whose URI starts with the given prefix.
+     * No document is loaded from disk by the listing; call get on a URI to load that document.
+     * @param uriPrefix prefix that includes at least the scheme and host, e.g. "http://host/path/"
+     * @param descending true to list in descending URI order
+     * @return an Iterator over the matching URIs in URI order
+     * @throws IllegalArgumentException if the prefix is null, blank or not a valid URI
+     */
+    Iterator<URI> listNamespace(String uriPrefix, boolean descending);
 }
\ No newline at end of file
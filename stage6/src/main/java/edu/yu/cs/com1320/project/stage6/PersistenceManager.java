@@ -1,10 +1,44 @@
 package edu.yu.cs.com1320.project.stage6;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public interface PersistenceManager<Key,Value> {
     void serialize(Key key, Value val) throws IOException;
+
+    /**
+     * serialize a batch of values. Implementations may coalesce the writes and make the whole batch durable at once;
+     * by default each value is serialized in turn.
+     * @param values the values to write, by key
+     * @throws IOException
+     */
+    default void serializeAll(Map<Key, Value> values) throws IOException {
+        for (Map.Entry<Key, Value> entry : values.entrySet()) {
+            serialize(entry.getKey(), entry.getValue());
+        }
+    }
     Value deserialize(Key key) throws IOException;
+
+    /**
+     * deserialize a batch of values. Implementations may read and decode them in parallel; by default each value is
+     * deserialized in turn.
+     * @param keys the keys to read
+     * @return the values that were found, by key
+     * @throws IOException
+     */
+    default Map<Key, Value> deserializeAll(Collection<Key> keys) throws IOException {
+        Map<Key, Value> values = new LinkedHashMap<>();
+        for (Key key : keys) {
+            Value val = deserialize(key);
+            if (val != null) {
+                values.put(key, val);
+            }
+        }
+        return values;
+    }
     /**
      * delete the file stored on disk that corresponds to the given key
      * @param key
@@ -12,4 +46,20 @@ public interface PersistenceManager<Key,Value> {
      * @throws IOException
      */
     boolean delete(Key key) throws IOException;
+
+    /**
+     * list the keys of everything currently stored on disk, without deserializing the values
+     * @return the stored keys, in no particular order
+     * @throws IOException
+     */
+    List<Key> keys() throws IOException;
+
+    /**
+     * make everything serialized or deleted so far durable, e.g. before a checkpoint that relies on it. The default
+     * does nothing, which is only right for a manager whose serialize and delete are durable once they return;
+     * any other has to override it.
+     * @throws IOException
+     */
+    default void sync() throws IOException {
+    }
 }
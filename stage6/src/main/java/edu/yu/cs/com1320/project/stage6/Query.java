@@ -0,0 +1,192 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A boolean keyword query for DocumentStore.search(Query), built from terms, prefixes, phrases and proximity
+ * groups with and, or and not, e.g. and(phrase("apple pie"), or(term("pear"), prefix("plu")), not(term("banana"))).
+ * <p>
+ * Phrase and proximity queries need the positions of words in documents, so only a store that indexes them can
+ * answer them.
+ * <p>
+ * A not may only be a clause of an and that also has a clause that is not a not: it takes documents away from the
+ * and's matches, and there is no query for "every document" for it to take them away from.
+ */
+public final class Query {
+    public enum Kind {
+        TERM, PREFIX, AND, OR, NOT, PHRASE, NEAR
+    }
+
+    private final Kind kind;
+    private final String text;
+    private final List<Query> clauses;
+    private final int distance;
+
+    private Query(Kind kind, String text, List<Query> clauses) {
+        this(kind, text, clauses, 0);
+    }
+
+    private Query(Kind kind, String text, List<Query> clauses, int distance) {
+        this.kind = kind;
+        this.text = text;
+        this.clauses = clauses;
+        this.distance = distance;
+    }
+
+    /**
+     * Matches documents that contain the word, ignoring case
+     * @throws IllegalArgumentException if the word is null or blank
+     */
+    public static Query term(String word) {
+        if (word == null || word.isBlank()) {
+            throw new IllegalArgumentException("Term must not be null or blank");
+        }
+        return new Query(Kind.TERM, word.toLowerCase(), List.of());
+    }
+
+    /**
+     * Matches documents that contain a word starting with the prefix, ignoring case
+     * @throws IllegalArgumentException if the prefix is null or blank
+     */
+    public static Query prefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new IllegalArgumentException("Prefix must not be null or blank");
+        }
+        return new Query(Kind.PREFIX, prefix.toLowerCase(), List.of());
+    }
+
+    /**
+     * Matches documents that match every clause that is not a not, and none that is
+     * @throws IllegalArgumentException if there are no clauses, or any is null
+     */
+    public static Query and(Query... clauses) {
+        return new Query(Kind.AND, null, clausesOf(clauses));
+    }
+
+    /**
+     * Matches documents that match any of the clauses
+     * @throws IllegalArgumentException if there are no clauses, or any is null
+     */
+    public static Query or(Query... clauses) {
+        return new Query(Kind.OR, null, clausesOf(clauses));
+    }
+
+    /**
+     * Excludes the documents that match the clause from the and this is a clause of
+     * @throws IllegalArgumentException if the clause is null
+     */
+    public static Query not(Query clause) {
+        return new Query(Kind.NOT, null, clausesOf(clause));
+    }
+
+    /**
+     * Matches documents that contain the words of the text one after another, ignoring case and anything between
+     * the words that is not part of a word, e.g. "New York" matches "new-york" but not "New and York"
+     * @throws IllegalArgumentException if the text is null or has no words
+     */
+    public static Query phrase(String text) {
+        List<Query> words = wordsOf(text == null ? "" : text);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("A phrase needs at least one word");
+        }
+        return words.size() == 1 ? words.get(0) : new Query(Kind.PHRASE, text.toLowerCase(), words);
+    }
+
+    /**
+     * Matches documents in which all the words are within the given distance of one another, in any order, i.e.
+     * there is a word offset from which they all are at most distance words on. Ignores case.
+     * @throws IllegalArgumentException if the distance is negative, or there are no words, or any is null or blank
+     */
+    public static Query near(int distance, String... words) {
+        if (distance < 0 || words == null || words.length == 0) {
+            throw new IllegalArgumentException("A proximity query needs at least one word and a distance that is not negative");
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String word : words) {
+            distinct.add(term(word).getText());
+        }
+        List<Query> terms = new ArrayList<>();
+        for (String word : distinct) {
+            terms.add(term(word));
+        }
+        return terms.size() == 1 ? terms.get(0) : new Query(Kind.NEAR, String.join(" ", distinct), List.copyOf(terms), distance);
+    }
+
+    // the words as the index has them: lowercased, and split on anything that is not part of a word
+    private static List<Query> wordsOf(String text) {
+        List<Query> words = new ArrayList<>();
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                words.add(term(word));
+            }
+        }
+        return List.copyOf(words);
+    }
+
+    private static List<Query> clausesOf(Query... clauses) {
+        if (clauses == null || clauses.length == 0) {
+            throw new IllegalArgumentException("A query needs at least one clause");
+        }
+        for (Query clause : clauses) {
+            if (clause == null) {
+                throw new IllegalArgumentException("Clauses must not be null");
+            }
+        }
+        return List.of(clauses);
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @return the lowercased word, prefix or phrase of a TERM, PREFIX or PHRASE query, the words of a NEAR query
+     * separated by spaces, or null for any other
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * @return the clauses of an AND, OR or NOT query, the TERM queries for the words of a PHRASE or NEAR query in
+     * order, or an empty list for any other
+     */
+    public List<Query> getClauses() {
+        return this.clauses;
+    }
+
+    /**
+     * @return how many words apart the words of a NEAR query may be, or 0 for any other
+     */
+    public int getDistance() {
+        return this.distance;
+    }
+
+    @Override
+    public String toString() {
+        switch (this.kind) {
+            case TERM:
+                return this.text;
+            case PREFIX:
+                return this.text + "*";
+            case NOT:
+                return "NOT " + this.clauses.get(0);
+            case PHRASE:
+                return "\"" + this.text + "\"";
+            case NEAR:
+                return "NEAR/" + this.distance + "(" + this.text + ")";
+            default:
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < this.clauses.size(); i++) {
+                    if (i > 0) {
+                        sb.append(' ').append(this.kind).append(' ');
+                    }
+                    sb.append(this.clauses.get(i));
+                }
+                return sb.append(')').toString();
+        }
+    }
+}
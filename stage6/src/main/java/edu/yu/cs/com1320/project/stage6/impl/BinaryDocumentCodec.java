@@ -0,0 +1,261 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary format for a Document. Version 1 layout, where every int is an unsigned varint and every
+ * string is a varint byte length followed by UTF-8:
+ * <pre>
+ * magic "DSDC" | version byte | flags byte (bit 0: binary document)
+ * uri | lastUseTime (8 bytes, big-endian)
+ * text string, or binary data as varint length + raw bytes
+ * metadata count | (key, has-value byte, value if present)*
+ * word map count | (word, count)*
+ * </pre>
+ * The uri comes first so that it can be read without decoding the rest.
+ */
+public class BinaryDocumentCodec implements DocumentCodec {
+    private static final byte[] MAGIC = {'D', 'S', 'D', 'C'};
+    private static final int VERSION = 1;
+    private static final int FLAG_BINARY = 1;
+
+    @Override
+    public String getFileExtension() {
+        return ".bin";
+    }
+
+    @Override
+    public void encode(Document document, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        byte[] binary = document.getDocumentBinaryData();
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(binary != null ? FLAG_BINARY : 0);
+        writeString(data, document.getKey().toString());
+        data.writeLong(document.getLastUseTime());
+        if (binary != null) {
+            writeVarInt(data, binary.length);
+            data.write(binary);
+        } else {
+            writeString(data, document.getDocumentTxt());
+        }
+        Map<String, String> metadata = document.getMetadata();
+        writeVarInt(data, metadata.size());
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            writeString(data, entry.getKey());
+            data.writeBoolean(entry.getValue() != null);
+            if (entry.getValue() != null) {
+                writeString(data, entry.getValue());
+            }
+        }
+        Map<String, Integer> wordMap = document.getWordMap();
+        writeVarInt(data, wordMap.size());
+        for (Map.Entry<String, Integer> entry : wordMap.entrySet()) {
+            writeString(data, entry.getKey());
+            writeVarInt(data, entry.getValue());
+        }
+        data.flush();
+    }
+
+    @Override
+    public Document decode(InputStream in) throws IOException {
+        return decode(new StreamSource(new DataInputStream(in)));
+    }
+
+    // parses the buffer in place; only strings and binary data are copied out of it
+    @Override
+    public Document decode(ByteBuffer buffer) throws IOException {
+        try {
+            return decode(new BufferSource(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated binary document");
+        }
+    }
+
+    @Override
+    public URI decodeKey(InputStream in) throws IOException {
+        Source data = new StreamSource(new DataInputStream(in));
+        try {
+            return readHeader(data) < 0 ? null : readUri(data);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static Document decode(Source data) throws IOException {
+        int flags = readHeader(data);
+        if (flags < 0) {
+            throw new IOException("Not a binary document");
+        }
+        URI uri = readUri(data);
+        long lastUseTime = data.readLong();
+        Document document;
+        if ((flags & FLAG_BINARY) != 0) {
+            byte[] binary = new byte[readVarInt(data)];
+            data.readFully(binary);
+            document = new DocumentImpl(uri, binary);
+        } else {
+            document = new DocumentImpl(uri, readString(data), new HashMap<>());
+        }
+        int metadataCount = readVarInt(data);
+        HashMap<String, String> metadata = new HashMap<>(metadataCount * 2);
+        for (int i = 0; i < metadataCount; i++) {
+            String key = readString(data);
+            metadata.put(key, data.readUnsignedByte() != 0 ? readString(data) : null);
+        }
+        document.setMetadata(metadata);
+        int wordCount = readVarInt(data);
+        HashMap<String, Integer> wordMap = new HashMap<>(wordCount * 2);
+        for (int i = 0; i < wordCount; i++) {
+            String word = readString(data);
+            wordMap.put(word, readVarInt(data));
+        }
+        document.setWordMap(wordMap);
+        document.setLastUseTime(lastUseTime);
+        return document;
+    }
+
+    // returns the flags byte, or -1 if this isn't a document in a version we can read
+    private static int readHeader(Source data) throws IOException {
+        for (byte b : MAGIC) {
+            if ((byte) data.readUnsignedByte() != b) {
+                return -1;
+            }
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary document version " + version);
+        }
+        return data.readUnsignedByte();
+    }
+
+    private static URI readUri(Source data) throws IOException {
+        try {
+            return new URI(readString(data));
+        } catch (URISyntaxException e) {
+            throw new IOException("Corrupt document URI", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(Source data) throws IOException {
+        return data.readString(readVarInt(data));
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(Source data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // what decode reads from: a stream, or a buffer that can be parsed without copying it first
+    private interface Source {
+        int readUnsignedByte() throws IOException;
+
+        long readLong() throws IOException;
+
+        void readFully(byte[] bytes) throws IOException;
+
+        String readString(int length) throws IOException;
+    }
+
+    private static final class StreamSource implements Source {
+        private final DataInputStream data;
+
+        private StreamSource(DataInputStream data) {
+            this.data = data;
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return this.data.readUnsignedByte();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return this.data.readLong();
+        }
+
+        @Override
+        public void readFully(byte[] bytes) throws IOException {
+            this.data.readFully(bytes);
+        }
+
+        @Override
+        public String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            this.data.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class BufferSource implements Source {
+        private final ByteBuffer buffer;
+
+        private BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int readUnsignedByte() {
+            return this.buffer.get() & 0xFF;
+        }
+
+        @Override
+        public long readLong() {
+            return this.buffer.getLong();
+        }
+
+        @Override
+        public void readFully(byte[] bytes) {
+            this.buffer.get(bytes);
+        }
+
+        @Override
+        public String readString(int length) {
+            if (length > this.buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String s;
+            if (this.buffer.hasArray()) {
+                s = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8);
+            } else {
+                // a direct or mapped buffer has no array to build the string from
+                byte[] bytes = new byte[length];
+                this.buffer.get(this.buffer.position(), bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            this.buffer.position(this.buffer.position() + length);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wraps another codec and deflates each encoded document, optionally against a preset dictionary trained from
+ * a sample of documents. Records smaller than minCompressBytes, and records that deflate doesn't shrink, are
+ * stored as they are. Layout:
+ * <pre>
+ * magic "DSDZ" | method byte (0 stored, 1 deflated) | encoded length (int)
+ * stored: the wrapped codec's bytes
+ * deflated: compressed length (int) | zlib stream of the wrapped codec's bytes
+ * </pre>
+ * A document deflated against a dictionary can only be read by a codec holding the same dictionary, or by one
+ * given the directory a codec saved that dictionary to, e.g. after a restart that trained a new one.
+ */
+public class CompressingDocumentCodec implements DocumentCodec {
+    public static final int DEFAULT_MIN_COMPRESS_BYTES = 512;
+    /** deflate can only look 32KB back, so a longer dictionary is wasted */
+    public static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+    private static final byte[] MAGIC = {'D', 'S', 'D', 'Z'};
+    private static final int STORED = 0;
+    private static final int DEFLATED = 1;
+    private final DocumentCodec codec;
+    private final int level;
+    private final byte[] dictionary;
+    private final int dictionaryId;
+    private final int minCompressBytes;
+    private final File dictionaryDir;
+    private final Map<Integer, byte[]> savedDictionaries = new ConcurrentHashMap<>(); // read from dictionaryDir, by id
+
+    public CompressingDocumentCodec(DocumentCodec codec, int level) {
+        this(codec, level, null, DEFAULT_MIN_COMPRESS_BYTES);
+    }
+
+    /**
+     * @param codec format of the documents being compressed
+     * @param level Deflater level, 0-9 or Deflater.DEFAULT_COMPRESSION
+     * @param dictionary preset dictionary, e.g. from trainDictionary, or null for none
+     * @param minCompressBytes encoded documents smaller than this are stored uncompressed
+     */
+    public CompressingDocumentCodec(DocumentCodec codec, int level, byte[] dictionary, int minCompressBytes) {
+        this(codec, level, dictionary, minCompressBytes, null);
+    }
+
+    /**
+     * @param dictionaryDir directory the dictionary is saved to before anything is compressed with it, and where
+     *                      dictionaries other codecs saved are looked up to read their documents, e.g. the
+     *                      persistence manager's baseDir; or null to neither save nor look up dictionaries
+     */
+    public CompressingDocumentCodec(DocumentCodec codec, int level, byte[] dictionary, int minCompressBytes, File dictionaryDir) {
+        if (codec == null || (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) || minCompressBytes < 0) {
+            throw new IllegalArgumentException("Need a codec, a level between 0 and 9, and a non-negative minimum size");
+        }
+        this.codec = codec;
+        this.level = level;
+        this.dictionary = dictionary != null ? dictionary.clone() : null;
+        Adler32 adler = new Adler32();
+        if (dictionary != null) {
+            adler.update(dictionary);
+        }
+        this.dictionaryId = (int) adler.getValue();
+        this.minCompressBytes = minCompressBytes;
+        this.dictionaryDir = dictionaryDir;
+        if (dictionary != null && dictionaryDir != null) {
+            try {
+                saveDictionary();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Builds a preset dictionary out of the words that would save the most bytes across the sample: those that
+     * are long and appear often in document text and metadata. The most valuable words go at the end, where
+     * deflate can reach them with the shortest distances.
+     */
+    public static byte[] trainDictionary(Collection<? extends Document> sample, int maxBytes) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Document doc : sample) {
+            if (doc.getDocumentTxt() != null) {
+                for (String word : doc.getDocumentTxt().split("\\s+")) {
+                    counts.merge(word, 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<String, String> entry : doc.getMetadata().entrySet()) {
+                counts.merge(entry.getKey(), 1, Integer::sum);
+                if (entry.getValue() != null) {
+                    counts.merge(entry.getValue(), 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            // a word seen once in the sample is unlikely to come up again, and a very short one saves nothing
+            if (entry.getValue() > 1 && entry.getKey().length() > 2) {
+                ranked.add(entry);
+            }
+        }
+        ranked.sort((a, b) -> Long.compare((long) b.getValue() * b.getKey().length(), (long) a.getValue() * a.getKey().length()));
+        Deque<byte[]> chosen = new ArrayDeque<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : ranked) {
+            byte[] word = (entry.getKey() + " ").getBytes(StandardCharsets.UTF_8);
+            if (size + word.length > maxBytes) {
+                break;
+            }
+            chosen.push(word);
+            size += word.length;
+        }
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (byte[] word : chosen) {
+            dictionary.writeBytes(word);
+        }
+        return dictionary.toByteArray();
+    }
+
+    @Override
+    public String getFileExtension() {
+        return this.codec.getFileExtension() + "z";
+    }
+
+    @Override
+    public void encode(Document document, OutputStream out) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        this.codec.encode(document, encoded);
+        byte[] raw = encoded.toByteArray();
+        byte[] deflated = raw.length >= this.minCompressBytes ? deflate(raw) : null;
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        if (deflated != null && deflated.length < raw.length) {
+            data.writeByte(DEFLATED);
+            data.writeInt(raw.length);
+            data.writeInt(deflated.length);
+            data.write(deflated);
+        } else {
+            data.writeByte(STORED);
+            data.writeInt(raw.length);
+            data.write(raw);
+        }
+        data.flush();
+    }
+
+    @Override
+    public Document decode(InputStream in) throws IOException {
+        byte[] raw = readRecord(new DataInputStream(in));
+        if (raw == null) {
+            throw new IOException("Not a compressed document");
+        }
+        return this.codec.decode(ByteBuffer.wrap(raw));
+    }
+
+    // a mapped buffer is inflated straight from the mapping, and a stored record is handed on without copying it
+    @Override
+    public Document decode(ByteBuffer buffer) throws IOException {
+        try {
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new IOException("Not a compressed document");
+                }
+            }
+            int method = buffer.get();
+            if (method != STORED && method != DEFLATED) {
+                throw new IOException("Unknown compression method " + method);
+            }
+            int rawLength = buffer.getInt();
+            int length = method == DEFLATED ? buffer.getInt() : rawLength;
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            if (method == STORED) {
+                return this.codec.decode(payload);
+            }
+            return this.codec.decode(ByteBuffer.wrap(inflate(payload, rawLength)));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new EOFException("Truncated compressed document");
+        }
+    }
+
+    @Override
+    public URI decodeKey(InputStream in) throws IOException {
+        try {
+            byte[] raw = readRecord(new DataInputStream(in));
+            return raw == null ? null : this.codec.decodeKey(new ByteArrayInputStream(raw));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // returns the wrapped codec's bytes, or null if this isn't a compressed document
+    private byte[] readRecord(DataInputStream data) throws IOException {
+        for (byte b : MAGIC) {
+            if (data.readByte() != b) {
+                return null;
+            }
+        }
+        int method = data.readUnsignedByte();
+        if (method != STORED && method != DEFLATED) {
+            throw new IOException("Unknown compression method " + method);
+        }
+        byte[] raw = new byte[data.readInt()];
+        if (method == STORED) {
+            data.readFully(raw);
+            return raw;
+        }
+        byte[] deflated = new byte[data.readInt()];
+        data.readFully(deflated);
+        return inflate(ByteBuffer.wrap(deflated), raw.length);
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(this.level);
+        try {
+            if (this.dictionary != null) {
+                deflater.setDictionary(this.dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(ByteBuffer deflated, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        byte[] dictionary = dictionaryFor(inflater.getAdler());
+                        if (dictionary == null) {
+                            throw new IOException("Document was compressed with a dictionary this codec doesn't have");
+                        }
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new EOFException("Truncated compressed document");
+                    }
+                }
+                length += n;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed document", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // @return this codec's dictionary if it has the id, otherwise the one saved under the id, or null if there's none
+    private byte[] dictionaryFor(int id) throws IOException {
+        if (this.dictionary != null && id == this.dictionaryId) {
+            return this.dictionary;
+        }
+        if (this.dictionaryDir == null) {
+            return null;
+        }
+        byte[] saved = this.savedDictionaries.get(id);
+        if (saved == null) {
+            try {
+                saved = Files.readAllBytes(dictionaryFile(id).toPath());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            Adler32 adler = new Adler32();
+            adler.update(saved);
+            if ((int) adler.getValue() != id) {
+                throw new IOException("Corrupt dictionary " + dictionaryFile(id).getAbsolutePath());
+            }
+            this.savedDictionaries.put(id, saved);
+        }
+        return saved;
+    }
+
+    // written to a temporary file and moved into place, so a dictionary file is always whole
+    private void saveDictionary() throws IOException {
+        File file = dictionaryFile(this.dictionaryId);
+        if (file.exists()) {
+            return;
+        }
+        if (!this.dictionaryDir.exists() && !this.dictionaryDir.mkdirs()) {
+            throw new IOException("Failed to create directories for path: " + this.dictionaryDir.getAbsolutePath());
+        }
+        File tmp = new File(this.dictionaryDir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(this.dictionary);
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel dir = FileChannel.open(this.dictionaryDir.toPath(), StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+    }
+
+    private File dictionaryFile(int id) {
+        return new File(this.dictionaryDir, String.format("%08x.dict", id));
+    }
+}
@@ -0,0 +1,212 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Stores each distinct document body once, in another PersistenceManager. A body is stored under
+ * content://sha256/&lt;hash of the body&gt; as a document of its own, word map included. Each URI is stored as a
+ * small stub holding the hash and the URI's own metadata, and each body is reference counted by the stubs that
+ * point to it: it is written when the first stub that needs it is, and deleted with the last one.
+ * <p>
+ * The reference counts are not stored; they are rebuilt when the manager is opened, by reading every stub. Bodies
+ * are written before the stubs that point to them and deleted after, so a crash can leave a body with no stub,
+ * which is deleted on the next open, but never a stub with no body. URIs starting with content://sha256/ are
+ * reserved for the bodies.
+ */
+public class ContentAddressedPersistenceManager implements PersistenceManager<URI, Document>, Closeable {
+    private static final String BODY_PREFIX = "content://sha256/";
+    private static final byte TEXT = 't';
+    private static final byte BINARY = 'b';
+
+    private final PersistenceManager<URI, Document> delegate;
+    private final Map<URI, String> hashes = new HashMap<>(); // body hash of each stored URI
+    private final Map<String, Integer> references = new HashMap<>(); // stored bodies, and how many URIs point to each
+
+    /**
+     * @param delegate where the stubs and bodies are stored. It is closed with this manager if it is Closeable.
+     */
+    public ContentAddressedPersistenceManager(PersistenceManager<URI, Document> delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Need a persistence manager to store documents in");
+        }
+        this.delegate = delegate;
+        try {
+            List<URI> bodies = new ArrayList<>();
+            List<URI> stubs = new ArrayList<>();
+            for (URI uri : delegate.keys()) {
+                (isBody(uri) ? bodies : stubs).add(uri);
+            }
+            for (Map.Entry<URI, Document> stub : delegate.deserializeAll(stubs).entrySet()) {
+                String hash = hashOf(stub.getValue());
+                this.hashes.put(stub.getKey(), hash);
+                this.references.merge(hash, 1, Integer::sum);
+            }
+            for (URI body : bodies) {
+                if (!this.references.containsKey(body.getPath().substring(1))) {
+                    delegate.delete(body);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void serialize(URI uri, Document val) throws IOException {
+        serializeAll(Collections.singletonMap(uri, val));
+    }
+
+    /**
+     * Writes the bodies that aren't stored yet and then the stubs, with one serializeAll on the wrapped manager
+     */
+    @Override
+    public synchronized void serializeAll(Map<URI, Document> values) throws IOException {
+        Map<URI, Document> bodies = new LinkedHashMap<>();
+        Map<URI, Document> stubs = new LinkedHashMap<>();
+        Map<URI, String> written = new LinkedHashMap<>();
+        for (Map.Entry<URI, Document> entry : values.entrySet()) {
+            if (isBody(entry.getKey())) {
+                throw new IllegalArgumentException(entry.getKey() + " is reserved for document bodies");
+            }
+            Document document = entry.getValue();
+            byte[] hashBytes = hash(document);
+            String hash = HexFormat.of().formatHex(hashBytes);
+            URI bodyUri = URI.create(BODY_PREFIX + hash);
+            if (!this.references.containsKey(hash) && !bodies.containsKey(bodyUri)) {
+                bodies.put(bodyUri, withBody(bodyUri, document));
+            }
+            Document stub = new DocumentImpl(entry.getKey(), hashBytes);
+            stub.setMetadata(document.getMetadata());
+            stub.setLastUseTime(document.getLastUseTime());
+            stubs.put(entry.getKey(), stub);
+            written.put(entry.getKey(), hash);
+        }
+        Map<URI, Document> batch = new LinkedHashMap<>(bodies);
+        batch.putAll(stubs);
+        this.delegate.serializeAll(batch);
+        for (Map.Entry<URI, String> entry : written.entrySet()) {
+            this.references.merge(entry.getValue(), 1, Integer::sum);
+            String replaced = this.hashes.put(entry.getKey(), entry.getValue());
+            if (replaced != null) {
+                unreference(replaced);
+            }
+        }
+    }
+
+    @Override
+    public Document deserialize(URI uri) throws IOException {
+        return deserializeAll(Collections.singletonList(uri)).get(uri);
+    }
+
+    /**
+     * Reads the stubs and then their bodies, each with one deserializeAll on the wrapped manager; a body shared by
+     * several of the URIs is read once
+     */
+    @Override
+    public synchronized Map<URI, Document> deserializeAll(Collection<URI> uris) throws IOException {
+        Map<URI, Document> stubs = this.delegate.deserializeAll(uris);
+        Set<URI> bodyUris = new HashSet<>();
+        for (Document stub : stubs.values()) {
+            bodyUris.add(URI.create(BODY_PREFIX + hashOf(stub)));
+        }
+        Map<URI, Document> bodies = this.delegate.deserializeAll(bodyUris);
+        Map<URI, Document> documents = new HashMap<>();
+        for (Map.Entry<URI, Document> entry : stubs.entrySet()) {
+            Document stub = entry.getValue();
+            Document body = bodies.get(URI.create(BODY_PREFIX + hashOf(stub)));
+            if (body == null) {
+                throw new IOException("Body of " + entry.getKey() + " is missing");
+            }
+            Document document = withBody(entry.getKey(), body);
+            document.setMetadata(stub.getMetadata());
+            document.setLastUseTime(stub.getLastUseTime());
+            documents.put(entry.getKey(), document);
+        }
+        return documents;
+    }
+
+    @Override
+    public synchronized boolean delete(URI uri) throws IOException {
+        if (!this.delegate.delete(uri)) {
+            return false;
+        }
+        String hash = this.hashes.remove(uri);
+        if (hash != null) {
+            unreference(hash);
+        }
+        return true;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        this.delegate.sync();
+    }
+
+    @Override
+    public synchronized List<URI> keys() {
+        return new ArrayList<>(this.hashes.keySet());
+    }
+
+    /**
+     * @return how many distinct bodies are stored
+     */
+    public synchronized int getBodyCount() {
+        return this.references.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void unreference(String hash) throws IOException {
+        if (this.references.merge(hash, -1, Integer::sum) == 0) {
+            this.references.remove(hash);
+            this.delegate.delete(URI.create(BODY_PREFIX + hash));
+        }
+    }
+
+    private static boolean isBody(URI uri) {
+        return uri.toString().startsWith(BODY_PREFIX);
+    }
+
+    private static String hashOf(Document stub) {
+        return HexFormat.of().formatHex(stub.getDocumentBinaryData());
+    }
+
+    // SHA-256 of the body, with its kind first so that a text and a binary body with the same bytes differ
+    private static byte[] hash(Document document) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        if (document.getDocumentTxt() != null) {
+            digest.update(TEXT);
+            digest.update(document.getDocumentTxt().getBytes(StandardCharsets.UTF_8));
+        } else {
+            digest.update(BINARY);
+            digest.update(document.getDocumentBinaryData());
+        }
+        return digest.digest();
+    }
+
+    private static Document withBody(URI uri, Document body) {
+        if (body.getDocumentTxt() != null) {
+            return new DocumentImpl(uri, body.getDocumentTxt(), body.getWordMap());
+        }
+        return new DocumentImpl(uri, body.getDocumentBinaryData());
+    }
+}
@@ -0,0 +1,110 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds each distinct document body once in memory. A document whose text or binary data is identical to that of a
+ * resident document is given the resident document's body instead of its own copy, and each body is reference
+ * counted, so it is charged to the memory limits once however many URIs it is stored under. Bodies are found by
+ * DocumentImpl's content hash and then compared in full. Metadata is not shared; each URI keeps its own.
+ */
+public class DocumentBodies {
+    private final Map<BodyKey, Body> bodies = new HashMap<>();
+
+    private static final class BodyKey {
+        private final Object content;
+        private final int hash;
+
+        private BodyKey(DocumentImpl document) {
+            this.content = document.getBody();
+            this.hash = document.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BodyKey other) || this.hash != other.hash) {
+                return false;
+            }
+            if (this.content instanceof byte[] data) {
+                return other.content instanceof byte[] otherData && Arrays.equals(data, otherData);
+            }
+            return this.content.equals(other.content);
+        }
+    }
+
+    private static final class Body {
+        private final Object content;
+        private int references;
+
+        private Body(Object content) {
+            this.content = content;
+        }
+    }
+
+    /**
+     * @return the document, or a copy of it that shares the body of a resident document with identical content
+     */
+    public Document share(Document document) {
+        if (!(document instanceof DocumentImpl impl) || impl.getBody() == null) {
+            return document;
+        }
+        Body body = this.bodies.get(new BodyKey(impl));
+        if (body == null || body.content == impl.getBody()) {
+            return document;
+        }
+        return new DocumentImpl(impl, body.content);
+    }
+
+    /**
+     * count a resident reference to the document's body
+     * @param sizeInBytes what the body costs
+     * @return what to charge for it: its size the first time the body is referenced, and nothing after that
+     */
+    public int acquire(Document document, int sizeInBytes) {
+        if (!(document instanceof DocumentImpl impl) || impl.getBody() == null) {
+            return sizeInBytes;
+        }
+        Body body = this.bodies.computeIfAbsent(new BodyKey(impl), key -> new Body(key.content));
+        if (body.content != impl.getBody()) {
+            // an identical body that is held separately, e.g. one restored from a checkpoint, costs its full size
+            return sizeInBytes;
+        }
+        return body.references++ == 0 ? sizeInBytes : 0;
+    }
+
+    /**
+     * drop a resident reference taken with acquire
+     * @return what is freed: the body's size once its last reference is dropped, and nothing before that
+     */
+    public int release(Document document, int sizeInBytes) {
+        if (!(document instanceof DocumentImpl impl) || impl.getBody() == null) {
+            return sizeInBytes;
+        }
+        BodyKey key = new BodyKey(impl);
+        Body body = this.bodies.get(key);
+        if (body == null || body.content != impl.getBody()) {
+            return sizeInBytes;
+        }
+        if (--body.references == 0) {
+            this.bodies.remove(key);
+            return sizeInBytes;
+        }
+        return 0;
+    }
+
+    /**
+     * @return how many distinct bodies are resident
+     */
+    public int size() {
+        return this.bodies.size();
+    }
+}
@@ -0,0 +1,56 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives each document URI a dense int ID, 0, 1, 2, ... in the order they are first seen, so that indexes can hold
+ * ints rather than references to documents, and arrays indexed by ID can stand in for maps. A URI keeps its ID for
+ * as long as the catalog lives, even after its document is deleted, so a posting never comes to mean another
+ * document. IDs are not persisted; a restart gives them out again as the documents are indexed.
+ */
+public class DocumentCatalog {
+    private final Map<URI, Integer> ids = new HashMap<>();
+    private URI[] uris = new URI[16];
+
+    /**
+     * @return the URI's ID, given the next free one if it has none yet
+     */
+    public int idOf(URI uri) {
+        Integer id = this.ids.get(uri);
+        if (id != null) {
+            return id;
+        }
+        int next = this.ids.size();
+        if (next == this.uris.length) {
+            this.uris = Arrays.copyOf(this.uris, next * 2);
+        }
+        this.uris[next] = uri;
+        this.ids.put(uri, next);
+        return next;
+    }
+
+    /**
+     * @return the URI's ID, or -1 if it has none
+     */
+    public int find(URI uri) {
+        Integer id = this.ids.get(uri);
+        return id != null ? id : -1;
+    }
+
+    public URI uriOf(int id) {
+        if (id < 0 || id >= this.ids.size()) {
+            throw new IllegalArgumentException("No document has ID " + id);
+        }
+        return this.uris[id];
+    }
+
+    /**
+     * @return how many IDs have been given out, i.e. one more than the highest
+     */
+    public int size() {
+        return this.ids.size();
+    }
+}
@@ -39,6 +39,44 @@ public class DocumentImpl implements Document, Comparable<Document> {
         this.wordMap = new HashMap<>();
     }
 
+    // Builds a document from fields a codec has just read, taking them as they are, without copying them
+    DocumentImpl(URI uri, String text, byte[] binaryData, Map<String, String> metadata, long lastUseTime, Map<String, Integer> wordMap) {
+        this.uri = uri;
+        this.text = text;
+        this.binaryData = binaryData;
+        this.metadata = metadata != null ? metadata : new HashMap<>();
+        this.lastUseTime = lastUseTime;
+        this.wordMap = wordMap != null ? wordMap : text != null && binaryData == null ? generateWordMap(text) : new HashMap<>();
+    }
+
+    // Copies a document onto an identical body that is already in memory, so that the body is held once
+    DocumentImpl(DocumentImpl document, Object body) {
+        this.uri = document.uri;
+        this.text = body instanceof String sharedText ? sharedText : null;
+        this.binaryData = body instanceof byte[] sharedData ? sharedData : null;
+        this.metadata = new HashMap<>(document.metadata);
+        this.lastUseTime = document.lastUseTime;
+        this.wordMap = document.wordMap;
+    }
+
+    // the text or the binary data itself, not a copy; compared by identity to tell whether a body is shared
+    Object getBody() {
+        return this.binaryData != null ? this.binaryData : this.text;
+    }
+
+    // the fields themselves, for the codecs to write without copying them
+    byte[] binaryData() {
+        return this.binaryData;
+    }
+
+    Map<String, String> metadata() {
+        return this.metadata;
+    }
+
+    Map<String, Integer> wordMap() {
+        return this.wordMap;
+    }
+
     private Map<String, Integer> generateWordMap(String text) {
         Map<String, Integer> map = new HashMap<>();
         String[] words = text.toLowerCase().split("\\W+");
@@ -118,7 +156,7 @@ public boolean equals(Object obj) {
         return false;
     }
     DocumentImpl document = (DocumentImpl) obj;
-    return uri.equals(document.uri) && text.equals(document.text);
+    return uri.equals(document.uri) && Objects.equals(text, document.text) && Arrays.equals(binaryData, document.binaryData);
 }
 
 
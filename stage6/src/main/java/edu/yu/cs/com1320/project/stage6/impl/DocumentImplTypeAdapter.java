@@ -0,0 +1,151 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes a DocumentImpl field by field, in the same JSON Gson's reflection would produce: the fields in
+ * declaration order, nulls left out, binary data as an array of numbers. Nothing is built up as a string first,
+ * the document's own maps and data are written without being copied, and read values go straight into the new
+ * document.
+ */
+public class DocumentImplTypeAdapter extends TypeAdapter<DocumentImpl> {
+    // what JsonWriter.value(long) would write for each byte, and for most word counts, without formatting a new
+    // string each time
+    private static final String[] BYTE_VALUES = new String[256];
+
+    static {
+        for (int b = Byte.MIN_VALUE; b <= Byte.MAX_VALUE; b++) {
+            BYTE_VALUES[b - Byte.MIN_VALUE] = Integer.toString(b);
+        }
+    }
+
+    @Override
+    public void write(JsonWriter out, DocumentImpl document) throws IOException {
+        if (document == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("uri").value(document.getKey().toASCIIString());
+        if (document.getDocumentTxt() != null) {
+            out.name("text").value(document.getDocumentTxt());
+        }
+        byte[] data = document.binaryData();
+        if (data != null) {
+            out.name("binaryData").beginArray();
+            for (byte b : data) {
+                writeInt(out, b);
+            }
+            out.endArray();
+        }
+        out.name("metadata").beginObject();
+        for (Map.Entry<String, String> entry : document.metadata().entrySet()) {
+            // a null value drops the name too, unless the writer serializes nulls
+            out.name(entry.getKey()).value(entry.getValue());
+        }
+        out.endObject();
+        out.name("lastUseTime").value(document.getLastUseTime());
+        Map<String, Integer> wordMap = document.wordMap();
+        if (wordMap != null) {
+            out.name("wordMap").beginObject();
+            for (Map.Entry<String, Integer> entry : wordMap.entrySet()) {
+                writeInt(out.name(entry.getKey()), entry.getValue());
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public DocumentImpl read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        URI uri = null;
+        String text = null;
+        byte[] data = null;
+        Map<String, String> metadata = null;
+        long lastUseTime = 0;
+        Map<String, Integer> wordMap = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "uri" -> uri = readUri(in.nextString());
+                case "text" -> text = in.nextString();
+                case "binaryData" -> data = readBytes(in);
+                case "metadata" -> {
+                    metadata = new HashMap<>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String key = in.nextName();
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            metadata.put(key, null);
+                        } else {
+                            metadata.put(key, in.nextString());
+                        }
+                    }
+                    in.endObject();
+                }
+                case "lastUseTime" -> lastUseTime = in.nextLong();
+                case "wordMap" -> {
+                    wordMap = new HashMap<>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        wordMap.put(in.nextName(), in.nextInt());
+                    }
+                    in.endObject();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (uri == null) {
+            throw new JsonParseException("Document has no uri");
+        }
+        return new DocumentImpl(uri, text, data, metadata, lastUseTime, wordMap);
+    }
+
+    private static void writeInt(JsonWriter out, int value) throws IOException {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            out.jsonValue(BYTE_VALUES[value - Byte.MIN_VALUE]);
+        } else {
+            out.value(value);
+        }
+    }
+
+    private static URI readUri(String value) {
+        try {
+            return new URI(value);
+        } catch (URISyntaxException e) {
+            throw new JsonParseException(e);
+        }
+    }
+
+    private static byte[] readBytes(JsonReader in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        in.beginArray();
+        while (in.hasNext()) {
+            bytes.write(in.nextInt());
+        }
+        in.endArray();
+        return bytes.toByteArray();
+    }
+}
@@ -1,61 +1,262 @@
 package edu.yu.cs.com1320.project.stage6.impl;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
 import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+/**
+ * Stores each document in its own file under baseDir, at host/path plus the codec's file extension.
+ * Documents written as JSON by earlier versions are still read, and are replaced on their next write.
+ * Files are read through a pool of memory mappings rather than streamed.
+ * <p>
+ * Writes and deletes are not forced to disk as they happen; the files written and the directories changed since
+ * the last sync are remembered, and sync forces them.
+ */
 public class DocumentPersistenceManager implements PersistenceManager<URI, Document> {
+    private static final String KEY_LOG = ".stored-keys";
+    private static final DocumentCodec LEGACY_CODEC = new JsonDocumentCodec();
+    private static final int MAX_MAPPINGS = 64;
     private final File baseDir;
+    private final DocumentCodec codec;
+    private final StoredKeyFilter storedKeys;
+    private final MappedFilePool mappings = new MappedFilePool(MAX_MAPPINGS);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Set<Path> unsyncedFiles = ConcurrentHashMap.newKeySet();
+    private final Set<Path> unsyncedDirs = ConcurrentHashMap.newKeySet();
 
     public DocumentPersistenceManager(File baseDir) {
+        this(baseDir, new BinaryDocumentCodec());
+    }
+
+    public DocumentPersistenceManager(File baseDir, DocumentCodec codec) {
         this.baseDir = baseDir != null ? baseDir : new File(System.getProperty("user.dir"));
+        this.codec = codec;
+        File keyLog = new File(this.baseDir, KEY_LOG);
+        try {
+            // without a key log, any documents already here predate it and have to be found by walking baseDir
+            this.storedKeys = new StoredKeyFilter(keyLog, keyLog.exists() ? List.of() : keys());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
     public void serialize(URI uri, Document val) throws IOException {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String json = gson.toJson(val);
-        File file = new File(this.baseDir, uri.getHost() + uri.getPath().replace("/", File.separator) + ".json");
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            if (!parentDir.mkdirs()) {
-                throw new IOException("Failed to create directories for path: " + parentDir.getAbsolutePath());
-            }
-        }
-        try (Writer writer = new FileWriter(file)) {
-            writer.write(json);
-        }
+        File file = write(uri, val);
+        this.storedKeys.add(uri);
         System.out.println("Serialized document with key: " + uri + " to path: " + file.getAbsolutePath());
     }
 
+    /**
+     * Each document still gets its own file, so the writes can't be merged, but the batch is made durable once it
+     * is all written: each file is forced, then each directory written into once, however many of the batch's
+     * documents it holds, then the key log once
+     */
+    @Override
+    public void serializeAll(Map<URI, Document> values) throws IOException {
+        for (Map.Entry<URI, Document> entry : values.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        this.storedKeys.addAll(values.keySet());
+        sync();
+        System.out.println("Serialized " + values.size() + " documents under: " + this.baseDir.getAbsolutePath());
+    }
+
     @Override
     public Document deserialize(URI uri) throws IOException {
-        File file = new File(this.baseDir, uri.getHost() + uri.getPath().replace("/", File.separator) + ".json");
+        if (!this.storedKeys.mightContain(uri)) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        DocumentCodec readWith = this.codec;
+        File file = fileFor(uri, readWith);
+        if (!file.exists()) {
+            readWith = LEGACY_CODEC;
+            file = fileFor(uri, readWith);
+        }
         if (!file.exists()) {
             System.out.println("File not found for deserialization: " + file.getAbsolutePath());
+            this.misses.incrementAndGet();
             return null;
         }
-        Gson gson = new Gson();
-        try (Reader reader = new FileReader(file)) {
-            Document document = gson.fromJson(reader, DocumentImpl.class);
+        try {
+            Document document = readWith.decode(this.mappings.map(file, 0));
             System.out.println("Deserialized document with key: " + uri + " from " + file.getAbsolutePath());
+            this.hits.incrementAndGet();
             return document;
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.out.println("File not found for deserialization: " + file.getAbsolutePath());
+            this.misses.incrementAndGet();
             return null;
         }
     }
 
+    /**
+     * @return how many documents deserialize has found
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return how many times deserialize found nothing stored
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Each document is in its own file, so the files are read and decoded in parallel, on the common fork-join pool
+     */
+    @Override
+    public Map<URI, Document> deserializeAll(Collection<URI> uris) throws IOException {
+        Map<URI, Document> found = new ConcurrentHashMap<>();
+        try {
+            uris.parallelStream().forEach(uri -> {
+                try {
+                    Document document = deserialize(uri);
+                    if (document != null) {
+                        found.put(uri, document);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return found;
+    }
+
     @Override
     public boolean delete(URI uri) throws IOException {
-        File file = new File(this.baseDir, uri.getHost() + uri.getPath().replace("/", File.separator) + ".json");
+        if (!this.storedKeys.mightContain(uri)) {
+            return false;
+        }
+        File file = fileFor(uri, this.codec);
+        this.mappings.invalidate(file);
         boolean result = Files.deleteIfExists(file.toPath());
+        if (!writesLegacyFormat()) {
+            File legacy = fileFor(uri, LEGACY_CODEC);
+            this.mappings.invalidate(legacy);
+            result |= Files.deleteIfExists(legacy.toPath());
+        }
+        if (result) {
+            this.unsyncedDirs.add(file.toPath().getParent());
+        }
         System.out.println("Delete operation for key: " + uri + " from path: " + file.getAbsolutePath() + " was " + (result ? "successful" : "unsuccessful"));
         return result;
     }
+
+    /**
+     * Forces the files written since the last sync, then the directories whose entries changed, then the key log
+     */
+    @Override
+    public void sync() throws IOException {
+        forceAll(this.unsyncedFiles);
+        forceAll(this.unsyncedDirs);
+        this.storedKeys.force();
+    }
+
+    @Override
+    public List<URI> keys() throws IOException {
+        List<URI> keys = new ArrayList<>();
+        if (!this.baseDir.isDirectory()) {
+            return keys;
+        }
+        try (Stream<Path> paths = Files.walk(this.baseDir.toPath())) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                DocumentCodec readWith = codecFor(path);
+                if (readWith == null) {
+                    continue;
+                }
+                URI uri = readKey(path.toFile(), readWith);
+                // a document with both files is being migrated from JSON; count it once
+                if (uri != null && !(readWith == LEGACY_CODEC && fileFor(uri, this.codec).exists())) {
+                    keys.add(uri);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private File write(URI uri, Document val) throws IOException {
+        File file = fileFor(uri, this.codec);
+        File parentDir = file.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            if (!parentDir.mkdirs()) {
+                throw new IOException("Failed to create directories for path: " + parentDir.getAbsolutePath());
+            }
+        }
+        this.mappings.invalidate(file);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            this.codec.encode(val, out);
+        }
+        if (!writesLegacyFormat()) {
+            File legacy = fileFor(uri, LEGACY_CODEC);
+            this.mappings.invalidate(legacy);
+            Files.deleteIfExists(legacy.toPath());
+        }
+        this.unsyncedFiles.add(file.toPath());
+        this.unsyncedDirs.add(file.toPath().getParent());
+        return file;
+    }
+
+    // a path is taken out before it is forced, so one written again meanwhile stays in for the next sync
+    private static void forceAll(Set<Path> paths) throws IOException {
+        for (Iterator<Path> it = paths.iterator(); it.hasNext(); ) {
+            Path path = it.next();
+            it.remove();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (NoSuchFileException e) {
+                // deleted since; the directory it was in is forced instead
+            } catch (IOException e) {
+                paths.add(path);
+                throw e;
+            }
+        }
+    }
+
+    private boolean writesLegacyFormat() {
+        return this.codec.getFileExtension().equals(LEGACY_CODEC.getFileExtension());
+    }
+
+    private DocumentCodec codecFor(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(this.codec.getFileExtension())) {
+            return this.codec;
+        }
+        return name.endsWith(LEGACY_CODEC.getFileExtension()) ? LEGACY_CODEC : null;
+    }
+
+    private URI readKey(File file, DocumentCodec readWith) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return readWith.decodeKey(in);
+        } catch (IOException e) {
+            return null; // not one of our documents
+        }
+    }
+
+    private File fileFor(URI uri, DocumentCodec codec) {
+        return new File(this.baseDir, uri.getHost() + uri.getPath().replace("/", File.separator) + codec.getFileExtension());
+    }
 }
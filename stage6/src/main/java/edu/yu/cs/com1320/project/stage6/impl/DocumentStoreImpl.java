@@ -1,14 +1,16 @@
 package edu.yu.cs.com1320.project.stage6.impl;
 
 
-import edu.yu.cs.com1320.project.BTree;
 import edu.yu.cs.com1320.project.impl.BTreeImpl;
+import edu.yu.cs.com1320.project.impl.BoundedHeap;
+import edu.yu.cs.com1320.project.impl.LevenshteinAutomaton;
 import edu.yu.cs.com1320.project.impl.MinHeapImpl;
 import edu.yu.cs.com1320.project.impl.StackImpl;
-import edu.yu.cs.com1320.project.impl.TrieImpl;
+import edu.yu.cs.com1320.project.impl.WildcardAutomaton;
 import edu.yu.cs.com1320.project.stage6.Document;
 import edu.yu.cs.com1320.project.stage6.DocumentStore;
 import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.Query;
 import edu.yu.cs.com1320.project.undo.CommandSet;
 import edu.yu.cs.com1320.project.undo.GenericCommand;
 import edu.yu.cs.com1320.project.undo.Undoable;
@@ -19,48 +21,438 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class DocumentStoreImpl implements DocumentStore {
-    private final BTree<URI, Document> documentTree;
+    private static final int BTREE_FAN_OUT = 64;
+    private static final int METADATA_SCAN_BATCH = 64;
+    private static final String CHECKPOINT_FILE = ".checkpoint";
+    private static final BinaryDocumentCodec CHECKPOINT_CODEC = new BinaryDocumentCodec();
+    private final BTreeImpl<URI, Document> documentTree;
     private final Stack<Undoable> commandStack;
-    private final TrieImpl<Document> trie;
+    private final InvertedIndex index;
+    private final DocumentCatalog catalog;
+    private final QueryEvaluator queries;
     private final MinHeapImpl<Document> minHeap;
     private final PersistenceManager<URI, Document> pm;
     private final Set<URI> documentURIs;
+    private final DocumentBodies bodies;
+    private final UndoStash undoStash;
+    private final Map<Undoable, List<URI>> stashKeys = new IdentityHashMap<>(); // what each command on the stack stashed
+    private int undoLimit = Integer.MAX_VALUE;
+    private final WriteAheadLog wal;
     private int maxDocumentCount = Integer.MAX_VALUE;
     private int maxDocumentBytes = Integer.MAX_VALUE;
     private int currentDocumentBytes = 0;
     private int currentDocumentCount;
+    private double evictionWatermark = 1.0;
+    private long hitCount;
+    private long missCount;
+    private long evictionBatchCount;
+    private long evictionNanos;
+    private final File checkpointFile;
+    private ExecutorService checkpointWriter;
+    private Future<?> pendingCheckpoint;
+    private final Set<URI> keptCopies = new HashSet<>(); // stored copies of resident documents, see KeptCopyPersistenceManager
+    private final Set<URI> checkpointedCopies = new HashSet<>(); // those the pending checkpoint has as resident
+    private long checkpointIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+    private long lastCheckpointTime;
+    private long lastCheckpointOffset = -1;
+    private long checkpointCount;
+    private long checkpointPauseNanos;
+    private final AtomicLong checkpointWriteNanos = new AtomicLong(); // added to by the checkpoint writer
 
     public DocumentStoreImpl(File baseDir) {
-        this.documentTree = new BTreeImpl<>();
-        this.pm = new DocumentPersistenceManager(baseDir);
-        this.documentTree.setPersistenceManager(this.pm);
+        this(baseDir, false);
+    }
+
+    /**
+     * @param baseDir directory documents are moved to when memory limits are exceeded
+     * @param loadExisting if true, documents already stored in baseDir by an earlier store are bulk-loaded into
+     *                     the document tree, and stay on disk until they are used. They are not indexed for search.
+     */
+    public DocumentStoreImpl(File baseDir, boolean loadExisting) {
+        this(baseDir, new DocumentPersistenceManager(baseDir), loadExisting);
+    }
+
+    /**
+     * @param baseDir directory the document tree pages its leaves out to
+     * @param pm where documents are moved to when memory limits are exceeded, e.g. a SegmentPersistenceManager,
+     *           or a WriteBehindPersistenceManager to take the writes off the caller's thread
+     * @param loadExisting if true, documents already stored by pm are bulk-loaded into the document tree
+     */
+    public DocumentStoreImpl(File baseDir, PersistenceManager<URI, Document> pm, boolean loadExisting) {
+        this(baseDir, pm, loadExisting, null);
+    }
+
+    /**
+     * @param baseDir directory the document tree pages its leaves out to
+     * @param pm where documents are moved to when memory limits are exceeded
+     * @param loadExisting if true, documents already stored by pm are bulk-loaded into the document tree
+     * @param wal log that every change to the store is written to before it is made, or null for none.
+     *            Whatever the log already holds is replayed here, rebuilding the documents, indexes and memory
+     *            accounting of the store that wrote it. If the store checkpointed into baseDir, the checkpoint is
+     *            loaded first and only the part of the log written after it is replayed. The undo stack is not
+     *            recovered.
+     */
+    public DocumentStoreImpl(File baseDir, PersistenceManager<URI, Document> pm, boolean loadExisting, WriteAheadLog wal) {
+        this(baseDir, pm, loadExisting, wal, false);
+    }
+
+    /**
+     * @param baseDir directory the document tree pages its leaves out to
+     * @param pm where documents are moved to when memory limits are exceeded
+     * @param loadExisting if true, documents already stored by pm are bulk-loaded into the document tree
+     * @param wal log that every change to the store is written to before it is made, or null for none
+     * @param positional if true, the index keeps where each word is in each document, so that phrase and
+     *                   proximity queries can be answered from it. The positions take about as much space again as
+     *                   the rest of the index.
+     */
+    public DocumentStoreImpl(File baseDir, PersistenceManager<URI, Document> pm, boolean loadExisting, WriteAheadLog wal, boolean positional) {
+        File dir = baseDir != null ? baseDir : new File(System.getProperty("user.dir"));
+        this.documentTree = new BTreeImpl<>(BTREE_FAN_OUT, new File(dir, ".btree"));
+        this.pm = pm;
+        this.documentTree.setPersistenceManager(wal != null ? new KeptCopyPersistenceManager() : this.pm);
         this.commandStack = new Stack<>();
-        this.trie = new TrieImpl<>();
+        this.index = new InvertedIndex(positional);
+        this.catalog = new DocumentCatalog();
+        this.queries = new QueryEvaluator(this.index);
         this.minHeap = new MinHeapImpl<>();
         this.documentURIs = new HashSet<>();
+        this.bodies = new DocumentBodies();
+        this.undoStash = new UndoStash(new File(dir, ".undo"));
         this.currentDocumentBytes = 0;
         this.currentDocumentCount = 0; // Initialize document count
+        this.checkpointFile = new File(dir, CHECKPOINT_FILE);
+        if (loadExisting) {
+            loadExistingDocuments();
+        }
+        if (wal != null) {
+            long replayFrom = this.checkpointFile.exists() ? restoreCheckpoint(loadExisting) : 0;
+            recover(wal, replayFrom);
+        }
+        this.wal = wal;
+        this.lastCheckpointTime = System.nanoTime();
     }
 
     public DocumentStoreImpl() {
         this(null);
     }
 
+    private void loadExistingDocuments() {
+        try {
+            SortedSet<URI> stored = new TreeSet<>(this.pm.keys());
+            this.documentTree.bulkLoad(stored.iterator());
+            this.documentURIs.addAll(stored);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // loads the resident documents of the checkpoint with their sizes and last-use times, and indexes every document
+    // term by term from the checkpoint's postings. Evicted documents stay with the persistence manager and are not
+    // read back; only a positional store tokenizes the text of its resident documents again, for the positions.
+    private long restoreCheckpoint(boolean loadExisting) {
+        StoreCheckpoint checkpoint;
+        try {
+            checkpoint = StoreCheckpoint.read(this.checkpointFile, CHECKPOINT_CODEC);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        List<URI> evicted = checkpoint.getEvicted();
+        List<Document> resident = checkpoint.getResident();
+        // IDs are given out in the order of the checkpoint's postings, so indexing each of them is an append
+        int[] evictedIds = new int[evicted.size()];
+        for (int i = 0; i < evictedIds.length; i++) {
+            evictedIds[i] = this.catalog.idOf(evicted.get(i));
+        }
+        for (Document document : resident) {
+            this.catalog.idOf(document.getKey());
+        }
+        boolean positional = this.index.isPositional();
+        try {
+            // loadExisting has already put every stored key in the tree
+            if (!loadExisting) {
+                this.documentTree.bulkLoad(new TreeSet<>(evicted).iterator());
+            }
+            // the checkpoint has no positions for them, so they are read back once to be indexed
+            if (positional && !checkpoint.isPositional()) {
+                for (URI uri : evicted) {
+                    Document document = this.pm.deserialize(uri);
+                    if (document != null) {
+                        reAddToIndexes(document);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.documentURIs.addAll(evicted);
+        if (!positional || checkpoint.isPositional()) {
+            checkpoint.getEvictedTermIndex().forEach((term, postings) -> {
+                for (StoreCheckpoint.EvictedPosting posting : postings) {
+                    int id = evictedIds[posting.getEvictedIndex()];
+                    // metadata terms have no positions
+                    if (positional && posting.getPositions().length > 0) {
+                        this.index.add(term, id, posting.getPositions());
+                    } else {
+                        this.index.add(term, id, posting.getFrequency());
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < resident.size(); i++) {
+            Document document = this.bodies.share(resident.get(i));
+            document.setLastUseTime(checkpoint.getLastUseTime(i));
+            this.documentTree.put(document.getKey(), document);
+            this.documentURIs.add(document.getKey());
+            this.minHeap.insert(document);
+            this.currentDocumentBytes += this.bodies.acquire(document, checkpoint.getSizeInBytes(i));
+            this.currentDocumentCount++;
+        }
+        this.lastCheckpointOffset = checkpoint.getLogOffset();
+        if (positional) {
+            // the checkpoint has no positions for the resident documents, so they are indexed from their text
+            for (Document document : resident) {
+                reAddToIndexes(document);
+            }
+            return checkpoint.getLogOffset();
+        }
+        Map<Document, Map<String, Integer>> wordMaps = new IdentityHashMap<>();
+        for (Document document : resident) {
+            wordMaps.put(document, document.getDocumentTxt() != null ? document.getWordMap() : Map.of());
+        }
+        checkpoint.getTermIndex().forEach((term, documents) -> {
+            for (Document document : documents) {
+                // metadata terms are not words of the document, and have no frequency
+                this.index.add(term, this.catalog.idOf(document.getKey()), wordMaps.get(document).getOrDefault(term, 0));
+            }
+        });
+        return checkpoint.getLogOffset();
+    }
+
+    // replays the log from the given offset. Each document the log touches is first taken out of the store as it
+    // stood, then folded into its last state, and the survivors are indexed as if they had just been put.
+    private void recover(WriteAheadLog log, long fromOffset) {
+        Map<URI, Document> touched = new LinkedHashMap<>(); // last state of each document, null once deleted
+        Set<URI> reloaded = new HashSet<>(); // read back in from the persistence manager, which no longer has them
+        try {
+            log.replay(new WriteAheadLog.Replayer() {
+                @Override
+                public void put(Document document) {
+                    retire(document.getKey(), touched, reloaded);
+                    // re-inserted so that the most recently written documents come last, i.e. are the last evicted
+                    touched.remove(document.getKey());
+                    touched.put(document.getKey(), document);
+                    reloaded.remove(document.getKey());
+                }
+
+                @Override
+                public void delete(URI uri) {
+                    retire(uri, touched, reloaded);
+                    touched.put(uri, null);
+                    reloaded.remove(uri);
+                }
+
+                @Override
+                public void setMetadata(URI uri, String key, String value) {
+                    retire(uri, touched, reloaded);
+                    Document document = touched.get(uri);
+                    if (document != null) {
+                        document.setMetadataValue(key, value);
+                    }
+                }
+            }, fromOffset);
+            for (Map.Entry<URI, Document> entry : touched.entrySet()) {
+                Document document = entry.getValue();
+                if (document == null) {
+                    putInTree(entry.getKey(), null);
+                    continue;
+                }
+                if (reloaded.contains(entry.getKey())) {
+                    log.logPut(document);
+                }
+                document.setLastUseTime(System.nanoTime());
+                this.documentTree.put(document.getKey(), document);
+                this.documentURIs.add(document.getKey());
+                this.minHeap.insert(document);
+                chargeBytes(document);
+                this.currentDocumentCount++;
+                reAddToIndexes(document);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // takes whatever is stored at uri out of the heap, the memory accounting and the indexes, the first time the
+    // log touches it
+    private void retire(URI uri, Map<URI, Document> touched, Set<URI> reloaded) {
+        if (touched.containsKey(uri)) {
+            return;
+        }
+        Document existing = this.documentTree.get(uri);
+        if (existing != null) {
+            if (this.minHeap.contains(existing)) {
+                this.minHeap.remove(existing);
+                releaseBytes(existing);
+                this.currentDocumentCount--;
+            } else {
+                reloaded.add(uri);
+            }
+            removeFromIndexes(existing);
+            this.documentURIs.remove(uri);
+        }
+        touched.put(uri, existing);
+    }
+
+    // every change to which document is stored at a uri goes through here, so the write-ahead log sees all of them
+    private void putInTree(URI uri, Document document) {
+        if (this.wal != null) {
+            try {
+                if (document != null) {
+                    this.wal.logPut(document);
+                } else {
+                    this.wal.logDelete(uri);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        this.documentTree.put(uri, document);
+        // a removed document's kept copy has to go now, or the tree would find it on disk again
+        if (document == null && (this.keptCopies.remove(uri) | this.checkpointedCopies.remove(uri))) {
+            try {
+                this.pm.delete(uri);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The document tree's view of the persistence manager when there is a write-ahead log. The tree deletes the
+     * stored copy of a document when it reads it back in or replaces it; here the copy is kept instead, until a
+     * checkpoint that has the document as resident is on disk, so that reading a document never has to log it
+     * to survive a crash. Writing the document out again supersedes its kept copy.
+     */
+    private final class KeptCopyPersistenceManager implements PersistenceManager<URI, Document> {
+        @Override
+        public void serialize(URI uri, Document val) throws IOException {
+            pm.serialize(uri, val);
+            keptCopies.remove(uri);
+            checkpointedCopies.remove(uri);
+        }
+
+        @Override
+        public void serializeAll(Map<URI, Document> values) throws IOException {
+            pm.serializeAll(values);
+            keptCopies.removeAll(values.keySet());
+            checkpointedCopies.removeAll(values.keySet());
+        }
+
+        @Override
+        public Document deserialize(URI uri) throws IOException {
+            return pm.deserialize(uri);
+        }
+
+        @Override
+        public Map<URI, Document> deserializeAll(Collection<URI> uris) throws IOException {
+            return pm.deserializeAll(uris);
+        }
+
+        /**
+         * @return true; the copy is as good as deleted for the tree
+         */
+        @Override
+        public boolean delete(URI uri) {
+            keptCopies.add(uri);
+            return true;
+        }
+
+        @Override
+        public List<URI> keys() throws IOException {
+            return pm.keys();
+        }
+
+        @Override
+        public void sync() throws IOException {
+            pm.sync();
+        }
+    }
+
+    private Document getFromTree(URI uri) {
+        Document document = this.documentTree.get(uri);
+        if (document != null && this.minHeap.contains(document)) {
+            this.hitCount++;
+        } else if (document != null) {
+            Document shared = this.bodies.share(document);
+            if (shared != document) {
+                this.documentTree.put(uri, shared);
+                document = shared;
+            }
+            reloaded(document);
+        }
+        return document;
+    }
+
+    // an evicted document read back in is resident from then on: it goes back on the heap and into the memory
+    // accounting. Nothing is logged; with a log, its stored copy is kept until a checkpoint has it.
+    private void reloaded(Document document) {
+        this.missCount++;
+        document.setLastUseTime(System.nanoTime());
+        this.minHeap.insert(document);
+        chargeBytes(document);
+        this.currentDocumentCount++;
+    }
+
+    private String setMetadataValue(Document document, String key, String value) {
+        if (this.wal != null) {
+            try {
+                this.wal.logSetMetadata(document.getKey(), key, value);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        String oldValue = document.setMetadataValue(key, value);
+        // the index names documents by URI, so it must follow the metadata of the one stored there
+        int id = this.catalog.find(document.getKey());
+        if (id >= 0) {
+            if (oldValue != null) {
+                this.index.remove(metadataTerm(key, oldValue), id);
+            }
+            if (value != null) {
+                this.index.add(metadataTerm(key, value), id, 0);
+            }
+        }
+        return oldValue;
+    }
+
     @Override
     public String setMetadata(URI uri, String key, String value) throws IOException{
         if (uri == null || key == null || key.isBlank()) {
             throw new IllegalArgumentException("URI and metadata key must not be null or empty");
         }
-        Document document = this.documentTree.get(uri);
+        maybeCheckpoint();
+        Document document = getFromTree(uri);
         if (document == null) {
             throw new IllegalArgumentException("No document stored at URI: " + uri);
         }
-        String oldValue = document.setMetadataValue(key, value);
-        GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> document.setMetadataValue(key, oldValue));
-        this.commandStack.push(command);
+        String oldValue = setMetadataValue(document, key, value);
+        GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> {
+            Document current = getFromTree(uri1);
+            if (current != null) {
+                setMetadataValue(current, key, oldValue);
+            }
+        });
+        pushCommand(command, List.of());
+        enforceMemoryLimits();
         return oldValue;
     }
 
@@ -70,10 +462,11 @@ public class DocumentStoreImpl implements DocumentStore {
         if (uri == null || key == null || key.isBlank()) {
             throw new IllegalArgumentException("URI and metadata key must not be null or empty");
         }
-        Document document = this.documentTree.get(uri);
+        Document document = getFromTree(uri);
         if (document == null) {
             throw new IllegalArgumentException("No document stored at URI: " + uri);
         }
+        enforceMemoryLimits();
         return document.getMetadataValue(key);
     }
 
@@ -85,9 +478,9 @@ public class DocumentStoreImpl implements DocumentStore {
         if (uri == null || format == null) {
             throw new IllegalArgumentException("URI and format must not be null");
         }
+        maybeCheckpoint();
 
-        Document previousDocument = this.documentTree.get(uri);
-        int previousDocumentSize = previousDocument != null ? getSizeInBytes(previousDocument) : 0;
+        Document previousDocument = getFromTree(uri);
 
         if (input == null) {
             delete(uri);
@@ -95,16 +488,21 @@ public class DocumentStoreImpl implements DocumentStore {
         }
 
         byte[] data = input.readAllBytes();
+        if (previousDocument != null) {
+            // the new document is indexed under the same ID, which must not keep any of the old one's terms
+            removeFromIndexes(previousDocument);
+        }
         Document newDocument = createDocument(uri, format, data);
 
         newDocument.setLastUseTime(System.nanoTime());
 
         indexMetadata(newDocument);
-        updateMemoryUsage(previousDocument, newDocument, previousDocumentSize);
+        updateMemoryUsage(previousDocument, newDocument);
         enforceMemoryLimits();
 
-        GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> undoPut(uri1, previousDocument, newDocument, previousDocumentSize));
-        this.commandStack.push(command);
+        URI previousKey = previousDocument != null ? this.undoStash.stash(previousDocument) : null;
+        GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> undoPut(uri1, previousKey));
+        pushCommand(command, previousKey != null ? List.of(previousKey) : List.of());
 
         return previousDocument != null ? previousDocument.hashCode() : 0;
     }
@@ -115,18 +513,25 @@ public class DocumentStoreImpl implements DocumentStore {
         Document newDocument;
         if (format == DocumentFormat.TXT) {
             String text = new String(data);
-            newDocument = new DocumentImpl(uri, text, buildWordMap(text));
-            indexContent(text, newDocument);
+            HashMap<String, Integer> wordMap = buildWordMap(text);
+            newDocument = this.bodies.share(new DocumentImpl(uri, text, wordMap));
+            indexContent(wordMap, newDocument);
         } else {
-            newDocument = new DocumentImpl(uri, data);
+            newDocument = this.bodies.share(new DocumentImpl(uri, data));
         }
         return newDocument;
     }
 
-    private void indexContent(String text, Document document) {
-        String[] words = text.split("\\W+");
-        for (String word : words) {
-            this.trie.put(word.toLowerCase(), document);
+    private void indexContent(Map<String, Integer> wordMap, Document document) {
+        int id = this.catalog.idOf(document.getKey());
+        if (this.index.isPositional()) {
+            for (Map.Entry<String, int[]> entry : buildPositionMap(document.getDocumentTxt()).entrySet()) {
+                this.index.add(entry.getKey(), id, entry.getValue());
+            }
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : wordMap.entrySet()) {
+            this.index.add(entry.getKey(), id, entry.getValue());
         }
     }
 
@@ -136,34 +541,52 @@ public class DocumentStoreImpl implements DocumentStore {
             for (String key : metadata.keySet()) {
                 String value = metadata.get(key);
                 if (value != null) {
-                    this.trie.put(key.toLowerCase() + ":" + value.toLowerCase(), document);
+                    this.index.add(metadataTerm(key, value), this.catalog.idOf(document.getKey()), 0);
                 }
             }
         }
     }
 
-    private void updateMemoryUsage(Document previousDocument, Document newDocument, int previousDocumentSize) {
-        if (previousDocument != null) {
+    private static String metadataTerm(String key, String value) {
+        return key.toLowerCase() + ":" + value.toLowerCase();
+    }
+
+    private void updateMemoryUsage(Document previousDocument, Document newDocument) {
+        if (previousDocument != null && this.minHeap.contains(previousDocument)) {
             this.minHeap.remove(previousDocument);
-            this.currentDocumentBytes -= previousDocumentSize;
+            releaseBytes(previousDocument);
         } else {
             this.currentDocumentCount++; // Increment count for new document
         }
-        this.documentTree.put(newDocument.getKey(), newDocument);
+        putInTree(newDocument.getKey(), newDocument);
         this.documentURIs.add(newDocument.getKey());
         this.minHeap.insert(newDocument);
-        int sizeChange = getSizeInBytes(newDocument) - previousDocumentSize;
-        this.currentDocumentBytes += sizeChange;
+        chargeBytes(newDocument);
     }
 
 
-    private void undoPut(URI uri, Document previousDocument, Document newDocument, int sizeChange) {
-        this.documentTree.put(uri, previousDocument);
+    // the document the put replaced, if any, comes back from the undo stash; the one it put is found through the tree
+    private void undoPut(URI uri, URI previousKey) {
+        Document newDocument = this.documentTree.get(uri);
+        Document previousDocument = previousKey != null ? this.bodies.share(this.undoStash.restore(previousKey)) : null;
+        putInTree(uri, previousDocument);
+        if (newDocument != null) {
+            if (this.minHeap.contains(newDocument)) {
+                this.minHeap.remove(newDocument);
+                releaseBytes(newDocument);
+                this.currentDocumentCount--;
+            }
+            removeFromIndexes(newDocument);
+        }
         if (previousDocument != null) {
             previousDocument.setLastUseTime(System.nanoTime());
             this.minHeap.insert(previousDocument);
+            chargeBytes(previousDocument);
+            this.currentDocumentCount++;
+            reAddToIndexes(previousDocument);
+        } else {
+            this.documentURIs.remove(uri);
         }
-        this.currentDocumentBytes -= sizeChange;
         enforceMemoryLimits();
     }
 
@@ -177,29 +600,32 @@ public class DocumentStoreImpl implements DocumentStore {
         return wordCountMap;
     }
 
+    // the word offsets of each word, split and lowercased as buildWordMap does
+    private static Map<String, int[]> buildPositionMap(String text) {
+        String[] words = text.split("\\W+");
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < words.length; i++) {
+            words[i] = words[i].toLowerCase();
+            counts.merge(words[i], 1, Integer::sum);
+        }
+        Map<String, int[]> positions = new HashMap<>();
+        for (int i = words.length - 1; i >= 0; i--) {
+            // filled from the back, the count left is the slot for this offset
+            int n = counts.merge(words[i], -1, Integer::sum);
+            positions.computeIfAbsent(words[i], w -> new int[n + 1])[n] = i;
+        }
+        return positions;
+    }
+
 
 
     @Override
     public Document get(URI uri) {
-        Document doc = this.documentTree.get(uri);
-        if (doc == null) {  // Document might be on disk
-            try {
-                doc = this.pm.deserialize(uri);
-                if (doc != null) {
-                    this.documentTree.put(uri, doc);  // Reinsert into BTree
-                    this.minHeap.insert(doc);
-                    this.currentDocumentBytes += getSizeInBytes(doc);
-                    this.currentDocumentCount++; // Increment count when document is brought back into memory
-                    doc.setLastUseTime(System.nanoTime());
-                    enforceMemoryLimits();  // Ensure memory limits are still respected
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        Document doc = getFromTree(uri);
         if (doc != null) {
             doc.setLastUseTime(System.nanoTime());
             this.minHeap.reHeapify(doc);
+            enforceMemoryLimits();
         }
         return doc;
     }
@@ -213,9 +639,10 @@ public class DocumentStoreImpl implements DocumentStore {
         if (uri == null || uri.toString().isBlank()) {
             throw new IllegalArgumentException("URI must not be null or empty");
         }
+        maybeCheckpoint();
 
-        Document documentToDelete = this.documentTree.get(uri);
-        if (documentToDelete == null) {
+        URI stashKey = stashAndDelete(uri);
+        if (stashKey == null) {
             try {
                 return this.pm.delete(uri);  // Try deleting from disk if not in memory
             } catch (IOException e) {
@@ -224,9 +651,7 @@ public class DocumentStoreImpl implements DocumentStore {
             return false;
         }
 
-        removeDocumentFromStore(documentToDelete);
-        removeFromIndexes(documentToDelete);
-        recordUndoOperation(documentToDelete, uri);
+        pushCommand(restoreCommand(uri, stashKey), List.of(stashKey));
 
         return true;
     }
@@ -235,11 +660,13 @@ public class DocumentStoreImpl implements DocumentStore {
 
     private void removeDocumentFromStore(Document document) {
         URI uri = document.getKey();
-        this.documentTree.put(uri, null);
+        putInTree(uri, null);
         this.documentURIs.remove(uri);
-        this.minHeap.remove(document);
-        this.currentDocumentBytes -= getSizeInBytes(document);
-        this.currentDocumentCount--; // Decrement count when document is deleted
+        if (this.minHeap.contains(document)) {
+            this.minHeap.remove(document);
+            releaseBytes(document);
+            this.currentDocumentCount--; // Decrement count when document is deleted
+        }
     }
 
 
@@ -251,9 +678,9 @@ public class DocumentStoreImpl implements DocumentStore {
 
     private void removeTextFromTrie(Document document) {
         if (document.getDocumentTxt() != null) {
-            String[] words = document.getDocumentTxt().split("\\W+");
-            for (String word : words) {
-                this.trie.delete(word.toLowerCase(), document);
+            int id = this.catalog.find(document.getKey());
+            for (String word : document.getWordMap().keySet()) {
+                this.index.remove(word, id);
             }
         }
     }
@@ -265,24 +692,84 @@ public class DocumentStoreImpl implements DocumentStore {
             for (String key : metadata.keySet()) {
                 String value = metadata.get(key);
                 if (value != null) {
-                    this.trie.delete(key.toLowerCase() + ":" + value.toLowerCase(), document);
+                    this.index.remove(metadataTerm(key, value), this.catalog.find(document.getKey()));
                 }
             }
         }
     }
 
 
-    private void recordUndoOperation(Document document, URI uri) {
-        GenericCommand<URI> undoCommand = new GenericCommand<>(uri, uri1 -> {
-            this.documentTree.put(uri1, document);
+    // deletes the document at uri, keeping it in the undo stash
+    // @return its key in the stash, or null if there is no document at uri
+    private URI stashAndDelete(URI uri) {
+        Document document = getFromTree(uri);
+        if (document == null) {
+            return null;
+        }
+        URI stashKey = this.undoStash.stash(document);
+        removeDocumentFromStore(document);
+        removeFromIndexes(document);
+        return stashKey;
+    }
+
+    // undo commands only hold keys, so a deleted document is read back from the stash when its delete is undone
+    private GenericCommand<URI> restoreCommand(URI uri, URI stashKey) {
+        return new GenericCommand<>(uri, uri1 -> {
+            Document document = this.bodies.share(this.undoStash.restore(stashKey));
+            putInTree(uri1, document);
             this.documentURIs.add(uri1);
+            document.setLastUseTime(System.nanoTime());
             this.minHeap.insert(document);
-            this.currentDocumentBytes += getSizeInBytes(document);
+            chargeBytes(document);
+            this.currentDocumentCount++;
             reAddToIndexes(document);
         });
+    }
 
+    // deletes the documents as one command set
+    private Set<URI> deleteAllOf(Collection<Document> documents) {
+        maybeCheckpoint();
+        Set<URI> deletedURIs = new HashSet<>();
+        List<URI> stashed = new ArrayList<>();
+        CommandSet<URI> commandSet = new CommandSet<>();
+        for (Document doc : new HashSet<>(documents)) {
+            URI uri = doc.getKey();
+            URI stashKey = stashAndDelete(uri);
+            if (stashKey != null) {
+                deletedURIs.add(uri);
+                stashed.add(stashKey);
+                commandSet.addCommand(restoreCommand(uri, stashKey));
+            }
+        }
+        if (!commandSet.isEmpty()) {
+            pushCommand(commandSet, stashed);
+        }
+        return deletedURIs;
+    }
 
-        this.commandStack.push(undoCommand);
+    // forgets the oldest commands once there are more than the undo limit
+    private void pushCommand(Undoable command, List<URI> stashed) {
+        if (!stashed.isEmpty()) {
+            this.stashKeys.put(command, stashed);
+        }
+        this.commandStack.push(command);
+        trimCommandStack();
+    }
+
+    private void trimCommandStack() {
+        while (this.commandStack.size() > this.undoLimit) {
+            commandLeftStack(this.commandStack.remove(0));
+        }
+    }
+
+    // whatever the command stashed and did not restore is no longer needed by anything
+    private void commandLeftStack(Undoable command) {
+        List<URI> stashed = this.stashKeys.remove(command);
+        if (stashed != null) {
+            for (URI key : stashed) {
+                this.undoStash.discard(key);
+            }
+        }
     }
 
 
@@ -292,12 +779,11 @@ public class DocumentStoreImpl implements DocumentStore {
     }
 
 
+    // the word map the document was stored with has the words and their frequencies, so none of the text is
+    // tokenized again
     private void reAddTextToTrie(Document document) {
         if (document.getDocumentTxt() != null) {
-            String[] words = document.getDocumentTxt().split("\\W+");
-            for (String word : words) {
-                this.trie.put(word.toLowerCase(), document);
-            }
+            indexContent(document.getWordMap(), document);
         }
     }
 
@@ -308,13 +794,22 @@ public class DocumentStoreImpl implements DocumentStore {
             for (String key : metadata.keySet()) {
                 String value = metadata.get(key);
                 if (value != null) {
-                    this.trie.put(key.toLowerCase() + ":" + value.toLowerCase(), document);
+                    this.index.add(metadataTerm(key, value), this.catalog.idOf(document.getKey()), 0);
                 }
             }
         }
     }
 
 
+    // a body shared by several resident documents is charged to the memory limits once
+    private void chargeBytes(Document document) {
+        this.currentDocumentBytes += this.bodies.acquire(document, getSizeInBytes(document));
+    }
+
+    private void releaseBytes(Document document) {
+        this.currentDocumentBytes -= this.bodies.release(document, getSizeInBytes(document));
+    }
+
     private int getSizeInBytes(Document document) {
         if (document.getDocumentTxt() != null) {
             return document.getDocumentTxt().getBytes().length;
@@ -328,12 +823,14 @@ public class DocumentStoreImpl implements DocumentStore {
         if (this.commandStack.isEmpty()) {
             throw new IllegalStateException("There are no actions to be undone");
         }
+        maybeCheckpoint();
         Undoable command = this.commandStack.pop();
         if (command instanceof CommandSet) {
             ((CommandSet<?>) command).undo();
         } else {
             ((GenericCommand<?>) command).undo();
         }
+        commandLeftStack(command);
         enforceMemoryLimits();
     }
 
@@ -343,6 +840,7 @@ public class DocumentStoreImpl implements DocumentStore {
         if (this.commandStack.isEmpty()) {
             throw new IllegalStateException("There are no actions to be undone");
         }
+        maybeCheckpoint();
 
 
         Stack<Undoable> tempStack = new Stack<>();
@@ -354,6 +852,8 @@ public class DocumentStoreImpl implements DocumentStore {
             if (command instanceof CommandSet<?> commandSet) {
                 if (containsTarget(commandSet, uri)) {
                     undoCommandSet(commandSet, uri);
+                    // the rest of the set goes with it
+                    commandLeftStack(commandSet);
                     found = true;
                 } else {
                     tempStack.push(commandSet);
@@ -361,6 +861,7 @@ public class DocumentStoreImpl implements DocumentStore {
             } else if (command instanceof GenericCommand<?> genericCommand) {
                 if (genericCommand.getTarget().equals(uri)) {
                     genericCommand.undo();
+                    commandLeftStack(genericCommand);
                     found = true;
                 } else {
                     tempStack.push(genericCommand);
@@ -407,92 +908,170 @@ public class DocumentStoreImpl implements DocumentStore {
         if (keyword == null || keyword.isBlank()) {
             throw new IllegalArgumentException("Keyword must not be null or empty");
         }
+        return searchTerm(keyword.toLowerCase(), Integer.MAX_VALUE);
+    }
 
 
-        keyword = keyword.toLowerCase();
-        String finalKeyword = keyword;
-        List<Document> searchResults = trie.getSorted(keyword, Comparator.comparingInt(doc -> doc.wordCount(finalKeyword)));
-
-
-        if (!searchResults.isEmpty()) {
-            for (Document doc : searchResults) {
-                doc.setLastUseTime(System.nanoTime());
-                this.minHeap.reHeapify(doc);
-            }
+    @Override
+    public List<Document> searchByPrefix(String keywordPrefix) throws IOException {
+        if (keywordPrefix == null || keywordPrefix.isBlank()) {
+            throw new IllegalArgumentException("Keyword prefix must not be null or empty");
         }
+        return searchPrefix(keywordPrefix, Integer.MAX_VALUE);
+    }
 
 
-        return searchResults;
+    @Override
+    public List<Document> search(String keyword, int k) throws IOException {
+        if (keyword == null || keyword.isBlank() || k < 0) {
+            throw new IllegalArgumentException("Keyword must not be null or empty, and k must not be negative");
+        }
+        return searchTerm(keyword.toLowerCase(), k);
     }
 
 
     @Override
-    public List<Document> searchByPrefix(String keywordPrefix) throws IOException {
-        if (keywordPrefix == null || keywordPrefix.isBlank()) {
-            throw new IllegalArgumentException("Keyword prefix must not be null or empty");
+    public List<Document> searchByPrefix(String keywordPrefix, int k) throws IOException {
+        if (keywordPrefix == null || keywordPrefix.isBlank() || k < 0) {
+            throw new IllegalArgumentException("Keyword prefix must not be null or empty, and k must not be negative");
         }
+        return searchPrefix(keywordPrefix, k);
+    }
 
-
-        List<Document> searchResults = trie.getAllWithPrefixSorted(keywordPrefix, Comparator.comparingInt(doc -> doc.wordCount(keywordPrefix)));
+    @Override
+    public List<Document> searchFuzzy(String keyword, int maxEdits) throws IOException {
+        return searchFuzzy(keyword, maxEdits, Integer.MAX_VALUE);
+    }
 
 
-        if (!searchResults.isEmpty()) {
-            for (Document doc : searchResults) {
-                doc.setLastUseTime(System.nanoTime());
-                this.minHeap.reHeapify(doc);
+    @Override
+    public List<Document> searchFuzzy(String keyword, int maxEdits, int k) throws IOException {
+        if (keyword == null || keyword.isBlank() || maxEdits < 0 || maxEdits > LevenshteinAutomaton.MAX_EDITS || k < 0) {
+            throw new IllegalArgumentException("Keyword must not be null or empty, edits must be from 0 to "
+                    + LevenshteinAutomaton.MAX_EDITS + ", and k must not be negative");
+        }
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(keyword.toLowerCase(), maxEdits);
+        int[] edits = new int[this.catalog.size()];
+        int[] totals = new int[edits.length];
+        Arrays.fill(edits, Integer.MAX_VALUE);
+        // a document counts the frequencies of only its closest words
+        this.index.forEachPostingsAccepted(automaton, (row, postings) -> {
+            int distance = automaton.distance(row);
+            postings.forEach((id, frequency) -> {
+                if (distance < edits[id]) {
+                    edits[id] = distance;
+                    totals[id] = frequency;
+                } else if (distance == edits[id]) {
+                    totals[id] += frequency;
+                }
+            });
+        });
+        BoundedHeap<Long> ranked = new BoundedHeap<>(k, Comparator.naturalOrder());
+        for (int id = 0; id < edits.length; id++) {
+            if (edits[id] != Integer.MAX_VALUE) {
+                // fewer edits outrank any frequency; frequencies are capped to leave room for them
+                ranked.offer(((long) (LevenshteinAutomaton.MAX_EDITS - edits[id]) << 60) | rankOf(id, Math.min(totals[id], (1 << 28) - 1)));
             }
         }
+        return touchAll(ranked.toSortedList());
+    }
 
 
-        return searchResults;
+    @Override
+    public List<Document> searchWildcard(String pattern) throws IOException {
+        return searchWildcard(pattern, Integer.MAX_VALUE);
     }
 
 
     @Override
-    public Set<URI> deleteAll(String keyword) {
-        if (keyword == null || keyword.isBlank()) {
-            throw new IllegalArgumentException("Keyword must not be null or blank");
+    public List<Document> searchWildcard(String pattern, int k) throws IOException {
+        if (pattern == null || pattern.isBlank() || k < 0) {
+            throw new IllegalArgumentException("Pattern must not be null or empty, and k must not be negative");
         }
+        int[] totals = new int[this.catalog.size()];
+        BitSet matched = new BitSet(totals.length);
+        this.index.forEachPostingsAccepted(new WildcardAutomaton(pattern.toLowerCase()), (state, postings) ->
+                postings.forEach((id, frequency) -> {
+                    totals[id] += frequency;
+                    matched.set(id);
+                }));
+        BoundedHeap<Long> ranked = new BoundedHeap<>(k, Comparator.naturalOrder());
+        for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+            ranked.offer(rankOf(id, totals[id]));
+        }
+        return touchAll(ranked.toSortedList());
+    }
 
 
-        Set<Document> documentsToDelete;
-        try {
-            documentsToDelete = new HashSet<>(search(keyword));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        Set<URI> deletedURIs = new HashSet<>();
+    @Override
+    public List<Document> search(Query query) throws IOException {
+        return search(query, Integer.MAX_VALUE);
+    }
 
 
-        if (documentsToDelete.isEmpty()) {
-            return deletedURIs;
+    @Override
+    public List<Document> search(Query query, int k) throws IOException {
+        if (query == null || k < 0) {
+            throw new IllegalArgumentException("Query must not be null, and k must not be negative");
         }
+        BoundedHeap<Long> ranked = new BoundedHeap<>(k, Comparator.naturalOrder());
+        this.queries.evaluate(query, (id, frequency) -> ranked.offer(rankOf(id, frequency)));
+        return touchAll(ranked.toSortedList());
+    }
 
+    private List<Document> searchTerm(String term, int k) {
+        BoundedHeap<Long> ranked = new BoundedHeap<>(k, Comparator.naturalOrder());
+        this.index.forEach(term, (id, frequency) -> ranked.offer(rankOf(id, frequency)));
+        return touchAll(ranked.toSortedList());
+    }
 
-        CommandSet<URI> commandSet = new CommandSet<>();
+    // a document has a posting for each of its words with the prefix, and is ranked by their total frequency. Every
+    // posting is added up, but only k documents are ranked, touched and read back in.
+    private List<Document> searchPrefix(String prefix, int k) {
+        int[] totals = new int[this.catalog.size()];
+        BitSet matched = new BitSet(totals.length);
+        this.index.forEachWithPrefix(prefix, (id, frequency) -> {
+            totals[id] += frequency;
+            matched.set(id);
+        });
+        BoundedHeap<Long> ranked = new BoundedHeap<>(k, Comparator.naturalOrder());
+        for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+            ranked.offer(rankOf(id, totals[id]));
+        }
+        return touchAll(ranked.toSortedList());
+    }
 
+    // orders by frequency, then by lowest ID, i.e. earliest indexed, first
+    private static long rankOf(int id, int frequency) {
+        return ((long) frequency << 32) | (Integer.MAX_VALUE - id);
+    }
 
-        for (Document doc : documentsToDelete) {
-            URI uri = doc.getKey();
-            if (delete(uri)) {
-                deletedURIs.add(uri);
-                GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> {
-                    this.documentTree.put(uri1, doc);
-                    this.minHeap.insert(doc);
-                    this.currentDocumentBytes += getSizeInBytes(doc);
-                    reAddToIndexes(doc);
-                });
-                commandSet.addCommand(command);
+    // brings each ranked document into memory if it was evicted, and marks it as just used
+    private List<Document> touchAll(List<Long> ranked) {
+        List<Document> touched = new ArrayList<>(ranked.size());
+        for (long rank : ranked) {
+            Document doc = getFromTree(this.catalog.uriOf(Integer.MAX_VALUE - (int) rank));
+            if (doc != null) {
+                doc.setLastUseTime(System.nanoTime());
+                this.minHeap.reHeapify(doc);
+                touched.add(doc);
             }
         }
+        enforceMemoryLimits();
+        return touched;
+    }
 
 
-        if (!commandSet.isEmpty()) {
-            this.commandStack.push(commandSet);
+    @Override
+    public Set<URI> deleteAll(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("Keyword must not be null or blank");
+        }
+        try {
+            return deleteAllOf(search(keyword));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-
-
-        return deletedURIs;
     }
 
 
@@ -501,46 +1080,11 @@ public class DocumentStoreImpl implements DocumentStore {
         if (keywordPrefix == null || keywordPrefix.isBlank()) {
             throw new IllegalArgumentException("Keyword prefix must not be null or empty");
         }
-
-
-        Set<Document> documentsToDelete;
         try {
-            documentsToDelete = new HashSet<>(searchByPrefix(keywordPrefix));
+            return deleteAllOf(searchByPrefix(keywordPrefix));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        Set<URI> deletedURIs = new HashSet<>();
-
-
-        if (documentsToDelete.isEmpty()) {
-            return deletedURIs;
-        }
-
-
-        CommandSet<URI> commandSet = new CommandSet<>();
-
-
-        for (Document doc : documentsToDelete) {
-            URI uri = doc.getKey();
-            if (delete(uri)) {
-                deletedURIs.add(uri);
-                GenericCommand<URI> genericCommand = new GenericCommand<>(uri, uri1 -> {
-                    this.documentTree.put(uri1, doc);
-                    this.minHeap.insert(doc);
-                    this.currentDocumentBytes += getSizeInBytes(doc);
-                    reAddToIndexes(doc);
-                });
-                commandSet.addCommand(genericCommand);
-            }
-        }
-
-
-        if (!commandSet.isEmpty()) {
-            this.commandStack.push(commandSet);
-        }
-
-
-        return deletedURIs;
     }
 
 
@@ -551,41 +1095,56 @@ public class DocumentStoreImpl implements DocumentStore {
         }
 
 
+        Map<URI, Document> resident = new HashMap<>();
+        for (Document doc : this.minHeap.toList()) {
+            resident.put(doc.getKey(), doc);
+        }
         List<Document> result = new ArrayList<>();
+        List<URI> evicted = new ArrayList<>(METADATA_SCAN_BATCH);
         for (URI uri : this.documentURIs) {
-            Document doc = this.documentTree.get(uri);
+            Document doc = resident.get(uri);
             if (doc == null) {
-                // Try to load document from disk if not in memory
-                try {
-                    doc = this.pm.deserialize(uri);
-                    if (doc != null) {
-                        this.documentTree.put(uri, doc);
-                        this.minHeap.insert(doc);
-                        this.currentDocumentBytes += getSizeInBytes(doc);
-                        doc.setLastUseTime(System.nanoTime());
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                evicted.add(uri);
+                if (evicted.size() == METADATA_SCAN_BATCH) {
+                    searchEvictedByMetadata(evicted, keysValues, result);
+                    evicted.clear();
                 }
+            } else if (hasAllMetadata(doc, keysValues)) {
+                result.add(doc);
             }
-            if (doc == null) {
-                continue; // If still null, skip this document
-            }
-            boolean match = true;
-            for (Map.Entry<String, String> entry : keysValues.entrySet()) {
-                String metadataKey = entry.getKey();
-                String expectedValue = entry.getValue();
-                String actualValue = doc.getMetadataValue(metadataKey);
-                if (actualValue == null || !actualValue.equals(expectedValue)) {
-                    match = false;
-                    break;
+        }
+        searchEvictedByMetadata(evicted, keysValues, result);
+        enforceMemoryLimits();
+        return result;
+    }
+
+    // the batch is read and decoded together, in parallel if the persistence manager can, and only the documents
+    // that match are brought back into memory, as they were decoded; the rest are left alone on disk
+    private void searchEvictedByMetadata(List<URI> evicted, Map<String, String> keysValues, List<Document> result) throws IOException {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        Map<URI, Document> decoded = this.pm.deserializeAll(evicted);
+        for (URI uri : evicted) {
+            Document doc = decoded.get(uri);
+            if (doc != null && hasAllMetadata(doc, keysValues)) {
+                doc = this.bodies.share(doc);
+                if (this.documentTree.moveToMemory(uri, doc)) {
+                    reloaded(doc);
+                    result.add(doc);
                 }
             }
-            if (match) {
-                result.add(doc);
+        }
+    }
+
+    private boolean hasAllMetadata(Document doc, Map<String, String> keysValues) {
+        for (Map.Entry<String, String> entry : keysValues.entrySet()) {
+            String actualValue = doc.getMetadataValue(entry.getKey());
+            if (actualValue == null || !actualValue.equals(entry.getValue())) {
+                return false;
             }
         }
-        return result;
+        return true;
     }
 
 
@@ -672,96 +1231,360 @@ public class DocumentStoreImpl implements DocumentStore {
         if (keysValues == null) {
             throw new IllegalArgumentException("Metadata map must not be null");
         }
+        return deleteAllOf(searchByMetadata(keysValues));
+    }
 
 
-        Set<Document> documentsToDelete = new HashSet<>(searchByMetadata(keysValues));
-        Set<URI> deletedURIs = new HashSet<>();
+    @Override
+    public Set<URI> deleteAllWithKeywordAndMetadata(String keyword, Map<String, String> keysValues) throws IOException {
+        return deleteAllOf(searchByKeywordAndMetadata(keyword, keysValues));
+    }
 
 
-        if (documentsToDelete.isEmpty()) {
-            return deletedURIs;
-        }
+    @Override
+    public Set<URI> deleteAllWithPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues) throws IOException {
+        return deleteAllOf(searchByPrefixAndMetadata(keywordPrefix, keysValues));
+    }
 
 
-        CommandSet<URI> commandSet = new CommandSet<>();
+    @Override
+    public void setMaxDocumentCount(int limit) {
+        this.maxDocumentCount = limit;
+        enforceMemoryLimits();
+    }
 
 
-        for (Document doc : documentsToDelete) {
-            URI uri = doc.getKey();
-            if (delete(uri)) {
-                deletedURIs.add(uri);
-                GenericCommand<URI> command = new GenericCommand<>(uri, uri1 -> {
-                    this.documentTree.put(uri1, doc);
-                    this.documentURIs.add(uri1);
-                    this.minHeap.insert(doc);
-                    this.currentDocumentBytes += getSizeInBytes(doc);
-                    reAddToIndexes(doc);
-                });
-                commandSet.addCommand(command);
-            }
+    @Override
+    public void setMaxDocumentBytes(int limit) {
+        this.maxDocumentBytes = limit;
+        enforceMemoryLimits();
+    }
+
+
+    /**
+     * @param limit how many of the latest commands undo can go back through, the default being all of them. Older
+     *              ones are forgotten, and the documents they kept in the undo stash for it are deleted.
+     */
+    public void setUndoLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Undo limit must not be negative");
         }
+        this.undoLimit = limit;
+        trimCommandStack();
+    }
 
+    /**
+     * @return how many deleted or replaced documents the undo stash holds for commands still on the stack
+     */
+    public int getUndoStashSize() {
+        return this.undoStash.size();
+    }
 
-        if (!commandSet.isEmpty()) {
-            this.commandStack.push(commandSet);
+    /**
+     * @param fraction share of each memory limit that eviction brings usage down to once a limit is exceeded.
+     *                 1.0, the default, evicts just enough to get back under the limit; lower values evict more in
+     *                 each batch so that the limit is exceeded less often.
+     */
+    public void setEvictionWatermark(double fraction) {
+        if (fraction <= 0 || fraction > 1) {
+            throw new IllegalArgumentException("Eviction watermark must be greater than 0 and at most 1");
         }
+        this.evictionWatermark = fraction;
+    }
 
+    /**
+     * @return how many times a document was looked up and found in memory, on the heap
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
 
-        return deletedURIs;
+    /**
+     * @return how many times a document was looked up and had to be read back from the persistence manager
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return how many batches of documents have been moved to disk to get back under the limits
+     */
+    public long getEvictionBatchCount() {
+        return this.evictionBatchCount;
     }
 
+    /**
+     * @return how long, in nanoseconds, moving those batches to disk has taken altogether
+     */
+    public long getEvictionNanos() {
+        return this.evictionNanos;
+    }
 
-    @Override
-    public Set<URI> deleteAllWithKeywordAndMetadata(String keyword, Map<String, String> keysValues) throws IOException {
-        Set<URI> deletedURIs = new HashSet<>();
-        for (Document doc : searchByKeywordAndMetadata(keyword, keysValues)) {
-            delete(doc.getKey());
-            deletedURIs.add(doc.getKey());
+    /**
+     * @return how many checkpoints the store has taken
+     */
+    public long getCheckpointCount() {
+        return this.checkpointCount;
+    }
+
+    /**
+     * @return how long, in nanoseconds, the store has paused altogether to take its checkpoints
+     */
+    public long getCheckpointPauseNanos() {
+        return this.checkpointPauseNanos;
+    }
+
+    /**
+     * @return how long, in nanoseconds, writing the checkpoints that are on disk has taken altogether
+     */
+    public long getCheckpointWriteNanos() {
+        return this.checkpointWriteNanos.get();
+    }
+
+    /**
+     * @param millis how long after one checkpoint the next change to the store takes another, or 0 for no
+     *               periodic checkpoints. The default is one minute. Only a store with a write-ahead log checkpoints.
+     */
+    public void setCheckpointInterval(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Checkpoint interval must not be negative");
         }
-        return deletedURIs;
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
     }
 
+    /**
+     * Checkpoint the store into baseDir, so that a restart loads the checkpoint and replays only the part of the
+     * write-ahead log written after it. The store pauses only to take references to its resident documents, copies
+     * of their metadata, sizes and last-use times, and the postings of its evicted documents, which a restart then
+     * indexes without reading them back; encoding the documents and postings, forcing the file to disk and then
+     * dropping the part of the log before it happen on a background thread.
+     * @return completes once the checkpoint is on disk
+     * @throws IllegalStateException if the store has no write-ahead log
+     */
+    public Future<?> checkpoint() {
+        if (this.wal == null) {
+            throw new IllegalStateException("Checkpoints need a write-ahead log");
+        }
+        long start = System.nanoTime();
+        StoreCheckpoint checkpoint;
+        try {
+            checkpoint = new StoreCheckpoint(this.wal.size(), this.index.isPositional());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Set<URI> evictedURIs = new HashSet<>(this.documentURIs);
+        for (Document document : this.minHeap.toList()) {
+            checkpoint.addResident(document, document.getMetadata(), document.getLastUseTime());
+            evictedURIs.remove(document.getKey());
+        }
+        // in ID order, so that each term's postings come out of the index in the order of the evicted documents
+        List<URI> evicted = new ArrayList<>(evictedURIs);
+        evicted.sort(Comparator.comparingInt(this.catalog::find));
+        evicted.forEach(checkpoint::addEvicted);
+        addEvictedPostings(checkpoint, evicted);
+        dropCheckpointedCopies();
+        this.checkpointedCopies.addAll(this.keptCopies);
+        this.keptCopies.clear();
+        this.checkpointPauseNanos += System.nanoTime() - start;
+        this.checkpointCount++;
+        this.lastCheckpointTime = System.nanoTime();
+        this.lastCheckpointOffset = checkpoint.getLogOffset();
+        if (this.checkpointWriter == null) {
+            this.checkpointWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "store-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        this.pendingCheckpoint = this.checkpointWriter.submit(() -> {
+            long writeStart = System.nanoTime();
+            // the log and the evicted documents must be on disk before a checkpoint that lets a restart skip them
+            this.wal.force();
+            this.pm.sync();
+            checkpoint.write(this.checkpointFile, CHECKPOINT_CODEC, this::getSizeInBytes);
+            // a restart no longer needs what the log holds from before the checkpoint
+            this.wal.truncateBefore(checkpoint.getLogOffset());
+            this.checkpointWriteNanos.addAndGet(System.nanoTime() - writeStart);
+            return null;
+        });
+        return this.pendingCheckpoint;
+    }
 
-    @Override
-    public Set<URI> deleteAllWithPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues) throws IOException {
-        Set<URI> deletedURIs = new HashSet<>();
-        for (Document doc : searchByPrefixAndMetadata(keywordPrefix, keysValues)) {
-            delete(doc.getKey());
-            deletedURIs.add(doc.getKey());
+    // copies the postings of the evicted documents out of the index, since their word maps are not in memory
+    private void addEvictedPostings(StoreCheckpoint checkpoint, List<URI> evicted) {
+        if (evicted.isEmpty()) {
+            return;
         }
-        return deletedURIs;
+        int[] evictedIndexOf = new int[this.catalog.size()];
+        Arrays.fill(evictedIndexOf, -1);
+        for (int i = 0; i < evicted.size(); i++) {
+            int id = this.catalog.find(evicted.get(i));
+            if (id >= 0) {
+                evictedIndexOf[id] = i;
+            }
+        }
+        boolean positional = this.index.isPositional();
+        this.index.forEachTerm((term, postings) -> {
+            PostingList.Cursor cursor = postings.cursor();
+            for (int id = cursor.next(); id != PostingList.NO_MORE_IDS; id = cursor.next()) {
+                if (evictedIndexOf[id] >= 0) {
+                    checkpoint.addEvictedPosting(term, evictedIndexOf[id], cursor.frequency(), positional ? cursor.positions() : null);
+                }
+            }
+        });
     }
 
+    /**
+     * Wait for the checkpoint being written, if any, stop the thread that writes them, and delete the store's
+     * paged-out leaves and undo stash. The store must not be used after.
+     * @throws RuntimeException if the checkpoint failed
+     */
+    public void close() {
+        try {
+            this.documentTree.close();
+            this.undoStash.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (this.checkpointWriter == null) {
+            return;
+        }
+        this.checkpointWriter.shutdown();
+        this.checkpointWriter = null;
+        try {
+            this.pendingCheckpoint.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            dropCheckpointedCopies();
+            throw new RuntimeException(e.getCause());
+        }
+        dropCheckpointedCopies();
+    }
 
-    @Override
-    public void setMaxDocumentCount(int limit) {
-        this.maxDocumentCount = limit;
-        enforceMemoryLimits();
+    // once the checkpoint that has them as resident is on disk, the kept copies it covers can go
+    private void dropCheckpointedCopies() {
+        if (this.checkpointedCopies.isEmpty() || this.pendingCheckpoint == null || !this.pendingCheckpoint.isDone()) {
+            return;
+        }
+        try {
+            this.pendingCheckpoint.get();
+            for (URI uri : this.checkpointedCopies) {
+                this.pm.delete(uri);
+            }
+            this.checkpointedCopies.clear();
+        } catch (ExecutionException e) {
+            // the checkpoint failed, so the next one has to cover them
+            this.keptCopies.addAll(this.checkpointedCopies);
+            this.checkpointedCopies.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
+    // called before each change, while the store is consistent, so that a checkpoint never sees half an operation
+    private void maybeCheckpoint() {
+        dropCheckpointedCopies();
+        if (this.wal == null || this.checkpointIntervalNanos == 0 || System.nanoTime() - this.lastCheckpointTime < this.checkpointIntervalNanos ||
+                (this.pendingCheckpoint != null && !this.pendingCheckpoint.isDone())) {
+            return;
+        }
+        try {
+            if (this.wal.size() != this.lastCheckpointOffset) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     @Override
-    public void setMaxDocumentBytes(int limit) {
-        this.maxDocumentBytes = limit;
-        enforceMemoryLimits();
+    public Iterator<URI> listNamespace(String uriPrefix, boolean descending) {
+        if (uriPrefix == null || uriPrefix.isBlank()) {
+            throw new IllegalArgumentException("URI prefix must not be null or empty");
+        }
+        // every URI that starts with the prefix sorts between the prefix and the prefix followed by the highest char
+        URI from = URI.create(uriPrefix);
+        URI to = URI.create(uriPrefix + Character.MAX_VALUE);
+        Iterator<URI> range = this.documentTree.keys(from, to, descending);
+        return new Iterator<>() {
+            private URI next = findNext();
+
+            private URI findNext() {
+                while (range.hasNext()) {
+                    URI uri = range.next();
+                    if (uri.toString().startsWith(uriPrefix)) {
+                        return uri;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public URI next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                URI uri = this.next;
+                this.next = findNext();
+                return uri;
+            }
+        };
     }
 
 
+    // once a limit is exceeded, evicts down to the low watermark with a single batch write. If the write fails, the
+    // batch is put back in memory as it was and the error is passed on.
     private void enforceMemoryLimits() {
-        while ((this.maxDocumentCount > 0 && this.currentDocumentCount > this.maxDocumentCount) ||
-                (this.maxDocumentBytes > 0 && this.currentDocumentBytes > this.maxDocumentBytes)) {
+        if (!overLimit(1.0)) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Document> batch = new ArrayList<>();
+        int batchBytes = 0;
+        while (batch.size() < this.currentDocumentCount && overLimit(this.evictionWatermark, batch.size(), batchBytes)) {
             Document docToSerialize = this.minHeap.remove();
-            if (docToSerialize != null) {
-                try {
-                    this.pm.serialize(docToSerialize.getKey(), docToSerialize);
-                    this.documentTree.put(docToSerialize.getKey(), null);
-                    this.currentDocumentBytes -= getSizeInBytes(docToSerialize);
-                    this.currentDocumentCount--; // Decrement count when document is moved to disk
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            if (docToSerialize == null) {
+                break;
+            }
+            batch.add(docToSerialize);
+            batchBytes += this.bodies.release(docToSerialize, getSizeInBytes(docToSerialize));
+        }
+        List<URI> keys = new ArrayList<>(batch.size());
+        for (Document doc : batch) {
+            keys.add(doc.getKey());
+        }
+        try {
+            this.documentTree.moveAllToDisk(keys);
+        } catch (IOException e) {
+            for (Document doc : batch) {
+                this.bodies.acquire(doc, getSizeInBytes(doc));
+                this.minHeap.insert(doc);
             }
+            throw new RuntimeException(e);
         }
+        this.currentDocumentBytes -= batchBytes;
+        this.currentDocumentCount -= batch.size(); // Decrement count when documents are moved to disk
+        this.evictionBatchCount++;
+        this.evictionNanos += System.nanoTime() - start;
+    }
+
+    private boolean overLimit(double fraction) {
+        return overLimit(fraction, 0, 0);
+    }
+
+    // whether the store would still be over fraction of a limit after evicting the given documents
+    private boolean overLimit(double fraction, int evictedCount, int evictedBytes) {
+        return (this.maxDocumentCount > 0 && this.currentDocumentCount - evictedCount > (long) (this.maxDocumentCount * fraction)) ||
+                (this.maxDocumentBytes > 0 && this.currentDocumentBytes - evictedBytes > (long) (this.maxDocumentBytes * fraction));
     }
 
 
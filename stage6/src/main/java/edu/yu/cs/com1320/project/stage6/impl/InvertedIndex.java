@@ -0,0 +1,155 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.Automaton;
+import edu.yu.cs.com1320.project.impl.AdaptiveTrieImpl;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Terms mapped to the documents they are in, as a trie with one PostingList per term. Documents are only named by
+ * their DocumentCatalog IDs, so the index holds no reference to any document, and a document that is evicted can
+ * be collected. A term's list is removed with its last posting. A positional index keeps the positions of each
+ * word in each document as well, for phrase and proximity queries.
+ */
+public class InvertedIndex {
+    // accepts every term, with the term itself as its state
+    private static final Automaton<String> EVERY_TERM = new Automaton<>() {
+        @Override
+        public String start() {
+            return "";
+        }
+
+        @Override
+        public String step(String term, int codePoint) {
+            return term + Character.toString(codePoint);
+        }
+
+        @Override
+        public boolean isAccepting(String term) {
+            return true;
+        }
+    };
+    private final AdaptiveTrieImpl<PostingList> trie = new AdaptiveTrieImpl<>();
+    private final boolean positional;
+    private long postingCount;
+
+    public InvertedIndex() {
+        this(false);
+    }
+
+    public InvertedIndex(boolean positional) {
+        this.positional = positional;
+    }
+
+    public boolean isPositional() {
+        return this.positional;
+    }
+
+    /**
+     * Index the document under the term, or change its frequency if it already is. A positional index only takes
+     * a frequency of 0 this way, for terms such as metadata that are not words of the document.
+     */
+    public void add(String term, int id, int frequency) {
+        if (postingsFor(term).add(id, frequency)) {
+            this.postingCount++;
+        }
+    }
+
+    /**
+     * Index the document under the word at the given ascending positions in it, or replace them if it already is
+     * @throws IllegalStateException if the index is not positional
+     */
+    public void add(String term, int id, int[] positions) {
+        if (postingsFor(term).add(id, positions)) {
+            this.postingCount++;
+        }
+    }
+
+    private PostingList postingsFor(String term) {
+        return this.trie.computeIfAbsent(term, () -> new PostingList(this.positional));
+    }
+
+    /**
+     * @return true if the document was indexed under the term
+     */
+    public boolean remove(String term, int id) {
+        PostingList postings = this.trie.getValue(term);
+        if (postings == null || !postings.remove(id)) {
+            return false;
+        }
+        this.postingCount--;
+        if (postings.isEmpty()) {
+            this.trie.deleteAll(term);
+        }
+        return true;
+    }
+
+    /**
+     * Give the consumer each document indexed under the term, in ascending ID order
+     */
+    public void forEach(String term, PostingList.PostingConsumer consumer) {
+        PostingList postings = this.trie.getValue(term);
+        if (postings != null) {
+            postings.forEach(consumer);
+        }
+    }
+
+    /**
+     * Give the consumer each document indexed under each term with the given prefix, term by term. A document is
+     * given once for every such term it is in.
+     */
+    public void forEachWithPrefix(String prefix, PostingList.PostingConsumer consumer) {
+        this.trie.forEachWithPrefix(prefix, postings -> postings.forEach(consumer));
+    }
+
+    /**
+     * @return the term's postings, or null if no document is indexed under it. They must not be changed.
+     */
+    public PostingList postingsOf(String term) {
+        return this.trie.getValue(term);
+    }
+
+    /**
+     * Give the consumer the postings of each term with the given prefix. They must not be changed.
+     */
+    public void forEachPostingsWithPrefix(String prefix, Consumer<PostingList> consumer) {
+        this.trie.forEachWithPrefix(prefix, consumer);
+    }
+
+    /**
+     * Give the consumer the postings of each term the automaton accepts, with the state the term left it in. Only
+     * the part of the trie the automaton can still accept terms in is walked. They must not be changed.
+     */
+    public <S> void forEachPostingsAccepted(Automaton<S> automaton, BiConsumer<S, PostingList> consumer) {
+        this.trie.forEachAccepted(automaton, consumer);
+    }
+
+    /**
+     * Give the consumer every term with its postings, in term order. They must not be changed.
+     */
+    public void forEachTerm(BiConsumer<String, PostingList> consumer) {
+        this.trie.forEachAccepted(EVERY_TERM, consumer);
+    }
+
+    /**
+     * @return how many documents are indexed under the term
+     */
+    public int documentFrequency(String term) {
+        PostingList postings = this.trie.getValue(term);
+        return postings != null ? postings.size() : 0;
+    }
+
+    public long getPostingCount() {
+        return this.postingCount;
+    }
+
+    /**
+     * @return bytes taken by the encoded posting lists, not counting the trie they hang from
+     */
+    public long getEncodedBytes() {
+        long[] bytes = new long[1];
+        this.trie.forEachWithPrefix("", postings -> bytes[0] += postings.encodedBytes());
+        return bytes[0];
+    }
+}
@@ -0,0 +1,75 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The original pretty-printed Gson format, kept for interoperability and for reading files written before
+ * the binary format existed. Documents are streamed through a DocumentImplTypeAdapter rather than Gson's
+ * reflection; the JSON is the same.
+ */
+public class JsonDocumentCodec implements DocumentCodec {
+    private static final int WRITE_BUFFER_CHARS = 1024;
+    private static final DocumentImplTypeAdapter ADAPTER = new DocumentImplTypeAdapter();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().registerTypeAdapter(DocumentImpl.class, ADAPTER).create();
+
+    @Override
+    public String getFileExtension() {
+        return ".json";
+    }
+
+    @Override
+    public void encode(Document document, OutputStream out) throws IOException {
+        // JsonWriter writes a few characters at a time, and OutputStreamWriter copies every write it is given
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+        if (document instanceof DocumentImpl impl) {
+            JsonWriter json = GSON.newJsonWriter(writer);
+            ADAPTER.write(json, impl);
+            json.flush();
+        } else {
+            GSON.toJson(document, writer);
+            writer.flush();
+        }
+    }
+
+    @Override
+    public Document decode(InputStream in) throws IOException {
+        try {
+            return ADAPTER.read(GSON.newJsonReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed JSON document", e);
+        }
+    }
+
+    // the uri is the first field Gson writes for a DocumentImpl, so only the start of the document is parsed
+    @Override
+    public URI decodeKey(InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("uri") && reader.peek() == JsonToken.STRING) {
+                    return new URI(reader.nextString());
+                }
+                reader.skipValue();
+            }
+        } catch (IllegalStateException | URISyntaxException | com.google.gson.stream.MalformedJsonException e) {
+            // not one of our documents
+        }
+        return null;
+    }
+}
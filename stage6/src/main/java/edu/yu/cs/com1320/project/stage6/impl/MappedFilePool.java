@@ -0,0 +1,74 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-only memory mappings of persistence files, at most maxMappings of them, least recently used dropped first.
+ * A file must be invalidated before it is rewritten or deleted, since reading a mapping past the end of a file that
+ * shrank underneath it crashes the reader. A file that only grows, like the active segment, is remapped when a read
+ * goes past the end of its current mapping. Dropped mappings are unmapped when they are garbage collected.
+ */
+public class MappedFilePool {
+    private final int maxMappings;
+    private final LinkedHashMap<File, MappedByteBuffer> mappings;
+    private long hits;
+    private long misses;
+
+    public MappedFilePool(int maxMappings) {
+        if (maxMappings < 1) {
+            throw new IllegalArgumentException("Need room for at least one mapping");
+        }
+        this.maxMappings = maxMappings;
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, MappedByteBuffer> eldest) {
+                return size() > MappedFilePool.this.maxMappings;
+            }
+        };
+    }
+
+    /**
+     * @param file file to map; files over 2GB can't be mapped in one piece
+     * @param minLength number of bytes from the start of the file the mapping has to cover
+     * @return a read-only view of the whole file, positioned at 0, that the caller is free to move around in
+     */
+    public synchronized ByteBuffer map(File file, long minLength) throws IOException {
+        MappedByteBuffer mapping = this.mappings.get(file);
+        if (mapping != null && mapping.capacity() >= minLength) {
+            this.hits++;
+            return mapping.asReadOnlyBuffer();
+        }
+        this.misses++;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < minLength) {
+                throw new IOException(file.getAbsolutePath() + " is shorter than " + minLength + " bytes");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getAbsolutePath() + " is too large to map");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        this.mappings.put(file, mapping);
+        return mapping.asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(File file) {
+        this.mappings.remove(file);
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+}
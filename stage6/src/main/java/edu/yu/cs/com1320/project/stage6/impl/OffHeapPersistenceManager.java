@@ -0,0 +1,322 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A tier between the heap and the disk. Serialized documents are encoded and kept outside the GC heap, in direct
+ * ByteBuffer slabs, up to a byte budget; when the budget is used up, the documents that have been here longest
+ * are demoted to the wrapped PersistenceManager in one serializeAll. Reading a document checks this tier first.
+ * <p>
+ * The slabs are cut into fixed-size blocks and a document takes as many blocks, wherever they are, as its encoding
+ * needs, so the space a read or delete frees can be reused at once, without compaction. Slabs are allocated as
+ * they are needed, up to the budget. Nothing here survives a restart; sync writes everything that is only here
+ * through to the wrapped manager.
+ */
+public class OffHeapPersistenceManager implements PersistenceManager<URI, Document>, Closeable {
+    public static final int BLOCK_BYTES = 1024;
+    private static final int SLAB_BYTES = 1024 * 1024;
+
+    private final PersistenceManager<URI, Document> delegate;
+    private final DocumentCodec codec;
+    private final int maxBlocks;
+    private final int blocksPerSlab;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final Deque<Integer> freeBlocks = new ArrayDeque<>();
+    private final LinkedHashMap<URI, Entry> entries = new LinkedHashMap<>(); // oldest first
+    private final Set<URI> stored = new HashSet<>(); // what the wrapped manager holds
+    private int allocatedBlocks;
+    private long residentBytes;
+    private long hits;
+    private long misses;
+    private long demotions;
+
+    private static final class Entry {
+        private final int[] blocks;
+        private final int length;
+        private boolean stored; // also written through to the wrapped manager
+
+        private Entry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+
+    public OffHeapPersistenceManager(PersistenceManager<URI, Document> delegate, long budgetBytes) {
+        this(delegate, budgetBytes, new BinaryDocumentCodec());
+    }
+
+    /**
+     * @param delegate the next tier, where documents are demoted to. It is closed with this manager if it is Closeable.
+     * @param budgetBytes how much direct memory the slabs may take
+     * @param codec how documents are encoded in the slabs, e.g. a CompressingDocumentCodec to fit more of them
+     */
+    public OffHeapPersistenceManager(PersistenceManager<URI, Document> delegate, long budgetBytes, DocumentCodec codec) {
+        if (delegate == null || codec == null || budgetBytes < BLOCK_BYTES) {
+            throw new IllegalArgumentException("Need a persistence manager, a codec and a budget of at least one block");
+        }
+        this.delegate = delegate;
+        this.codec = codec;
+        this.maxBlocks = (int) Math.min(budgetBytes / BLOCK_BYTES, Integer.MAX_VALUE);
+        this.blocksPerSlab = Math.min(SLAB_BYTES / BLOCK_BYTES, this.maxBlocks);
+        try {
+            this.stored.addAll(delegate.keys());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void serialize(URI uri, Document val) throws IOException {
+        serializeAll(Collections.singletonMap(uri, val));
+    }
+
+    /**
+     * Keeps the batch off-heap, demoting older documents to make room in one serializeAll on the wrapped manager.
+     * Documents too big for the whole budget go straight to the wrapped manager.
+     */
+    @Override
+    public synchronized void serializeAll(Map<URI, Document> values) throws IOException {
+        Map<URI, byte[]> encoded = new LinkedHashMap<>();
+        Map<URI, Document> tooBig = new LinkedHashMap<>();
+        int blocksNeeded = 0;
+        for (Map.Entry<URI, Document> entry : values.entrySet()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.codec.encode(entry.getValue(), out);
+            int blocks = blocksFor(out.size());
+            if (blocks > this.maxBlocks) {
+                tooBig.put(entry.getKey(), entry.getValue());
+            } else {
+                encoded.put(entry.getKey(), out.toByteArray());
+                blocksNeeded += blocks;
+            }
+        }
+        for (URI uri : values.keySet()) {
+            remove(uri);
+        }
+        // if the batch is bigger than the budget, its own first documents are demoted as the rest come in
+        List<URI> order = new ArrayList<>(encoded.keySet());
+        int start = 0;
+        while (blocksNeeded > this.maxBlocks) {
+            URI uri = order.get(start++);
+            tooBig.put(uri, values.get(uri));
+            blocksNeeded -= blocksFor(encoded.remove(uri).length);
+        }
+        demote(blocksNeeded, tooBig);
+        for (Map.Entry<URI, byte[]> entry : encoded.entrySet()) {
+            this.entries.put(entry.getKey(), write(entry.getValue()));
+        }
+    }
+
+    @Override
+    public synchronized Document deserialize(URI uri) throws IOException {
+        Entry entry = this.entries.get(uri);
+        if (entry != null) {
+            this.hits++;
+            return this.codec.decode(ByteBuffer.wrap(read(entry)));
+        }
+        this.misses++;
+        return this.stored.contains(uri) ? this.delegate.deserialize(uri) : null;
+    }
+
+    @Override
+    public synchronized Map<URI, Document> deserializeAll(Collection<URI> uris) throws IOException {
+        Map<URI, Document> found = new HashMap<>();
+        List<URI> below = new ArrayList<>();
+        for (URI uri : uris) {
+            Entry entry = this.entries.get(uri);
+            if (entry != null) {
+                this.hits++;
+                found.put(uri, this.codec.decode(ByteBuffer.wrap(read(entry))));
+            } else {
+                this.misses++;
+                if (this.stored.contains(uri)) {
+                    below.add(uri);
+                }
+            }
+        }
+        if (!below.isEmpty()) {
+            found.putAll(this.delegate.deserializeAll(below));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized boolean delete(URI uri) throws IOException {
+        boolean deleted = remove(uri);
+        if (this.stored.remove(uri)) {
+            deleted |= this.delegate.delete(uri);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized List<URI> keys() {
+        Set<URI> keys = new LinkedHashSet<>(this.entries.keySet());
+        keys.addAll(this.stored);
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Writes every document that is only held off-heap through to the wrapped manager, in one serializeAll, and
+     * syncs it. The documents stay off-heap too.
+     */
+    @Override
+    public synchronized void sync() throws IOException {
+        Map<URI, Document> unstored = new LinkedHashMap<>();
+        for (Map.Entry<URI, Entry> entry : this.entries.entrySet()) {
+            if (!entry.getValue().stored) {
+                unstored.put(entry.getKey(), this.codec.decode(ByteBuffer.wrap(read(entry.getValue()))));
+            }
+        }
+        if (!unstored.isEmpty()) {
+            this.delegate.serializeAll(unstored);
+            for (URI uri : unstored.keySet()) {
+                this.entries.get(uri).stored = true;
+                this.stored.add(uri);
+            }
+        }
+        this.delegate.sync();
+    }
+
+    /**
+     * @return how many documents were read from this tier
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * @return how many documents were not in this tier, and were looked for in the wrapped manager
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * @return how many documents have been demoted to the wrapped manager to make room
+     */
+    public synchronized long getDemotionCount() {
+        return this.demotions;
+    }
+
+    /**
+     * @return how many documents are held off-heap
+     */
+    public synchronized int getDocumentCount() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the encoded size of the documents held off-heap; the blocks they take up are rounded up from this
+     */
+    public synchronized long getResidentBytes() {
+        return this.residentBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.entries.clear();
+        this.freeBlocks.clear();
+        this.slabs.clear();
+        this.allocatedBlocks = 0;
+        this.residentBytes = 0;
+        if (this.delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    // demotes the oldest documents until the blocks are free, writing them to the wrapped manager along with extra
+    private void demote(int blocksNeeded, Map<URI, Document> extra) throws IOException {
+        Map<URI, Document> batch = new LinkedHashMap<>(extra);
+        Map<URI, Entry> demoted = new LinkedHashMap<>();
+        Iterator<Map.Entry<URI, Entry>> oldest = this.entries.entrySet().iterator();
+        int available = this.freeBlocks.size() + this.maxBlocks - this.allocatedBlocks;
+        while (available < blocksNeeded && oldest.hasNext()) {
+            Map.Entry<URI, Entry> entry = oldest.next();
+            if (!entry.getValue().stored) {
+                batch.put(entry.getKey(), this.codec.decode(ByteBuffer.wrap(read(entry.getValue()))));
+            }
+            demoted.put(entry.getKey(), entry.getValue());
+            available += entry.getValue().blocks.length;
+        }
+        if (!batch.isEmpty()) {
+            this.delegate.serializeAll(batch);
+            this.stored.addAll(batch.keySet());
+        }
+        for (Map.Entry<URI, Entry> entry : demoted.entrySet()) {
+            this.entries.remove(entry.getKey());
+            free(entry.getValue());
+        }
+        this.demotions += demoted.size();
+    }
+
+    private boolean remove(URI uri) {
+        Entry entry = this.entries.remove(uri);
+        if (entry == null) {
+            return false;
+        }
+        free(entry);
+        return true;
+    }
+
+    private Entry write(byte[] bytes) {
+        int[] blocks = new int[blocksFor(bytes.length)];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = allocateBlock();
+            int offset = i * BLOCK_BYTES;
+            slab(blocks[i]).put(blockOffset(blocks[i]), bytes, offset, Math.min(BLOCK_BYTES, bytes.length - offset));
+        }
+        this.residentBytes += bytes.length;
+        return new Entry(blocks, bytes.length);
+    }
+
+    private byte[] read(Entry entry) {
+        byte[] bytes = new byte[entry.length];
+        for (int i = 0; i < entry.blocks.length; i++) {
+            int offset = i * BLOCK_BYTES;
+            slab(entry.blocks[i]).get(blockOffset(entry.blocks[i]), bytes, offset, Math.min(BLOCK_BYTES, entry.length - offset));
+        }
+        return bytes;
+    }
+
+    private void free(Entry entry) {
+        for (int block : entry.blocks) {
+            this.freeBlocks.push(block);
+        }
+        this.residentBytes -= entry.length;
+    }
+
+    private int allocateBlock() {
+        if (this.freeBlocks.isEmpty()) {
+            int first = this.allocatedBlocks;
+            int count = Math.min(this.blocksPerSlab, this.maxBlocks - first);
+            this.slabs.add(ByteBuffer.allocateDirect(count * BLOCK_BYTES));
+            this.allocatedBlocks += count;
+            for (int block = first + count - 1; block >= first; block--) {
+                this.freeBlocks.push(block);
+            }
+        }
+        return this.freeBlocks.pop();
+    }
+
+    private ByteBuffer slab(int block) {
+        return this.slabs.get(block / this.blocksPerSlab);
+    }
+
+    private int blockOffset(int block) {
+        return (block % this.blocksPerSlab) * BLOCK_BYTES;
+    }
+
+    private static int blocksFor(int bytes) {
+        return Math.max(1, (bytes + BLOCK_BYTES - 1) / BLOCK_BYTES);
+    }
+}
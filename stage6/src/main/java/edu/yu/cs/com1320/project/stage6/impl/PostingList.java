@@ -0,0 +1,432 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Arrays;
+
+/**
+ * The documents indexed under one term, as ascending document IDs from a DocumentCatalog, each with how many
+ * times the term is in that document. They are packed into a byte array as pairs of varints: the gap from the
+ * previous ID, then the frequency. Dense IDs keep the gaps small, so most postings take two or three bytes.
+ * <p>
+ * Adding a higher ID than any in the list, the usual case since new documents get the highest IDs, appends in
+ * place. Any other add or remove decodes up to the ID and splices the bytes after it, without decoding them.
+ * <p>
+ * A positional list also keeps where in the document the term is: each posting is followed by as many varints as
+ * its frequency, the first position and then the gaps between positions. Positions are word offsets, so a phrase
+ * can be matched by looking for its words at consecutive positions without reading the document.
+ * <p>
+ * Every SKIP_INTERVAL-th posting has a skip pointer: where it starts in the array, and the ID before it. A Cursor
+ * advancing to an ID jumps to the last skip pointer before it instead of decoding every posting on the way, which
+ * is what makes intersecting a short list with a long one cheap. Appends keep the pointers up to date; other
+ * changes drop them, and they are rebuilt by the next cursor that needs them.
+ */
+public final class PostingList {
+    public static final int SKIP_INTERVAL = 64;
+    public static final int NO_MORE_IDS = Integer.MAX_VALUE;
+    private static final byte[] EMPTY = new byte[0];
+    private static final int[] NO_SKIPS = new int[0];
+
+    private final boolean positional;
+    private byte[] data = EMPTY;
+    private int length; // bytes of data in use
+    private int size;
+    private int lastId = -1;
+    private int[] skipOffsets = NO_SKIPS; // where postings 0, SKIP_INTERVAL, 2 * SKIP_INTERVAL, ... start
+    private int[] skipBases = NO_SKIPS; // the ID before each of those postings
+    private int skipCount = -1; // -1 when the pointers have to be rebuilt
+
+    public interface PostingConsumer {
+        void accept(int id, int frequency);
+    }
+
+    public PostingList() {
+        this(false);
+    }
+
+    /**
+     * @param positional whether postings are added with the positions of the term in the document
+     */
+    public PostingList(boolean positional) {
+        this.positional = positional;
+    }
+
+    public boolean isPositional() {
+        return this.positional;
+    }
+
+    /**
+     * Add a posting, or change the frequency of the one for the same ID. A positional list only takes a frequency
+     * of 0 this way, e.g. for a term that is not a word of the document.
+     * @return true if the ID was not in the list
+     */
+    public boolean add(int id, int frequency) {
+        if (frequency < 0) {
+            throw new IllegalArgumentException("Frequency must not be negative");
+        }
+        if (this.positional && frequency != 0) {
+            throw new IllegalStateException("A positional list needs the positions of the term");
+        }
+        return add(id, frequency, null);
+    }
+
+    /**
+     * Add a posting with the positions of the term in the document, its frequency being how many there are, or
+     * replace the one for the same ID
+     * @param positions ascending word offsets
+     * @return true if the ID was not in the list
+     */
+    public boolean add(int id, int[] positions) {
+        if (!this.positional) {
+            throw new IllegalStateException("This list does not keep positions");
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] < 0 || (i > 0 && positions[i] <= positions[i - 1])) {
+                throw new IllegalArgumentException("Positions must be ascending and not negative");
+            }
+        }
+        return add(id, positions.length, positions);
+    }
+
+    private boolean add(int id, int frequency, int[] positions) {
+        if (id < 0) {
+            throw new IllegalArgumentException("ID must not be negative");
+        }
+        if (id > this.lastId) {
+            if (this.skipCount >= 0 && this.size % SKIP_INTERVAL == 0) {
+                addSkip(this.length, this.lastId);
+            }
+            ensureCapacity(this.length + maxPostingLength(frequency));
+            this.length = writePosting(this.data, this.length, id - this.lastId, frequency, positions);
+            this.lastId = id;
+            this.size++;
+            return true;
+        }
+        int pos = 0;
+        int previous = -1;
+        while (true) {
+            int start = pos;
+            int gap = readVarInt(this.data, pos);
+            pos += varIntLength(gap);
+            int current = previous + gap;
+            int frequencyStart = pos;
+            int oldFrequency = readVarInt(this.data, pos);
+            pos = skipPositions(pos + varIntLength(oldFrequency), oldFrequency);
+            if (current == id) {
+                // rewrite everything after the gap
+                byte[] replacement = new byte[maxPostingLength(frequency)];
+                int n = writePosting(replacement, 0, -1, frequency, positions);
+                replace(frequencyStart, pos, replacement, n);
+                return false;
+            }
+            if (current > id) {
+                // the new posting goes before this one, which is then a smaller gap from it
+                byte[] replacement = new byte[maxPostingLength(frequency) + 5];
+                int n = writePosting(replacement, 0, id - previous, frequency, positions);
+                n = writeVarInt(replacement, n, current - id);
+                replace(start, frequencyStart, replacement, n);
+                this.size++;
+                return true;
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * @return true if the ID was in the list
+     */
+    public boolean remove(int id) {
+        if (id > this.lastId || id < 0) {
+            return false;
+        }
+        int pos = 0;
+        int previous = -1;
+        while (pos < this.length) {
+            int start = pos;
+            int gap = readVarInt(this.data, pos);
+            pos += varIntLength(gap);
+            int current = previous + gap;
+            int frequency = readVarInt(this.data, pos);
+            pos = skipPositions(pos + varIntLength(frequency), frequency);
+            if (current == id) {
+                if (pos == this.length) {
+                    // the last posting: the one before it is now the last
+                    this.length = start;
+                    this.lastId = previous;
+                    this.skipCount = -1;
+                } else {
+                    // the next posting takes over the gap from the one before this
+                    int next = readVarInt(this.data, pos);
+                    byte[] replacement = new byte[5];
+                    int n = writeVarInt(replacement, 0, next + gap);
+                    replace(start, pos + varIntLength(next), replacement, n);
+                }
+                this.size--;
+                return true;
+            }
+            if (current > id) {
+                return false;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    /**
+     * @return the frequency of the posting for the ID, or -1 if there is none
+     */
+    public int frequency(int id) {
+        int pos = 0;
+        int current = -1;
+        while (pos < this.length && current < id) {
+            int gap = readVarInt(this.data, pos);
+            pos += varIntLength(gap);
+            current += gap;
+            int frequency = readVarInt(this.data, pos);
+            pos = skipPositions(pos + varIntLength(frequency), frequency);
+            if (current == id) {
+                return frequency;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Give the consumer every posting, in ascending ID order
+     */
+    public void forEach(PostingConsumer consumer) {
+        int pos = 0;
+        int id = -1;
+        while (pos < this.length) {
+            int gap = readVarInt(this.data, pos);
+            pos += varIntLength(gap);
+            id += gap;
+            int frequency = readVarInt(this.data, pos);
+            pos = skipPositions(pos + varIntLength(frequency), frequency);
+            consumer.accept(id, frequency);
+        }
+    }
+
+    /**
+     * @return a cursor before the first posting. It is only good until the list is next changed.
+     */
+    public Cursor cursor() {
+        if (this.skipCount < 0) {
+            buildSkips();
+        }
+        return new Cursor();
+    }
+
+    /**
+     * Walks the postings in ascending ID order, skipping ahead when asked to advance past many of them
+     */
+    public final class Cursor {
+        private int id = -1;
+        private int frequency;
+        private int pos;
+        private int positionsStart;
+        private int nextSkip = 1; // the first skip pointer not yet passed
+
+        private Cursor() {
+        }
+
+        /**
+         * @return the ID of the current posting, -1 before the first, or NO_MORE_IDS after the last
+         */
+        public int id() {
+            return this.id;
+        }
+
+        public int frequency() {
+            return this.frequency;
+        }
+
+        /**
+         * Move to the next posting
+         * @return its ID, or NO_MORE_IDS if there is none
+         */
+        public int next() {
+            if (this.pos >= PostingList.this.length) {
+                return this.id = NO_MORE_IDS;
+            }
+            int gap = readVarInt(PostingList.this.data, this.pos);
+            this.pos += varIntLength(gap);
+            this.frequency = readVarInt(PostingList.this.data, this.pos);
+            this.positionsStart = this.pos + varIntLength(this.frequency);
+            this.pos = skipPositions(this.positionsStart, this.frequency);
+            return this.id += gap;
+        }
+
+        /**
+         * @return the positions of the term in the current document, in ascending order
+         * @throws IllegalStateException if the list does not keep positions
+         */
+        public int[] positions() {
+            if (!PostingList.this.positional) {
+                throw new IllegalStateException("This list does not keep positions");
+            }
+            int[] positions = new int[this.frequency];
+            int pos = this.positionsStart;
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                int gap = readVarInt(PostingList.this.data, pos);
+                pos += varIntLength(gap);
+                positions[i] = position += gap;
+            }
+            return positions;
+        }
+
+        /**
+         * Move to the first posting with an ID of at least target, or stay if the current one already is
+         * @return its ID, or NO_MORE_IDS if there is none
+         */
+        public int advance(int target) {
+            if (this.id >= target) {
+                return this.id;
+            }
+            // every posting before the last skip pointer whose base is below target is too small
+            int skip = this.nextSkip;
+            while (skip < PostingList.this.skipCount && PostingList.this.skipBases[skip] < target) {
+                skip++;
+            }
+            if (skip > this.nextSkip) {
+                // next() may already have walked past it
+                if (PostingList.this.skipOffsets[skip - 1] > this.pos) {
+                    this.pos = PostingList.this.skipOffsets[skip - 1];
+                    this.id = PostingList.this.skipBases[skip - 1];
+                }
+                this.nextSkip = skip;
+            }
+            while (next() < target) {
+                // decode up to it
+            }
+            return this.id;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return bytes taken by the encoded postings, not counting spare capacity or the object itself
+     */
+    public int encodedBytes() {
+        return this.length;
+    }
+
+    /**
+     * Drop the spare capacity left by appends
+     */
+    public void trimToSize() {
+        if (this.data.length != this.length) {
+            this.data = this.length == 0 ? EMPTY : Arrays.copyOf(this.data, this.length);
+        }
+    }
+
+    // a gap of -1 writes only the frequency and positions
+    private static int writePosting(byte[] data, int pos, int gap, int frequency, int[] positions) {
+        if (gap >= 0) {
+            pos = writeVarInt(data, pos, gap);
+        }
+        pos = writeVarInt(data, pos, frequency);
+        if (positions != null) {
+            int previous = 0;
+            for (int position : positions) {
+                pos = writeVarInt(data, pos, position - previous);
+                previous = position;
+            }
+        }
+        return pos;
+    }
+
+    private int maxPostingLength(int frequency) {
+        return 10 + (this.positional ? 5 * frequency : 0);
+    }
+
+    // the offset just past the positions that start at pos
+    private int skipPositions(int pos, int frequency) {
+        if (this.positional) {
+            for (int i = 0; i < frequency; i++) {
+                while (this.data[pos++] < 0) {
+                    // a varint ends with the first byte that has its high bit clear
+                }
+            }
+        }
+        return pos;
+    }
+
+    // replaces the bytes in [start, end) with the first n bytes of replacement
+    private void replace(int start, int end, byte[] replacement, int n) {
+        this.skipCount = -1;
+        int delta = n - (end - start);
+        ensureCapacity(this.length + delta);
+        System.arraycopy(this.data, end, this.data, end + delta, this.length - end);
+        System.arraycopy(replacement, 0, this.data, start, n);
+        this.length += delta;
+    }
+
+    private void buildSkips() {
+        this.skipCount = 0;
+        int pos = 0;
+        int id = -1;
+        for (int i = 0; pos < this.length; i++) {
+            if (i % SKIP_INTERVAL == 0) {
+                addSkip(pos, id);
+            }
+            int gap = readVarInt(this.data, pos);
+            pos += varIntLength(gap);
+            int frequency = readVarInt(this.data, pos);
+            pos = skipPositions(pos + varIntLength(frequency), frequency);
+            id += gap;
+        }
+    }
+
+    private void addSkip(int offset, int base) {
+        if (this.skipCount == this.skipOffsets.length) {
+            int capacity = Math.max(4, this.skipCount * 2);
+            this.skipOffsets = Arrays.copyOf(this.skipOffsets, capacity);
+            this.skipBases = Arrays.copyOf(this.skipBases, capacity);
+        }
+        this.skipOffsets[this.skipCount] = offset;
+        this.skipBases[this.skipCount] = base;
+        this.skipCount++;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(needed, Math.max(8, this.data.length + (this.data.length >> 1))));
+        }
+    }
+
+    private static int varIntLength(int value) {
+        int n = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private static int writeVarInt(byte[] data, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int readVarInt(byte[] data, int pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static edu.yu.cs.com1320.project.stage6.impl.PostingList.NO_MORE_IDS;
+
+/**
+ * Evaluates a Query against an InvertedIndex by walking posting list cursors in step, so that no list of documents
+ * is built for any clause, only the IDs of the documents that match the whole query come out.
+ * <p>
+ * An and is led by its clause with the fewest postings: each ID the lead stops at is looked for in the other
+ * clauses by advancing their cursors to it, which skips over runs of postings that cannot match, and a clause that
+ * turns out to be past it moves the lead up to where that clause is. So an and of a rare term with a common one
+ * costs about as much as the rare term's list. An or merges its clauses' cursors, and a not advances its clause's
+ * cursors to each of the and's matches to see whether to drop it.
+ * <p>
+ * A phrase or proximity query is an and of its words whose matches are then checked against the positions of the
+ * words in the document, so only documents with all the words have their positions decoded.
+ */
+public class QueryEvaluator {
+    private final InvertedIndex index;
+
+    public QueryEvaluator(InvertedIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Give the consumer each document that matches the query, in ascending ID order, with the total frequency in
+     * it of the terms it matched by
+     * @throws IllegalArgumentException if a not is anything but a clause of an and with a clause that is not a not
+     * @throws IllegalStateException if the query has a phrase or proximity query, and the index is not positional
+     */
+    public void evaluate(Query query, PostingList.PostingConsumer consumer) {
+        Matches matches = matchesOf(query);
+        for (int id = matches.next(); id != NO_MORE_IDS; id = matches.next()) {
+            consumer.accept(id, matches.frequency());
+        }
+    }
+
+    private Matches matchesOf(Query query) {
+        switch (query.getKind()) {
+            case TERM:
+                PostingList postings = this.index.postingsOf(query.getText());
+                return postings != null ? new TermMatches(postings) : NoMatches.INSTANCE;
+            case PREFIX:
+                List<Matches> terms = new ArrayList<>();
+                this.index.forEachPostingsWithPrefix(query.getText(), list -> terms.add(new TermMatches(list)));
+                return anyOf(terms);
+            case OR:
+                List<Matches> clauses = new ArrayList<>();
+                for (Query clause : query.getClauses()) {
+                    if (clause.getKind() == Query.Kind.NOT) {
+                        throw new IllegalArgumentException("NOT can only be a clause of an AND: " + query);
+                    }
+                    clauses.add(matchesOf(clause));
+                }
+                return anyOf(clauses);
+            case AND:
+                return allOf(query);
+            case PHRASE:
+            case NEAR:
+                return positionsOf(query);
+            default:
+                throw new IllegalArgumentException("NOT can only be a clause of an AND: " + query);
+        }
+    }
+
+    private static Matches anyOf(List<Matches> clauses) {
+        clauses.removeIf(clause -> clause == NoMatches.INSTANCE);
+        if (clauses.isEmpty()) {
+            return NoMatches.INSTANCE;
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new OrMatches(clauses);
+    }
+
+    private Matches allOf(Query query) {
+        List<Matches> required = new ArrayList<>();
+        List<Matches> excluded = new ArrayList<>();
+        for (Query clause : query.getClauses()) {
+            if (clause.getKind() == Query.Kind.NOT) {
+                excluded.add(matchesOf(clause.getClauses().get(0)));
+            } else {
+                required.add(matchesOf(clause));
+            }
+        }
+        if (required.isEmpty()) {
+            throw new IllegalArgumentException("An AND needs a clause that is not a NOT: " + query);
+        }
+        if (required.contains(NoMatches.INSTANCE)) {
+            return NoMatches.INSTANCE;
+        }
+        excluded.removeIf(clause -> clause == NoMatches.INSTANCE);
+        if (required.size() == 1 && excluded.isEmpty()) {
+            return required.get(0);
+        }
+        required.sort(Comparator.comparingLong(Matches::cost));
+        return new AndMatches(required, excluded);
+    }
+
+    private Matches positionsOf(Query query) {
+        if (!this.index.isPositional()) {
+            throw new IllegalStateException("Phrase and proximity queries need an index of word positions: " + query);
+        }
+        List<TermMatches> words = new ArrayList<>();
+        for (Query word : query.getClauses()) {
+            PostingList postings = this.index.postingsOf(word.getText());
+            if (postings == null) {
+                return NoMatches.INSTANCE;
+            }
+            words.add(new TermMatches(postings));
+        }
+        List<Matches> required = new ArrayList<>(words);
+        required.sort(Comparator.comparingLong(Matches::cost));
+        return new PositionalMatches(words, new AndMatches(required, List.of()), query.getKind() == Query.Kind.PHRASE ? -1 : query.getDistance());
+    }
+
+    // the documents matching a clause, as a cursor over their IDs in ascending order
+    private abstract static class Matches {
+        /**
+         * @return the current ID, -1 before the first, or NO_MORE_IDS after the last
+         */
+        abstract int id();
+
+        /**
+         * @return the next ID, or NO_MORE_IDS if there is none
+         */
+        abstract int next();
+
+        /**
+         * @return the first ID of at least target, staying put if the current one already is, or NO_MORE_IDS
+         */
+        abstract int advance(int target);
+
+        // the total frequency of the matched terms in the current document
+        abstract int frequency();
+
+        // an upper bound on how many IDs there are, to order an and's clauses by
+        abstract long cost();
+    }
+
+    private static final class NoMatches extends Matches {
+        static final NoMatches INSTANCE = new NoMatches();
+
+        int id() {
+            return NO_MORE_IDS;
+        }
+
+        int next() {
+            return NO_MORE_IDS;
+        }
+
+        int advance(int target) {
+            return NO_MORE_IDS;
+        }
+
+        int frequency() {
+            return 0;
+        }
+
+        long cost() {
+            return 0;
+        }
+    }
+
+    private static final class TermMatches extends Matches {
+        private final PostingList.Cursor cursor;
+        private final int size;
+
+        TermMatches(PostingList postings) {
+            this.cursor = postings.cursor();
+            this.size = postings.size();
+        }
+
+        int id() {
+            return this.cursor.id();
+        }
+
+        int next() {
+            return this.cursor.next();
+        }
+
+        int advance(int target) {
+            return this.cursor.advance(target);
+        }
+
+        int frequency() {
+            return this.cursor.frequency();
+        }
+
+        int[] positions() {
+            return this.cursor.positions();
+        }
+
+        long cost() {
+            return this.size;
+        }
+    }
+
+    private static final class OrMatches extends Matches {
+        private final List<Matches> clauses;
+        private int id = -1;
+
+        OrMatches(List<Matches> clauses) {
+            this.clauses = clauses;
+        }
+
+        int id() {
+            return this.id;
+        }
+
+        int next() {
+            return this.id == NO_MORE_IDS ? NO_MORE_IDS : advance(this.id + 1);
+        }
+
+        int advance(int target) {
+            if (this.id >= target) {
+                return this.id;
+            }
+            int lowest = NO_MORE_IDS;
+            for (Matches clause : this.clauses) {
+                lowest = Math.min(lowest, clause.advance(target));
+            }
+            return this.id = lowest;
+        }
+
+        int frequency() {
+            int total = 0;
+            for (Matches clause : this.clauses) {
+                if (clause.id() == this.id) {
+                    total += clause.frequency();
+                }
+            }
+            return total;
+        }
+
+        long cost() {
+            long total = 0;
+            for (Matches clause : this.clauses) {
+                total += clause.cost();
+            }
+            return total;
+        }
+    }
+
+    private static final class AndMatches extends Matches {
+        private final Matches lead; // the clause with the fewest IDs
+        private final List<Matches> others;
+        private final List<Matches> excluded;
+        private int id = -1;
+
+        AndMatches(List<Matches> required, List<Matches> excluded) {
+            this.lead = required.get(0);
+            this.others = required.subList(1, required.size());
+            this.excluded = excluded;
+        }
+
+        int id() {
+            return this.id;
+        }
+
+        int next() {
+            return this.id == NO_MORE_IDS ? NO_MORE_IDS : align(this.lead.next());
+        }
+
+        int advance(int target) {
+            return this.id >= target ? this.id : align(this.lead.advance(target));
+        }
+
+        // moves every clause up to the first ID from candidate on that they all match and no excluded clause does
+        private int align(int candidate) {
+            search:
+            while (candidate != NO_MORE_IDS) {
+                for (Matches other : this.others) {
+                    int id = other.advance(candidate);
+                    if (id > candidate) {
+                        candidate = this.lead.advance(id);
+                        continue search;
+                    }
+                }
+                for (Matches excluded : this.excluded) {
+                    if (excluded.advance(candidate) == candidate) {
+                        candidate = this.lead.next();
+                        continue search;
+                    }
+                }
+                return this.id = candidate;
+            }
+            return this.id = NO_MORE_IDS;
+        }
+
+        int frequency() {
+            int total = this.lead.frequency();
+            for (Matches other : this.others) {
+                total += other.frequency();
+            }
+            return total;
+        }
+
+        long cost() {
+            return this.lead.cost();
+        }
+    }
+
+    // documents with all the words, where they are in the phrase's order or within the distance of one another
+    private static final class PositionalMatches extends Matches {
+        private final List<TermMatches> words;
+        private final Matches all;
+        private final int distance; // -1 for a phrase
+        private int id = -1;
+        private int frequency;
+
+        PositionalMatches(List<TermMatches> words, Matches all, int distance) {
+            this.words = words;
+            this.all = all;
+            this.distance = distance;
+        }
+
+        int id() {
+            return this.id;
+        }
+
+        int next() {
+            return this.id == NO_MORE_IDS ? NO_MORE_IDS : check(this.all.next());
+        }
+
+        int advance(int target) {
+            return this.id >= target ? this.id : check(this.all.advance(target));
+        }
+
+        private int check(int candidate) {
+            while (candidate != NO_MORE_IDS) {
+                int[][] positions = new int[this.words.size()][];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = this.words.get(i).positions();
+                }
+                this.frequency = this.distance < 0 ? phrases(positions) : windows(positions, this.distance);
+                if (this.frequency > 0) {
+                    return this.id = candidate;
+                }
+                candidate = this.all.next();
+            }
+            return this.id = NO_MORE_IDS;
+        }
+
+        // how many times the words are at consecutive positions
+        private static int phrases(int[][] positions) {
+            int count = 0;
+            starts:
+            for (int start : positions[0]) {
+                for (int i = 1; i < positions.length; i++) {
+                    if (Arrays.binarySearch(positions[i], start + i) < 0) {
+                        continue starts;
+                    }
+                }
+                count++;
+            }
+            return count;
+        }
+
+        // how many positions, taken in order, end a stretch of at most distance words that has all the words in it
+        private static int windows(int[][] positions, int distance) {
+            int[] next = new int[positions.length]; // the next position of each word to take
+            int[] latest = new int[positions.length];
+            Arrays.fill(latest, -1);
+            int count = 0;
+            while (true) {
+                int word = -1;
+                for (int i = 0; i < positions.length; i++) {
+                    if (next[i] < positions[i].length && (word < 0 || positions[i][next[i]] < positions[word][next[word]])) {
+                        word = i;
+                    }
+                }
+                if (word < 0) {
+                    return count;
+                }
+                int position = positions[word][next[word]++];
+                latest[word] = position;
+                int earliest = position;
+                for (int other : latest) {
+                    earliest = Math.min(earliest, other);
+                }
+                if (earliest >= 0 && position - earliest <= distance) {
+                    count++;
+                }
+            }
+        }
+
+        int frequency() {
+            return this.frequency;
+        }
+
+        long cost() {
+            return this.all.cost();
+        }
+    }
+}
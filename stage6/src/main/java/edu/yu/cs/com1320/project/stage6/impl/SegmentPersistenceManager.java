@@ -0,0 +1,535 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured PersistenceManager. Every serialize or delete appends one record to the active segment file,
+ * and an in-memory index maps each stored URI to the location of its latest record. A delete appends a tombstone.
+ * Once the share of dead bytes (overwritten or deleted records) passes the garbage threshold, a background thread
+ * compacts the sealed segments that are mostly garbage by copying their live records to the active segment and
+ * deleting them.
+ * <p>
+ * Record layout: body length (int) | CRC32 of body (int) | body, where body is
+ * type (byte) | key length (int) | key (UTF-8) | document encoded by the codec (puts only).
+ * A record torn by a crash at the end of the last segment is cut off when the store is opened.
+ * Documents are decoded straight out of memory-mapped segments. Single serializes and deletes are not forced to
+ * disk as they happen; sync forces the segments appended to since the last one.
+ */
+public class SegmentPersistenceManager implements PersistenceManager<URI, Document>, Closeable {
+    private static final String SEGMENT_DIR = ".segments";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final double DEFAULT_GARBAGE_THRESHOLD = 0.5;
+    private static final int MAX_MAPPINGS = 64;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+
+    private final File segmentDir;
+    private final DocumentCodec codec;
+    private final long maxSegmentBytes;
+    private final double garbageThreshold;
+    private final Map<URI, Location> index = new HashMap<>();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final ExecutorService compactor;
+    private final Object compactionLock = new Object();
+    private final MappedFilePool mappings = new MappedFilePool(MAX_MAPPINGS);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Set<Segment> unsynced = new LinkedHashSet<>();
+    private boolean directoryChanged; // segments were created or deleted since the last sync
+    private Segment active;
+    private long totalBytes;
+    private long deadBytes;
+    private boolean compactionScheduled;
+    private IOException compactionFailure; // thrown by the next serialize, serializeAll or sync
+
+    private static final class Location {
+        private final int segmentId;
+        private final long offset;
+        private final int length; // whole record, header included
+
+        private Location(int segmentId, long offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+        private long deadBytes;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = this.channel.size();
+        }
+    }
+
+    // a record as read back from a segment
+    private static final class Record {
+        private final byte type;
+        private final URI key;
+        private final ByteBuffer value;
+        private final int length;
+
+        private Record(byte type, URI key, ByteBuffer value, int length) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.length = length;
+        }
+    }
+
+    public SegmentPersistenceManager(File baseDir) {
+        this(baseDir, new BinaryDocumentCodec(), DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_GARBAGE_THRESHOLD);
+    }
+
+    /**
+     * @param baseDir directory under which the segment files are kept
+     * @param codec format of the documents inside the records
+     * @param maxSegmentBytes size at which the active segment is sealed and a new one started
+     * @param garbageThreshold share of dead bytes, between 0 and 1, above which compaction runs
+     */
+    public SegmentPersistenceManager(File baseDir, DocumentCodec codec, long maxSegmentBytes, double garbageThreshold) {
+        if (maxSegmentBytes < 1 || garbageThreshold <= 0 || garbageThreshold >= 1) {
+            throw new IllegalArgumentException("Segment size must be positive and the garbage threshold between 0 and 1");
+        }
+        File dir = baseDir != null ? baseDir : new File(System.getProperty("user.dir"));
+        this.segmentDir = new File(dir, SEGMENT_DIR);
+        this.codec = codec;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.garbageThreshold = garbageThreshold;
+        try {
+            if (!this.segmentDir.exists() && !this.segmentDir.mkdirs()) {
+                throw new IOException("Failed to create directories for path: " + this.segmentDir.getAbsolutePath());
+            }
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "segment-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public synchronized void serialize(URI uri, Document val) throws IOException {
+        throwCompactionFailure();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        this.codec.encode(val, encoded);
+        append(TYPE_PUT, uri, encoded.toByteArray());
+        maybeScheduleCompaction();
+    }
+
+    /**
+     * Appends the whole batch with one write and forces it to disk once, rather than once per document
+     */
+    @Override
+    public synchronized void serializeAll(Map<URI, Document> values) throws IOException {
+        throwCompactionFailure();
+        List<URI> uris = new ArrayList<>(values.size());
+        ByteBuffer[] records = new ByteBuffer[values.size()];
+        for (Map.Entry<URI, Document> entry : values.entrySet()) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            this.codec.encode(entry.getValue(), encoded);
+            records[uris.size()] = record(TYPE_PUT, entry.getKey(), encoded.toByteArray());
+            uris.add(entry.getKey());
+        }
+        appendAll(uris, records);
+        this.active.channel.force(false);
+        maybeScheduleCompaction();
+    }
+
+    @Override
+    public synchronized Document deserialize(URI uri) throws IOException {
+        Location location = this.index.get(uri);
+        if (location == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        Segment segment = this.segments.get(location.segmentId);
+        ByteBuffer mapped = this.mappings.map(segment.file, location.offset + location.length);
+        return this.codec.decode(parse(segment, mapped, location.offset).value);
+    }
+
+    /**
+     * Finds and checks the records under the lock, then decodes them in parallel outside it, on the common
+     * fork-join pool. The mapped slices stay readable even if compaction deletes their segment in the meantime.
+     */
+    @Override
+    public Map<URI, Document> deserializeAll(Collection<URI> uris) throws IOException {
+        Map<URI, ByteBuffer> values = new HashMap<>();
+        synchronized (this) {
+            for (URI uri : uris) {
+                Location location = this.index.get(uri);
+                if (location != null) {
+                    Segment segment = this.segments.get(location.segmentId);
+                    ByteBuffer mapped = this.mappings.map(segment.file, location.offset + location.length);
+                    values.put(uri, parse(segment, mapped, location.offset).value);
+                }
+            }
+        }
+        this.hits.addAndGet(values.size());
+        this.misses.addAndGet(uris.size() - values.size());
+        Map<URI, Document> found = new ConcurrentHashMap<>();
+        try {
+            values.entrySet().parallelStream().forEach(entry -> {
+                try {
+                    found.put(entry.getKey(), this.codec.decode(entry.getValue()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized boolean delete(URI uri) throws IOException {
+        if (!this.index.containsKey(uri)) {
+            return false;
+        }
+        append(TYPE_TOMBSTONE, uri, new byte[0]);
+        maybeScheduleCompaction();
+        return true;
+    }
+
+    /**
+     * Forces each segment appended to since the last sync, then the segment directory if segments were created or
+     * deleted. Holds the lock throughout, so compaction can't close a segment while it is being forced.
+     * @throws IOException if forcing failed, or a background compaction did since the last serialize or sync
+     */
+    @Override
+    public synchronized void sync() throws IOException {
+        throwCompactionFailure();
+        forceUnsynced();
+    }
+
+    // forces what was appended since the last force, and the directory if segments were created or deleted
+    private void forceUnsynced() throws IOException {
+        for (Iterator<Segment> it = this.unsynced.iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            // a compacted segment's live records were copied to a segment that is still in the set
+            if (this.segments.get(segment.id) == segment) {
+                segment.channel.force(false);
+            }
+            it.remove();
+        }
+        if (this.directoryChanged) {
+            try (FileChannel dir = FileChannel.open(this.segmentDir.toPath(), StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+            this.directoryChanged = false;
+        }
+    }
+
+    @Override
+    public synchronized List<URI> keys() {
+        return new ArrayList<>(this.index.keySet());
+    }
+
+    /**
+     * Compact every sealed segment whose share of dead bytes is at least the garbage threshold.
+     * Runs on the caller's thread; normally this happens in the background.
+     */
+    public void compact() throws IOException {
+        synchronized (this.compactionLock) {
+            List<Integer> candidates = new ArrayList<>();
+            synchronized (this) {
+                this.compactionScheduled = false;
+                for (Segment segment : this.segments.values()) {
+                    if (segment != this.active && segment.size > 0 && (double) segment.deadBytes / segment.size >= this.garbageThreshold) {
+                        candidates.add(segment.id);
+                    }
+                }
+            }
+            for (int id : candidates) {
+                compactSegment(id);
+            }
+        }
+    }
+
+    /**
+     * @return share of the bytes in all segments that belong to overwritten or deleted records
+     */
+    public synchronized double getGarbageRatio() {
+        return this.totalBytes == 0 ? 0 : (double) this.deadBytes / this.totalBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * @return how many documents deserialize and deserializeAll have found
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return how many documents deserialize and deserializeAll were asked for and found nothing stored
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.compactor.shutdown();
+        try {
+            this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                segment.channel.close();
+            }
+        }
+    }
+
+    private void append(byte type, URI uri, byte[] value) throws IOException {
+        appendAll(List.of(uri), new ByteBuffer[]{record(type, uri, value)});
+    }
+
+    // writes the records to the active segment with one gathering write, then points the index at them
+    private void appendAll(List<URI> uris, ByteBuffer[] records) throws IOException {
+        long total = 0;
+        for (ByteBuffer record : records) {
+            total += record.remaining();
+        }
+        if (this.active.size > 0 && this.active.size + total > this.maxSegmentBytes) {
+            this.active = openSegment(this.active.id + 1);
+        }
+        long offset = this.active.size;
+        this.active.channel.position(offset);
+        for (long written = 0; written < total; ) {
+            written += this.active.channel.write(records);
+        }
+        for (int i = 0; i < records.length; i++) {
+            int length = records[i].limit();
+            Location previous = records[i].get(HEADER_BYTES) == TYPE_PUT
+                    ? this.index.put(uris.get(i), new Location(this.active.id, offset, length))
+                    : this.index.remove(uris.get(i));
+            if (previous != null) {
+                markDead(previous.segmentId, previous.length);
+            }
+            offset += length;
+        }
+        this.active.size = offset;
+        this.totalBytes += total;
+        this.unsynced.add(this.active);
+    }
+
+    private static ByteBuffer record(byte type, URI uri, byte[] value) {
+        byte[] key = uri.toString().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + Integer.BYTES + key.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0); // crc, filled in below
+        record.put(type).putInt(key.length).put(key).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, bodyLength);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private void markDead(int segmentId, long length) {
+        Segment segment = this.segments.get(segmentId);
+        if (segment != null) {
+            segment.deadBytes += length;
+            this.deadBytes += length;
+        }
+    }
+
+    private void maybeScheduleCompaction() {
+        if (!this.compactionScheduled && getGarbageRatio() >= this.garbageThreshold && this.segments.size() > 1) {
+            this.compactionScheduled = true;
+            this.compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    synchronized (this) {
+                        if (this.compactionFailure == null) {
+                            this.compactionFailure = e;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void throwCompactionFailure() throws IOException {
+        IOException e = this.compactionFailure;
+        if (e != null) {
+            this.compactionFailure = null;
+            throw e;
+        }
+    }
+
+    // sealed segments never change, so they are scanned without the lock; each live record is copied under it
+    private void compactSegment(int id) throws IOException {
+        Segment segment;
+        boolean olderSegmentExists;
+        synchronized (this) {
+            segment = this.segments.get(id);
+            if (segment == null || segment == this.active) {
+                return;
+            }
+            olderSegmentExists = this.segments.firstKey() < id;
+        }
+        long offset = 0;
+        while (offset < segment.size) {
+            Record record = read(segment, offset);
+            synchronized (this) {
+                Location location = this.index.get(record.key);
+                boolean live = record.type == TYPE_PUT && location != null && location.segmentId == id && location.offset == offset;
+                // a tombstone only matters while an older segment might still hold a put for its key
+                boolean keepTombstone = record.type == TYPE_TOMBSTONE && olderSegmentExists && location == null;
+                if (live || keepTombstone) {
+                    byte[] value = new byte[record.value.remaining()];
+                    record.value.get(value);
+                    // copying a live record counts its old copy as dead, which is dropped with the segment below
+                    append(record.type, record.key, value);
+                }
+            }
+            offset += record.length;
+        }
+        synchronized (this) {
+            // the copies have to be on disk before the segment they replace is gone from it
+            forceUnsynced();
+            this.segments.remove(id);
+            this.totalBytes -= segment.size;
+            this.deadBytes -= segment.deadBytes;
+            segment.channel.close();
+            this.mappings.invalidate(segment.file);
+            Files.deleteIfExists(segment.file.toPath());
+            this.directoryChanged = true;
+        }
+    }
+
+    // reads the record into memory; used for scans, which have to cope with a torn record at the end
+    private Record read(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(segment.channel, header, offset);
+        int bodyLength = header.getInt(0);
+        if (bodyLength < 1 + Integer.BYTES || offset + HEADER_BYTES + bodyLength > segment.size) {
+            throw new IOException("Corrupt record at " + offset + " in " + segment.file.getAbsolutePath());
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bodyLength);
+        record.put(header.flip());
+        readFully(segment.channel, record, offset);
+        return parse(segment, record.flip(), 0);
+    }
+
+    // parses the record at the given position of the buffer; the returned value is a slice of the buffer
+    private static Record parse(Segment segment, ByteBuffer buffer, long position) throws IOException {
+        int start = (int) position;
+        int bodyLength = buffer.getInt(start);
+        int expectedCrc = buffer.getInt(start + Integer.BYTES);
+        if (bodyLength < 1 + Integer.BYTES || start + HEADER_BYTES + bodyLength > buffer.limit()) {
+            throw new IOException("Corrupt record at " + position + " in " + segment.file.getAbsolutePath());
+        }
+        ByteBuffer body = buffer.slice(start + HEADER_BYTES, bodyLength);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Checksum mismatch at " + position + " in " + segment.file.getAbsolutePath());
+        }
+        byte type = body.get();
+        byte[] key = new byte[body.getInt()];
+        body.get(key);
+        try {
+            return new Record(type, new URI(new String(key, StandardCharsets.UTF_8)), body.slice(), HEADER_BYTES + bodyLength);
+        } catch (URISyntaxException e) {
+            throw new IOException("Corrupt key at " + position + " in " + segment.file.getAbsolutePath(), e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    // rebuild the index by replaying every segment in order
+    private void recover() throws IOException {
+        File[] files = this.segmentDir.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        List<Integer> ids = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) {
+                ids.add(Integer.parseInt(f.getName().substring(0, f.getName().length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = openSegment(ids.get(i));
+            long offset = 0;
+            while (offset < segment.size) {
+                Record record;
+                try {
+                    record = read(segment, offset);
+                } catch (IOException e) {
+                    if (i != ids.size() - 1) {
+                        throw e;
+                    }
+                    // torn write at the end of the log
+                    segment.channel.truncate(offset);
+                    segment.size = offset;
+                    break;
+                }
+                this.totalBytes += record.length;
+                Location previous = record.type == TYPE_PUT
+                        ? this.index.put(record.key, new Location(segment.id, offset, record.length))
+                        : this.index.remove(record.key);
+                if (previous != null) {
+                    markDead(previous.segmentId, previous.length);
+                }
+                offset += record.length;
+            }
+            this.active = segment;
+        }
+        if (this.active == null) {
+            this.active = openSegment(0);
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Segment segment = new Segment(id, new File(this.segmentDir, String.format("%010d", id) + SEGMENT_SUFFIX));
+        this.segments.put(id, segment);
+        this.directoryChanged = true;
+        return segment;
+    }
+}
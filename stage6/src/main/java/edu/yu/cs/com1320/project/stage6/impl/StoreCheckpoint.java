@@ -0,0 +1,381 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Image of a DocumentStoreImpl at one point in its write-ahead log, so that a restart loads it and replays only
+ * the records logged after it instead of re-tokenizing every document. Every int below is an unsigned varint
+ * and every string is a varint byte length followed by UTF-8:
+ * <pre>
+ * magic "DSCK" | version byte | positional byte | log offset (8 bytes)
+ * resident count | (size in bytes | idle nanos (8 bytes) | body length | document encoded by the codec)*
+ * evicted count | uri*
+ * term count | (term | posting count | resident document ordinals, each as the gap from the one before)*
+ * term count | (term | posting count | (evicted document ordinal gap | frequency | positions if positional)*)*
+ * CRC32 of everything before it (4 bytes)
+ * </pre>
+ * The terms are both the words of the documents and their key:value metadata pairs. Last-use times are stored as
+ * how long before the checkpoint each document was used, since System.nanoTime has no meaning in another process.
+ * Evicted documents are only named and indexed; their bodies stay with the PersistenceManager, and a restart never
+ * has to read them back. In a positional checkpoint each evicted posting is followed by the word's first position
+ * and then the gaps between its positions, as many as its frequency.
+ */
+public class StoreCheckpoint {
+    private static final byte[] MAGIC = {'D', 'S', 'C', 'K'};
+    private static final int VERSION = 2;
+
+    private final long logOffset;
+    private final boolean positional;
+    private final long takenAt;
+    private final List<Document> resident = new ArrayList<>();
+    private final List<Map<String, String>> residentMetadata = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<Long> lastUseTimes = new ArrayList<>();
+    private final List<URI> evicted = new ArrayList<>();
+    private final Map<String, List<Document>> termIndex = new LinkedHashMap<>();
+    private final Map<String, List<EvictedPosting>> evictedTermIndex = new LinkedHashMap<>();
+
+    /**
+     * An evicted document indexed under a term
+     */
+    public static final class EvictedPosting {
+        private final int evictedIndex;
+        private final int frequency;
+        private final int[] positions;
+
+        private EvictedPosting(int evictedIndex, int frequency, int[] positions) {
+            this.evictedIndex = evictedIndex;
+            this.frequency = frequency;
+            this.positions = positions;
+        }
+
+        /**
+         * @return the document's index in getEvicted
+         */
+        public int getEvictedIndex() {
+            return this.evictedIndex;
+        }
+
+        public int getFrequency() {
+            return this.frequency;
+        }
+
+        /**
+         * @return where the term is in the document, or null if the checkpoint is not positional
+         */
+        public int[] getPositions() {
+            return this.positions;
+        }
+    }
+
+    /**
+     * @param logOffset size of the write-ahead log when the store was in the state being checkpointed
+     * @param positional whether the postings of evicted documents are added with the positions of their words
+     */
+    public StoreCheckpoint(long logOffset, boolean positional) {
+        this(logOffset, positional, System.nanoTime());
+    }
+
+    private StoreCheckpoint(long logOffset, boolean positional, long takenAt) {
+        this.logOffset = logOffset;
+        this.positional = positional;
+        this.takenAt = takenAt;
+    }
+
+    /**
+     * @param document a document held in memory. Only its text, binary data and word map are read when the
+     *                 checkpoint is written, so its metadata may keep changing in the meantime.
+     * @param metadata a copy of the document's metadata as of the checkpoint
+     */
+    public void addResident(Document document, Map<String, String> metadata, long lastUseTime) {
+        this.resident.add(document);
+        this.residentMetadata.add(metadata);
+        this.lastUseTimes.add(lastUseTime);
+    }
+
+    public void addEvicted(URI uri) {
+        this.evicted.add(uri);
+    }
+
+    /**
+     * Index an evicted document under the term. A term's postings have to be added in ascending order of the
+     * documents' indexes in getEvicted.
+     * @param positions where the word is in the document if the checkpoint is positional, else null; empty for a
+     *                  term such as metadata that is not a word of the document
+     */
+    public void addEvictedPosting(String term, int evictedIndex, int frequency, int[] positions) {
+        this.evictedTermIndex.computeIfAbsent(term, t -> new ArrayList<>()).add(new EvictedPosting(evictedIndex, frequency, positions));
+    }
+
+    public long getLogOffset() {
+        return this.logOffset;
+    }
+
+    public boolean isPositional() {
+        return this.positional;
+    }
+
+    public List<Document> getResident() {
+        return Collections.unmodifiableList(this.resident);
+    }
+
+    /**
+     * @return the size the writer gave the resident document at the given index of getResident
+     */
+    public int getSizeInBytes(int residentIndex) {
+        return this.sizes.get(residentIndex);
+    }
+
+    public long getLastUseTime(int residentIndex) {
+        return this.lastUseTimes.get(residentIndex);
+    }
+
+    public List<URI> getEvicted() {
+        return Collections.unmodifiableList(this.evicted);
+    }
+
+    /**
+     * @return each term of a checkpoint that was read, with the resident documents it was indexed under
+     */
+    public Map<String, List<Document>> getTermIndex() {
+        return Collections.unmodifiableMap(this.termIndex);
+    }
+
+    /**
+     * @return each term the evicted documents are indexed under, with their postings in ascending order
+     */
+    public Map<String, List<EvictedPosting>> getEvictedTermIndex() {
+        return Collections.unmodifiableMap(this.evictedTermIndex);
+    }
+
+    /**
+     * Write the checkpoint to a temporary file, force it to disk and move it over the given file, so the file
+     * always holds either the previous checkpoint or this one, and force the move to disk.
+     * @param sizeInBytes how much memory each resident document is charged
+     * @return bytes written
+     */
+    public long write(File file, DocumentCodec codec, ToIntFunction<Document> sizeInBytes) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+            DataOutputStream data = new DataOutputStream(checked);
+            data.write(MAGIC);
+            data.writeByte(VERSION);
+            data.writeBoolean(this.positional);
+            data.writeLong(this.logOffset);
+            writeVarInt(data, this.resident.size());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int i = 0; i < this.resident.size(); i++) {
+                body.reset();
+                codec.encode(copyOf(this.resident.get(i), this.residentMetadata.get(i)), body);
+                writeVarInt(data, sizeInBytes.applyAsInt(this.resident.get(i)));
+                data.writeLong(this.takenAt - this.lastUseTimes.get(i));
+                writeVarInt(data, body.size());
+                body.writeTo(data);
+            }
+            writeVarInt(data, this.evicted.size());
+            for (URI uri : this.evicted) {
+                writeString(data, uri.toString());
+            }
+            Map<String, List<Integer>> postings = buildPostings();
+            writeVarInt(data, postings.size());
+            for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+                writeString(data, entry.getKey());
+                writeVarInt(data, entry.getValue().size());
+                int previous = 0;
+                for (int ordinal : entry.getValue()) {
+                    writeVarInt(data, ordinal - previous);
+                    previous = ordinal;
+                }
+            }
+            writeVarInt(data, this.evictedTermIndex.size());
+            for (Map.Entry<String, List<EvictedPosting>> entry : this.evictedTermIndex.entrySet()) {
+                writeString(data, entry.getKey());
+                writeVarInt(data, entry.getValue().size());
+                int previous = 0;
+                for (EvictedPosting posting : entry.getValue()) {
+                    writeVarInt(data, posting.evictedIndex - previous);
+                    writeVarInt(data, posting.frequency);
+                    previous = posting.evictedIndex;
+                    if (this.positional) {
+                        int position = 0;
+                        for (int p : posting.positions) {
+                            writeVarInt(data, p - position);
+                            position = p;
+                        }
+                    }
+                }
+            }
+            data.flush();
+            new DataOutputStream(fileOut).writeInt((int) checked.getChecksum().getValue());
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the move has to be on disk too before the log behind the checkpoint can go
+        try (FileChannel dir = FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        return file.length();
+    }
+
+    /**
+     * @throws IOException if the file is not a checkpoint, or is corrupt
+     */
+    public static StoreCheckpoint read(File file, DocumentCodec codec) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (bytes.length < MAGIC.length + 2 + Long.BYTES + Integer.BYTES) {
+            throw new IOException("Checkpoint is too short: " + file.getAbsolutePath());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Integer.BYTES);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if ((int) crc.getValue() != buffer.getInt(bytes.length - Integer.BYTES)) {
+            throw new IOException("Checkpoint failed its checksum: " + file.getAbsolutePath());
+        }
+        buffer.limit(bytes.length - Integer.BYTES);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            int version = buffer.get() & 0xFF;
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IOException("Not a version " + VERSION + " checkpoint: " + file.getAbsolutePath());
+            }
+            boolean positional = buffer.get() != 0;
+            StoreCheckpoint checkpoint = new StoreCheckpoint(buffer.getLong(), positional);
+            int residentCount = readVarInt(buffer);
+            for (int i = 0; i < residentCount; i++) {
+                int size = readVarInt(buffer);
+                long idle = buffer.getLong();
+                int bodyLength = readVarInt(buffer);
+                Document document = codec.decode(buffer.slice(buffer.position(), bodyLength));
+                buffer.position(buffer.position() + bodyLength);
+                checkpoint.addResident(document, null, checkpoint.takenAt - idle);
+                checkpoint.sizes.add(size);
+            }
+            int evictedCount = readVarInt(buffer);
+            for (int i = 0; i < evictedCount; i++) {
+                checkpoint.addEvicted(new URI(readString(buffer)));
+            }
+            int termCount = readVarInt(buffer);
+            for (int t = 0; t < termCount; t++) {
+                String term = readString(buffer);
+                int postingCount = readVarInt(buffer);
+                List<Document> documents = new ArrayList<>(postingCount);
+                int ordinal = 0;
+                for (int p = 0; p < postingCount; p++) {
+                    ordinal += readVarInt(buffer);
+                    documents.add(checkpoint.resident.get(ordinal));
+                }
+                checkpoint.termIndex.put(term, documents);
+            }
+            int evictedTermCount = readVarInt(buffer);
+            for (int t = 0; t < evictedTermCount; t++) {
+                String term = readString(buffer);
+                int postingCount = readVarInt(buffer);
+                List<EvictedPosting> postings = new ArrayList<>(postingCount);
+                int ordinal = 0;
+                for (int p = 0; p < postingCount; p++) {
+                    ordinal += readVarInt(buffer);
+                    if (ordinal >= evictedCount) {
+                        throw new IndexOutOfBoundsException("Evicted document " + ordinal + " of " + evictedCount);
+                    }
+                    int frequency = readVarInt(buffer);
+                    int[] positions = null;
+                    if (positional) {
+                        positions = new int[frequency];
+                        int position = 0;
+                        for (int i = 0; i < frequency; i++) {
+                            positions[i] = position += readVarInt(buffer);
+                        }
+                    }
+                    postings.add(new EvictedPosting(ordinal, frequency, positions));
+                }
+                checkpoint.evictedTermIndex.put(term, postings);
+            }
+            return checkpoint;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | URISyntaxException e) {
+            throw new IOException("Corrupt checkpoint: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    // the terms DocumentStoreImpl indexes each resident document under, in the order they are first seen
+    private Map<String, List<Integer>> buildPostings() {
+        Map<String, List<Integer>> postings = new LinkedHashMap<>();
+        for (int i = 0; i < this.resident.size(); i++) {
+            Document document = this.resident.get(i);
+            if (document.getDocumentTxt() != null) {
+                for (String word : document.getWordMap().keySet()) {
+                    postings.computeIfAbsent(word, w -> new ArrayList<>()).add(i);
+                }
+            }
+            for (Map.Entry<String, String> entry : this.residentMetadata.get(i).entrySet()) {
+                if (entry.getValue() != null) {
+                    String term = entry.getKey().toLowerCase() + ":" + entry.getValue().toLowerCase();
+                    List<Integer> ordinals = postings.computeIfAbsent(term, w -> new ArrayList<>());
+                    // keys that differ only in case give the same term
+                    if (ordinals.isEmpty() || ordinals.get(ordinals.size() - 1) != i) {
+                        ordinals.add(i);
+                    }
+                }
+            }
+        }
+        return postings;
+    }
+
+    // a private copy carrying the metadata as of the checkpoint, so encoding never reads the live metadata
+    private static Document copyOf(Document document, Map<String, String> metadata) {
+        DocumentImpl copy = document.getDocumentTxt() != null
+                ? new DocumentImpl(document.getKey(), document.getDocumentTxt(), document.getWordMap())
+                : new DocumentImpl(document.getKey(), document.getDocumentBinaryData());
+        copy.setMetadata(new HashMap<>(metadata));
+        return copy;
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(data, bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
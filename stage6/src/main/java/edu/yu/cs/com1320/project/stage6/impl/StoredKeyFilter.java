@@ -0,0 +1,126 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.impl.BloomFilter;
+
+import java.io.*;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Remembers which URIs have ever been written to disk, so a persistence manager can answer "definitely not stored"
+ * without touching the filesystem. The filter is a Bloom filter; what is persisted is an append-only log of the
+ * 64-bit hash of every key written, from which a filter of any size can be rebuilt. The filter doubles in size,
+ * rebuilt from the log, whenever more keys were added than it was sized for.
+ */
+public class StoredKeyFilter {
+    private static final int MIN_CAPACITY = 1024;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private final File logFile;
+    private BloomFilter filter;
+    private FileOutputStream logOut;
+    private DataOutputStream log;
+
+    /**
+     * @param logFile where key hashes are logged
+     * @param existingKeys keys already on disk; only used when there is no log yet
+     */
+    public StoredKeyFilter(File logFile, Collection<URI> existingKeys) throws IOException {
+        this.logFile = logFile;
+        if (!logFile.exists()) {
+            long[] hashes = new long[existingKeys.size()];
+            int i = 0;
+            for (URI uri : existingKeys) {
+                hashes[i++] = hash(uri);
+            }
+            rewriteLog(hashes, hashes.length);
+        }
+        rebuild(MIN_CAPACITY);
+    }
+
+    public boolean mightContain(URI uri) {
+        return this.filter.mightContain(hash(uri));
+    }
+
+    public void add(URI uri) throws IOException {
+        addAll(List.of(uri));
+    }
+
+    public synchronized void addAll(Collection<URI> uris) throws IOException {
+        for (URI uri : uris) {
+            long hash = hash(uri);
+            this.log.writeLong(hash);
+            this.filter.add(hash);
+        }
+        this.log.flush();
+        if (this.filter.isOverCapacity()) {
+            rebuild(this.filter.getCapacity() * 2);
+        }
+    }
+
+    /**
+     * Flush the log and force it to disk
+     */
+    public synchronized void force() throws IOException {
+        this.log.flush();
+        this.logOut.getFD().sync();
+    }
+
+    private static long hash(URI uri) {
+        return BloomFilter.hash(uri.toString());
+    }
+
+    private void rebuild(int minCapacity) throws IOException {
+        if (this.log != null) {
+            this.log.close();
+        }
+        long[] hashes = readLog();
+        Arrays.sort(hashes);
+        int distinct = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        // a key evicted many times is logged many times; drop the repeats once they are most of the log
+        if (distinct < hashes.length / 2) {
+            rewriteLog(hashes, distinct);
+        }
+        this.filter = new BloomFilter(Math.max(minCapacity, distinct * 2), FALSE_POSITIVE_RATE);
+        for (int i = 0; i < distinct; i++) {
+            this.filter.add(hashes[i]);
+        }
+        this.logOut = new FileOutputStream(this.logFile, true);
+        this.log = new DataOutputStream(new BufferedOutputStream(this.logOut));
+    }
+
+    private long[] readLog() throws IOException {
+        long[] hashes = new long[(int) (this.logFile.length() / Long.BYTES)];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.logFile)))) {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = in.readLong();
+            }
+        }
+        return hashes;
+    }
+
+    private void rewriteLog(long[] hashes, int count) throws IOException {
+        File parent = this.logFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directories for path: " + parent.getAbsolutePath());
+        }
+        File tmp = new File(this.logFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(hashes[i]);
+            }
+        }
+        if (this.logFile.exists() && !this.logFile.delete()) {
+            throw new IOException("Failed to replace " + this.logFile.getAbsolutePath());
+        }
+        if (!tmp.renameTo(this.logFile)) {
+            throw new IOException("Failed to replace " + this.logFile.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.impl.ScratchDirectory;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Documents that only the undo stack still needs, i.e. deleted or replaced ones, kept on disk rather than on the
+ * heap. Stashing a document gives a key for the undo command to hold; restoring it reads the document back and
+ * forgets it, and a command that leaves the stack without being undone discards what it stashed. Each stash keeps
+ * its documents in a directory of its own, which closing it deletes; the undo stack is not recovered after a
+ * restart, so a stash never reads what another left behind.
+ */
+public class UndoStash implements Closeable {
+    private final PersistenceManager<URI, Document> pm;
+    private final ScratchDirectory dir; // null if the persistence manager was given
+    private final Set<URI> stashed = new HashSet<>();
+    private long nextKey;
+
+    /**
+     * @param parent directory in which the stash makes a directory of its own. Other stashes may share it.
+     */
+    public UndoStash(File parent) {
+        try {
+            this.dir = new ScratchDirectory(parent, "undo");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.pm = new DocumentPersistenceManager(this.dir.getDir());
+    }
+
+    /**
+     * @param pm where to keep the stashed documents; nothing else may store anything in it
+     */
+    public UndoStash(PersistenceManager<URI, Document> pm) {
+        this.pm = pm;
+        this.dir = null;
+    }
+
+    /**
+     * @return the key to restore the document with
+     */
+    public URI stash(Document document) {
+        URI key = URI.create("undo://stash/" + this.nextKey++);
+        try {
+            this.pm.serialize(key, document);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.stashed.add(key);
+        return key;
+    }
+
+    /**
+     * @return the document stashed under the key, which is then no longer stashed, or null if there is none
+     */
+    public Document restore(URI key) {
+        if (!this.stashed.remove(key)) {
+            return null;
+        }
+        try {
+            Document document = this.pm.deserialize(key);
+            this.pm.delete(key);
+            return document;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Delete the document stashed under the key, if it has not been restored
+     */
+    public void discard(URI key) {
+        if (!this.stashed.remove(key)) {
+            return;
+        }
+        try {
+            this.pm.delete(key);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return how many documents are stashed
+     */
+    public int size() {
+        return this.stashed.size();
+    }
+
+    /**
+     * Delete every stashed document
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.dir != null) {
+            this.stashed.clear();
+            this.dir.close();
+            return;
+        }
+        for (URI key : new ArrayList<>(this.stashed)) {
+            discard(key);
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to a DocumentStoreImpl, replayed when the store is constructed so that
+ * documents held only in memory survive a restart. Each record is
+ * body length (int) | CRC32 of body (int) | body, where body is an operation byte followed by:
+ * <pre>
+ * put:          the document, encoded by the codec
+ * delete:       uri
+ * set metadata: uri | key | has-value byte | value if present
+ * </pre>
+ * and strings are an int byte length followed by UTF-8. A record torn by a crash at the end of the log is cut off
+ * when the log is opened.
+ * <p>
+ * Records are named by their offset in the log as a whole, which truncateBefore does not change: the file starts
+ * with "DWAL" and the offset of its first record (8 bytes), so that dropping the records a checkpoint covers only
+ * moves that offset up. A file without the header is a log written before there was one, whose first record is
+ * at offset 0.
+ */
+public class WriteAheadLog implements Closeable {
+    /**
+     * How much of the log is on disk by the time a logged operation returns
+     */
+    public enum Durability {
+        /** written to the OS only: survives the process dying, but not the machine */
+        NONE,
+        /** forced to disk by a background thread every groupCommitMillis, so that much can be lost with the machine */
+        GROUP_COMMIT,
+        /** forced to disk before every logged operation returns */
+        SYNC
+    }
+
+    /**
+     * Receives the logged operations, in order, during replay
+     */
+    public interface Replayer {
+        void put(Document document);
+
+        void delete(URI uri);
+
+        void setMetadata(URI uri, String key, String value);
+    }
+
+    private static final byte[] MAGIC = {'D', 'W', 'A', 'L'};
+    private static final int FILE_HEADER_BYTES = MAGIC.length + Long.BYTES;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_SET_METADATA = 3;
+
+    private final File file;
+    private FileChannel channel;
+    private long base; // offset of the file's first record
+    private int fileHeaderBytes;
+    private final Durability durability;
+    private final DocumentCodec codec;
+    private final ScheduledExecutorService committer;
+    private boolean unsynced;
+    private IOException failure; // the first write or force that failed, after which the log takes nothing more
+
+    public WriteAheadLog(File file, Durability durability) {
+        this(file, durability, 10, new BinaryDocumentCodec());
+    }
+
+    /**
+     * @param file the log file, created if it doesn't exist
+     * @param durability when appended records are forced to disk
+     * @param groupCommitMillis interval between forces in GROUP_COMMIT mode
+     * @param codec format of the documents inside put records
+     */
+    public WriteAheadLog(File file, Durability durability, long groupCommitMillis, DocumentCodec codec) {
+        if (durability == null || codec == null || (durability == Durability.GROUP_COMMIT && groupCommitMillis < 1)) {
+            throw new IllegalArgumentException("Need a durability mode, a codec, and a positive group commit interval");
+        }
+        this.file = file;
+        this.durability = durability;
+        this.codec = codec;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directories for path: " + parent.getAbsolutePath());
+            }
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            readFileHeader();
+            this.channel.position(this.channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (durability == Durability.GROUP_COMMIT) {
+            this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-group-commit");
+                t.setDaemon(true);
+                return t;
+            });
+            this.committer.scheduleAtFixedRate(this::commit, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.committer = null;
+        }
+    }
+
+    public Durability getDurability() {
+        return this.durability;
+    }
+
+    public void logPut(Document document) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(OP_PUT);
+        this.codec.encode(document, body);
+        append(body);
+    }
+
+    public void logDelete(URI uri) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(body);
+        data.writeByte(OP_DELETE);
+        writeString(data, uri.toString());
+        append(body);
+    }
+
+    public void logSetMetadata(URI uri, String key, String value) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(body);
+        data.writeByte(OP_SET_METADATA);
+        writeString(data, uri.toString());
+        writeString(data, key);
+        data.writeBoolean(value != null);
+        if (value != null) {
+            writeString(data, value);
+        }
+        append(body);
+    }
+
+    /**
+     * Hand every intact record in the log to the replayer, in the order they were logged, and cut off a torn
+     * record at the end. Must be called before anything new is logged.
+     * @return the number of records replayed
+     */
+    public int replay(Replayer replayer) throws IOException {
+        return replay(replayer, this.base);
+    }
+
+    /**
+     * Replay only the records from the given offset on, e.g. those logged after a checkpoint
+     * @param fromOffset the size the log had when the skipped records had all been written
+     * @return the number of records replayed
+     */
+    public synchronized int replay(Replayer replayer, long fromOffset) throws IOException {
+        long size = this.channel.size();
+        if (fromOffset < this.base || fromOffset > size()) {
+            throw new IOException("Offset " + fromOffset + " is outside " + this.file.getAbsolutePath() + ", which has the records from " + this.base + " to " + size());
+        }
+        long offset = position(fromOffset);
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, offset);
+            int bodyLength = header.getInt(0);
+            if (bodyLength < 1 || offset + HEADER_BYTES + bodyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            readFully(body, offset + HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+                break;
+            }
+            apply(body.flip(), replayer);
+            offset += HEADER_BYTES + bodyLength;
+            count++;
+        }
+        if (offset < size) {
+            this.channel.truncate(offset);
+        }
+        this.channel.position(offset);
+        return count;
+    }
+
+    /**
+     * @return the offset the next record will be logged at, i.e. bytes ever logged, including any truncated
+     */
+    public synchronized long size() throws IOException {
+        return this.base + this.channel.size() - this.fileHeaderBytes;
+    }
+
+    /**
+     * Drop the records before the offset, e.g. those covered by a checkpoint that is on disk, by copying the rest
+     * into a new file that then replaces the log. The offsets of the records kept do not change.
+     * @throws IOException if the offset is past the end of the log, or the log could not be replaced; in the
+     * latter case the log takes nothing more
+     */
+    public synchronized void truncateBefore(long offset) throws IOException {
+        throwFailure();
+        if (offset <= this.base) {
+            return;
+        }
+        if (offset > size()) {
+            throw new IOException("Offset " + offset + " is past the end of " + this.file.getAbsolutePath());
+        }
+        File tmp = new File(this.file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).put(MAGIC).putLong(offset).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            long end = this.channel.size();
+            for (long position = position(offset); position < end; ) {
+                position += this.channel.transferTo(position, end - position, out);
+            }
+            out.force(false);
+        }
+        try {
+            Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            File parent = this.file.getAbsoluteFile().getParentFile();
+            try (FileChannel dir = FileChannel.open(parent.toPath(), StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+            this.channel.close();
+            this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.channel.position(this.channel.size());
+        } catch (IOException e) {
+            this.failure = e;
+            throw e;
+        }
+        this.base = offset;
+        this.fileHeaderBytes = FILE_HEADER_BYTES;
+        this.unsynced = false;
+    }
+
+    /**
+     * Force everything logged so far to disk, whatever the durability mode
+     * @throws IOException if this or any earlier write or force failed, including a group commit's
+     */
+    public synchronized void force() throws IOException {
+        throwFailure();
+        try {
+            this.channel.force(false);
+            this.unsynced = false;
+        } catch (IOException e) {
+            this.failure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * @throws IOException if the final force, or any earlier write or force, failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.committer != null) {
+            this.committer.shutdown();
+        }
+        synchronized (this) {
+            if (this.channel.isOpen()) {
+                try {
+                    if (this.failure == null) {
+                        force();
+                    }
+                } finally {
+                    this.channel.close();
+                }
+            }
+            throwFailure();
+        }
+    }
+
+    // a new file gets the header; one that has none is from before there was one
+    private void readFileHeader() throws IOException {
+        if (this.channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).put(MAGIC).putLong(0).flip();
+            while (header.hasRemaining()) {
+                this.channel.write(header);
+            }
+            this.fileHeaderBytes = FILE_HEADER_BYTES;
+            return;
+        }
+        if (this.channel.size() >= FILE_HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            readFully(header, 0);
+            if (Arrays.equals(Arrays.copyOf(header.array(), MAGIC.length), MAGIC)) {
+                this.base = header.getLong(MAGIC.length);
+                this.fileHeaderBytes = FILE_HEADER_BYTES;
+            }
+        }
+    }
+
+    // where in the file the record at the offset starts
+    private long position(long offset) {
+        return offset - this.base + this.fileHeaderBytes;
+    }
+
+    private void apply(ByteBuffer body, Replayer replayer) throws IOException {
+        byte op = body.get();
+        switch (op) {
+            case OP_PUT -> replayer.put(this.codec.decode(body));
+            case OP_DELETE -> replayer.delete(readUri(body));
+            case OP_SET_METADATA -> {
+                URI uri = readUri(body);
+                String key = readString(body);
+                replayer.setMetadata(uri, key, body.get() != 0 ? readString(body) : null);
+            }
+            default -> throw new IOException("Unknown operation " + op + " in " + this.file.getAbsolutePath());
+        }
+    }
+
+    private synchronized void append(ByteArrayOutputStream body) throws IOException {
+        throwFailure();
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).flip();
+        try {
+            while (record.hasRemaining()) {
+                this.channel.write(record);
+            }
+        } catch (IOException e) {
+            this.failure = e;
+            throw e;
+        }
+        this.unsynced = true;
+        if (this.durability == Durability.SYNC) {
+            force();
+        }
+    }
+
+    // a failed force is kept for the next append, force or close to throw, and not retried: one that then
+    // succeeded could not tell whether the kernel had already dropped the records the failed one was forcing
+    private synchronized void commit() {
+        if (!this.unsynced || this.failure != null || !this.channel.isOpen()) {
+            return;
+        }
+        try {
+            force();
+        } catch (IOException e) {
+            // kept in failure
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        if (this.failure != null) {
+            throw new IOException("An earlier write or force of " + this.file.getAbsolutePath() + " failed, so records logged before it may not be on disk", this.failure);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private URI readUri(ByteBuffer body) throws IOException {
+        try {
+            return new URI(readString(body));
+        } catch (URISyntaxException e) {
+            throw new IOException("Corrupt uri in " + this.file.getAbsolutePath(), e);
+        }
+    }
+}
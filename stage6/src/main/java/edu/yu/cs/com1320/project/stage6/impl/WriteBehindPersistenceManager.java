@@ -0,0 +1,305 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import edu.yu.cs.com1320.project.stage6.AsyncPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs another PersistenceManager on a dedicated I/O thread. Writes are write-behind: serialize and serializeAll
+ * return as soon as the values are in a pending-write buffer, and deserialize serves them from that buffer until
+ * the I/O thread has written them. A value deleted or overwritten before its write starts is never written. So is
+ * delete: it drops the key's buffered value and returns, leaving the delete of what is stored to the I/O thread.
+ * <p>
+ * There is one I/O thread, so operations reach the wrapped manager in the order they were made, and the wrapped
+ * manager needn't be thread-safe. Its queue is bounded: when it is full, the caller waits for room, so a disk
+ * that can't keep up slows eviction down instead of letting the buffer grow without limit. A value whose write
+ * fails stays in the buffer, and readable, rather than being lost, and is written again by the next sync. The
+ * first write or delete to fail is kept and thrown by the next serialize, serializeAll or sync.
+ */
+public class WriteBehindPersistenceManager<Key, Value> implements AsyncPersistenceManager<Key, Value>, Closeable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final PersistenceManager<Key, Value> delegate;
+    private final ThreadPoolExecutor io;
+    private final ConcurrentHashMap<Key, PendingWrite<Value>> pending = new ConcurrentHashMap<>();
+    private final Set<Key> stored = ConcurrentHashMap.newKeySet(); // what the wrapped manager holds, as of the last operation the I/O thread ran
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // compared by identity, so that a write only clears its own entry from the buffer
+    private static final class PendingWrite<Value> {
+        private final Value value;
+        private volatile boolean failed;
+
+        private PendingWrite(Value value) {
+            this.value = value;
+        }
+    }
+
+    public WriteBehindPersistenceManager(PersistenceManager<Key, Value> delegate) {
+        this(delegate, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param delegate where the values are actually stored. It is closed with this manager if it is Closeable.
+     * @param queueCapacity how many operations may wait for the I/O thread before callers are made to wait
+     */
+    public WriteBehindPersistenceManager(PersistenceManager<Key, Value> delegate, int queueCapacity) {
+        if (delegate == null || queueCapacity < 1) {
+            throw new IllegalArgumentException("Need a persistence manager and a positive queue capacity");
+        }
+        this.delegate = delegate;
+        try {
+            this.stored.addAll(delegate.keys());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.io = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "persistence-io");
+            t.setDaemon(true);
+            return t;
+        }, (task, executor) -> {
+            // running the task on the caller instead would let two threads into the wrapped manager
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Persistence manager is closed");
+            }
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> serializeAsync(Key key, Value val) {
+        return serializeAllAsync(Collections.singletonMap(key, val));
+    }
+
+    @Override
+    public CompletableFuture<Void> serializeAllAsync(Map<Key, Value> values) {
+        Map<Key, PendingWrite<Value>> batch = new LinkedHashMap<>();
+        for (Map.Entry<Key, Value> entry : values.entrySet()) {
+            PendingWrite<Value> write = new PendingWrite<>(entry.getValue());
+            batch.put(entry.getKey(), write);
+            this.pending.put(entry.getKey(), write);
+        }
+        return write(batch);
+    }
+
+    // writes whichever of the batch are still the latest buffered value of their key when the I/O thread gets to them
+    private CompletableFuture<Void> write(Map<Key, PendingWrite<Value>> batch) {
+        return submit(() -> {
+            Map<Key, Value> live = new LinkedHashMap<>();
+            batch.forEach((key, write) -> {
+                if (this.pending.get(key) == write) {
+                    live.put(key, write.value);
+                }
+            });
+            if (!live.isEmpty()) {
+                try {
+                    this.delegate.serializeAll(live);
+                } catch (IOException | RuntimeException e) {
+                    batch.values().forEach(write -> write.failed = true);
+                    this.failure.compareAndSet(null, e);
+                    throw e;
+                }
+                this.stored.addAll(live.keySet());
+            }
+            batch.forEach(this.pending::remove);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Value> deserializeAsync(Key key) {
+        PendingWrite<Value> write = this.pending.get(key);
+        if (write != null) {
+            return CompletableFuture.completedFuture(write.value);
+        }
+        return submit(() -> this.delegate.deserialize(key));
+    }
+
+    @Override
+    public CompletableFuture<Map<Key, Value>> deserializeAllAsync(Collection<Key> keys) {
+        Map<Key, Value> found = new HashMap<>();
+        List<Key> unbuffered = new ArrayList<>();
+        for (Key key : keys) {
+            PendingWrite<Value> write = this.pending.get(key);
+            if (write != null) {
+                found.put(key, write.value);
+            } else {
+                unbuffered.add(key);
+            }
+        }
+        if (unbuffered.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        return submit(() -> {
+            found.putAll(this.delegate.deserializeAll(unbuffered));
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAsync(Key key) {
+        boolean buffered = this.pending.remove(key) != null;
+        // queued behind any write of the key that already started, so the file it leaves is deleted too
+        return submit(() -> {
+            boolean deleted = this.delegate.delete(key);
+            this.stored.remove(key);
+            return deleted || buffered;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return submit(() -> null);
+    }
+
+    /**
+     * Buffer the value and return; it is written by the I/O thread
+     * @throws IOException the first write or delete that failed since one was last thrown; nothing is buffered then
+     */
+    @Override
+    public void serialize(Key key, Value val) throws IOException {
+        throwFailure();
+        serializeAsync(key, val);
+    }
+
+    /**
+     * Buffer the values and return; they are written by the I/O thread, with one serializeAll
+     * @throws IOException the first write or delete that failed since one was last thrown; nothing is buffered then
+     */
+    @Override
+    public void serializeAll(Map<Key, Value> values) throws IOException {
+        throwFailure();
+        serializeAllAsync(values);
+    }
+
+    @Override
+    public Value deserialize(Key key) throws IOException {
+        return await(deserializeAsync(key));
+    }
+
+    @Override
+    public Map<Key, Value> deserializeAll(Collection<Key> keys) throws IOException {
+        return await(deserializeAllAsync(keys));
+    }
+
+    /**
+     * Drop the key's buffered value and queue the delete of what is stored, without waiting for the I/O thread
+     * @return whether a value was buffered, or stored as of the last operation the I/O thread ran
+     */
+    @Override
+    public boolean delete(Key key) {
+        boolean found = this.pending.containsKey(key) || this.stored.contains(key);
+        deleteAsync(key).whenComplete((deleted, e) -> {
+            if (e != null) {
+                this.failure.compareAndSet(null, e);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Queue the writes that failed again, wait for every buffered write, then sync the wrapped manager on the I/O
+     * thread
+     * @throws IOException the first write or delete that failed since one was last thrown
+     */
+    @Override
+    public void sync() throws IOException {
+        Map<Key, PendingWrite<Value>> retries = new LinkedHashMap<>();
+        for (Map.Entry<Key, PendingWrite<Value>> entry : this.pending.entrySet()) {
+            PendingWrite<Value> failed = entry.getValue();
+            if (failed.failed) {
+                // replaced only if the key wasn't written or deleted again meanwhile
+                PendingWrite<Value> retry = new PendingWrite<>(failed.value);
+                if (this.pending.replace(entry.getKey(), failed, retry)) {
+                    retries.put(entry.getKey(), retry);
+                }
+            }
+        }
+        if (!retries.isEmpty()) {
+            write(retries);
+        }
+        await(submit(() -> {
+            this.delegate.sync();
+            return null;
+        }));
+        throwFailure();
+    }
+
+    @Override
+    public List<Key> keys() throws IOException {
+        Set<Key> keys = new LinkedHashSet<>(await(submit(this.delegate::keys)));
+        keys.addAll(this.pending.keySet());
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * @return how many values are buffered, waiting to be written
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Finish every queued operation, stop the I/O thread, and close the wrapped manager if it is Closeable
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.io.isShutdown()) {
+            return;
+        }
+        await(flush());
+        this.io.shutdown();
+        if (this.delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        Throwable e = this.failure.getAndSet(null);
+        if (e instanceof IOException cause) {
+            throw cause;
+        }
+        if (e instanceof RuntimeException cause) {
+            throw cause;
+        }
+        if (e != null) {
+            throw new IOException(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.io.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
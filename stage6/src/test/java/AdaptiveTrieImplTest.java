@@ -0,0 +1,243 @@
+import edu.yu.cs.com1320.project.Automaton;
+import edu.yu.cs.com1320.project.impl.AdaptiveTrieImpl;
+import edu.yu.cs.com1320.project.impl.LevenshteinAutomaton;
+import edu.yu.cs.com1320.project.impl.WildcardAutomaton;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveTrieImplTest {
+
+    private final AdaptiveTrieImpl<Integer> trie = new AdaptiveTrieImpl<>();
+
+    @Test
+    void testPutAndGet() {
+        trie.put("one", 1);
+        trie.put("one", 2);
+        trie.put("on", 3);
+        trie.put("", 4);
+        assertEquals(Set.of(1, 2), trie.get("one"));
+        assertEquals(Set.of(3), trie.get("on"));
+        assertEquals(Set.of(4), trie.get(""));
+        assertEquals(Set.of(), trie.get("o"));
+        assertEquals(Set.of(), trie.get("ones"));
+        assertEquals(List.of(2, 1), trie.getSorted("one", Comparator.naturalOrder()));
+        assertThrows(IllegalArgumentException.class, () -> trie.put(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("one", null));
+    }
+
+    @Test
+    void testPrefixSplitsAndMerges() {
+        trie.put("romane", 1);
+        trie.put("romanus", 2);
+        trie.put("romulus", 3);
+        trie.put("rubens", 4);
+        assertEquals(List.of(1, 2, 3), trie.getAllWithPrefixSorted("rom", Comparator.naturalOrder()));
+        assertEquals(List.of(1, 2), trie.getAllWithPrefixSorted("roma", Comparator.naturalOrder()));
+        // a prefix that ends inside a compressed path
+        assertEquals(List.of(4), trie.getAllWithPrefixSorted("rube", Comparator.naturalOrder()));
+        assertEquals(List.of(), trie.getAllWithPrefixSorted("rubies", Comparator.naturalOrder()));
+        assertEquals(Integer.valueOf(2), trie.delete("romanus", 2));
+        assertNull(trie.delete("romanus", 2));
+        assertEquals(Set.of(1), trie.get("romane"));
+        assertEquals(Set.of(1, 3), trie.deleteAllWithPrefix("rom"));
+        assertEquals(Set.of(4), trie.get("rubens"));
+        assertEquals(Set.of(4), trie.deleteAllWithPrefix(""));
+        assertEquals(List.of(), trie.getAllWithPrefixSorted("", Comparator.naturalOrder()));
+    }
+
+    @Test
+    void testNodesGrowAndShrink() {
+        // every byte value under one node takes it through all four sizes and back
+        for (int c = 1; c < 256; c++) {
+            trie.put("x" + (char) c, c);
+        }
+        for (int c = 1; c < 256; c++) {
+            assertEquals(Set.of(c), trie.get("x" + (char) c));
+        }
+        for (int c = 255; c > 1; c--) {
+            assertEquals(Set.of(c), trie.deleteAll("x" + (char) c));
+            assertEquals(Set.of(c - 1), trie.get("x" + (char) (c - 1)));
+        }
+        assertEquals(List.of(1), trie.getAllWithPrefixSorted("x", Comparator.naturalOrder()));
+    }
+
+    @Test
+    void testKeysBeyondLatin1() {
+        trie.put("na\u00efve", 1);
+        trie.put("\u65e5\u672c\u8a9e", 2);
+        trie.put("\u65e5\u672c", 3);
+        trie.put("\ud83d\ude00", 4);
+        assertEquals(Set.of(1), trie.get("na\u00efve"));
+        assertEquals(List.of(2, 3), trie.getAllWithPrefixSorted("\u65e5", Comparator.naturalOrder()));
+        assertEquals(Set.of(4), trie.get("\ud83d\ude00"));
+        assertEquals(Set.of(2, 3), trie.deleteAllWithPrefix("\u65e5\u672c"));
+    }
+
+    @Test
+    void testTopK() {
+        for (int i = 0; i < 100; i++) {
+            trie.put("common", i);
+            trie.put("com" + i, i);
+        }
+        assertEquals(List.of(99, 98, 97), trie.getTopK("common", Comparator.naturalOrder(), 3));
+        assertEquals(List.of(), trie.getTopK("common", Comparator.naturalOrder(), 0));
+        assertEquals(List.of(), trie.getTopK("rare", Comparator.naturalOrder(), 3));
+        // the same value under two keys is ranked twice, as getAllWithPrefixSorted lists it twice
+        assertEquals(List.of(99, 99, 98, 98), trie.getAllWithPrefixTopK("com", Comparator.naturalOrder(), 4));
+        assertEquals(List.of(19, 18, 17, 16, 15, 14, 13, 12, 11, 10), trie.getAllWithPrefixTopK("com1", Comparator.naturalOrder(), 10));
+        assertThrows(IllegalArgumentException.class, () -> trie.getTopK("common", Comparator.naturalOrder(), -1));
+    }
+
+    @Test
+    void testMatchesMapModel() {
+        Random random = new Random(18);
+        Map<String, Set<Integer>> model = new HashMap<>();
+        String alphabet = "abcde\u00e9\u65e5";
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String k = key.toString();
+            int value = random.nextInt(8);
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    Set<Integer> expected = new HashSet<>();
+                    model.entrySet().removeIf(entry -> {
+                        if (entry.getKey().startsWith(k)) {
+                            expected.addAll(entry.getValue());
+                            return true;
+                        }
+                        return false;
+                    });
+                    assertEquals(expected, trie.deleteAllWithPrefix(k));
+                }
+                case 1 -> {
+                    Set<Integer> expected = model.remove(k);
+                    assertEquals(expected == null ? Set.of() : expected, trie.deleteAll(k));
+                }
+                case 2, 3 -> {
+                    Set<Integer> values = model.get(k);
+                    boolean present = values != null && values.remove(value);
+                    if (values != null && values.isEmpty()) {
+                        model.remove(k);
+                    }
+                    assertEquals(present ? Integer.valueOf(value) : null, trie.delete(k, value));
+                }
+                default -> {
+                    model.computeIfAbsent(k, unused -> new HashSet<>()).add(value);
+                    trie.put(k, value);
+                }
+            }
+            String probe = k.isEmpty() ? k : k.substring(0, random.nextInt(k.length()));
+            assertEquals(model.getOrDefault(k, Set.of()), trie.get(k));
+            List<Integer> expected = new ArrayList<>();
+            model.forEach((key2, values) -> {
+                if (key2.startsWith(probe)) {
+                    expected.addAll(values);
+                }
+            });
+            expected.sort(Comparator.naturalOrder());
+            assertEquals(expected, trie.getAllWithPrefixSorted(probe, Comparator.naturalOrder()));
+        }
+    }
+
+    private static AdaptiveTrieImpl<String> trieOf(Collection<String> keys) {
+        AdaptiveTrieImpl<String> trie = new AdaptiveTrieImpl<>();
+        for (String key : keys) {
+            trie.put(key, key);
+        }
+        return trie;
+    }
+
+    private static <S> Map<String, S> accepted(AdaptiveTrieImpl<String> trie, Automaton<S> automaton) {
+        Map<String, S> accepted = new LinkedHashMap<>();
+        trie.forEachAccepted(automaton, (state, key) -> accepted.put(key, state));
+        return accepted;
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] x = a.codePoints().toArray();
+        int[] y = b.codePoints().toArray();
+        int[][] d = new int[x.length + 1][y.length + 1];
+        for (int i = 0; i <= x.length; i++) {
+            for (int j = 0; j <= y.length; j++) {
+                d[i][j] = i == 0 ? j : j == 0 ? i : Math.min(d[i - 1][j - 1] + (x[i - 1] == y[j - 1] ? 0 : 1), Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[x.length][y.length];
+    }
+
+    private static Set<String> randomKeys(Random random, String alphabet, int count) {
+        Set<String> keys = new TreeSet<>();
+        while (keys.size() < count) {
+            StringBuilder key = new StringBuilder();
+            for (int n = random.nextInt(8); n > 0; n--) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            keys.add(key.toString());
+        }
+        return keys;
+    }
+
+    @Test
+    void testLevenshteinAutomatonMatchesEditDistance() {
+        Random random = new Random(25);
+        // multi-byte characters, so code points are split across edges
+        String alphabet = "abcd\u00e9\u4e2d";
+        Set<String> keys = randomKeys(random, alphabet, 3_000);
+        AdaptiveTrieImpl<String> trie = trieOf(keys);
+        for (int round = 0; round < 100; round++) {
+            String word = randomKeys(random, alphabet, 1).iterator().next();
+            int maxEdits = random.nextInt(3);
+            LevenshteinAutomaton automaton = new LevenshteinAutomaton(word, maxEdits);
+            Map<String, int[]> accepted = accepted(trie, automaton);
+            Set<String> expected = new TreeSet<>();
+            for (String key : keys) {
+                if (editDistance(word, key) <= maxEdits) {
+                    expected.add(key);
+                }
+            }
+            assertEquals(expected, accepted.keySet(), word + " within " + maxEdits);
+            accepted.forEach((key, row) -> assertEquals(editDistance(word, key), automaton.distance(row)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new LevenshteinAutomaton("word", 3));
+    }
+
+    @Test
+    void testWildcardAutomatonMatchesRegex() {
+        Random random = new Random(26);
+        String alphabet = "ab\u00e9\u4e2d";
+        Set<String> keys = randomKeys(random, alphabet, 2_000);
+        AdaptiveTrieImpl<String> trie = trieOf(keys);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder pattern = new StringBuilder();
+            StringBuilder regex = new StringBuilder();
+            for (int n = 1 + random.nextInt(5); n > 0; n--) {
+                int r = random.nextInt(alphabet.length() + 2);
+                if (r == alphabet.length()) {
+                    pattern.append('*');
+                    regex.append(".*");
+                } else if (r == alphabet.length() + 1) {
+                    pattern.append('?');
+                    regex.append('.');
+                } else {
+                    pattern.append(alphabet.charAt(r));
+                    regex.append(alphabet.charAt(r));
+                }
+            }
+            Set<String> expected = new TreeSet<>();
+            for (String key : keys) {
+                if (key.matches(regex.toString())) {
+                    expected.add(key);
+                }
+            }
+            // in key order, as getAllWithPrefixSorted would have them
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(accepted(trie, new WildcardAutomaton(pattern.toString())).keySet()), pattern.toString());
+        }
+    }
+}
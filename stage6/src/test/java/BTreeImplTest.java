@@ -0,0 +1,292 @@
+import edu.yu.cs.com1320.project.impl.BTreeImpl;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BTreeImplTest {
+    private Map<Integer, String> disk;
+    private PersistenceManager<Integer, String> pm;
+    private int batches;
+
+    @BeforeEach
+    public void setUp() {
+        disk = new HashMap<>();
+        pm = new PersistenceManager<>() {
+            @Override
+            public void serialize(Integer key, String val) {
+                disk.put(key, val);
+            }
+
+            @Override
+            public void serializeAll(Map<Integer, String> values) {
+                batches++;
+                disk.putAll(values);
+            }
+
+            @Override
+            public String deserialize(Integer key) {
+                return disk.get(key);
+            }
+
+            @Override
+            public boolean delete(Integer key) {
+                return disk.remove(key) != null;
+            }
+
+            @Override
+            public List<Integer> keys() {
+                return new ArrayList<>(disk.keySet());
+            }
+        };
+    }
+
+    @Test
+    public void testPutAndGetManyKeys() {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        for (int i = 500; i > 0; i--) {
+            assertNull(tree.put(i, "v" + i));
+        }
+        for (int i = 1; i <= 500; i++) {
+            assertEquals("v" + i, tree.get(i));
+        }
+        assertEquals(500, tree.size());
+        assertTrue(tree.height() > 1, "a fan-out of 4 should have split into several levels");
+        assertEquals("v7", tree.put(7, "seven"));
+        assertEquals("seven", tree.get(7));
+    }
+
+    @Test
+    public void testPutNullDeletes() {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 20; i++) {
+            tree.put(i, "v" + i);
+        }
+        assertEquals("v5", tree.put(5, null));
+        assertNull(tree.get(5));
+        assertEquals(19, tree.size());
+    }
+
+    @Test
+    public void testMoveToDiskAndBack() throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        tree.put(1, "one");
+        tree.moveToDisk(1);
+        assertEquals("one", disk.get(1));
+        assertEquals("one", tree.get(1));
+        assertFalse(disk.containsKey(1), "bringing a value back into memory should remove it from disk");
+    }
+
+    @Test
+    public void testColdLeavesArePagedOut(@TempDir File pageDir) throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, "v" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            tree.moveToDisk(i);
+        }
+        File[] pages = tree.getPageDir().listFiles((dir, name) -> name.endsWith(".page"));
+        assertNotNull(pages);
+        assertTrue(pages.length > 0, "leaves with no values in memory should have been written to pages");
+        assertEquals(0, tree.residentLeafCount());
+        Set<String> written = Set.of(tree.getPageDir().list());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, tree.get(i));
+        }
+        assertEquals(pages.length, tree.residentLeafCount());
+        // the pages of leaves whose keys didn't change are kept, and paging the leaves out again reuses them
+        for (int i = 0; i < 100; i++) {
+            tree.moveToDisk(i);
+        }
+        assertEquals(0, tree.residentLeafCount());
+        assertEquals(written, Set.of(tree.getPageDir().list()));
+    }
+
+    @Test
+    public void testTreesSharingAPageDirKeepTheirOwnPages(@TempDir File pageDir) throws Exception {
+        File abandoned = new File(pageDir, "btree-abandoned");
+        assertTrue(new File(abandoned, ".lock").getParentFile().mkdirs());
+        assertTrue(new File(abandoned, ".lock").createNewFile());
+        assertTrue(new File(abandoned, "0.page").createNewFile());
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, "v" + i);
+            tree.moveToDisk(i);
+        }
+        assertFalse(abandoned.exists(), "a directory no live tree holds should have been deleted");
+        BTreeImpl<Integer, String> other = new BTreeImpl<>(4, pageDir);
+        assertNotEquals(tree.getPageDir(), other.getPageDir());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, tree.get(i));
+        }
+        tree.close();
+        assertFalse(tree.getPageDir().exists());
+        assertTrue(other.getPageDir().exists());
+        other.close();
+    }
+
+    @Test
+    public void testLookupsAndScansLeaveColdLeavesPagedOut(@TempDir File pageDir) throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 100; i += 2) {
+            tree.put(i, "v" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            tree.moveToDisk(i);
+        }
+        assertEquals(0, tree.residentLeafCount());
+        for (int i = 1; i < 100; i += 2) {
+            assertNull(tree.get(i));
+        }
+        assertEquals(0, tree.residentLeafCount(), "a lookup that finds nothing should not keep the leaf it read");
+        List<Integer> all = new ArrayList<>();
+        tree.keys(null, null, false).forEachRemaining(all::add);
+        List<Integer> reverse = new ArrayList<>();
+        tree.keys(21, 41, true).forEachRemaining(reverse::add);
+        assertEquals(50, all.size());
+        assertEquals(List.of(40, 38, 36, 34, 32, 30, 28, 26, 24, 22), reverse);
+        assertEquals(0, tree.residentLeafCount(), "a scan should read pages without paging the leaves in");
+        assertEquals(50, disk.size());
+    }
+
+    @Test
+    public void testLeafIsPagedOutWhenItsLastResidentValueIsRemoved(@TempDir File pageDir) throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, "v" + i);
+        }
+        for (int i = 1; i < 100; i++) {
+            tree.moveToDisk(i);
+        }
+        assertEquals(1, tree.residentLeafCount());
+        tree.put(0, null);
+        assertEquals(0, tree.residentLeafCount());
+        assertNull(tree.get(0));
+        assertEquals("v1", tree.get(1));
+        assertEquals(99, tree.size());
+    }
+
+    @Test
+    public void testRangeScanForwardAndReverse(@TempDir File pageDir) throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 100; i += 2) {
+            tree.put(i, "v" + i);
+        }
+        for (int i = 0; i < 50; i += 2) {
+            tree.moveToDisk(i);
+        }
+        List<Integer> forward = new ArrayList<>();
+        tree.keys(11, 31, false).forEachRemaining(forward::add);
+        assertEquals(List.of(12, 14, 16, 18, 20, 22, 24, 26, 28, 30), forward);
+
+        List<Integer> reverse = new ArrayList<>();
+        tree.keys(11, 31, true).forEachRemaining(reverse::add);
+        assertEquals(List.of(30, 28, 26, 24, 22, 20, 18, 16, 14, 12), reverse);
+
+        List<Integer> all = new ArrayList<>();
+        tree.keys(null, null, false).forEachRemaining(all::add);
+        assertEquals(50, all.size());
+        assertEquals(98, tree.keys(null, null, true).next());
+        assertEquals(25, disk.size(), "scanning keys should not load values from disk");
+    }
+
+    @Test
+    public void testCursorSurvivesModification() {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        for (int i = 0; i < 40; i++) {
+            tree.put(i, "v" + i);
+        }
+        Iterator<Integer> it = tree.keys(null, null, false);
+        List<Integer> seen = new ArrayList<>();
+        while (it.hasNext()) {
+            int k = it.next();
+            seen.add(k);
+            if (k == 10) {
+                for (int i = 100; i < 140; i++) {
+                    tree.put(i, "v" + i);
+                }
+                tree.put(11, null);
+            }
+        }
+        assertEquals(79, seen.size());
+        assertEquals(139, seen.get(seen.size() - 1));
+    }
+
+    @Test
+    public void testBulkLoad(@TempDir File pageDir) throws Exception {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            disk.put(i, "v" + i);
+            keys.add(i);
+        }
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(8, pageDir);
+        tree.setPersistenceManager(pm);
+        tree.bulkLoad(keys.iterator());
+        assertEquals(1000, tree.size());
+        assertEquals(1000, disk.size(), "bulk load should not touch the values on disk");
+
+        List<Integer> scanned = new ArrayList<>();
+        tree.keys(null, null, false).forEachRemaining(scanned::add);
+        assertEquals(keys, scanned);
+        assertEquals("v500", tree.get(500));
+        assertNull(tree.put(2000, "new"));
+        assertEquals("v999", tree.put(999, "changed"));
+        assertEquals("changed", tree.get(999));
+        assertEquals("v0", tree.get(0));
+    }
+
+    @Test
+    public void testBulkLoadRejectsUnsortedKeys() {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4);
+        assertThrows(IllegalArgumentException.class, () -> tree.bulkLoad(List.of(1, 3, 2).iterator()));
+    }
+
+    @Test
+    public void testInvalidFanOut() {
+        assertThrows(IllegalArgumentException.class, () -> new BTreeImpl<Integer, String>(5));
+    }
+
+    @Test
+    public void testMoveAllToDiskIsOneBatch(@TempDir File pageDir) throws Exception {
+        BTreeImpl<Integer, String> tree = new BTreeImpl<>(4, pageDir);
+        tree.setPersistenceManager(pm);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, "v" + i);
+            if (i < 60) {
+                keys.add(i);
+            }
+        }
+        keys.add(500); // not in the tree
+        tree.moveAllToDisk(keys);
+        assertEquals(1, batches);
+        assertEquals(60, disk.size());
+        assertTrue(tree.getPageDir().list((dir, name) -> name.endsWith(".page")).length > 0, "leaves emptied by the batch should have been paged out");
+        tree.moveAllToDisk(List.of(1, 2, 3));
+        assertEquals(1, batches, "values already on disk shouldn't be written again");
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, tree.get(i));
+        }
+        assertTrue(disk.isEmpty());
+    }
+}
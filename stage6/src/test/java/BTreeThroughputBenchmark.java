@@ -0,0 +1,74 @@
+import edu.yu.cs.com1320.project.BTree;
+import edu.yu.cs.com1320.project.impl.BTreeImpl;
+import edu.yu.cs.com1320.project.impl.ConcurrentBTreeImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Not a unit test; run with main. Compares read-mostly throughput of BTreeImpl behind one store-wide lock
+ * (what callers had to do before) with ConcurrentBTreeImpl used directly.
+ */
+public class BTreeThroughputBenchmark {
+    private static final int KEYS = 200_000;
+    private static final int SECONDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int writePercent = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.out.println("threads=" + threads + " writes=" + writePercent + "% cores=" + Runtime.getRuntime().availableProcessors());
+
+        BTreeImpl<Integer, String> plain = new BTreeImpl<>();
+        ReentrantLock global = new ReentrantLock();
+        // BTreeImpl.get can load from disk and so mutates the tree, so readers need an exclusive lock too
+        long locked = run(plain, threads, writePercent, global);
+        System.out.printf("BTreeImpl + global lock:  %,d ops/s%n", locked / SECONDS);
+
+        long concurrent = run(new ConcurrentBTreeImpl<>(), threads, writePercent, null);
+        System.out.printf("ConcurrentBTreeImpl:      %,d ops/s%n", concurrent / SECONDS);
+    }
+
+    private static long run(BTree<Integer, String> tree, int threads, int writePercent, ReentrantLock lock) throws Exception {
+        for (int i = 0; i < KEYS; i++) {
+            tree.put(i, "v" + i);
+        }
+        AtomicLong ops = new AtomicLong();
+        long end = System.nanoTime() + SECONDS * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (System.nanoTime() < end) {
+                    int k = random.nextInt(KEYS * 2);
+                    boolean write = random.nextInt(100) < writePercent;
+                    if (lock != null) {
+                        lock.lock();
+                    }
+                    try {
+                        if (write) {
+                            tree.put(k, "w" + k);
+                        } else {
+                            tree.get(k);
+                        }
+                    } finally {
+                        if (lock != null) {
+                            lock.unlock();
+                        }
+                    }
+                    done++;
+                }
+                ops.addAndGet(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.get();
+    }
+}
@@ -0,0 +1,62 @@
+import edu.yu.cs.com1320.project.impl.BloomFilter;
+import edu.yu.cs.com1320.project.stage6.impl.StoredKeyFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(BloomFilter.hash("http://host/doc" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(BloomFilter.hash("http://host/doc" + i)));
+        }
+        assertFalse(filter.isOverCapacity());
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(BloomFilter.hash("http://host/doc" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(BloomFilter.hash("http://other/doc" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positive rate should be near 1%, got " + falsePositives + " in 100000");
+    }
+
+    @Test
+    public void testOverCapacity() {
+        BloomFilter filter = new BloomFilter(10, 0.01);
+        for (int i = 0; i <= 10; i++) {
+            filter.add(i);
+        }
+        assertTrue(filter.isOverCapacity());
+    }
+
+    @Test
+    public void testStoredKeyFilterGrowsAndSurvivesRestart(@TempDir File dir) throws Exception {
+        File log = new File(dir, "keys");
+        StoredKeyFilter filter = new StoredKeyFilter(log, List.of(URI.create("http://host/existing")));
+        for (int i = 0; i < 5000; i++) {
+            filter.add(URI.create("http://host/doc" + i));
+        }
+        StoredKeyFilter reopened = new StoredKeyFilter(log, List.of());
+        assertTrue(reopened.mightContain(URI.create("http://host/existing")));
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(reopened.mightContain(URI.create("http://host/doc" + i)));
+        }
+    }
+}
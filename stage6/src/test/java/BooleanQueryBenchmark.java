@@ -0,0 +1,69 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static edu.yu.cs.com1320.project.stage6.Query.*;
+
+/**
+ * Not a unit test; run with main. Time per query for "rare AND common" and "common AND NOT rare", as a Query
+ * evaluated in the index versus searching each term and intersecting the documents returned.
+ */
+public class BooleanQueryBenchmark {
+    private static final int DOCUMENTS = 20_000;
+    private static final int SEARCHES = 100;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("booleanQueryBenchmark").toFile();
+        PrintStream out = System.out;
+        DocumentStore store = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false);
+        Random random = new Random(23);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            // "common" is in every other document, "rare" in about 1 in 500
+            StringBuilder text = new StringBuilder("word" + random.nextInt(500));
+            if (random.nextBoolean()) {
+                text.append(" common");
+            }
+            if (random.nextInt(500) == 0) {
+                text.append(" rare");
+            }
+            store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), URI.create("http://edu.yu.cs/boolean/doc" + i), DocumentStore.DocumentFormat.TXT);
+        }
+        for (int round = 0; round < 3; round++) {
+            out.printf("search(rare AND common)           %,9d us%n", time(() -> store.search(and(term("common"), term("rare")))));
+            out.printf("search(rare), search(common), and %,9d us%n", time(() -> intersect(store.search("rare"), store.search("common"))));
+            out.printf("search(common AND NOT rare)       %,9d us%n", time(() -> store.search(and(term("common"), not(term("rare"))))));
+            out.printf("search(common) minus search(rare) %,9d us%n", time(() -> {
+                List<Document> common = store.search("common");
+                common.removeAll(new HashSet<>(store.search("rare")));
+                return common;
+            }));
+        }
+    }
+
+    private static List<Document> intersect(List<Document> a, List<Document> b) {
+        Set<Document> inB = new HashSet<>(b);
+        return a.stream().filter(inB::contains).toList();
+    }
+
+    private interface Search {
+        Object run() throws IOException;
+    }
+
+    private static long time(Search search) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / 1_000 / SEARCHES;
+    }
+}
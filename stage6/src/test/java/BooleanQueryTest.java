@@ -0,0 +1,110 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.Query;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static edu.yu.cs.com1320.project.stage6.Query.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BooleanQueryTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/boolean/doc" + i);
+    }
+
+    private DocumentStore storeOf(String... texts) throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        for (int i = 0; i < texts.length; i++) {
+            store.put(new ByteArrayInputStream(texts[i].getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        return store;
+    }
+
+    private static List<URI> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).toList();
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        DocumentStore store = storeOf("apple pear", "apple apple plum", "pear plum", "Apple banana", "banana");
+        assertEquals(List.of(uri(0)), keys(store.search(and(term("apple"), term("pear")))));
+        assertEquals(List.of(uri(2), uri(0), uri(1)), keys(store.search(or(term("pear"), term("plum"), term("kiwi")))));
+        assertEquals(List.of(uri(1), uri(0)), keys(store.search(and(term("APPLE"), not(term("banana"))))));
+        assertEquals(List.of(uri(1), uri(0)), keys(store.search(and(prefix("app"), or(term("pear"), prefix("pl"))))));
+        assertEquals(List.of(), keys(store.search(and(term("apple"), term("kiwi")))));
+        // a not of a word in no document excludes nothing
+        assertEquals(List.of(uri(3), uri(4)), keys(store.search(and(term("banana"), not(term("kiwi"))))));
+        assertEquals(List.of(uri(1)), keys(store.search(and(term("apple"), not(term("banana"))), 1)));
+    }
+
+    @Test
+    public void testRanksByTheFrequencyOfTheMatchedTerms() throws Exception {
+        DocumentStore store = storeOf("apple pear pear pear", "apple apple pear", "apple pear pear plum");
+        // 4, 3 and 3 matched words, ties going to the first indexed
+        assertEquals(List.of(uri(0), uri(1), uri(2)), keys(store.search(and(term("apple"), term("pear")))));
+        // plum counts for doc2 now: 4, 3 and 4
+        assertEquals(List.of(uri(0), uri(2), uri(1)), keys(store.search(and(term("apple"), or(term("pear"), term("plum"))))));
+    }
+
+    @Test
+    public void testNotMustBeSubtractedFromSomething() throws Exception {
+        DocumentStore store = storeOf("apple");
+        assertThrows(IllegalArgumentException.class, () -> store.search(not(term("apple"))));
+        assertThrows(IllegalArgumentException.class, () -> store.search(and(not(term("apple")))));
+        assertThrows(IllegalArgumentException.class, () -> store.search(or(term("apple"), not(term("pear")))));
+        assertThrows(IllegalArgumentException.class, () -> store.search((Query) null));
+        assertThrows(IllegalArgumentException.class, () -> term(" "));
+        assertThrows(IllegalArgumentException.class, () -> and());
+    }
+
+    @Test
+    public void testMatchesSetModel() throws Exception {
+        Random random = new Random(23);
+        String[] words = {"a", "b", "c", "d", "e", "f"};
+        int documents = 600;
+        String[] texts = new String[documents];
+        List<Set<String>> contents = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            StringBuilder text = new StringBuilder("x");
+            Set<String> present = new HashSet<>();
+            for (int w = 0; w < words.length; w++) {
+                // word w is in about 1 in 2^w documents, so lists are long enough to skip through
+                if (random.nextInt(1 << w) == 0) {
+                    text.append(' ').append(words[w]);
+                    present.add(words[w]);
+                }
+            }
+            texts[i] = text.toString();
+            contents.add(present);
+        }
+        DocumentStore store = storeOf(texts);
+        for (int round = 0; round < 200; round++) {
+            String p = words[random.nextInt(words.length)];
+            String q = words[random.nextInt(words.length)];
+            String r = words[random.nextInt(words.length)];
+            Query query = and(term(p), or(term(q), term(r)), not(term(words[random.nextInt(words.length)])));
+            String excluded = query.getClauses().get(2).getClauses().get(0).getText();
+            Set<URI> expected = new HashSet<>();
+            for (int i = 0; i < documents; i++) {
+                Set<String> present = contents.get(i);
+                if (present.contains(p) && (present.contains(q) || present.contains(r)) && !present.contains(excluded)) {
+                    expected.add(uri(i));
+                }
+            }
+            List<URI> actual = keys(store.search(query));
+            assertEquals(expected.size(), actual.size(), query.toString());
+            assertEquals(expected, new HashSet<>(actual), query.toString());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Not a unit test; run with main. Restart time of a store with a write-ahead log, replaying the whole log versus
+ * loading a checkpoint and replaying the last 1% of the log, and how long the foreground is paused by a checkpoint.
+ */
+public class CheckpointBenchmark {
+    private static final int DOCUMENTS = 5_000;
+    private static final int TAIL = DOCUMENTS / 100;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run();
+        }
+    }
+
+    private static void run() throws Exception {
+        File dir = Files.createTempDirectory("checkpointBenchmark").toFile();
+        File logFile = new File(dir, "store.wal");
+        PrintStream out = System.out;
+        try {
+            DocumentStoreImpl store = open(dir, logFile);
+            Random random = new Random(42);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                put(store, i, random);
+            }
+            long start = System.nanoTime();
+            DocumentStoreImpl replayed = open(dir, logFile);
+            long fullReplayNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var written = replayed.checkpoint();
+            long pauseNanos = System.nanoTime() - start;
+            written.get();
+            long checkpointNanos = System.nanoTime() - start;
+            for (int i = 0; i < TAIL; i++) {
+                put(replayed, DOCUMENTS + i, random);
+            }
+            start = System.nanoTime();
+            DocumentStoreImpl restored = open(dir, logFile);
+            long checkpointRestartNanos = System.nanoTime() - start;
+            if (restored.get(URI.create("http://bench/doc" + (DOCUMENTS + TAIL - 1))) == null) {
+                throw new IllegalStateException("restart lost documents");
+            }
+            System.setOut(out);
+            System.out.printf("%,d documents, %,d KB log, %,d KB checkpoint%n", DOCUMENTS + TAIL, logFile.length() / 1024, new File(dir, ".checkpoint").length() / 1024);
+            System.out.printf("  restart replaying the whole log      %,6d ms%n", fullReplayNanos / 1_000_000);
+            System.out.printf("  restart from checkpoint + %d records %,6d ms%n", TAIL, checkpointRestartNanos / 1_000_000);
+            System.out.printf("  checkpoint pause %,d us, written in %,d ms%n", pauseNanos / 1_000, checkpointNanos / 1_000_000);
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static DocumentStoreImpl open(File dir, File logFile) {
+        // the store and persistence manager log what they do
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        DocumentStoreImpl store = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false, new WriteAheadLog(logFile, WriteAheadLog.Durability.NONE));
+        store.setCheckpointInterval(0);
+        return store;
+    }
+
+    private static void put(DocumentStore store, int i, Random random) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < 150; w++) {
+            text.append(Integer.toString(random.nextInt(5_000), 36)).append(' ');
+        }
+        store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), URI.create("http://bench/doc" + i), DocumentStore.DocumentFormat.TXT);
+    }
+}
@@ -0,0 +1,175 @@
+import edu.yu.cs.com1320.project.impl.ConcurrentBTreeImpl;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentBTreeImplTest {
+    private Map<Integer, String> disk;
+    private PersistenceManager<Integer, String> pm;
+    private int batches;
+
+    @BeforeEach
+    public void setUp() {
+        disk = new ConcurrentHashMap<>();
+        pm = new PersistenceManager<>() {
+            @Override
+            public void serialize(Integer key, String val) {
+                disk.put(key, val);
+            }
+
+            @Override
+            public void serializeAll(Map<Integer, String> values) {
+                batches++;
+                disk.putAll(values);
+            }
+
+            @Override
+            public String deserialize(Integer key) {
+                return disk.get(key);
+            }
+
+            @Override
+            public boolean delete(Integer key) {
+                return disk.remove(key) != null;
+            }
+
+            @Override
+            public List<Integer> keys() {
+                return new ArrayList<>(disk.keySet());
+            }
+        };
+    }
+
+    @Test
+    public void testSingleThreadedBehavior() throws Exception {
+        ConcurrentBTreeImpl<Integer, String> tree = new ConcurrentBTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        for (int i = 300; i > 0; i--) {
+            assertNull(tree.put(i, "v" + i));
+        }
+        assertEquals(300, tree.size());
+        assertTrue(tree.height() > 1);
+        assertEquals("v17", tree.put(17, null));
+        assertNull(tree.get(17));
+        tree.moveToDisk(18);
+        assertEquals("v18", disk.get(18));
+        assertEquals("v18", tree.get(18));
+        assertFalse(disk.containsKey(18));
+
+        List<Integer> forward = new ArrayList<>();
+        tree.keys(10, 20, false).forEachRemaining(forward::add);
+        assertEquals(List.of(10, 11, 12, 13, 14, 15, 16, 18, 19, 20), forward);
+        List<Integer> reverse = new ArrayList<>();
+        tree.keys(10, 20, true).forEachRemaining(reverse::add);
+        assertEquals(List.of(20, 19, 18, 16, 15, 14, 13, 12, 11, 10), reverse);
+        List<Integer> all = new ArrayList<>();
+        tree.keys(null, null, true).forEachRemaining(all::add);
+        assertEquals(299, all.size());
+        assertEquals(300, all.get(0));
+        assertEquals(1, all.get(all.size() - 1));
+    }
+
+    @Test
+    public void testBulkLoad() {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            disk.put(i, "v" + i);
+            keys.add(i);
+        }
+        ConcurrentBTreeImpl<Integer, String> tree = new ConcurrentBTreeImpl<>(8);
+        tree.setPersistenceManager(pm);
+        tree.bulkLoad(keys.iterator());
+        List<Integer> scanned = new ArrayList<>();
+        tree.keys(null, null, false).forEachRemaining(scanned::add);
+        assertEquals(keys, scanned);
+        assertEquals("v123", tree.get(123));
+        assertNull(tree.put(5000, "new"));
+        assertEquals("new", tree.get(5000));
+    }
+
+    @Test
+    public void testConcurrentPutsGetsAndEvictions() throws Exception {
+        ConcurrentBTreeImpl<Integer, String> tree = new ConcurrentBTreeImpl<>(8);
+        tree.setPersistenceManager(pm);
+        int writers = 4;
+        int keysPerWriter = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int base = w;
+            futures.add(pool.submit(() -> {
+                start.await();
+                // interleave the writers' keys so they all split the same leaves
+                for (int i = 0; i < keysPerWriter; i++) {
+                    int k = i * writers + base;
+                    tree.put(k, "v" + k);
+                    if (i % 3 == 0) {
+                        tree.moveToDisk(k);
+                    }
+                }
+                return null;
+            }));
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < keysPerWriter; i++) {
+                    int k = i * writers + base;
+                    String v = tree.get(k);
+                    if (v != null && !v.equals("v" + k)) {
+                        throw new AssertionError("read " + v + " for key " + k);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int total = writers * keysPerWriter;
+        assertEquals(total, tree.size());
+        for (int k = 0; k < total; k++) {
+            assertEquals("v" + k, tree.get(k));
+        }
+        List<Integer> scanned = new ArrayList<>();
+        tree.keys(null, null, false).forEachRemaining(scanned::add);
+        assertEquals(total, scanned.size());
+        for (int k = 0; k < total; k++) {
+            assertEquals(k, scanned.get(k));
+        }
+    }
+
+    @Test
+    public void testMoveAllToDiskIsOneBatch() throws Exception {
+        ConcurrentBTreeImpl<Integer, String> tree = new ConcurrentBTreeImpl<>(4);
+        tree.setPersistenceManager(pm);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, "v" + i);
+            keys.add(99 - i);
+        }
+        tree.moveAllToDisk(keys.subList(0, 50));
+        assertEquals(1, batches);
+        assertEquals(50, disk.size());
+        assertEquals("v99", disk.get(99));
+        assertFalse(disk.containsKey(0));
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, tree.get(i));
+        }
+        assertTrue(disk.isEmpty());
+    }
+}
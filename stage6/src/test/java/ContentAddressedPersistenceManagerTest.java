@@ -0,0 +1,110 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.ContentAddressedPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentAddressedPersistenceManagerTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/mirror" + i + "/doc");
+    }
+
+    private static Document doc(int i, String text, String source) {
+        Document document = new DocumentImpl(uri(i), text, null);
+        document.setMetadataValue("source", source);
+        return document;
+    }
+
+    private int bodyFiles() {
+        File[] files = new File(this.dir, "sha256").listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    public void testIdenticalBodiesAreStoredOnce() throws Exception {
+        ContentAddressedPersistenceManager pm = new ContentAddressedPersistenceManager(new DocumentPersistenceManager(this.dir));
+        pm.serializeAll(Map.of(uri(1), doc(1, "the same body", "first"), uri(2), doc(2, "the same body", "second")));
+        pm.serialize(uri(3), doc(3, "the same body", "third"));
+        pm.serialize(uri(4), doc(4, "a different body", "fourth"));
+        assertEquals(2, pm.getBodyCount());
+        assertEquals(2, bodyFiles());
+        assertEquals(Set.of(uri(1), uri(2), uri(3), uri(4)), new HashSet<>(pm.keys()));
+
+        Document second = pm.deserialize(uri(2));
+        assertEquals(uri(2), second.getKey());
+        assertEquals("the same body", second.getDocumentTxt());
+        assertEquals("second", second.getMetadataValue("source"));
+        assertEquals(1, second.getWordMap().get("same"));
+
+        // the body goes with the last URI that points to it
+        assertTrue(pm.delete(uri(1)));
+        assertTrue(pm.delete(uri(2)));
+        assertEquals(2, bodyFiles());
+        assertTrue(pm.delete(uri(3)));
+        assertEquals(1, bodyFiles());
+        assertNull(pm.deserialize(uri(3)));
+        assertFalse(pm.delete(uri(3)));
+    }
+
+    @Test
+    public void testReferenceCountsRebuiltOnOpen() throws Exception {
+        ContentAddressedPersistenceManager pm = new ContentAddressedPersistenceManager(new DocumentPersistenceManager(this.dir));
+        pm.serialize(uri(1), doc(1, "shared body", "first"));
+        pm.serialize(uri(2), doc(2, "shared body", "second"));
+        // replacing the only reference to a body deletes it
+        pm.serialize(uri(3), doc(3, "old body", "third"));
+        pm.serialize(uri(3), doc(3, "shared body", "third"));
+        assertEquals(1, bodyFiles());
+        // a body left by a crash before its stub was written
+        new DocumentPersistenceManager(this.dir).serialize(URI.create("content://sha256/00ff"), new DocumentImpl(URI.create("content://sha256/00ff"), "orphan", null));
+        assertEquals(2, bodyFiles());
+
+        ContentAddressedPersistenceManager reopened = new ContentAddressedPersistenceManager(new DocumentPersistenceManager(this.dir));
+        assertEquals(1, bodyFiles());
+        assertEquals(Set.of(uri(1), uri(2), uri(3)), new HashSet<>(reopened.keys()));
+        reopened.delete(uri(1));
+        reopened.delete(uri(3));
+        assertEquals("shared body", reopened.deserialize(uri(2)).getDocumentTxt());
+        reopened.delete(uri(2));
+        assertEquals(0, bodyFiles());
+    }
+
+    @Test
+    public void testStoreChargesSharedBodiesOnce() throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new ContentAddressedPersistenceManager(new DocumentPersistenceManager(this.dir)), false);
+        String body = "a body that is mirrored under several URIs ".repeat(3);
+        store.setMaxDocumentBytes(body.length() * 2);
+        for (int i = 0; i < 5; i++) {
+            store.put(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+            store.setMetadata(uri(i), "source", "mirror " + i);
+        }
+        // five copies of the body fit under a limit of two
+        assertEquals(List.of(), new DocumentPersistenceManager(this.dir).keys());
+        assertSame(store.get(uri(0)).getDocumentTxt(), store.get(uri(4)).getDocumentTxt());
+        assertEquals("mirror 3", store.getMetadata(uri(3), "source"));
+
+        byte[] data = new byte[body.length() * 2];
+        store.put(new ByteArrayInputStream(data), URI.create("http://edu.yu.cs/other/doc"), DocumentStore.DocumentFormat.BINARY);
+        // the five mirrors went to disk together, as one body
+        assertEquals(1, bodyFiles());
+        assertEquals(5, store.search("mirrored").size());
+        assertEquals("mirror 2", store.getMetadata(uri(2), "source"));
+    }
+}
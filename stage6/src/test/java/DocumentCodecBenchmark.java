@@ -0,0 +1,86 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.CompressingDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Not a unit test; run with main. Encoded size and encode/decode time of each codec, with and without
+ * compression, over text and binary documents.
+ */
+public class DocumentCodecBenchmark {
+    private static final int DOCUMENTS = 2_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<Document> text = new ArrayList<>();
+        List<Document> binary = new ArrayList<>();
+        Random random = new Random(42);
+        String[] vocabulary = new String[2_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = Integer.toString(random.nextInt(1 << 30), 36);
+        }
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 600; w++) {
+                body.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+            }
+            Document doc = new DocumentImpl(URI.create("http://bench/text/" + i), body.toString(), null);
+            doc.setMetadataValue("author", "author" + (i % 10));
+            text.add(doc);
+            byte[] data = new byte[4_096];
+            random.nextBytes(data);
+            binary.add(new DocumentImpl(URI.create("http://bench/binary/" + i), data));
+        }
+        byte[] dictionary = CompressingDocumentCodec.trainDictionary(text.subList(0, 100), CompressingDocumentCodec.MAX_DICTIONARY_BYTES);
+        Map<String, DocumentCodec> codecs = new LinkedHashMap<>();
+        codecs.put("json", new JsonDocumentCodec());
+        codecs.put("binary", new BinaryDocumentCodec());
+        codecs.put("binary+deflate 1", new CompressingDocumentCodec(new BinaryDocumentCodec(), Deflater.BEST_SPEED));
+        codecs.put("binary+deflate 6", new CompressingDocumentCodec(new BinaryDocumentCodec(), Deflater.DEFAULT_COMPRESSION));
+        codecs.put("binary+deflate 9", new CompressingDocumentCodec(new BinaryDocumentCodec(), Deflater.BEST_COMPRESSION));
+        codecs.put("binary+deflate 6+dict", new CompressingDocumentCodec(new BinaryDocumentCodec(), Deflater.DEFAULT_COMPRESSION,
+                dictionary, CompressingDocumentCodec.DEFAULT_MIN_COMPRESS_BYTES));
+        for (Map.Entry<String, DocumentCodec> codec : codecs.entrySet()) {
+            report(codec.getKey(), codec.getValue(), "text", text);
+            report(codec.getKey(), codec.getValue(), "binary", binary);
+        }
+    }
+
+    private static void report(String name, DocumentCodec codec, String kind, List<Document> docs) throws Exception {
+        long bytes = 0;
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        List<byte[]> encoded = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            encoded.clear();
+            bytes = 0;
+            long start = System.nanoTime();
+            for (Document doc : docs) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                codec.encode(doc, out);
+                encoded.add(out.toByteArray());
+                bytes += out.size();
+            }
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (byte[] data : encoded) {
+                codec.decode(new ByteArrayInputStream(data));
+            }
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+        }
+        System.out.printf("%-22s %-6s %,10d bytes/doc  encode %,9d ns/doc  decode %,8d ns/doc%n",
+                name, kind, bytes / docs.size(), encodeNanos / docs.size(), decodeNanos / docs.size());
+    }
+}
@@ -0,0 +1,235 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.CompressingDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.MappedFilePool;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentCodecTest {
+    private static Document textDocument() {
+        Document doc = new DocumentImpl(URI.create("http://edu.yu.cs/codec/text"), "Some text, some more \u00fcn\u00efcode text", null);
+        doc.setMetadataValue("author", "someone");
+        doc.setMetadataValue("empty", null);
+        doc.setLastUseTime(12345L);
+        return doc;
+    }
+
+    private static Document binaryDocument() {
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Document doc = new DocumentImpl(URI.create("http://edu.yu.cs/codec/binary"), data);
+        doc.setMetadataValue("type", "image");
+        return doc;
+    }
+
+    private static Document roundTrip(DocumentCodec codec, Document doc) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(doc, out);
+        assertEquals(doc.getKey(), codec.decodeKey(new ByteArrayInputStream(out.toByteArray())));
+        return codec.decode(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTripBothCodecs() throws Exception {
+        for (DocumentCodec codec : List.of(new BinaryDocumentCodec(), new JsonDocumentCodec())) {
+            Document text = roundTrip(codec, textDocument());
+            assertEquals(textDocument().getDocumentTxt(), text.getDocumentTxt());
+            assertEquals("someone", text.getMetadataValue("author"));
+            assertEquals(textDocument().getWordMap(), text.getWordMap());
+            assertEquals(12345L, text.getLastUseTime());
+
+            Document binary = roundTrip(codec, binaryDocument());
+            assertArrayEquals(binaryDocument().getDocumentBinaryData(), binary.getDocumentBinaryData());
+            assertEquals("image", binary.getMetadataValue("type"));
+        }
+    }
+
+    @Test
+    public void testJsonMatchesGsonReflection() throws Exception {
+        Gson reflective = new GsonBuilder().setPrettyPrinting().create();
+        for (Document doc : List.of(textDocument(), binaryDocument())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new JsonDocumentCodec().encode(doc, out);
+            String expected = reflective.toJson(doc);
+            assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+            Document read = new JsonDocumentCodec().decode(new ByteArrayInputStream(expected.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(doc, read);
+            // like Gson, the JSON leaves out null metadata values
+            Map<String, String> metadata = doc.getMetadata();
+            metadata.values().removeIf(Objects::isNull);
+            assertEquals(metadata, read.getMetadata());
+            assertEquals(doc.getWordMap(), read.getWordMap());
+            assertEquals(doc.getLastUseTime(), read.getLastUseTime());
+        }
+        assertThrows(IOException.class, () -> new JsonDocumentCodec().decode(new ByteArrayInputStream("{\"text\": \"no uri\"}".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void testBinaryIsSmallerForBinaryData() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new BinaryDocumentCodec().encode(binaryDocument(), binary);
+        new JsonDocumentCodec().encode(binaryDocument(), json);
+        assertTrue(binary.size() * 3 < json.size());
+    }
+
+    @Test
+    public void testBinaryKeepsNullMetadataValues() throws Exception {
+        assertEquals(textDocument().getMetadata(), roundTrip(new BinaryDocumentCodec(), textDocument()).getMetadata());
+    }
+
+    @Test
+    public void testReadsLegacyJsonFiles(@TempDir File baseDir) throws Exception {
+        DocumentPersistenceManager legacy = new DocumentPersistenceManager(baseDir, new JsonDocumentCodec());
+        legacy.serialize(textDocument().getKey(), textDocument());
+
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(baseDir);
+        assertEquals(List.of(textDocument().getKey()), pm.keys());
+        Document doc = pm.deserialize(textDocument().getKey());
+        assertEquals(textDocument().getDocumentTxt(), doc.getDocumentTxt());
+
+        pm.serialize(doc.getKey(), doc);
+        assertEquals(List.of(textDocument().getKey()), pm.keys());
+        assertTrue(pm.delete(doc.getKey()));
+        assertNull(pm.deserialize(doc.getKey()));
+    }
+
+    @Test
+    public void testDecodeFromBuffer() throws Exception {
+        for (DocumentCodec codec : List.of(new BinaryDocumentCodec(), new JsonDocumentCodec())) {
+            for (Document doc : List.of(textDocument(), binaryDocument())) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                codec.encode(doc, out);
+                ByteBuffer direct = ByteBuffer.allocateDirect(out.size() + 2);
+                direct.put((byte) 7).put(out.toByteArray()).flip().position(1);
+                assertEquals(doc, codec.decode(direct));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryDocumentCodec().encode(textDocument(), out);
+        assertThrows(EOFException.class, () -> new BinaryDocumentCodec().decode(ByteBuffer.wrap(out.toByteArray(), 0, out.size() - 5)));
+    }
+
+    @Test
+    public void testMappedFilePoolRemapsGrowingFiles(@TempDir File dir) throws Exception {
+        File file = new File(dir, "growing");
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        MappedFilePool pool = new MappedFilePool(1);
+        assertEquals(3, pool.map(file, 3).remaining());
+        assertEquals(3, pool.map(file, 2).remaining());
+        Files.write(file.toPath(), new byte[]{4, 5}, StandardOpenOption.APPEND);
+        ByteBuffer grown = pool.map(file, 5);
+        assertEquals(5, grown.remaining());
+        assertEquals(5, grown.get(4));
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertThrows(IOException.class, () -> pool.map(file, 6));
+
+        pool.invalidate(file);
+        pool.map(file, 0);
+        pool.map(file, 0);
+        assertEquals(2, pool.getHits());
+        assertEquals(4, pool.getMisses());
+    }
+
+    @Test
+    public void testCompressionRoundTripAndSize() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("the quick brown fox jumps over the lazy dog number ").append(i % 7).append(' ');
+        }
+        Document large = new DocumentImpl(URI.create("http://edu.yu.cs/codec/large"), text.toString(), null);
+        large.setMetadataValue("author", "someone");
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        new BinaryDocumentCodec().encode(large, plain);
+
+        byte[] dictionary = CompressingDocumentCodec.trainDictionary(List.of(large, textDocument()), CompressingDocumentCodec.MAX_DICTIONARY_BYTES);
+        assertTrue(dictionary.length > 0);
+        for (DocumentCodec codec : List.of(new CompressingDocumentCodec(new BinaryDocumentCodec(), 1),
+                new CompressingDocumentCodec(new BinaryDocumentCodec(), Deflater.BEST_COMPRESSION),
+                new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, dictionary, 0))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.encode(large, out);
+            assertTrue(out.size() * 5 < plain.size());
+            assertEquals(large, roundTrip(codec, large));
+            assertEquals(large, codec.decode(ByteBuffer.wrap(out.toByteArray())));
+            assertEquals(binaryDocument(), roundTrip(codec, binaryDocument()));
+        }
+    }
+
+    @Test
+    public void testSmallRecordsAreStoredUncompressed() throws Exception {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        new BinaryDocumentCodec().encode(textDocument(), plain);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CompressingDocumentCodec(new BinaryDocumentCodec(), 9).encode(textDocument(), out);
+        // just the magic, method and length in front of the plain encoding
+        assertEquals(plain.size() + 9, out.size());
+        assertEquals(textDocument(), new CompressingDocumentCodec(new BinaryDocumentCodec(), 9).decode(ByteBuffer.wrap(out.toByteArray())));
+    }
+
+    @Test
+    public void testDictionaryMustMatch() throws Exception {
+        byte[] dictionary = CompressingDocumentCodec.trainDictionary(List.of(textDocument(), textDocument()), 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, dictionary, 0).encode(textDocument(), out);
+        DocumentCodec without = new CompressingDocumentCodec(new BinaryDocumentCodec(), 6);
+        assertThrows(IOException.class, () -> without.decode(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void testSavedDictionaryReadsDocumentsAfterReopen(@TempDir File baseDir) throws Exception {
+        byte[] dictionary = CompressingDocumentCodec.trainDictionary(List.of(textDocument(), textDocument()), 1024);
+        DocumentCodec trained = new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, dictionary, 0, baseDir);
+        new DocumentPersistenceManager(baseDir, trained).serialize(textDocument().getKey(), textDocument());
+
+        // a reopened store, which trains a dictionary of its own, still reads what the first one wrote
+        byte[] retrained = CompressingDocumentCodec.trainDictionary(List.of(binaryDocument(), binaryDocument()), 1024);
+        DocumentCodec reopened = new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, retrained, 0, baseDir);
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(baseDir, reopened);
+        assertEquals(List.of(textDocument().getKey()), pm.keys());
+        assertEquals(textDocument(), pm.deserialize(textDocument().getKey()));
+        DocumentCodec unsaved = new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, retrained, 0);
+        assertThrows(IOException.class, () -> new DocumentPersistenceManager(baseDir, unsaved).deserialize(textDocument().getKey()));
+    }
+
+    @Test
+    public void testPersistenceManagersWithCompression(@TempDir File baseDir) throws Exception {
+        DocumentCodec codec = new CompressingDocumentCodec(new BinaryDocumentCodec(), 6, null, 0);
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(baseDir, codec);
+        pm.serialize(textDocument().getKey(), textDocument());
+        assertTrue(new File(baseDir, "edu.yu.cs/codec/text.binz").exists());
+        assertEquals(List.of(textDocument().getKey()), pm.keys());
+        assertEquals(textDocument(), pm.deserialize(textDocument().getKey()));
+        try (SegmentPersistenceManager segments = new SegmentPersistenceManager(baseDir, codec, 1 << 20, 0.5)) {
+            segments.serialize(binaryDocument().getKey(), binaryDocument());
+            assertEquals(binaryDocument(), segments.deserialize(binaryDocument().getKey()));
+        }
+    }
+}
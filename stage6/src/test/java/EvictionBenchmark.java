@@ -0,0 +1,90 @@
+import edu.yu.cs.com1320.project.stage6.AsyncPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.WriteBehindPersistenceManager;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Not a unit test; run with main. Time for setMaxDocumentCount to evict 90% of a store in one batch, for the
+ * per-file persistence manager, the segment store writing document by document, and the segment store writing
+ * the batch with one write and one fsync, each also behind a WriteBehindPersistenceManager. Write-behind times are
+ * what the caller waits for, and then how long until the I/O thread has written the batch.
+ */
+public class EvictionBenchmark {
+    private static final int DOCUMENTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        run("per-file", DocumentPersistenceManager::new);
+        run("segments, per document", dir -> documentByDocument(new SegmentPersistenceManager(dir)));
+        run("segments, one batch", SegmentPersistenceManager::new);
+        run("per-file, write-behind", dir -> new WriteBehindPersistenceManager<>(new DocumentPersistenceManager(dir)));
+        run("segments, write-behind", dir -> new WriteBehindPersistenceManager<>(new SegmentPersistenceManager(dir)));
+    }
+
+    private static void run(String name, Function<File, PersistenceManager<URI, Document>> pmFor) throws Exception {
+        File dir = Files.createTempDirectory("evictionBenchmark").toFile();
+        PrintStream out = System.out;
+        try {
+            PersistenceManager<URI, Document> pm = pmFor.apply(dir);
+            DocumentStore store = new DocumentStoreImpl(dir, pm, false);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                String text = "document " + i + " with some words that are repeated in every document of the benchmark";
+                store.put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), URI.create("http://bench/doc" + i), DocumentStore.DocumentFormat.TXT);
+            }
+            // the persistence managers log every file they write
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long start = System.nanoTime();
+            store.setMaxDocumentCount(DOCUMENTS / 10);
+            long elapsed = System.nanoTime() - start;
+            String written = "";
+            if (pm instanceof AsyncPersistenceManager<URI, Document> async) {
+                async.flush().join();
+                written = String.format(", on disk after %,8d us", (System.nanoTime() - start) / 1_000);
+            }
+            System.setOut(out);
+            System.out.printf("%-24s evicted %,d documents in %,8d us%s%n", name, DOCUMENTS - DOCUMENTS / 10, elapsed / 1_000, written);
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    // hides serializeAll, so the batch falls back to one serialize per document
+    private static PersistenceManager<URI, Document> documentByDocument(SegmentPersistenceManager pm) {
+        return new PersistenceManager<>() {
+            @Override
+            public void serialize(URI key, Document val) throws IOException {
+                pm.serialize(key, val);
+            }
+
+            @Override
+            public Document deserialize(URI key) throws IOException {
+                return pm.deserialize(key);
+            }
+
+            @Override
+            public boolean delete(URI key) throws IOException {
+                return pm.delete(key);
+            }
+
+            @Override
+            public List<URI> keys() {
+                return pm.keys();
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvictionMemoryTest {
+    private static final int DOCUMENTS = 200;
+    private static final int DOCUMENT_BYTES = 5_000;
+    private static final int MAX_BYTES = 50_000;
+
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/memory/doc" + i);
+    }
+
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder(DOCUMENT_BYTES);
+        while (text.length() < DOCUMENT_BYTES - 8) {
+            text.append("w").append(random.nextInt(100_000)).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static void put(DocumentStore store, int i, String text) throws Exception {
+        store.put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+    }
+
+    // like a heap dump: the documents the store has handed out that are still reachable from anywhere
+    private static List<Document> reachable(List<WeakReference<Document>> handedOut) {
+        List<Document> alive = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            alive.clear();
+            for (WeakReference<Document> ref : handedOut) {
+                Document document = ref.get();
+                if (document != null) {
+                    alive.add(document);
+                }
+            }
+        }
+        return alive;
+    }
+
+    @Test
+    public void testRetainedDocumentsStayUnderTheByteLimit() throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        store.setMaxDocumentBytes(MAX_BYTES);
+        Random random = new Random(22);
+        List<WeakReference<Document>> handedOut = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            put(store, i, text(random));
+            store.setMetadata(uri(i), "n", Integer.toString(i));
+            handedOut.add(new WeakReference<>(store.get(uri(i))));
+        }
+        // replaced and deleted documents are only needed by the undo stack
+        for (int i = 0; i < DOCUMENTS; i += 10) {
+            handedOut.add(new WeakReference<>(store.get(uri(i))));
+            put(store, i, text(random));
+            store.delete(uri(i + 1));
+        }
+        handedOut.add(new WeakReference<>(store.search("w7").stream().findFirst().orElse(null)));
+
+        long retainedBytes = 0;
+        for (Document document : reachable(handedOut)) {
+            retainedBytes += document.getDocumentTxt().getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertTrue(retainedBytes <= MAX_BYTES, retainedBytes + " bytes of documents are still reachable");
+
+        // and undo still has what it needs
+        store.undo();
+        assertNotNull(store.get(uri(DOCUMENTS - 9)));
+        store.undo();
+        assertEquals(Integer.toString(DOCUMENTS - 10), store.getMetadata(uri(DOCUMENTS - 10), "n"));
+    }
+
+    @Test
+    public void testUndoStashOnlyHoldsWhatTheStackCanStillUndo() throws Exception {
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        Random random = new Random(22);
+        for (int i = 0; i < 10; i++) {
+            put(store, i, text(random));
+        }
+        for (int i = 0; i < 10; i++) {
+            store.delete(uri(i));
+        }
+        assertEquals(10, store.getUndoStashSize());
+        store.undo(uri(3));
+        assertEquals(9, store.getUndoStashSize());
+        // the deletes that fall off the stack take their documents with them
+        store.setUndoLimit(4);
+        assertEquals(4, store.getUndoStashSize());
+        store.undo();
+        assertNotNull(store.get(uri(9)));
+        assertEquals(3, store.getUndoStashSize());
+
+        // another store on the same directory keeps a stash of its own
+        DocumentStoreImpl other = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        other.close();
+        store.undo(uri(8));
+        assertNotNull(store.get(uri(8)));
+        store.close();
+        assertEquals(0, new File(this.dir, ".undo").list().length);
+    }
+}
@@ -0,0 +1,92 @@
+import edu.yu.cs.com1320.project.impl.AdaptiveTrieImpl;
+import edu.yu.cs.com1320.project.impl.LevenshteinAutomaton;
+import edu.yu.cs.com1320.project.impl.WildcardAutomaton;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Not a unit test; run with main. Time per fuzzy and wildcard lookup over a vocabulary of 100,000 words, walking
+ * the trie with an automaton versus checking every word of the vocabulary.
+ */
+public class FuzzySearchBenchmark {
+    private static final int VOCABULARY = 100_000;
+    private static final int LOOKUPS = 50;
+
+    public static void main(String[] args) {
+        PrintStream out = System.out;
+        Random random = new Random(25);
+        List<String> words = new ArrayList<>();
+        AdaptiveTrieImpl<String> trie = new AdaptiveTrieImpl<>();
+        while (words.size() < VOCABULARY) {
+            StringBuilder word = new StringBuilder();
+            for (int n = 4 + random.nextInt(8); n > 0; n--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (!trie.get(word.toString()).isEmpty()) {
+                continue;
+            }
+            words.add(word.toString());
+            trie.put(word.toString(), word.toString());
+        }
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < LOOKUPS; i++) {
+            targets.add(words.get(random.nextInt(words.size())));
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int edits = 1; edits <= LevenshteinAutomaton.MAX_EDITS; edits++) {
+                int maxEdits = edits;
+                int[] found = new int[2];
+                long walk = time(() -> {
+                    for (String target : targets) {
+                        trie.forEachAccepted(new LevenshteinAutomaton(target, maxEdits), (row, word) -> found[0]++);
+                    }
+                });
+                long scan = time(() -> {
+                    for (String target : targets) {
+                        LevenshteinAutomaton automaton = new LevenshteinAutomaton(target, maxEdits);
+                        for (String word : words) {
+                            if (accepts(automaton, word)) {
+                                found[1]++;
+                            }
+                        }
+                    }
+                });
+                out.printf("within %d edits: automaton over the trie %,7d us, every word %,7d us (%d and %d found)%n",
+                        edits, walk, scan, found[0], found[1]);
+            }
+            int[] found = new int[2];
+            long walk = time(() -> {
+                for (String target : targets) {
+                    trie.forEachAccepted(new WildcardAutomaton(target.substring(0, 2) + "?" + target.substring(3, 4) + "*"), (state, word) -> found[0]++);
+                }
+            });
+            long scan = time(() -> {
+                for (String target : targets) {
+                    Pattern pattern = Pattern.compile(target.substring(0, 2) + "." + target.charAt(3) + ".*");
+                    for (String word : words) {
+                        if (pattern.matcher(word).matches()) {
+                            found[1]++;
+                        }
+                    }
+                }
+            });
+            out.printf("wildcard xy?z*:   automaton over the trie %,7d us, every word %,7d us (%d and %d found)%n", walk, scan, found[0], found[1]);
+        }
+    }
+
+    private static boolean accepts(LevenshteinAutomaton automaton, String word) {
+        int[] state = automaton.start();
+        for (int i = 0; i < word.length() && state != null; i++) {
+            state = automaton.step(state, word.charAt(i));
+        }
+        return state != null && automaton.isAccepting(state);
+    }
+
+    private static long time(Runnable lookups) {
+        long start = System.nanoTime();
+        lookups.run();
+        return (System.nanoTime() - start) / 1_000 / LOOKUPS;
+    }
+}
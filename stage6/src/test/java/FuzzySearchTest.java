@@ -0,0 +1,67 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzySearchTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/fuzzy/doc" + i);
+    }
+
+    private DocumentStore storeOf(String... texts) throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        for (int i = 0; i < texts.length; i++) {
+            store.put(new ByteArrayInputStream(texts[i].getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        return store;
+    }
+
+    private static List<URI> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).toList();
+    }
+
+    @Test
+    public void testFuzzyRanksFewerEditsFirst() throws Exception {
+        DocumentStore store = storeOf("recieve recieve recieve", "receive", "reverse", "deceive deceive", "apple");
+        // doc1 is exact; doc0 and doc3 are two edits off, doc3's word once less often
+        assertEquals(List.of(uri(1)), keys(store.searchFuzzy("Receive", 0)));
+        assertEquals(List.of(uri(1), uri(3)), keys(store.searchFuzzy("receive", 1)));
+        assertEquals(List.of(uri(1), uri(3), uri(0)), keys(store.searchFuzzy("receive", 2)));
+        assertEquals(List.of(uri(1), uri(3)), keys(store.searchFuzzy("receive", 2, 2)));
+        assertEquals(List.of(), store.searchFuzzy("zzzzzz", 2));
+        assertThrows(IllegalArgumentException.class, () -> store.searchFuzzy("receive", 3));
+        assertThrows(IllegalArgumentException.class, () -> store.searchFuzzy(" ", 1));
+    }
+
+    @Test
+    public void testADocumentIsRankedByItsClosestWords() throws Exception {
+        DocumentStore store = storeOf("cat cat cat cut", "cat", "cot cot cot cot");
+        // doc0 and doc1 both have the exact word, doc0 more often; the one-edit words don't add to them
+        assertEquals(List.of(uri(0), uri(1), uri(2)), keys(store.searchFuzzy("cat", 1)));
+    }
+
+    @Test
+    public void testWildcards() throws Exception {
+        DocumentStore store = storeOf("colour color", "colors", "collar", "cool");
+        assertEquals(List.of(uri(0), uri(1)), keys(store.searchWildcard("colo*r*")));
+        assertEquals(List.of(uri(0), uri(2)), keys(store.searchWildcard("col??r")));
+        assertEquals(List.of(uri(0), uri(1), uri(2), uri(3)), keys(store.searchWildcard("C*")));
+        assertEquals(List.of(uri(3)), keys(store.searchWildcard("*ool")));
+        assertEquals(List.of(uri(0)), keys(store.searchWildcard("colour")));
+        assertEquals(List.of(uri(0)), keys(store.searchWildcard("col*r", 1)));
+        assertThrows(IllegalArgumentException.class, () -> store.searchWildcard(null));
+    }
+}
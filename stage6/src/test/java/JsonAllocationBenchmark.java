@@ -0,0 +1,81 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Not a unit test; run with main. Bytes allocated, and time taken, per JSON serialize and deserialize of a text and
+ * a binary document: a freshly built Gson writing a String, the cached reflective Gson streaming to the file, and
+ * the streaming DocumentImplTypeAdapter that JsonDocumentCodec uses. Allocations are counted with
+ * com.sun.management.ThreadMXBean.
+ */
+public class JsonAllocationBenchmark {
+    private static final int WARMUP = 2_000;
+    private static final int ROUNDS = 2_000;
+    private static final Gson REFLECTIVE = new GsonBuilder().setPrettyPrinting().create();
+
+    private interface Operation {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        StringBuilder body = new StringBuilder();
+        for (int w = 0; w < 600; w++) {
+            body.append(Integer.toString(random.nextInt(1 << 20), 36)).append(' ');
+        }
+        Document text = new DocumentImpl(URI.create("http://bench/json/text"), body.toString(), null);
+        text.setMetadataValue("author", "someone");
+        byte[] data = new byte[4_096];
+        random.nextBytes(data);
+        Document binary = new DocumentImpl(URI.create("http://bench/json/binary"), data);
+        report("text", text, body.length());
+        report("binary", binary, data.length);
+    }
+
+    private static void report(String kind, Document document, int size) throws Exception {
+        DocumentCodec codec = new JsonDocumentCodec();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        codec.encode(document, encoded);
+        byte[] json = encoded.toByteArray();
+        System.out.printf("%s document, %,d byte body, %,d bytes of JSON%n", kind, size, json.length);
+        OutputStream sink = OutputStream.nullOutputStream();
+        measure("  serialize, fresh Gson to a String", () -> {
+            String s = new GsonBuilder().setPrettyPrinting().create().toJson(document);
+            sink.write(s.getBytes(StandardCharsets.UTF_8));
+        });
+        measure("  serialize, cached Gson, reflection", () -> {
+            Writer writer = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+            REFLECTIVE.toJson(document, writer);
+            writer.flush();
+        });
+        measure("  serialize, type adapter", () -> codec.encode(document, sink));
+        measure("  deserialize, fresh Gson", () -> new Gson().fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), DocumentImpl.class));
+        measure("  deserialize, cached Gson, reflection", () -> REFLECTIVE.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), DocumentImpl.class));
+        measure("  deserialize, type adapter", () -> codec.decode(new ByteArrayInputStream(json)));
+    }
+
+    private static void measure(String name, Operation operation) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.out.printf("%-40s %,9d bytes allocated, %,7d ns per call%n", name, allocated / ROUNDS, elapsed / ROUNDS);
+    }
+}
@@ -0,0 +1,100 @@
+import com.google.gson.Gson;
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.MappedFilePool;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Not a unit test; run with main. Time to read back evicted documents: the original FileReader + Gson path,
+ * streamed binary files, binary files decoded from memory mappings, and mapped segment files.
+ */
+public class MappedReadBenchmark {
+    private static final int DOCUMENTS = 2_000;
+    private static final int ROUNDS = 5;
+
+    private interface Reader {
+        Document read(int i) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("mappedReadBenchmark").toFile();
+        try {
+            run(dir);
+        } finally {
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static void run(File dir) throws Exception {
+        Random random = new Random(42);
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 600; w++) {
+                body.append(Integer.toString(random.nextInt(5_000), 36)).append(' ');
+            }
+            Document doc = new DocumentImpl(URI.create("http://bench/doc" + i), body.toString(), null);
+            doc.setMetadataValue("author", "author" + (i % 10));
+            docs.add(doc);
+        }
+        DocumentCodec json = new JsonDocumentCodec();
+        DocumentCodec binary = new BinaryDocumentCodec();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            write(json, docs.get(i), new File(dir, i + ".json"));
+            write(binary, docs.get(i), new File(dir, i + ".bin"));
+        }
+        SegmentPersistenceManager segments = new SegmentPersistenceManager(dir);
+        for (Document doc : docs) {
+            segments.serialize(doc.getKey(), doc);
+        }
+
+        Gson gson = new Gson();
+        report("FileReader + Gson", i -> {
+            try (java.io.Reader reader = new FileReader(new File(dir, i + ".json"))) {
+                return gson.fromJson(reader, DocumentImpl.class);
+            }
+        });
+        report("binary file stream", i -> {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(new File(dir, i + ".bin")))) {
+                return binary.decode(in);
+            }
+        });
+        MappedFilePool pool = new MappedFilePool(64);
+        report("binary file mapped", i -> binary.decode(pool.map(new File(dir, i + ".bin"), 0)));
+        report("segment mapped", i -> segments.deserialize(docs.get(i).getKey()));
+        segments.close();
+    }
+
+    private static void write(DocumentCodec codec, Document doc, File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            codec.encode(doc, out);
+        }
+    }
+
+    private static void report(String name, Reader reader) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < DOCUMENTS; i++) {
+                if (reader.read(i) == null) {
+                    throw new IllegalStateException(name + " lost document " + i);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-20s %,8d ns/doc%n", name, best / DOCUMENTS);
+    }
+}
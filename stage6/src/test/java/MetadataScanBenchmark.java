@@ -0,0 +1,95 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Not a unit test; run with main. Time for searchByMetadata over a store with 90% of its documents evicted, when
+ * 1% of them match, reading the evicted documents one by one versus in parallel batches. The speedup depends on
+ * how many cores the machine has.
+ */
+public class MetadataScanBenchmark {
+    private static final int DOCUMENTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d cores%n", Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 2; round++) {
+            run("per-file, one by one", dir -> oneByOne(new DocumentPersistenceManager(dir)));
+            run("per-file, parallel", DocumentPersistenceManager::new);
+            run("segments, one by one", dir -> oneByOne(new SegmentPersistenceManager(dir)));
+            run("segments, parallel", SegmentPersistenceManager::new);
+        }
+    }
+
+    private static void run(String name, Function<File, PersistenceManager<URI, Document>> pmFor) throws Exception {
+        File dir = Files.createTempDirectory("metadataScanBenchmark").toFile();
+        PrintStream out = System.out;
+        try {
+            // the store and persistence managers log every file they write
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            DocumentStore store = new DocumentStoreImpl(dir, pmFor.apply(dir), false);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                StringBuilder text = new StringBuilder("document " + i);
+                for (int w = 0; w < 150; w++) {
+                    text.append(" word").append((i * 31 + w) % 2_000);
+                }
+                URI uri = URI.create("http://bench/doc" + i);
+                store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), uri, DocumentStore.DocumentFormat.TXT);
+                store.setMetadata(uri, "tag", i % 100 == 0 ? "wanted" : "other");
+            }
+            store.setMaxDocumentCount(DOCUMENTS / 10);
+            long start = System.nanoTime();
+            int found = store.searchByMetadata(Map.of("tag", "wanted")).size();
+            long elapsed = System.nanoTime() - start;
+            System.setOut(out);
+            System.out.printf("%-22s %,d matches in %,8d us%n", name, found, elapsed / 1_000);
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    // hides deserializeAll, so the scan falls back to one deserialize per document
+    private static PersistenceManager<URI, Document> oneByOne(PersistenceManager<URI, Document> pm) {
+        return new PersistenceManager<>() {
+            @Override
+            public void serialize(URI key, Document val) throws IOException {
+                pm.serialize(key, val);
+            }
+
+            @Override
+            public void serializeAll(Map<URI, Document> values) throws IOException {
+                pm.serializeAll(values);
+            }
+
+            @Override
+            public Document deserialize(URI key) throws IOException {
+                return pm.deserialize(key);
+            }
+
+            @Override
+            public boolean delete(URI key) throws IOException {
+                return pm.delete(key);
+            }
+
+            @Override
+            public List<URI> keys() throws IOException {
+                return pm.keys();
+            }
+        };
+    }
+}
@@ -46,4 +46,46 @@ public class MinHeapImplTest {
         // Verify the heap still contains the remaining elements
         assertEquals(19, minHeap.size());
     }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String name;
+        private long time;
+
+        private Entry(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(this.time, other.time);
+        }
+    }
+
+    @Test
+    public void testReHeapifyAndRemoveFindTheirElement() {
+        MinHeapImpl<Entry> heap = new MinHeapImpl<>();
+        Entry[] entries = new Entry[50];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry("e" + i, i);
+            heap.insert(entries[i]);
+        }
+        // the oldest become the newest
+        for (int i = 0; i < 10; i++) {
+            entries[i].time = 100 + i;
+            heap.reHeapify(entries[i]);
+        }
+        heap.remove(entries[20]);
+        assertFalse(heap.contains(entries[20]));
+        assertTrue(heap.contains(entries[21]));
+        assertEquals(49, heap.size());
+        long last = -1;
+        while (heap.size() > 0) {
+            Entry next = heap.remove();
+            assertTrue(next.time > last);
+            assertFalse(heap.contains(next));
+            last = next.time;
+        }
+        assertEquals(109, last);
+    }
 }
\ No newline at end of file
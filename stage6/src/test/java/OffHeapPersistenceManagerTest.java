@@ -0,0 +1,108 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.OffHeapPersistenceManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapPersistenceManagerTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/offHeap/doc" + i);
+    }
+
+    // about 1.5 KB encoded, so two blocks
+    private static Document doc(int i) {
+        byte[] data = new byte[1_500];
+        data[0] = (byte) i;
+        return new DocumentImpl(uri(i), data);
+    }
+
+    @Test
+    public void testOldestDocumentsAreDemotedWhenTheBudgetIsUsedUp() throws Exception {
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        OffHeapPersistenceManager pm = new OffHeapPersistenceManager(disk, 8 * OffHeapPersistenceManager.BLOCK_BYTES);
+        for (int i = 0; i < 4; i++) {
+            pm.serialize(uri(i), doc(i));
+        }
+        assertEquals(4, pm.getDocumentCount());
+        assertEquals(List.of(), disk.keys());
+
+        pm.serializeAll(Map.of(uri(4), doc(4), uri(5), doc(5)));
+        assertEquals(2, pm.getDemotionCount());
+        assertEquals(Set.of(uri(0), uri(1)), new HashSet<>(disk.keys()));
+        assertEquals(6, pm.keys().size());
+
+        assertEquals(4, pm.deserialize(uri(4)).getDocumentBinaryData()[0]);
+        assertEquals(1, pm.deserialize(uri(1)).getDocumentBinaryData()[0]);
+        assertNull(pm.deserialize(uri(9)));
+        assertEquals(1, pm.getHitCount());
+        assertEquals(2, pm.getMissCount());
+        assertEquals(1, disk.getHitCount());
+
+        // a read-back deletes the document from whichever tier holds it, and its blocks are reused
+        assertTrue(pm.delete(uri(1)));
+        assertTrue(pm.delete(uri(4)));
+        assertFalse(pm.delete(uri(4)));
+        assertEquals(Set.of(uri(0)), new HashSet<>(disk.keys()));
+        pm.serialize(uri(6), doc(6));
+        assertEquals(2, pm.getDemotionCount());
+        assertEquals(4, pm.getDocumentCount());
+    }
+
+    @Test
+    public void testSyncWritesThroughAndOversizedDocumentsSkipTheTier() throws Exception {
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        OffHeapPersistenceManager pm = new OffHeapPersistenceManager(disk, 2 * OffHeapPersistenceManager.BLOCK_BYTES);
+        pm.serialize(uri(1), doc(1));
+        pm.serialize(uri(2), new DocumentImpl(uri(2), new byte[5_000]));
+        assertEquals(1, pm.getDocumentCount());
+        assertEquals(List.of(uri(2)), disk.keys());
+
+        pm.sync();
+        assertEquals(Set.of(uri(1), uri(2)), new HashSet<>(disk.keys()));
+        // still served from off-heap, and not written again when it is demoted
+        assertEquals(1, pm.deserialize(uri(1)).getDocumentBinaryData()[0]);
+        assertEquals(1, pm.getHitCount());
+        pm.serialize(uri(3), doc(3));
+        assertEquals(1, pm.getDemotionCount());
+        assertEquals(1, new OffHeapPersistenceManager(disk, OffHeapPersistenceManager.BLOCK_BYTES).deserialize(uri(1)).getDocumentBinaryData()[0]);
+    }
+
+    @Test
+    public void testStoreReadsEvictedDocumentsFromTheMiddleTier() throws Exception {
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        OffHeapPersistenceManager offHeap = new OffHeapPersistenceManager(disk, 4 * OffHeapPersistenceManager.BLOCK_BYTES);
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, offHeap, false);
+        store.setMaxDocumentCount(2);
+        for (int i = 0; i < 6; i++) {
+            String text = "document " + i + " of the tiered store";
+            store.put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        // two on the heap, four small documents off-heap, none on disk
+        assertEquals(4, offHeap.getDocumentCount());
+        assertEquals(List.of(), disk.keys());
+
+        assertEquals("document 5 of the tiered store", store.get(uri(5)).getDocumentTxt());
+        assertEquals("document 2 of the tiered store", store.get(uri(2)).getDocumentTxt());
+        assertEquals(1, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+        assertEquals(1, offHeap.getHitCount());
+        assertEquals(0, disk.getHitCount() + disk.getMissCount());
+    }
+}
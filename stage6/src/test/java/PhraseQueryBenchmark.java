@@ -0,0 +1,66 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static edu.yu.cs.com1320.project.stage6.Query.*;
+
+/**
+ * Not a unit test; run with main. Time per phrase search answered from a positional index, versus searching for
+ * documents with both words and scanning their text for the phrase, over a store that keeps all its documents in
+ * memory. Both words are in most documents, the phrase in few.
+ */
+public class PhraseQueryBenchmark {
+    private static final int DOCUMENTS = 10_000;
+    private static final int SEARCHES = 20;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("phraseQueryBenchmark").toFile();
+        PrintStream out = System.out;
+        DocumentStore store = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false, null, true);
+        Random random = new Random(24);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 100; w++) {
+                int r = random.nextInt(40);
+                text.append(r == 0 ? "new " : r == 1 ? "york " : "word" + random.nextInt(1_000) + " ");
+            }
+            if (random.nextInt(100) == 0) {
+                text.append("new york");
+            }
+            store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), URI.create("http://edu.yu.cs/phrase/doc" + i), DocumentStore.DocumentFormat.TXT);
+        }
+        Pattern phrase = Pattern.compile("\\bnew\\W+york\\b");
+        for (int round = 0; round < 3; round++) {
+            int[] found = new int[2];
+            long index = time(() -> found[0] = store.search(phrase("new york")).size());
+            long scan = time(() -> {
+                List<Document> candidates = store.search(and(term("new"), term("york")));
+                found[1] = (int) candidates.stream().filter(d -> phrase.matcher(d.getDocumentTxt().toLowerCase()).find()).count();
+                return found[1];
+            });
+            out.printf("phrase from positions     %,9d us, %d found%n", index, found[0]);
+            out.printf("and, then scan the text   %,9d us, %d found%n", scan, found[1]);
+        }
+    }
+
+    private interface Search {
+        Object run() throws IOException;
+    }
+
+    private static long time(Search search) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / 1_000 / SEARCHES;
+    }
+}
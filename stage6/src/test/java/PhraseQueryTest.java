@@ -0,0 +1,108 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static edu.yu.cs.com1320.project.stage6.Query.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhraseQueryTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/phrase/doc" + i);
+    }
+
+    private DocumentStore storeOf(boolean positional, String... texts) throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false, null, positional);
+        for (int i = 0; i < texts.length; i++) {
+            store.put(new ByteArrayInputStream(texts[i].getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        return store;
+    }
+
+    private static List<URI> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).toList();
+    }
+
+    @Test
+    public void testPhrases() throws Exception {
+        DocumentStore store = storeOf(true,
+                "I love New York.",
+                "New jersey is not york, new-york is new york",
+                "York, New and old",
+                "to be or not to be");
+        // doc1 has it twice
+        assertEquals(List.of(uri(1), uri(0)), keys(store.search(phrase("new YORK"))));
+        assertEquals(List.of(uri(3)), keys(store.search(phrase("not to be"))));
+        assertEquals(List.of(uri(3)), keys(store.search(phrase("to be or not to be"))));
+        assertEquals(List.of(), keys(store.search(phrase("be to"))));
+        assertEquals(List.of(), keys(store.search(phrase("new plum"))));
+        assertEquals(List.of(uri(0)), keys(store.search(and(phrase("new york"), not(term("jersey"))))));
+        // a phrase of one word is a term
+        assertEquals(keys(store.search("old")), keys(store.search(phrase(" Old! "))));
+    }
+
+    @Test
+    public void testProximity() throws Exception {
+        DocumentStore store = storeOf(true,
+                "apple pie",
+                "pie made of apple",
+                "apple a b c d e pie",
+                "pie");
+        assertEquals(List.of(uri(0)), keys(store.search(near(1, "apple", "pie"))));
+        assertEquals(List.of(uri(0), uri(1)), keys(store.search(near(3, "pie", "apple"))));
+        assertEquals(List.of(uri(0), uri(1), uri(2)), keys(store.search(near(6, "apple", "PIE"))));
+        assertThrows(IllegalArgumentException.class, () -> near(-1, "apple", "pie"));
+    }
+
+    @Test
+    public void testPositionsFollowReplacementsAndUndo() throws Exception {
+        DocumentStore store = storeOf(true, "the quick brown fox");
+        store.setMetadata(uri(0), "color", "brown");
+        store.put(new ByteArrayInputStream("the brown quick fox".getBytes(StandardCharsets.UTF_8)), uri(0), DocumentStore.DocumentFormat.TXT);
+        assertEquals(List.of(), keys(store.search(phrase("quick brown"))));
+        assertEquals(List.of(uri(0)), keys(store.search(phrase("brown quick"))));
+        store.undo();
+        assertEquals(List.of(uri(0)), keys(store.search(and(phrase("quick brown"), prefix("color:b")))));
+        store.setMaxDocumentCount(1);
+        store.put(new ByteArrayInputStream("other".getBytes(StandardCharsets.UTF_8)), uri(1), DocumentStore.DocumentFormat.TXT);
+        // answered from the index while the document is on disk
+        assertEquals(List.of(uri(0)), keys(store.search(phrase("brown fox"))));
+    }
+
+    @Test
+    public void testAStoreWithoutPositionsRefusesPhrases() throws Exception {
+        DocumentStore store = storeOf(false, "new york");
+        assertThrows(IllegalStateException.class, () -> store.search(phrase("new york")));
+        assertEquals(List.of(uri(0)), keys(store.search(and(term("new"), term("york")))));
+    }
+
+    @Test
+    public void testPositionsAreRebuiltFromACheckpoint() throws Exception {
+        File log = new File(this.dir, "store.wal");
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false, new WriteAheadLog(log, WriteAheadLog.Durability.NONE), true);
+        for (int i = 0; i < 4; i++) {
+            store.put(new ByteArrayInputStream(("red apple number " + i).getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        store.setMetadata(uri(0), "color", "red");
+        store.setMaxDocumentCount(2);
+        store.checkpoint().get();
+        store.put(new ByteArrayInputStream("apple red".getBytes(StandardCharsets.UTF_8)), uri(4), DocumentStore.DocumentFormat.TXT);
+
+        DocumentStoreImpl recovered = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false, new WriteAheadLog(log, WriteAheadLog.Durability.NONE), true);
+        assertEquals(4, recovered.search(phrase("red apple")).size());
+        assertEquals(List.of(uri(4)), keys(recovered.search(phrase("apple red"))));
+        assertEquals(List.of(uri(0)), keys(recovered.search(and(phrase("red apple"), term("color:red")))));
+    }
+}
@@ -0,0 +1,158 @@
+import edu.yu.cs.com1320.project.stage6.impl.PostingList;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostingListTest {
+
+    private static Map<Integer, Integer> contents(PostingList postings) {
+        Map<Integer, Integer> contents = new LinkedHashMap<>();
+        postings.forEach(contents::put);
+        return contents;
+    }
+
+    @Test
+    public void testAppendsInsertsAndRemoves() {
+        PostingList postings = new PostingList();
+        assertTrue(postings.add(5, 1));
+        assertTrue(postings.add(300, 2));
+        assertTrue(postings.add(1, 3));
+        assertTrue(postings.add(200, 70_000));
+        assertFalse(postings.add(5, 4));
+        assertEquals(List.of(1, 5, 200, 300), new ArrayList<>(contents(postings).keySet()));
+        assertEquals(4, postings.frequency(5));
+        assertEquals(70_000, postings.frequency(200));
+        assertEquals(-1, postings.frequency(6));
+        assertTrue(postings.remove(1));
+        assertTrue(postings.remove(300));
+        assertFalse(postings.remove(300));
+        // the last ID is now 200, so this appends
+        assertTrue(postings.add(250, 1));
+        assertEquals(Map.of(5, 4, 200, 70_000, 250, 1), contents(postings));
+        assertEquals(3, postings.size());
+    }
+
+    @Test
+    public void testDenseIdsTakeAFewBytesEach() {
+        PostingList postings = new PostingList();
+        for (int id = 0; id < 10_000; id += 3) {
+            postings.add(id, 1 + id % 5);
+        }
+        assertEquals(3334, postings.size());
+        // a one-byte gap and a one-byte frequency
+        assertEquals(2 * 3334, postings.encodedBytes());
+    }
+
+    @Test
+    public void testMatchesTreeMapModel() {
+        Random random = new Random(21);
+        PostingList postings = new PostingList();
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(i % 2 == 0 ? 200 : 100_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(model.remove(id) != null, postings.remove(id));
+            } else {
+                int frequency = random.nextInt(1000);
+                assertEquals(model.put(id, frequency) == null, postings.add(id, frequency));
+            }
+            assertEquals(model.size(), postings.size());
+        }
+        assertEquals(model, new TreeMap<>(contents(postings)));
+        assertEquals(new ArrayList<>(model.keySet()), new ArrayList<>(contents(postings).keySet()));
+        for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+            assertEquals(entry.getValue(), postings.frequency(entry.getKey()));
+        }
+        postings.trimToSize();
+        assertEquals(model, new TreeMap<>(contents(postings)));
+    }
+
+    @Test
+    public void testCursorAdvanceMatchesTreeMapModel() {
+        Random random = new Random(23);
+        PostingList postings = new PostingList();
+        TreeMap<Integer, Integer> model = new TreeMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            int id = random.nextInt(20_000);
+            int frequency = random.nextInt(50);
+            model.put(id, frequency);
+            postings.add(id, frequency);
+        }
+        for (int round = 0; round < 200; round++) {
+            if (round % 10 == 0) {
+                // changes in the middle drop the skip pointers, appends keep them up to date
+                int id = random.nextInt(20_000);
+                model.remove(id);
+                postings.remove(id);
+                model.put(25_000 + round, round);
+                postings.add(25_000 + round, round);
+            }
+            PostingList.Cursor cursor = postings.cursor();
+            int target = 0;
+            while (true) {
+                target += random.nextInt(random.nextBoolean() ? 3 : 2_000);
+                Integer expected = model.ceilingKey(target);
+                int id = cursor.advance(target);
+                if (expected == null) {
+                    assertEquals(PostingList.NO_MORE_IDS, id);
+                    break;
+                }
+                assertEquals(expected.intValue(), id);
+                assertEquals(model.get(expected).intValue(), cursor.frequency());
+                Integer following = model.higherKey(expected);
+                assertEquals(following == null ? PostingList.NO_MORE_IDS : following, cursor.next());
+                if (following == null) {
+                    break;
+                }
+                target = following;
+            }
+        }
+    }
+
+    @Test
+    public void testPositionsSurviveSplices() {
+        Random random = new Random(24);
+        PostingList postings = new PostingList(true);
+        TreeMap<Integer, int[]> model = new TreeMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(model.remove(id) != null, postings.remove(id));
+                continue;
+            }
+            int[] positions = new int[random.nextInt(5)];
+            for (int p = 0, position = 0; p < positions.length; p++) {
+                positions[p] = position += 1 + random.nextInt(random.nextBoolean() ? 10 : 100_000);
+            }
+            assertEquals(model.put(id, positions) == null, postings.add(id, positions));
+        }
+        PostingList.Cursor cursor = postings.cursor();
+        for (Map.Entry<Integer, int[]> entry : model.entrySet()) {
+            assertEquals(entry.getKey().intValue(), cursor.next());
+            assertEquals(entry.getValue().length, cursor.frequency());
+            assertArrayEquals(entry.getValue(), cursor.positions());
+            assertEquals(entry.getValue().length, postings.frequency(entry.getKey()));
+        }
+        assertEquals(PostingList.NO_MORE_IDS, cursor.next());
+
+        Integer id = model.lastKey() / 2;
+        Integer expected = model.ceilingKey(id);
+        cursor = postings.cursor();
+        assertEquals(expected.intValue(), cursor.advance(id));
+        assertArrayEquals(model.get(expected), cursor.positions());
+    }
+
+    @Test
+    public void testOnlyPositionalListsTakePositions() {
+        assertThrows(IllegalStateException.class, () -> new PostingList().add(1, new int[]{3}));
+        assertThrows(IllegalStateException.class, () -> new PostingList(true).add(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> new PostingList(true).add(1, new int[]{3, 3}));
+        PostingList postings = new PostingList(true);
+        // e.g. a metadata term, which is not a word of the document
+        assertTrue(postings.add(1, 0));
+        assertEquals(0, postings.cursor().positions().length);
+        assertThrows(IllegalStateException.class, () -> new PostingList().cursor().positions());
+    }
+}
@@ -0,0 +1,84 @@
+import edu.yu.cs.com1320.project.impl.AdaptiveTrieImpl;
+import edu.yu.cs.com1320.project.stage6.impl.InvertedIndex;
+
+import java.util.*;
+
+/**
+ * Not a unit test; run with main. Heap retained per posting by a trie holding a set of document references per
+ * term, as the store's index did, versus an InvertedIndex of compressed posting lists of catalog IDs, for the same
+ * postings: 5,000 documents of 100 distinct words each, drawn from a Zipf-distributed vocabulary of 20,000.
+ */
+public class PostingMemoryBenchmark {
+    private static final int DOCUMENTS = 5_000;
+    private static final int WORDS_PER_DOCUMENT = 100;
+    private static final int VOCABULARY = 20_000;
+
+    public static void main(String[] args) {
+        int[][] documents = documents();
+        // the documents themselves are held throughout, so only the index is measured
+        Object[] bodies = new Object[DOCUMENTS];
+        for (int d = 0; d < DOCUMENTS; d++) {
+            bodies[d] = new Object();
+        }
+        long postings = (long) DOCUMENTS * WORDS_PER_DOCUMENT;
+        for (int round = 0; round < 2; round++) {
+            long before = usedHeap();
+            AdaptiveTrieImpl<Object> sets = new AdaptiveTrieImpl<>();
+            for (int d = 0; d < DOCUMENTS; d++) {
+                for (int word : documents[d]) {
+                    sets.put("w" + word, bodies[d]);
+                }
+            }
+            long setBytes = usedHeap() - before;
+            Objects.requireNonNull(sets);
+            sets = null;
+
+            before = usedHeap();
+            InvertedIndex index = new InvertedIndex();
+            for (int d = 0; d < DOCUMENTS; d++) {
+                for (int word : documents[d]) {
+                    index.add("w" + word, d, 1 + word % 3);
+                }
+            }
+            long indexBytes = usedHeap() - before;
+            System.out.printf("sets of references:   %,9d KB, %5.1f bytes per posting%n", setBytes / 1024, (double) setBytes / postings);
+            System.out.printf("compressed postings:  %,9d KB, %5.1f bytes per posting (%.1f of them encoded postings)%n",
+                    indexBytes / 1024, (double) indexBytes / postings, (double) index.getEncodedBytes() / postings);
+            Objects.requireNonNull(index);
+        }
+        Objects.requireNonNull(bodies);
+    }
+
+    private static int[][] documents() {
+        Random random = new Random(21);
+        double[] cumulative = new double[VOCABULARY];
+        double total = 0;
+        for (int w = 0; w < VOCABULARY; w++) {
+            total += 1.0 / (w + 1);
+            cumulative[w] = total;
+        }
+        int[][] documents = new int[DOCUMENTS][];
+        for (int d = 0; d < DOCUMENTS; d++) {
+            Set<Integer> words = new LinkedHashSet<>();
+            while (words.size() < WORDS_PER_DOCUMENT) {
+                int w = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                words.add(w >= 0 ? w : -w - 1);
+            }
+            documents[d] = words.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return documents;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
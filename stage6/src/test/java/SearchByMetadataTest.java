@@ -0,0 +1,89 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchByMetadataTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/metadata/doc" + i);
+    }
+
+    private DocumentStore storeOf(int documents) throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        for (int i = 0; i < documents; i++) {
+            store.put(new ByteArrayInputStream(("text of doc " + i).getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+            store.setMetadata(uri(i), "parity", i % 2 == 0 ? "even" : "odd");
+            if (i % 50 == 0) {
+                store.setMetadata(uri(i), "tag", "rare");
+            }
+        }
+        return store;
+    }
+
+    @Test
+    public void testOnlyMatchingEvictedDocumentsAreReadBackIn() throws Exception {
+        DocumentStore store = storeOf(200);
+        store.setMaxDocumentCount(5);
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        assertEquals(195, disk.keys().size());
+
+        List<Document> rare = store.searchByMetadata(Map.of("tag", "rare"));
+        assertEquals(Set.of(uri(0), uri(50), uri(100), uri(150)), rare.stream().map(Document::getKey).collect(Collectors.toSet()));
+        // the matches were read back in, and pushed out as many others; nothing that didn't match was kept
+        assertEquals(195, disk.keys().size());
+        Set<URI> onDisk = new HashSet<>(disk.keys());
+        for (URI uri : List.of(uri(0), uri(50), uri(100), uri(150))) {
+            assertFalse(onDisk.contains(uri));
+        }
+    }
+
+    @Test
+    public void testEachEvictedDocumentIsDecodedOnce() throws Exception {
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, disk, false);
+        for (int i = 0; i < 100; i++) {
+            store.put(new ByteArrayInputStream(("text of doc " + i).getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+            store.setMetadata(uri(i), "tag", i % 25 == 0 ? "rare" : "common");
+        }
+        store.setMaxDocumentCount(10);
+        assertEquals(0, disk.getHitCount());
+
+        assertEquals(4, store.searchByMetadata(Map.of("tag", "rare")).size());
+        // the matches went back into the store as the batch decoded them, and weren't read from disk a second time
+        assertEquals(90, disk.getHitCount());
+        assertEquals(4, store.getMissCount());
+        assertEquals("text of doc 25", store.get(uri(25)).getDocumentTxt());
+        assertEquals(90, disk.getHitCount());
+    }
+
+    @Test
+    public void testMatchesAcrossBatchesAndResidentDocuments() throws Exception {
+        DocumentStore store = storeOf(300);
+        store.setMaxDocumentCount(250);
+        List<Document> even = store.searchByMetadata(Map.of("parity", "even"));
+        assertEquals(150, even.size());
+        for (Document doc : even) {
+            assertEquals("even", doc.getMetadataValue("parity"));
+        }
+        assertTrue(store.searchByMetadata(Map.of("parity", "none")).isEmpty());
+        // the limit still holds after the matches were read back in
+        assertEquals(50, new DocumentPersistenceManager(this.dir).keys().size());
+    }
+}
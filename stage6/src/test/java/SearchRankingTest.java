@@ -0,0 +1,103 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchRankingTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(String name) {
+        return URI.create("http://edu.yu.cs/ranking/" + name);
+    }
+
+    private DocumentStore storeOf(String... texts) throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false);
+        for (int i = 0; i < texts.length; i++) {
+            store.put(new ByteArrayInputStream(texts[i].getBytes(StandardCharsets.UTF_8)), uri("doc" + i), DocumentStore.DocumentFormat.TXT);
+        }
+        return store;
+    }
+
+    private static List<URI> keys(List<Document> documents) {
+        return documents.stream().map(Document::getKey).toList();
+    }
+
+    @Test
+    public void testSearchRanksByTermFrequency() throws Exception {
+        DocumentStore store = storeOf("apple pear", "Apple apple, APPLE!", "pear apple apple");
+        assertEquals(List.of(uri("doc1"), uri("doc2"), uri("doc0")), keys(store.search("apple")));
+        assertEquals(List.of(), store.search("plum"));
+    }
+
+    @Test
+    public void testPrefixSearchAddsUpTheFrequenciesOfEveryMatchingWord() throws Exception {
+        DocumentStore store = storeOf("apple apply", "apple apple apple", "applesauce apple apply apply");
+        // each document once, ranked by all its words starting with "app"
+        assertEquals(List.of(uri("doc2"), uri("doc1"), uri("doc0")), keys(store.searchByPrefix("app")));
+        assertEquals(List.of(uri("doc2"), uri("doc0")), keys(store.searchByPrefix("apply")));
+    }
+
+    @Test
+    public void testRankingHoldsForEvictedDocuments() throws Exception {
+        DocumentStore store = storeOf("apple", "apple apple apple", "apple apple", "pear");
+        store.setMaxDocumentCount(1);
+        assertEquals(3, new DocumentPersistenceManager(this.dir).keys().size());
+        assertEquals(List.of(uri("doc1"), uri("doc2"), uri("doc0")), keys(store.search("apple")));
+        assertEquals(List.of(uri("doc1"), uri("doc2"), uri("doc0")), keys(store.searchByPrefix("ap")));
+    }
+
+    @Test
+    public void testTopKMatchesTheFullRanking() throws Exception {
+        DocumentStore store = storeOf("apple", "apple apple apple apply", "apple apple", "pear", "applesauce applesauce applesauce");
+        assertEquals(keys(store.search("apple")).subList(0, 2), keys(store.search("apple", 2)));
+        assertEquals(keys(store.search("apple")), keys(store.search("apple", 10)));
+        assertEquals(keys(store.searchByPrefix("app")).subList(0, 3), keys(store.searchByPrefix("app", 3)));
+        assertEquals(List.of(), store.search("apple", 0));
+        assertThrows(IllegalArgumentException.class, () -> store.search("apple", -1));
+    }
+
+    @Test
+    public void testTopKOnlyReadsBackTheReturnedDocuments() throws Exception {
+        DocumentStore store = storeOf("apple", "apple apple apple", "apple apple", "pear");
+        store.setMaxDocumentCount(2);
+        DocumentPersistenceManager disk = new DocumentPersistenceManager(this.dir);
+        List<URI> evicted = disk.keys();
+        assertEquals(2, evicted.size());
+        assertTrue(evicted.contains(uri("doc1")));
+
+        List<Document> top = store.search("apple", 1);
+        assertEquals(List.of(uri("doc1")), keys(top));
+        assertEquals("apple apple apple", top.get(0).getDocumentTxt());
+        // doc1 was read back in and another resident document pushed out; nothing else was read
+        assertFalse(disk.keys().contains(uri("doc1")));
+        assertEquals(2, disk.keys().size());
+    }
+
+    @Test
+    public void testAReplacedDocumentKeepsNoneOfItsOldTerms() throws Exception {
+        DocumentStore store = storeOf("apple pear", "apple");
+        store.put(new ByteArrayInputStream("plum".getBytes(StandardCharsets.UTF_8)), uri("doc0"), DocumentStore.DocumentFormat.TXT);
+        assertEquals(List.of(uri("doc1")), keys(store.search("apple")));
+        assertEquals(List.of(), store.search("pear"));
+        assertEquals(List.of(uri("doc0")), keys(store.search("plum")));
+        store.undo();
+        assertEquals(List.of(uri("doc0")), keys(store.search("pear")));
+        assertEquals(List.of(), store.search("plum"));
+
+        store.setMetadata(uri("doc1"), "color", "red");
+        store.setMetadata(uri("doc1"), "color", "green");
+        assertEquals(List.of(), store.searchByPrefix("color:r"));
+        assertEquals(List.of(uri("doc1")), keys(store.searchByPrefix("color:g")));
+    }
+}
@@ -0,0 +1,53 @@
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Not a unit test; run with main. Time per search for a term in every document and for a short prefix, returning
+ * every match versus the top 20, over a store that keeps all its documents in memory.
+ */
+public class SearchTopKBenchmark {
+    private static final int DOCUMENTS = 5_000;
+    private static final int SEARCHES = 100;
+    private static final int K = 20;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("searchTopKBenchmark").toFile();
+        PrintStream out = System.out;
+        DocumentStore store = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false);
+        Random random = new Random(20);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 50; w++) {
+                // "the" is in every document; "word..." spreads over a few hundred distinct words
+                text.append(random.nextInt(4) == 0 ? "the " : "word" + random.nextInt(500) + " ");
+            }
+            text.append("the");
+            store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), URI.create("http://edu.yu.cs/topk/doc" + i), DocumentStore.DocumentFormat.TXT);
+        }
+        for (int round = 0; round < 3; round++) {
+            out.printf("search(\"the\")          %,9d us%n", time(() -> store.search("the")));
+            out.printf("search(\"the\", %d)      %,9d us%n", K, time(() -> store.search("the", K)));
+            out.printf("searchByPrefix(\"w\")     %,9d us%n", time(() -> store.searchByPrefix("w")));
+            out.printf("searchByPrefix(\"w\", %d) %,9d us%n", K, time(() -> store.searchByPrefix("w", K)));
+        }
+    }
+
+    private interface Search {
+        Object run() throws IOException;
+    }
+
+    private static long time(Search search) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCHES; i++) {
+            search.run();
+        }
+        return (System.nanoTime() - start) / 1_000 / SEARCHES;
+    }
+}
@@ -0,0 +1,268 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentPersistenceManagerTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/segment/doc" + i);
+    }
+
+    private static Document doc(int i, String text) {
+        return new DocumentImpl(uri(i), text, null);
+    }
+
+    @Test
+    public void testSerializeDeserializeDelete() throws Exception {
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir)) {
+            pm.serialize(uri(1), doc(1, "first version"));
+            pm.serialize(uri(2), doc(2, "another doc"));
+            pm.serialize(uri(1), doc(1, "second version"));
+            assertEquals("second version", pm.deserialize(uri(1)).getDocumentTxt());
+            assertEquals("another doc", pm.deserialize(uri(2)).getDocumentTxt());
+            assertNull(pm.deserialize(uri(3)));
+
+            assertTrue(pm.delete(uri(2)));
+            assertFalse(pm.delete(uri(2)));
+            assertNull(pm.deserialize(uri(2)));
+            assertEquals(List.of(uri(1)), pm.keys());
+            assertTrue(pm.getGarbageRatio() > 0);
+        }
+    }
+
+    @Test
+    public void testDeserializeAllReadsAcrossSegments() throws Exception {
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir, new BinaryDocumentCodec(), 256, 0.5)) {
+            for (int i = 0; i < 20; i++) {
+                pm.serialize(uri(i), doc(i, "text of doc " + i));
+            }
+            pm.delete(uri(3));
+            Map<URI, Document> found = pm.deserializeAll(List.of(uri(1), uri(3), uri(12), uri(19), uri(40)));
+            assertEquals(Set.of(uri(1), uri(12), uri(19)), found.keySet());
+            assertEquals("text of doc 12", found.get(uri(12)).getDocumentTxt());
+            // reading doesn't remove anything
+            assertEquals(19, pm.keys().size());
+        }
+    }
+
+    @Test
+    public void testIndexRebuiltOnRestart() throws Exception {
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir, new BinaryDocumentCodec(), 256, 0.5)) {
+            for (int i = 0; i < 20; i++) {
+                pm.serialize(uri(i), doc(i, "text of doc " + i));
+            }
+            pm.delete(uri(3));
+            pm.serialize(uri(4), doc(4, "rewritten"));
+            assertTrue(pm.getSegmentCount() > 1);
+        }
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir, new BinaryDocumentCodec(), 256, 0.5)) {
+            assertEquals(19, pm.keys().size());
+            assertNull(pm.deserialize(uri(3)));
+            assertEquals("rewritten", pm.deserialize(uri(4)).getDocumentTxt());
+            assertEquals("text of doc 19", pm.deserialize(uri(19)).getDocumentTxt());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir)) {
+            pm.serialize(uri(1), doc(1, "survives"));
+            pm.serialize(uri(2), doc(2, "torn"));
+        }
+        File segment = new File(this.dir, ".segments").listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir)) {
+            assertEquals(List.of(uri(1)), pm.keys());
+            assertEquals("survives", pm.deserialize(uri(1)).getDocumentTxt());
+            pm.serialize(uri(2), doc(2, "written again"));
+            assertEquals("written again", pm.deserialize(uri(2)).getDocumentTxt());
+        }
+    }
+
+    @Test
+    public void testCompactionReclaimsDeadRecords() throws Exception {
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir, new BinaryDocumentCodec(), 512, 0.5)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 10; i++) {
+                    pm.serialize(uri(i), doc(i, "round " + round + " of doc " + i));
+                }
+            }
+            pm.delete(uri(0));
+            pm.compact();
+            assertTrue(pm.getGarbageRatio() < 0.5);
+            Set<URI> expected = new HashSet<>();
+            for (int i = 1; i < 10; i++) {
+                expected.add(uri(i));
+                assertEquals("round 9 of doc " + i, pm.deserialize(uri(i)).getDocumentTxt());
+            }
+            assertNull(pm.deserialize(uri(0)));
+            assertEquals(expected, new HashSet<>(pm.keys()));
+        }
+        // a tombstone copied forward still hides the deleted key after compaction
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir, new BinaryDocumentCodec(), 512, 0.5)) {
+            assertNull(pm.deserialize(uri(0)));
+            assertEquals(9, pm.keys().size());
+        }
+    }
+
+    @Test
+    public void testStoreEvictsToSegments() throws Exception {
+        DocumentStore store = new DocumentStoreImpl(this.dir, new SegmentPersistenceManager(this.dir), false);
+        store.setMaxDocumentCount(1);
+        store.put(new ByteArrayInputStream("first doc".getBytes(StandardCharsets.UTF_8)), uri(1), DocumentStore.DocumentFormat.TXT);
+        store.put(new ByteArrayInputStream("second doc".getBytes(StandardCharsets.UTF_8)), uri(2), DocumentStore.DocumentFormat.TXT);
+        assertEquals(1, new File(this.dir, ".segments").listFiles().length);
+        assertEquals("first doc", store.get(uri(1)).getDocumentTxt());
+        assertEquals("second doc", store.get(uri(2)).getDocumentTxt());
+    }
+
+    @Test
+    public void testSerializeAllAppendsOneBatch() throws Exception {
+        Map<URI, Document> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            batch.put(uri(i), doc(i, "batched doc " + i));
+        }
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir)) {
+            pm.serialize(uri(7), doc(7, "written before the batch"));
+            pm.serializeAll(batch);
+            assertEquals(50, pm.keys().size());
+            assertEquals("batched doc 7", pm.deserialize(uri(7)).getDocumentTxt());
+        }
+        try (SegmentPersistenceManager pm = new SegmentPersistenceManager(this.dir)) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("batched doc " + i, pm.deserialize(uri(i)).getDocumentTxt());
+            }
+        }
+    }
+
+    @Test
+    public void testStoreEvictsToLowWatermarkInOneBatch() throws Exception {
+        SegmentPersistenceManager segments = new SegmentPersistenceManager(this.dir);
+        int[] batches = new int[1];
+        PersistenceManager<URI, Document> pm = new PersistenceManager<>() {
+            @Override
+            public void serialize(URI key, Document val) throws IOException {
+                segments.serialize(key, val);
+            }
+
+            @Override
+            public void serializeAll(Map<URI, Document> values) throws IOException {
+                batches[0]++;
+                segments.serializeAll(values);
+            }
+
+            @Override
+            public Document deserialize(URI key) throws IOException {
+                return segments.deserialize(key);
+            }
+
+            @Override
+            public boolean delete(URI key) throws IOException {
+                return segments.delete(key);
+            }
+
+            @Override
+            public List<URI> keys() {
+                return segments.keys();
+            }
+        };
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, pm, false);
+        store.setEvictionWatermark(0.5);
+        for (int i = 0; i < 10; i++) {
+            store.put(new ByteArrayInputStream(("doc number " + i).getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        store.setMaxDocumentCount(8);
+        // one batch took the store from 10 documents down to 4, least recently used first
+        assertEquals(1, batches[0]);
+        Set<URI> expected = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add(uri(i));
+        }
+        assertEquals(expected, new HashSet<>(segments.keys()));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("doc number " + i, store.get(uri(i)).getDocumentTxt());
+        }
+        segments.close();
+    }
+
+    @Test
+    public void testFailedEvictionKeepsTheBatchInMemory() throws Exception {
+        SegmentPersistenceManager segments = new SegmentPersistenceManager(this.dir);
+        boolean[] failing = {true};
+        PersistenceManager<URI, Document> pm = new PersistenceManager<>() {
+            @Override
+            public void serialize(URI key, Document val) throws IOException {
+                serializeAll(Map.of(key, val));
+            }
+
+            @Override
+            public void serializeAll(Map<URI, Document> values) throws IOException {
+                if (failing[0]) {
+                    throw new IOException("disk full");
+                }
+                segments.serializeAll(values);
+            }
+
+            @Override
+            public Document deserialize(URI key) throws IOException {
+                return segments.deserialize(key);
+            }
+
+            @Override
+            public boolean delete(URI key) throws IOException {
+                return segments.delete(key);
+            }
+
+            @Override
+            public List<URI> keys() {
+                return segments.keys();
+            }
+        };
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, pm, false);
+        store.setEvictionWatermark(0.5);
+        for (int i = 0; i < 10; i++) {
+            store.put(new ByteArrayInputStream(("doc number " + i).getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+        }
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> store.setMaxDocumentCount(8));
+        assertInstanceOf(IOException.class, thrown.getCause());
+        assertTrue(segments.keys().isEmpty());
+        assertEquals(0, store.getEvictionBatchCount());
+        // the batch went back on the heap, so the next change evicts the same least recently used documents
+        failing[0] = false;
+        store.put(new ByteArrayInputStream("doc number 10".getBytes(StandardCharsets.UTF_8)), uri(10), DocumentStore.DocumentFormat.TXT);
+        assertEquals(1, store.getEvictionBatchCount());
+        Set<URI> expected = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add(uri(i));
+        }
+        assertEquals(expected, new HashSet<>(segments.keys()));
+        for (int i = 0; i <= 10; i++) {
+            assertEquals("doc number " + i, store.get(uri(i)).getDocumentTxt());
+        }
+        segments.close();
+    }
+}
@@ -7,7 +7,9 @@ import org.junit.Test;
 import java.io.*;
 import java.net.URI;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -238,4 +240,43 @@ public class Stage6Tests {
         assertNull(documentStore.get(uri2));
     }
 
+    @Test
+    public void testListNamespace() throws IOException {
+        URI inside1 = URI.create("http://edu.yu.cs/com1320/project/stage6/ns/a");
+        URI inside2 = URI.create("http://edu.yu.cs/com1320/project/stage6/ns/b/c");
+        URI outside = URI.create("http://edu.yu.cs/com1320/project/stage6/nsx");
+        documentStore.put(new ByteArrayInputStream("first".getBytes()), inside1, DocumentStore.DocumentFormat.TXT);
+        documentStore.put(new ByteArrayInputStream("second".getBytes()), inside2, DocumentStore.DocumentFormat.TXT);
+        documentStore.put(new ByteArrayInputStream("third".getBytes()), outside, DocumentStore.DocumentFormat.TXT);
+        documentStore.setMaxDocumentCount(1);
+
+        List<URI> listed = new ArrayList<>();
+        documentStore.listNamespace("http://edu.yu.cs/com1320/project/stage6/ns/", false).forEachRemaining(listed::add);
+        assertEquals(List.of(inside1, inside2), listed);
+
+        Iterator<URI> reverse = documentStore.listNamespace("http://edu.yu.cs/com1320/project/stage6/ns/", true);
+        assertEquals(inside2, reverse.next());
+        assertEquals(inside1, reverse.next());
+        assertFalse(reverse.hasNext());
+    }
+
+    @Test
+    public void testLoadExistingDocuments() throws IOException {
+        File baseDir = Files.createTempDirectory("stage6Bootstrap").toFile();
+        DocumentStoreImpl first = new DocumentStoreImpl(baseDir);
+        for (int i = 0; i < 30; i++) {
+            URI uri = URI.create("http://edu.yu.cs/com1320/project/stage6/bootstrap/doc" + i);
+            first.put(new ByteArrayInputStream(("document number " + i).getBytes()), uri, DocumentStore.DocumentFormat.TXT);
+        }
+        first.setMaxDocumentBytes(1);
+
+        DocumentStoreImpl restarted = new DocumentStoreImpl(baseDir, true);
+        List<URI> listed = new ArrayList<>();
+        restarted.listNamespace("http://edu.yu.cs/com1320/project/stage6/bootstrap/", false).forEachRemaining(listed::add);
+        assertEquals(30, listed.size());
+        Document doc = restarted.get(URI.create("http://edu.yu.cs/com1320/project/stage6/bootstrap/doc7"));
+        assertNotNull(doc);
+        assertEquals("document number 7", doc.getDocumentTxt());
+    }
+
 }
@@ -0,0 +1,202 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.Query;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoreCheckpointTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/checkpoint/doc" + i);
+    }
+
+    private static void putText(DocumentStore store, int i, String text) throws Exception {
+        store.put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+    }
+
+    private File storedFile(int i) {
+        return new File(this.dir, "edu.yu.cs/checkpoint/doc" + i + ".bin");
+    }
+
+    private File logFile() {
+        return new File(this.dir, "store.wal");
+    }
+
+    private DocumentStoreImpl open(DocumentPersistenceManager pm) {
+        return new DocumentStoreImpl(this.dir, pm, false, new WriteAheadLog(logFile(), WriteAheadLog.Durability.NONE));
+    }
+
+    @Test
+    public void testRestartReplaysOnlyTheLogAfterTheCheckpoint() throws Exception {
+        DocumentStoreImpl store = open(new DocumentPersistenceManager(this.dir));
+        for (int i = 0; i < 6; i++) {
+            putText(store, i, "shared words in document " + i);
+        }
+        store.setMetadata(uri(0), "author", "first");
+        store.setMaxDocumentCount(4); // documents 1 and 2 are evicted
+        long fullLog = logFile().length();
+        store.checkpoint().get();
+        // the checkpoint has everything the log held, so the log drops it
+        assertTrue(logFile().length() < fullLog);
+        assertEquals(1, store.getCheckpointCount());
+        assertTrue(store.getCheckpointWriteNanos() > 0);
+        store.setMaxDocumentCount(Integer.MAX_VALUE);
+        putText(store, 6, "written after the checkpoint");
+        putText(store, 3, "shared words replaced");
+        store.delete(uri(4));
+        store.setMetadata(uri(1), "author", "second");
+
+        DocumentStoreImpl recovered = open(new DocumentPersistenceManager(this.dir));
+        assertEquals("written after the checkpoint", recovered.get(uri(6)).getDocumentTxt());
+        assertEquals("shared words replaced", recovered.get(uri(3)).getDocumentTxt());
+        assertNull(recovered.get(uri(4)));
+        assertEquals("first", recovered.getMetadata(uri(0), "author"));
+        assertEquals("second", recovered.getMetadata(uri(1), "author"));
+        assertEquals("shared words in document 2", recovered.get(uri(2)).getDocumentTxt());
+        // the evicted documents are searchable again, and the replaced and deleted ones are not
+        assertEquals(4, recovered.search("document").size());
+        assertEquals(5, recovered.search("shared").size());
+        assertEquals(1, recovered.search("replaced").size());
+        assertEquals(1, recovered.searchByMetadata(Map.of("author", "second")).size());
+    }
+
+    @Test
+    public void testLogKeepsItsOffsetsAcrossTruncations() throws Exception {
+        DocumentStoreImpl store = open(new DocumentPersistenceManager(this.dir));
+        for (int round = 0; round < 3; round++) {
+            putText(store, round, "logged in round " + round);
+            store.checkpoint().get();
+            putText(store, 10 + round, "logged after checkpoint " + round);
+        }
+        assertEquals(3, store.getCheckpointCount());
+
+        // the last checkpoint's offset is past everything the truncated log still holds in its file
+        DocumentStoreImpl recovered = open(new DocumentPersistenceManager(this.dir));
+        for (int round = 0; round < 3; round++) {
+            assertEquals("logged in round " + round, recovered.get(uri(round)).getDocumentTxt());
+            assertEquals("logged after checkpoint " + round, recovered.get(uri(10 + round)).getDocumentTxt());
+        }
+        putText(recovered, 20, "logged after the restart");
+        recovered.checkpoint().get();
+
+        DocumentStoreImpl again = open(new DocumentPersistenceManager(this.dir));
+        assertEquals("logged after the restart", again.get(uri(20)).getDocumentTxt());
+        assertEquals(7, again.search("logged").size());
+    }
+
+    @Test
+    public void testLastUseOrderSurvivesRestart() throws Exception {
+        DocumentStoreImpl store = open(new DocumentPersistenceManager(this.dir));
+        for (int i = 0; i < 5; i++) {
+            putText(store, i, "document " + i);
+        }
+        store.get(uri(0));
+        store.checkpoint().get();
+
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir);
+        DocumentStoreImpl recovered = open(pm);
+        recovered.setMaxDocumentCount(3);
+        assertEquals(List.of(uri(1), uri(2)), pm.keys().stream().sorted().toList());
+    }
+
+    @Test
+    public void testDocumentReadBackAfterTheCheckpointIsNotLost() throws Exception {
+        DocumentStoreImpl store = open(new DocumentPersistenceManager(this.dir));
+        for (int i = 0; i < 3; i++) {
+            putText(store, i, "document " + i);
+        }
+        store.setMaxDocumentCount(1);
+        store.checkpoint().get();
+        long checkpointedLog = logFile().length();
+        // reading document 0 back in logs nothing: its file is kept for the checkpoint, which has it as evicted
+        store.setMaxDocumentCount(Integer.MAX_VALUE);
+        assertEquals("document 0", store.get(uri(0)).getDocumentTxt());
+        assertEquals(checkpointedLog, logFile().length());
+
+        DocumentStoreImpl recovered = open(new DocumentPersistenceManager(this.dir));
+        for (int i = 0; i < 3; i++) {
+            Document doc = recovered.get(uri(i));
+            assertEquals("document " + i, doc.getDocumentTxt());
+        }
+    }
+
+    @Test
+    public void testKeptCopyIsDroppedOnceCheckpointed() throws Exception {
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir);
+        DocumentStoreImpl store = open(pm);
+        for (int i = 0; i < 4; i++) {
+            putText(store, i, "document " + i);
+        }
+        store.setMaxDocumentCount(1);
+        store.checkpoint().get();
+        store.setMaxDocumentCount(Integer.MAX_VALUE);
+        for (int i = 0; i < 3; i++) {
+            store.get(uri(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(storedFile(i).exists());
+        }
+        // a document that is removed takes its kept copy with it
+        store.delete(uri(1));
+        assertFalse(storedFile(1).exists());
+        assertTrue(storedFile(0).exists());
+        // and the others go once a checkpoint that has them as resident is on disk
+        store.checkpoint().get();
+        putText(store, 4, "document 4");
+        assertFalse(storedFile(0).exists());
+        assertFalse(storedFile(2).exists());
+        assertEquals("document 0", store.get(uri(0)).getDocumentTxt());
+    }
+
+    @Test
+    public void testCheckpointsPeriodically(@TempDir File other) throws Exception {
+        DocumentStoreImpl store = open(new DocumentPersistenceManager(this.dir));
+        store.setCheckpointInterval(1);
+        putText(store, 0, "first");
+        Thread.sleep(5);
+        putText(store, 1, "second");
+        File checkpoint = new File(this.dir, ".checkpoint");
+        for (int waited = 0; !checkpoint.exists() && waited < 5_000; waited += 10) {
+            Thread.sleep(10);
+        }
+        assertTrue(checkpoint.exists());
+        store.close();
+        assertThrows(IllegalStateException.class, () -> new DocumentStoreImpl(other).checkpoint());
+    }
+
+    @Test
+    public void testRestartIndexesEvictedDocumentsWithoutReadingThem() throws Exception {
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false,
+                new WriteAheadLog(logFile(), WriteAheadLog.Durability.NONE), true);
+        for (int i = 0; i < 5; i++) {
+            putText(store, i, "apple pie number " + i);
+            store.setMetadata(uri(i), "baker", i % 2 == 0 ? "even" : "odd");
+        }
+        store.setMaxDocumentCount(2); // documents 0, 1 and 2 are evicted
+        store.checkpoint().get();
+        store.close();
+
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir);
+        DocumentStoreImpl recovered = new DocumentStoreImpl(this.dir, pm, false,
+                new WriteAheadLog(logFile(), WriteAheadLog.Durability.NONE), true);
+        assertEquals(0, pm.getHitCount());
+        assertEquals(5, recovered.search(Query.phrase("apple pie")).size());
+        assertEquals(1, recovered.search(Query.phrase("number 1")).size());
+        assertEquals(3, recovered.searchByMetadata(Map.of("baker", "even")).size());
+        assertEquals(0, recovered.search(Query.phrase("pie apple")).size());
+    }
+}
@@ -0,0 +1,70 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.OffHeapPersistenceManager;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Not a unit test; run with main. Time per get over a store that keeps 5% of its documents on the heap, with
+ * skewed reads, with evicted documents going straight to disk versus through an off-heap tier big enough for a
+ * quarter of them, and the hits and misses of each tier.
+ */
+public class TieredStorageBenchmark {
+    private static final int DOCUMENTS = 4_000;
+    private static final int READS = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run("heap + disk", DocumentPersistenceManager::new);
+            run("heap + off-heap + disk", dir -> new OffHeapPersistenceManager(new DocumentPersistenceManager(dir), DOCUMENTS / 4 * 2L * OffHeapPersistenceManager.BLOCK_BYTES));
+        }
+    }
+
+    private static void run(String name, Function<File, PersistenceManager<URI, Document>> pmFor) throws Exception {
+        File dir = Files.createTempDirectory("tieredStorageBenchmark").toFile();
+        PrintStream out = System.out;
+        try {
+            // the store and persistence managers log every file they read and write
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            PersistenceManager<URI, Document> pm = pmFor.apply(dir);
+            DocumentStoreImpl store = new DocumentStoreImpl(dir, pm, false);
+            store.setMaxDocumentCount(DOCUMENTS / 20);
+            Random random = new Random(42);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < 200; w++) {
+                    text.append(Integer.toString(random.nextInt(5_000), 36)).append(' ');
+                }
+                store.put(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), URI.create("http://bench/doc" + i), DocumentStore.DocumentFormat.TXT);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < READS; i++) {
+                // most reads go to a fifth of the documents
+                int doc = random.nextInt(10) < 8 ? random.nextInt(DOCUMENTS / 5) : random.nextInt(DOCUMENTS);
+                store.get(URI.create("http://bench/doc" + doc));
+            }
+            long elapsed = System.nanoTime() - start;
+            System.setOut(out);
+            System.out.printf("%-24s %,6d ns per get; heap %,d hits %,d misses", name, elapsed / READS, store.getHitCount(), store.getMissCount());
+            if (pm instanceof OffHeapPersistenceManager offHeap) {
+                System.out.printf("; off-heap %,d hits %,d misses", offHeap.getHitCount(), offHeap.getMissCount());
+            }
+            System.out.println();
+        } finally {
+            System.setOut(out);
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import edu.yu.cs.com1320.project.Trie;
+import edu.yu.cs.com1320.project.impl.AdaptiveTrieImpl;
+import edu.yu.cs.com1320.project.impl.TrieImpl;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Not a unit test; run with main. Heap retained by a TrieImpl versus an AdaptiveTrieImpl holding the same
+ * vocabulary, and the time per get over every word of it. The vocabulary is made of English-like syllables, so
+ * words share prefixes the way real ones do, and each word is in a Zipf-distributed number of documents.
+ */
+public class TrieMemoryBenchmark {
+    private static final int WORDS = 50_000;
+    private static final String[] ONSETS = {"", "b", "c", "d", "f", "g", "h", "l", "m", "n", "p", "r", "s", "t", "v",
+            "w", "br", "ch", "cl", "cr", "dr", "fl", "gr", "pl", "pr", "sh", "sp", "st", "str", "th", "tr"};
+    private static final String[] NUCLEI = {"a", "e", "i", "o", "u", "ai", "ea", "ee", "ie", "oo", "ou"};
+    private static final String[] CODAS = {"", "", "", "n", "r", "s", "t", "l", "d", "ck", "ng", "nt", "st", "rd"};
+    private static final String[] SUFFIXES = {"", "", "", "s", "ed", "ing", "er", "ly", "tion", "ness"};
+
+    public static void main(String[] args) {
+        List<String> words = vocabulary();
+        for (int round = 0; round < 2; round++) {
+            run("TrieImpl", TrieImpl::new, words);
+            run("AdaptiveTrieImpl", AdaptiveTrieImpl::new, words);
+        }
+    }
+
+    private static void run(String name, Supplier<Trie<Integer>> trieFor, List<String> words) {
+        long before = usedHeap();
+        Trie<Integer> trie = trieFor.get();
+        Random random = new Random(1);
+        for (int i = 0; i < words.size(); i++) {
+            // the i-th most common word is in about 1000 / (i + 1) documents
+            int documents = 1 + 1000 / (i + 1);
+            for (int d = 0; d < documents; d++) {
+                trie.put(words.get(i), random.nextInt(10_000));
+            }
+        }
+        long retained = usedHeap() - before;
+        int found = 0;
+        long start = System.nanoTime();
+        for (int pass = 0; pass < 5; pass++) {
+            for (String word : words) {
+                found += trie.get(word).size();
+            }
+        }
+        long nanosPerGet = (System.nanoTime() - start) / (5L * words.size());
+        System.out.printf("%-17s %,7d KB retained, %,5d ns per get (%d found)%n", name, retained / 1024, nanosPerGet, found);
+        // keeps the trie reachable until it has been measured
+        Objects.requireNonNull(trie);
+    }
+
+    private static List<String> vocabulary() {
+        Random random = new Random(18);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < WORDS) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(ONSETS[random.nextInt(ONSETS.length)]).append(NUCLEI[random.nextInt(NUCLEI.length)]).append(CODAS[random.nextInt(CODAS.length)]);
+            }
+            words.add(word.append(SUFFIXES[random.nextInt(SUFFIXES.length)]).toString());
+        }
+        List<String> shuffled = new ArrayList<>(words);
+        Collections.shuffle(shuffled, random);
+        return shuffled;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
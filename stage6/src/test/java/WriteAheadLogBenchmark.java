@@ -0,0 +1,67 @@
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Not a unit test; run with main. Put throughput of a store without a write-ahead log and with one in each
+ * durability mode, and the time to recover the store from the log.
+ */
+public class WriteAheadLogBenchmark {
+    private static final int DOCUMENTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        byte[][] texts = new byte[DOCUMENTS][];
+        Random random = new Random(42);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 150; w++) {
+                text.append(Integer.toString(random.nextInt(5_000), 36)).append(' ');
+            }
+            texts[i] = text.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        run("no log", null, texts);
+        for (WriteAheadLog.Durability durability : WriteAheadLog.Durability.values()) {
+            run(durability.name(), durability, texts);
+        }
+    }
+
+    private static void run(String name, WriteAheadLog.Durability durability, byte[][] texts) throws Exception {
+        File dir = Files.createTempDirectory("walBenchmark").toFile();
+        File logFile = new File(dir, "store.wal");
+        try {
+            WriteAheadLog wal = durability != null ? new WriteAheadLog(logFile, durability) : null;
+            DocumentStore store = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false, wal);
+            long start = System.nanoTime();
+            for (int i = 0; i < texts.length; i++) {
+                store.put(new ByteArrayInputStream(texts[i]), URI.create("http://bench/doc" + i), DocumentStore.DocumentFormat.TXT);
+            }
+            long putNanos = System.nanoTime() - start;
+            String recovery = "";
+            if (wal != null) {
+                wal.close();
+                start = System.nanoTime();
+                DocumentStore recovered = new DocumentStoreImpl(dir, new DocumentPersistenceManager(dir), false, new WriteAheadLog(logFile, durability));
+                long recoverNanos = System.nanoTime() - start;
+                if (recovered.get(URI.create("http://bench/doc" + (texts.length - 1))) == null) {
+                    throw new IllegalStateException("recovery lost a document");
+                }
+                recovery = String.format("  recovery %,6d ms for a %,d KB log", recoverNanos / 1_000_000, logFile.length() / 1024);
+            }
+            System.out.printf("%-13s %,8d puts/s%s%n", name, (long) (texts.length / (putNanos / 1e9)), recovery);
+        } finally {
+            try (var paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
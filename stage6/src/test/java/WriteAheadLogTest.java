@@ -0,0 +1,99 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+    @TempDir
+    File dir;
+
+    private static URI uri(int i) {
+        return URI.create("http://edu.yu.cs/wal/doc" + i);
+    }
+
+    private static void putText(DocumentStore store, int i, String text) throws Exception {
+        store.put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), uri(i), DocumentStore.DocumentFormat.TXT);
+    }
+
+    private DocumentStoreImpl open(WriteAheadLog.Durability durability) {
+        return new DocumentStoreImpl(this.dir, new DocumentPersistenceManager(this.dir), false,
+                new WriteAheadLog(new File(this.dir, "store.wal"), durability));
+    }
+
+    @Test
+    public void testRecoversEveryKindOfChange() throws Exception {
+        for (WriteAheadLog.Durability durability : WriteAheadLog.Durability.values()) {
+            new File(this.dir, "store.wal").delete();
+            DocumentStoreImpl store = open(durability);
+            putText(store, 1, "apple banana");
+            putText(store, 2, "banana cherry");
+            putText(store, 3, "cherry date");
+            store.put(new ByteArrayInputStream(new byte[]{1, 2, 3}), uri(4), DocumentStore.DocumentFormat.BINARY);
+            store.setMetadata(uri(1), "author", "someone");
+            store.setMetadata(uri(2), "author", "someone else");
+            store.undo(); // the second setMetadata
+            store.delete(uri(3));
+            putText(store, 2, "banana replaced");
+            putText(store, 5, "undone");
+            store.undo();
+
+            DocumentStoreImpl recovered = open(durability);
+            assertEquals("apple banana", recovered.get(uri(1)).getDocumentTxt(), durability.name());
+            assertEquals("someone", recovered.getMetadata(uri(1), "author"));
+            assertEquals("banana replaced", recovered.get(uri(2)).getDocumentTxt());
+            assertNull(recovered.getMetadata(uri(2), "author"));
+            assertNull(recovered.get(uri(3)));
+            assertArrayEquals(new byte[]{1, 2, 3}, recovered.get(uri(4)).getDocumentBinaryData());
+            assertNull(recovered.get(uri(5)));
+            assertEquals(2, recovered.search("banana").size());
+            assertEquals(List.of(), recovered.search("date"));
+            assertEquals(1, recovered.searchByMetadata(Map.of("author", "someone")).size());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        DocumentStoreImpl store = open(WriteAheadLog.Durability.NONE);
+        putText(store, 1, "survives the crash");
+        try (FileOutputStream out = new FileOutputStream(new File(this.dir, "store.wal"), true)) {
+            out.write(new byte[]{0, 0, 0, 50, 1, 2, 3}); // a record cut short
+        }
+        DocumentStoreImpl recovered = open(WriteAheadLog.Durability.NONE);
+        assertEquals("survives the crash", recovered.get(uri(1)).getDocumentTxt());
+        putText(recovered, 2, "written after recovery");
+
+        DocumentStoreImpl again = open(WriteAheadLog.Durability.NONE);
+        assertEquals("survives the crash", again.get(uri(1)).getDocumentTxt());
+        assertEquals("written after recovery", again.get(uri(2)).getDocumentTxt());
+    }
+
+    @Test
+    public void testRecoveredDocumentsAreEvictedByLimits() throws Exception {
+        DocumentStoreImpl store = open(WriteAheadLog.Durability.SYNC);
+        for (int i = 0; i < 5; i++) {
+            putText(store, i, "document number " + i);
+        }
+        store.setMaxDocumentCount(2);
+
+        DocumentStoreImpl recovered = open(WriteAheadLog.Durability.SYNC);
+        recovered.setMaxDocumentCount(2);
+        for (int i = 0; i < 5; i++) {
+            Document doc = recovered.get(uri(i));
+            assertEquals("document number " + i, doc.getDocumentTxt());
+        }
+        assertEquals(5, recovered.search("document").size());
+    }
+}
@@ -0,0 +1,160 @@
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteBehindPersistenceManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindPersistenceManagerTest {
+    @TempDir
+    File dir;
+
+    // stores in a map, and holds every write until the gate is opened
+    private static class GatedPersistenceManager implements PersistenceManager<String, String> {
+        private final Map<String, String> stored = new HashMap<>();
+        private final List<String> writes = new ArrayList<>();
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private boolean failWrites;
+
+        @Override
+        public void serialize(String key, String val) throws IOException {
+            try {
+                this.gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (this.failWrites) {
+                throw new IOException("disk full");
+            }
+            this.writes.add(key);
+            this.stored.put(key, val);
+        }
+
+        @Override
+        public String deserialize(String key) {
+            return this.stored.get(key);
+        }
+
+        @Override
+        public boolean delete(String key) {
+            return this.stored.remove(key) != null;
+        }
+
+        @Override
+        public List<String> keys() {
+            return new ArrayList<>(this.stored.keySet());
+        }
+    }
+
+    @Test
+    public void testValuesAreReadableUntilWritten() throws Exception {
+        GatedPersistenceManager disk = new GatedPersistenceManager();
+        WriteBehindPersistenceManager<String, String> pm = new WriteBehindPersistenceManager<>(disk);
+        pm.serialize("a", "first");
+        pm.serializeAll(Map.of("b", "second", "c", "third"));
+        // the writes are held at the gate, but serialize returned and the values are served from the buffer
+        assertEquals(3, pm.getPendingCount());
+        assertEquals("second", pm.deserialize("b"));
+
+        disk.gate.countDown();
+        pm.flush().join();
+        assertEquals(0, pm.getPendingCount());
+        assertEquals(Map.of("a", "first", "b", "second", "c", "third"), disk.stored);
+        assertEquals(Set.of("a", "b", "c"), new HashSet<>(pm.keys()));
+        assertEquals("third", pm.deserializeAsync("c").join());
+        assertTrue(pm.deleteAsync("c").join());
+        assertNull(pm.deserialize("c"));
+        pm.close();
+    }
+
+    @Test
+    public void testValueDeletedOrReplacedBeforeItsWriteIsNotWritten() throws Exception {
+        GatedPersistenceManager disk = new GatedPersistenceManager();
+        WriteBehindPersistenceManager<String, String> pm = new WriteBehindPersistenceManager<>(disk);
+        pm.serialize("blocker", "holds up the queue");
+        pm.serialize("deleted", "never written");
+        pm.serialize("replaced", "old");
+        pm.serialize("replaced", "new");
+        // delete drops the buffered value without waiting behind the held writes
+        assertTrue(pm.delete("deleted"));
+        assertFalse(pm.delete("never serialized"));
+        assertEquals(2, pm.getPendingCount());
+        assertTrue(disk.writes.isEmpty());
+
+        disk.gate.countDown();
+        pm.flush().join();
+        assertEquals(List.of("blocker", "replaced"), disk.writes);
+        assertEquals("new", disk.stored.get("replaced"));
+        assertNull(pm.deserialize("deleted"));
+        pm.close();
+    }
+
+    @Test
+    public void testFailedWriteStaysReadable() throws Exception {
+        GatedPersistenceManager disk = new GatedPersistenceManager();
+        disk.failWrites = true;
+        disk.gate.countDown();
+        WriteBehindPersistenceManager<String, String> pm = new WriteBehindPersistenceManager<>(disk);
+        CompletionException failure = assertThrows(CompletionException.class, () -> pm.serializeAsync("a", "kept").join());
+        assertInstanceOf(IOException.class, failure.getCause());
+        assertEquals(1, pm.getPendingCount());
+        assertEquals("kept", pm.deserialize("a"));
+        // the failure is thrown by the next serialize, which buffers nothing
+        assertThrows(IOException.class, () -> pm.serialize("b", "refused"));
+        assertNull(pm.deserialize("b"));
+        // and sync writes the failed value again
+        disk.failWrites = false;
+        pm.sync();
+        assertEquals(0, pm.getPendingCount());
+        assertEquals(Map.of("a", "kept"), disk.stored);
+        pm.close();
+    }
+
+    @Test
+    public void testSyncThrowsAFailedWrite() throws Exception {
+        GatedPersistenceManager disk = new GatedPersistenceManager();
+        disk.failWrites = true;
+        disk.gate.countDown();
+        WriteBehindPersistenceManager<String, String> pm = new WriteBehindPersistenceManager<>(disk);
+        pm.serialize("a", "kept");
+        assertThrows(IOException.class, pm::sync);
+        assertEquals("kept", pm.deserialize("a"));
+        // thrown once, and then only again if it fails again
+        disk.failWrites = false;
+        pm.sync();
+        assertEquals(Map.of("a", "kept"), disk.stored);
+        pm.close();
+    }
+
+    @Test
+    public void testStoreEvictsBehindTheCaller() throws Exception {
+        URI first = URI.create("http://edu.yu.cs/writeBehind/doc1");
+        URI second = URI.create("http://edu.yu.cs/writeBehind/doc2");
+        WriteBehindPersistenceManager<URI, Document> pm = new WriteBehindPersistenceManager<>(new DocumentPersistenceManager(this.dir));
+        DocumentStore store = new DocumentStoreImpl(this.dir, pm, false);
+        store.setMaxDocumentCount(1);
+        store.put(new ByteArrayInputStream("first doc".getBytes(StandardCharsets.UTF_8)), first, DocumentStore.DocumentFormat.TXT);
+        store.put(new ByteArrayInputStream("second doc".getBytes(StandardCharsets.UTF_8)), second, DocumentStore.DocumentFormat.TXT);
+        pm.flush().join();
+        assertEquals(List.of(first), new DocumentPersistenceManager(this.dir).keys());
+        // reading it back in deletes the file, and evicts the other document in its place
+        assertEquals("first doc", store.get(first).getDocumentTxt());
+        assertEquals("second doc", pm.deserialize(second).getDocumentTxt());
+        pm.close();
+        assertEquals(List.of(second), new DocumentPersistenceManager(this.dir).keys());
+    }
+}